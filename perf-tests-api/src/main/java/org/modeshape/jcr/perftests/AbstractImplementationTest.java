@@ -122,6 +122,7 @@ public abstract class AbstractImplementationTest {
 
             // Set up the runner configuration ...
             runnerConfig = new RunnerCfg(configurationName + ".properties");
+            runnerConfig.implementationClassName = getClass().getName();
 
             // Find the description of the test ...
             testDescription = runnerConfig.getProperty(TEST_DESCRIPTION, configurationName);
@@ -146,6 +147,7 @@ public abstract class AbstractImplementationTest {
                 testDirectories.add(file);
             }
             this.testDirectories = Collections.unmodifiableList(testDirectories);
+            runnerConfig.storageDirectories.addAll(testDirectories);
 
             // Initialize the repository factory parameters (after all the fields are set) ...
             Map<String, Object> repositoryFactoryParameters = new HashMap<String, Object>();
@@ -176,11 +178,38 @@ public abstract class AbstractImplementationTest {
                     }
                 }
             });
+
+            // Register handler to shut the repository down, keeping its content, before it is started again ...
+            runnerConfig.runBeforeRestartingRepository(new AfterOperation() {
+                @Override
+                public void call( RepositoryFactory repositoryFactory,
+                                  Repository repository ) throws Exception {
+                    cleanupAfterRunningTest(repositoryFactory, repository);
+                }
+            });
         } catch (Throwable t) {
             initializationError = new IllegalStateException("Error setting the RepositoryFactory parameters", t);
         }
     }
 
+    /**
+     * Creates and initializes an instance of the given implementation test class, outside of JUnit. This is used to obtain the
+     * configuration of an implementation in other JVMs (e.g. when each suite is run in its own JVM).
+     *
+     * @param className the fully qualified name of an {@link AbstractImplementationTest} subclass
+     * @return the initialized instance, never null
+     * @throws Exception if the class cannot be instantiated or the initialization fails
+     */
+    static AbstractImplementationTest newInstance( String className ) throws Exception {
+        AbstractImplementationTest implementation = Class.forName(className).asSubclass(AbstractImplementationTest.class)
+                                                         .newInstance();
+        implementation.before();
+        if (implementation.initializationError != null) {
+            throw implementation.initializationError;
+        }
+        return implementation;
+    }
+
     /**
      * Override this method to perform custom initialization before each test is run. Note that the test directories will have
      * been created before this method is called.
@@ -194,8 +223,9 @@ public abstract class AbstractImplementationTest {
     }
 
     /**
-     * Override this method to perform custom initialization after each test is run. Note that the test directories will always be
-     * removed after this method is called (unless an exception is thrown).
+     * Override this method to perform custom initialization after each test is run, e.g. to shut the repository down. Note that
+     * the test directories will always be removed after this method is called (unless an exception is thrown), except when the
+     * repository is shut down to measure its restart, in which case they are kept.
      * <p>
      * By default, this method does nothing.
      * </p>
@@ -16,11 +16,19 @@
  */
 package org.modeshape.jcr.perftests;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.jcr.Credentials;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
@@ -44,9 +52,34 @@ public abstract class AbstractPerformanceTestSuite {
     /** executor which is used to fire up async jobs */
     private ExecutorService execService;
 
+    /** the kind of threads on which the async jobs and the concurrent runs of the suite are executed */
+    private WorkerThreads workerThreads = WorkerThreads.PLATFORM;
+
+    /** the session of each thread which runs the test concurrently, see {@link #workerSession()} */
+    private final ThreadLocal<Session> workerSessions = new ThreadLocal<Session>();
+
+    /** the supervised jobs running in the background, see {@link #addBackgroundJob(Callable)} */
+    private final List<BackgroundJob> backgroundJobs = new CopyOnWriteArrayList<BackgroundJob>();
+
+    /** the latencies of the individual operations timed by the suite, keyed by operation name */
+    private final ConcurrentMap<String, LatencyHistogram> operationLatencies = new ConcurrentHashMap<String, LatencyHistogram>();
+
     /** flag used to signal to the different (potential) threads created by the suite that the suite is active */
     private volatile boolean running;
 
+    /** the number of threads which are running the test at the same time, see {@link #isRunConcurrently()} */
+    private volatile int runThreadCount = 1;
+
+    /** the durations of {@link #beforeSuite()} and {@link #afterSuite()}, in nanoseconds */
+    private volatile long beforeSuiteNanos;
+    private volatile long afterSuiteNanos;
+
+    /** the number of random generators created by the suite so far, see {@link #newRandom()} */
+    private final AtomicInteger randomCount = new AtomicInteger();
+
+    /** the name of the suite, kept after the configuration is released by {@link #tearDown()} */
+    private volatile String name;
+
     public AbstractPerformanceTestSuite( SuiteConfiguration suiteConfiguration ) {
         this.suiteConfiguration = suiteConfiguration;
     }
@@ -57,11 +90,14 @@ public abstract class AbstractPerformanceTestSuite {
      * @throws Exception if the benchmark can not be prepared
      */
     public final void setUp() throws Exception {
-        this.sessions = new LinkedList<Session>();
-        this.execService = Executors.newCachedThreadPool();
+        this.sessions = Collections.synchronizedList(new LinkedList<Session>());
+        this.execService = workerThreads.newCachedThreadPool();
+        this.backgroundJobs.clear();
         this.running = true;
 
+        long start = System.nanoTime();
         beforeSuite();
+        this.beforeSuiteNanos = System.nanoTime() - start;
     }
 
     /**
@@ -70,12 +106,40 @@ public abstract class AbstractPerformanceTestSuite {
      * @throws Exception if an error occurs
      */
     public final void run() throws Exception {
+        runTimed(null);
+    }
+
+    /**
+     * Executes a single iteration of this test, timing {@link #runTest()} separately from {@link #beforeTestRun()} and
+     * {@link #afterTestRun()}, so that the setup and cleanup of an iteration are not counted in the measured duration.
+     *
+     * @param metricsProbe if not null, a probe which is started and stopped around {@link #runTest()}
+     * @return the timings of the iteration, never null
+     * @throws Exception if an error occurs
+     */
+    final RunTimes runTimed( IterationMetricsProbe metricsProbe ) throws Exception {
+        RunTimes times = new RunTimes();
+        long start = System.nanoTime();
         beforeTestRun();
         try {
-            runTest();
+            if (metricsProbe != null) {
+                metricsProbe.start();
+            }
+            times.testStartNanos = System.nanoTime();
+            try {
+                runTest();
+            } finally {
+                times.testEndNanos = System.nanoTime();
+                if (metricsProbe != null) {
+                    times.metrics = metricsProbe.stop();
+                }
+            }
         } finally {
             afterTestRun();
         }
+        times.beforeTestRunNanos = times.testStartNanos - start;
+        times.afterTestRunNanos = System.nanoTime() - times.testEndNanos;
+        return times;
     }
 
     /**
@@ -88,7 +152,9 @@ public abstract class AbstractPerformanceTestSuite {
         execService.shutdown();
 
         try {
+            long start = System.nanoTime();
             afterSuite();
+            this.afterSuiteNanos = System.nanoTime() - start;
             closeSessions();
         } catch (Exception e) {
             LOGGER.warn("Error during tear down:", e);
@@ -96,9 +162,24 @@ public abstract class AbstractPerformanceTestSuite {
 
         this.execService = null;
         this.sessions = null;
+        this.name = getName();
         this.suiteConfiguration = null;
     }
 
+    /**
+     * Returns the name under which the results of this suite are recorded: the simple name of the class, followed by the values
+     * of the suite parameters which are swept (e.g. {@code CreateChildNodesTestSuite[nodeCount=100]}).
+     *
+     * @return the name of the suite, never null
+     */
+    public String getName() {
+        SuiteConfiguration configuration = suiteConfiguration;
+        if (configuration == null) {
+            return name != null ? name : getClass().getSimpleName();
+        }
+        return getClass().getSimpleName() + configuration.getParameterTag();
+    }
+
     /**
      * Indicates if the test suite is compatible with the repository from the <code>SuiteConfiguration</code> object.
      * 
@@ -108,10 +189,38 @@ public abstract class AbstractPerformanceTestSuite {
         return true;
     }
 
+    /**
+     * Indicates if {@link #runTest()} can be executed by several threads at the same time, against the same suite instance. Suites
+     * which support this should only use thread-safe state and, when {@link #isRunConcurrently() run concurrently}, the
+     * {@link #workerSession()} during a test run.
+     *
+     * @return true if the suite can be run in the multi-threaded mode of the runner; false by default
+     */
+    public boolean supportsConcurrentRuns() {
+        return false;
+    }
+
+    /**
+     * Indicates if {@link #runTest()} is currently being executed by several threads at the same time. Suites which
+     * {@link #supportsConcurrentRuns() support this} should only switch to the {@link #workerSession()} in that case, so that
+     * their single-threaded runs remain the same as before.
+     *
+     * @return true if the test is run by more than one thread at the moment
+     */
+    protected final boolean isRunConcurrently() {
+        return runThreadCount > 1;
+    }
+
+    void setRunThreadCount( int threadCount ) {
+        this.runThreadCount = threadCount;
+    }
+
     private void closeSessions() {
-        for (Session session : sessions) {
-            if (session.isLive()) {
-                session.logout();
+        synchronized (sessions) {
+            for (Session session : sessions) {
+                if (session.isLive()) {
+                    session.logout();
+                }
             }
         }
     }
@@ -130,21 +239,161 @@ public abstract class AbstractPerformanceTestSuite {
         return newSession(suiteConfiguration.getCredentials());
     }
 
+    /**
+     * Returns the session which belongs to the current thread, creating it via {@link #newSession()} the first time it is
+     * requested. When the suite is run by several threads at once, each thread will therefore use its own session.
+     *
+     * @return a session; never null
+     */
+    protected final Session workerSession() {
+        Session session = workerSessions.get();
+        if (session == null) {
+            session = newSession();
+            workerSessions.set(session);
+        }
+        return session;
+    }
+
+    /**
+     * Creates a random generator seeded from the {@link SuiteConfiguration#getSeed() seed} of the suite. Each generator created by
+     * a suite instance gets a different seed, but the n-th generator always gets the same one, so that the suite draws the same
+     * values on every run (as long as it creates its generators in the same order, e.g. one per worker or background job).
+     *
+     * @return a new random generator, never null
+     */
+    protected final Random newRandom() {
+        return new Random(suiteConfiguration.getSeed() + randomCount.getAndIncrement());
+    }
+
     /**
      * Adds a background thread that repeatedly executes the given job until all the iterations of this test have been executed.
+     * The job is supervised: the latency of each execution and the executions which failed are accounted for and reported
+     * alongside the results of the test, and the test is flagged as invalid if the job dies (see {@link BackgroundJob}).
      * 
      * @param job background job
      */
     protected void addBackgroundJob( final Callable<?> job ) {
-        execService.submit(new Callable<Void>() {
-            @Override
-            public Void call() throws Exception {
-                while (isRunning()) {
-                    job.call();
+        BackgroundJob backgroundJob = new BackgroundJob(job, this);
+        backgroundJobs.add(backgroundJob);
+        execService.submit(backgroundJob);
+    }
+
+    long getBeforeSuiteNanos() {
+        return beforeSuiteNanos;
+    }
+
+    long getAfterSuiteNanos() {
+        return afterSuiteNanos;
+    }
+
+    /**
+     * Indicates whether this suite implements one of the lifecycle hooks (e.g. {@link #afterTestRun()}), so that the phases which
+     * do nothing are not reported.
+     *
+     * @param hookName the name of a no-arg hook method
+     * @return true if the hook is declared by the class of this suite or by one of its superclasses
+     */
+    boolean implementsHook( String hookName ) {
+        for (Class<?> cls = getClass(); cls != AbstractPerformanceTestSuite.class; cls = cls.getSuperclass()) {
+            try {
+                cls.getDeclaredMethod(hookName);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // look in the superclass
+            }
+        }
+        return false;
+    }
+
+    void setWorkerThreads( WorkerThreads workerThreads ) {
+        this.workerThreads = workerThreads;
+    }
+
+    WorkerThreads getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * Forgets the work done by the background jobs so far (e.g. during the warmup).
+     */
+    void resetBackgroundJobs() {
+        for (BackgroundJob backgroundJob : backgroundJobs) {
+            backgroundJob.reset();
+        }
+    }
+
+    /**
+     * Returns the work done by the background jobs since the last {@link #resetBackgroundJobs() reset}, aggregated by the name
+     * of the jobs.
+     * 
+     * @param durationNanos the time elapsed since the last reset, in nanoseconds
+     * @return the statistics of each kind of background job, never null
+     */
+    List<BackgroundJobStats> getBackgroundJobStats( long durationNanos ) {
+        Map<String, List<BackgroundJob>> jobsByName = new TreeMap<String, List<BackgroundJob>>();
+        for (BackgroundJob backgroundJob : backgroundJobs) {
+            List<BackgroundJob> jobs = jobsByName.get(backgroundJob.getName());
+            if (jobs == null) {
+                jobs = new ArrayList<BackgroundJob>();
+                jobsByName.put(backgroundJob.getName(), jobs);
+            }
+            jobs.add(backgroundJob);
+        }
+        List<BackgroundJobStats> result = new ArrayList<BackgroundJobStats>();
+        for (Map.Entry<String, List<BackgroundJob>> entry : jobsByName.entrySet()) {
+            LatencyHistogram latencies = new LatencyHistogram();
+            long errorCount = 0;
+            String failure = null;
+            for (BackgroundJob backgroundJob : entry.getValue()) {
+                latencies.add(backgroundJob.getLatencies());
+                errorCount += backgroundJob.getErrorCount();
+                if (failure == null && backgroundJob.getFailure() != null) {
+                    failure = backgroundJob.getFailure().toString();
                 }
-                return null;
             }
-        });
+            result.add(new BackgroundJobStats(entry.getKey(), entry.getValue().size(), latencies, errorCount, durationNanos,
+                                              failure));
+        }
+        return result;
+    }
+
+    /**
+     * Marks the start of an individual operation (e.g. a single JCR call) which should be timed separately from the whole test
+     * run. The returned value must be passed to {@link #endOperation(String, long)} once the operation has completed.
+     *
+     * @return the start timestamp of the operation, in nanoseconds
+     */
+    protected final long startOperation() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the latency of an individual operation, which was started via {@link #startOperation()}. The latencies of all
+     * operations having the same name are aggregated into a histogram, from which percentiles and throughput are reported.
+     *
+     * @param operationName the name of the operation; may not be null
+     * @param startNanos the value returned by {@link #startOperation()}
+     */
+    protected final void endOperation( String operationName,
+                                       long startNanos ) {
+        long duration = System.nanoTime() - startNanos;
+        LatencyHistogram histogram = operationLatencies.get(operationName);
+        if (histogram == null) {
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = operationLatencies.putIfAbsent(operationName, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        histogram.recordValue(duration);
+    }
+
+    Map<String, LatencyHistogram> getOperationLatencies() {
+        return Collections.unmodifiableMap(operationLatencies);
+    }
+
+    void resetOperationLatencies() {
+        operationLatencies.clear();
     }
 
     protected final boolean isRunning() {
@@ -164,4 +413,19 @@ public abstract class AbstractPerformanceTestSuite {
 
     protected void afterSuite() throws Exception {
     }
+
+    /**
+     * The timings of a single iteration of a suite, see {@link AbstractPerformanceTestSuite#runTimed(IterationMetricsProbe)}.
+     */
+    static final class RunTimes {
+        long beforeTestRunNanos;
+        long testStartNanos;
+        long testEndNanos;
+        long afterTestRunNanos;
+        IterationMetrics metrics;
+
+        long testNanos() {
+            return testEndNanos - testStartNanos;
+        }
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A supervised background job of a suite: repeatedly executes a task while the suite is running and keeps track of the latency
+ * of each execution, of the executions which failed with an exception and of the error which stopped the job, if any.
+ * <p>
+ * An {@link Exception} thrown by the task (e.g. a concurrent modification) is counted and the job goes on, while any other
+ * {@link Throwable} (e.g. a failed assertion) stops the job, since it would otherwise keep running in an unknown state. After a
+ * failed execution, the job backs off for a while (doubling the pause with each consecutive failure, up to
+ * {@value #MAX_BACKOFF_MILLIS}ms), so that a job which fails on every call doesn't busy-spin next to the measured runs.
+ * </p>
+ */
+final class BackgroundJob implements Callable<Void> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackgroundJob.class);
+
+    static final long MAX_BACKOFF_MILLIS = 100;
+
+    private final String name;
+    private final Callable<?> task;
+    private final AbstractPerformanceTestSuite suite;
+    private volatile LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong errorCount = new AtomicLong();
+    private volatile Throwable failure;
+
+    BackgroundJob( Callable<?> task,
+                   AbstractPerformanceTestSuite suite ) {
+        String simpleName = task.getClass().getSimpleName();
+        this.name = simpleName.isEmpty() ? task.getClass().getName() : simpleName;
+        this.task = task;
+        this.suite = suite;
+    }
+
+    @Override
+    public Void call() {
+        try {
+            long backoffMillis = 0;
+            while (suite.isRunning()) {
+                long start = System.nanoTime();
+                try {
+                    task.call();
+                    latencies.recordValue(System.nanoTime() - start);
+                    backoffMillis = 0;
+                } catch (Exception e) {
+                    if (errorCount.getAndIncrement() == 0) {
+                        LOGGER.warn("Background job " + name + " of " + suite.getName() + " failed", e);
+                    }
+                    backoffMillis = Math.min(MAX_BACKOFF_MILLIS, Math.max(1, backoffMillis * 2));
+                    TimeUnit.MILLISECONDS.sleep(backoffMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            LOGGER.error("Background job " + name + " of " + suite.getName() + " died", t);
+            failure = t;
+        }
+        return null;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    long getErrorCount() {
+        return errorCount.get();
+    }
+
+    Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Forgets the executions done so far (e.g. during the warmup); a job which has died stays dead.
+     */
+    void reset() {
+        latencies = new LatencyHistogram();
+        errorCount.set(0);
+    }
+}
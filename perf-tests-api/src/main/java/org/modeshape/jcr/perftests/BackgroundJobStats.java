@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work done by the background jobs of a suite (see {@link AbstractPerformanceTestSuite#addBackgroundJob}) of the same kind,
+ * while the runs of the suite were measured.
+ */
+public final class BackgroundJobStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final int jobCount;
+    private final LatencyHistogram latencies;
+    private final long errorCount;
+    private final long durationNanos;
+    private final String failure;
+
+    BackgroundJobStats( String name,
+                        int jobCount,
+                        LatencyHistogram latencies,
+                        long errorCount,
+                        long durationNanos,
+                        String failure ) {
+        this.name = name;
+        this.jobCount = jobCount;
+        this.latencies = latencies;
+        this.errorCount = errorCount;
+        this.durationNanos = durationNanos;
+        this.failure = failure;
+    }
+
+    /**
+     * @return the name of the jobs, which is the simple name of their class
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of jobs of this kind
+     */
+    public int getJobCount() {
+        return jobCount;
+    }
+
+    /**
+     * @return the latencies of the successful executions of the jobs
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * @return the number of executions of the jobs which threw an exception
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return the fraction of the executions of the jobs which threw an exception, or 0 if the jobs were never executed
+     */
+    public double getErrorRatio() {
+        long executions = latencies.getCount() + errorCount;
+        return executions > 0 ? (double) errorCount / executions : 0;
+    }
+
+    /**
+     * @return the number of successful executions per second, achieved by all the jobs together
+     */
+    public double getOperationsPerSecond() {
+        return durationNanos > 0 ? latencies.getCount() / ((double) durationNanos / TimeUnit.SECONDS.toNanos(1)) : 0;
+    }
+
+    /**
+     * @return the description of the error which stopped one of the jobs, or null if all the jobs were running until the end
+     */
+    public String getFailure() {
+        return failure;
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.modeshape.jcr.perftests;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.jcr.Node;
 import javax.jcr.Session;
 
@@ -24,13 +25,14 @@ import javax.jcr.Session;
  * @author kulikov
  */
 public class BigSet {
-    private static int ID = 1;
 
     public static void fillRepository(Session session, String root,
             int amount, int levels) throws Exception {
         cleanWorkspace(session, root);
         Node node = session.getRootNode().addNode(root);
-        createNodes(node, amount, 0, levels);
+        // the nodes are numbered per call (rather than by a shared static counter), so that every filled set has the same names
+        // and concurrent or repeated fills don't interfere with each other
+        createNodes(node, amount, 0, levels, new AtomicInteger(1));
     }
 
     public static void cleanWorkspace(Session session, String root) throws Exception {
@@ -41,15 +43,15 @@ public class BigSet {
         }
     }
 
-    private static void createNodes(Node node, int count, int level, int maxLevel) throws Exception {
+    private static void createNodes(Node node, int count, int level, int maxLevel, AtomicInteger id) throws Exception {
         if (level == maxLevel) {
             return;
         }
 
         for (int i = 0; i < count; i++) {
-            Node child = node.addNode("node " + (ID)++, "nt:unstructured");
+            Node child = node.addNode("node " + id.getAndIncrement(), "nt:unstructured");
             child.setProperty("Name", "Value");
-            createNodes(child, count, level + 1, maxLevel);
+            createNodes(child, count, level + 1, maxLevel, id);
         }
     }
 
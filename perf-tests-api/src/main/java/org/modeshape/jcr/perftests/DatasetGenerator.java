@@ -0,0 +1,226 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.ValueFactory;
+import org.modeshape.jcr.perftests.util.RandomInputStream;
+
+/**
+ * Builds a synthetic content tree of a given {@link DatasetShape} below a node, so that suites can be run against realistic (and
+ * large) trees without keeping them in memory or shipping them as import files.
+ * <p>
+ * The tree is derived from the seed of the shape only: two trees generated with the same shape have the same nodes, with the same
+ * names, properties and values (binary content included), created in the same order. Only the identifiers assigned by the
+ * repository to the referenceable nodes differ. The nodes are created depth first and saved in batches, and the binary values are
+ * streamed to the repository, so the memory used by the generator depends on the depth of the tree and on the batch size, not on
+ * the size of the tree.
+ * </p>
+ * <p>
+ * Each node is an {@code nt:unstructured} node named {@code node<i>}, with the properties {@code prop0..propN}; a fraction of the
+ * nodes (see {@link DatasetShape#setReferenceDensity(double)}) are {@code mix:referenceable}, and the same fraction have a
+ * {@code ref} weak reference to one of the referenceable nodes saved before them. A generator should be used for one tree only.
+ * </p>
+ */
+public final class DatasetGenerator {
+
+    /** The characters of the string values */
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    /** The number of saved referenceable nodes which the references can point to */
+    private static final int REFERENCE_TARGET_POOL_SIZE = 1000;
+    /** The default number of node paths kept by {@link #getSampledPaths()} */
+    private static final int DEFAULT_SAMPLED_PATH_COUNT = 1000;
+
+    private final DatasetShape shape;
+    private final Random random;
+    /** picks the sampled paths, separately from the tree so that the tree doesn't depend on the number of sampled paths */
+    private final Random samplingRandom;
+    private final int sampledPathCount;
+
+    private final List<String> sampledPaths = new ArrayList<String>();
+    /** the identifiers of the referenceable nodes which have been saved */
+    private final List<String> referenceTargets = new ArrayList<String>();
+    /** the identifiers of the referenceable nodes created since the last save */
+    private final List<String> pendingReferenceTargets = new ArrayList<String>();
+    private long referenceTargetCount;
+
+    private Session session;
+    private ValueFactory valueFactory;
+    private long nodeCount;
+    private long propertyCount;
+    private long logicalBytes;
+    private long unsavedNodeCount;
+
+    /**
+     * @param shape the shape of the tree; may not be null
+     */
+    public DatasetGenerator( DatasetShape shape ) {
+        this(shape, DEFAULT_SAMPLED_PATH_COUNT);
+    }
+
+    /**
+     * @param shape the shape of the tree; may not be null
+     * @param sampledPathCount the number of node paths sampled (uniformly) while the tree is generated, see
+     *        {@link #getSampledPaths()}
+     */
+    public DatasetGenerator( DatasetShape shape,
+                             int sampledPathCount ) {
+        this.shape = shape;
+        this.random = new Random(shape.getSeed());
+        this.samplingRandom = new Random(~shape.getSeed());
+        this.sampledPathCount = sampledPathCount;
+    }
+
+    /**
+     * Generates the tree below a new node, saving the session along the way.
+     *
+     * @param parent the node under which the tree is added; may not be null
+     * @param name the name of the (unstructured) root node of the tree
+     * @return the root node of the tree, never null
+     * @throws RepositoryException if the tree cannot be created
+     */
+    public Node generate( Node parent,
+                          String name ) throws RepositoryException {
+        session = parent.getSession();
+        valueFactory = session.getValueFactory();
+        Node root = parent.addNode(name, "nt:unstructured");
+        session.save();
+        addChildren(root, root.getPath(), 1, true);
+        save();
+        return root;
+    }
+
+    private void addChildren( Node parent,
+                              String parentPath,
+                              int level,
+                              boolean firstAtLevel ) throws RepositoryException {
+        if (level > shape.getDepth() || (shape.isSingleParent() && !firstAtLevel)) {
+            return;
+        }
+        int childCount = shape.getFanOut().sample(random);
+        for (int i = 0; i < childCount; i++) {
+            String name = "node" + i;
+            Node child = parent.addNode(name, "nt:unstructured");
+            String path = parentPath.endsWith("/") ? parentPath + name : parentPath + "/" + name;
+            addProperties(child);
+            samplePath(path);
+            nodeCount++;
+            if (++unsavedNodeCount >= shape.getBatchSize()) {
+                save();
+            }
+            addChildren(child, path, level + 1, firstAtLevel && i == 0);
+        }
+    }
+
+    private void addProperties( Node node ) throws RepositoryException {
+        int count = shape.getPropertyCount().sample(random);
+        for (int i = 0; i < count; i++) {
+            int size = shape.getPropertySize().sample(random);
+            if (random.nextDouble() < shape.getBinaryRatio()) {
+                Binary binary = valueFactory.createBinary(new RandomInputStream(random.nextLong(), size));
+                node.setProperty("prop" + i, binary);
+            } else {
+                node.setProperty("prop" + i, randomString(size));
+            }
+            propertyCount++;
+            logicalBytes += size;
+        }
+        if (random.nextDouble() < shape.getReferenceDensity()) {
+            node.addMixin("mix:referenceable");
+            pendingReferenceTargets.add(node.getIdentifier());
+        }
+        if (random.nextDouble() < shape.getReferenceDensity() && !referenceTargets.isEmpty()) {
+            String target = referenceTargets.get(random.nextInt(referenceTargets.size()));
+            node.setProperty("ref", valueFactory.createValue(target, PropertyType.WEAKREFERENCE));
+            propertyCount++;
+        }
+    }
+
+    private void save() throws RepositoryException {
+        session.save();
+        unsavedNodeCount = 0;
+        // the pool of targets is a uniform sample of all the referenceable nodes saved so far
+        for (String target : pendingReferenceTargets) {
+            referenceTargetCount++;
+            if (referenceTargets.size() < REFERENCE_TARGET_POOL_SIZE) {
+                referenceTargets.add(target);
+            } else {
+                long index = (long) (random.nextDouble() * referenceTargetCount);
+                if (index < REFERENCE_TARGET_POOL_SIZE) {
+                    referenceTargets.set((int) index, target);
+                }
+            }
+        }
+        pendingReferenceTargets.clear();
+    }
+
+    private void samplePath( String path ) {
+        // reservoir sampling: after n nodes, each of them has the same probability of being sampled
+        if (sampledPaths.size() < sampledPathCount) {
+            sampledPaths.add(path);
+        } else {
+            long index = (long) (samplingRandom.nextDouble() * (nodeCount + 1));
+            if (index < sampledPathCount) {
+                sampledPaths.set((int) index, path);
+            }
+        }
+    }
+
+    private String randomString( int length ) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the number of nodes generated below the root of the tree
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the number of properties set on the generated nodes (excluding the {@code jcr:*} properties)
+     */
+    public long getPropertyCount() {
+        return propertyCount;
+    }
+
+    /**
+     * @return the total size of the property values (string characters and binary bytes) set on the generated nodes
+     */
+    public long getLogicalBytes() {
+        return logicalBytes;
+    }
+
+    /**
+     * @return the paths of a uniform sample of the generated nodes, in no particular order; never null
+     */
+    public List<String> getSampledPaths() {
+        return Collections.unmodifiableList(sampledPaths);
+    }
+}
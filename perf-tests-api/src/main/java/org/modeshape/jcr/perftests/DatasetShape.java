@@ -0,0 +1,211 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+/**
+ * The shape of a synthetic content tree built by a {@link DatasetGenerator}: the seed from which the whole tree is derived, how
+ * many children each node has and how deep the tree is, how many properties each node has and how large their values are, how
+ * many of the values are binary and how many nodes reference another node.
+ * <p>
+ * A shape can be read from the parameters of a suite via {@link #fromConfiguration(SuiteConfiguration)}, so that the same suite
+ * can be run against trees of different shapes without code changes (e.g.
+ * {@code testsuite.config.dataset.fanOut=zipf:1000:1.2}).
+ * </p>
+ */
+public final class DatasetShape {
+
+    /** The fan-out distribution kind under which only the first node of each level has children */
+    private static final String SINGLE_PARENT_PREFIX = "single:";
+
+    private long seed = SuiteConfiguration.DEFAULT_SEED;
+    private Distribution fanOut = Distribution.constant(10);
+    private boolean singleParent;
+    private int depth = 2;
+    private Distribution propertyCount = Distribution.constant(1);
+    private Distribution propertySize = Distribution.constant(10);
+    private double binaryRatio;
+    private double referenceDensity;
+    private int batchSize = 1000;
+
+    /**
+     * Reads a shape from the {@code dataset.*} parameters of a suite: {@code dataset.seed} (the seed of the suite by default, see
+     * {@link SuiteConfiguration#getSeed()}), {@code dataset.fanOut}, {@code dataset.depth}, {@code dataset.propertyCount},
+     * {@code dataset.propertySize} (distributions as described by {@link Distribution}, except that the fan-out can also be
+     * {@code single:N}, see {@link #setSingleParentFanOut(int)}), {@code dataset.binaryRatio}, {@code dataset.referenceDensity}
+     * (numbers between 0 and 1) and {@code dataset.batchSize}. The parameters which aren't configured keep the values of the
+     * given defaults.
+     *
+     * @param configuration the configuration of the suite; may not be null
+     * @param defaults the shape which the suite uses by default; may not be null
+     * @return a new shape, never null
+     */
+    public static DatasetShape fromConfiguration( SuiteConfiguration configuration,
+                                                  DatasetShape defaults ) {
+        DatasetShape shape = new DatasetShape();
+        shape.seed = configuration.getLong("dataset.seed", configuration.getSeed());
+        String fanOut = configuration.getString("dataset.fanOut", null);
+        if (fanOut == null) {
+            shape.fanOut = defaults.fanOut;
+            shape.singleParent = defaults.singleParent;
+        } else if (fanOut.startsWith(SINGLE_PARENT_PREFIX)) {
+            shape.setSingleParentFanOut(Integer.parseInt(fanOut.substring(SINGLE_PARENT_PREFIX.length())));
+        } else {
+            shape.setFanOut(Distribution.parse(fanOut));
+        }
+        shape.depth = configuration.getInt("dataset.depth", defaults.depth);
+        String propertyCount = configuration.getString("dataset.propertyCount", null);
+        shape.propertyCount = propertyCount != null ? Distribution.parse(propertyCount) : defaults.propertyCount;
+        String propertySize = configuration.getString("dataset.propertySize", null);
+        shape.propertySize = propertySize != null ? Distribution.parse(propertySize) : defaults.propertySize;
+        shape.binaryRatio = Double.parseDouble(configuration.getString("dataset.binaryRatio",
+                                                                      String.valueOf(defaults.binaryRatio)));
+        shape.referenceDensity = Double.parseDouble(configuration.getString("dataset.referenceDensity",
+                                                                           String.valueOf(defaults.referenceDensity)));
+        shape.batchSize = configuration.getInt("dataset.batchSize", defaults.batchSize);
+        return shape;
+    }
+
+    /**
+     * @param seed the seed from which the whole tree is derived: two trees generated from the same seed and shape are identical
+     * @return this shape (for method chaining purposes)
+     */
+    public DatasetShape setSeed( long seed ) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param fanOut the distribution of the number of children of each node above the last level
+     * @return this shape (for method chaining purposes)
+     */
+    public DatasetShape setFanOut( Distribution fanOut ) {
+        this.fanOut = fanOut;
+        this.singleParent = false;
+        return this;
+    }
+
+    /**
+     * Makes only the first node of each level have children, i.e. a single huge parent (when the depth is 1) or a chain of them.
+     *
+     * @param childCount the number of children of each parent
+     * @return this shape (for method chaining purposes)
+     */
+    public DatasetShape setSingleParentFanOut( int childCount ) {
+        this.fanOut = Distribution.constant(childCount);
+        this.singleParent = true;
+        return this;
+    }
+
+    /**
+     * @param depth the number of levels of nodes below the root of the tree; must be positive
+     * @return this shape (for method chaining purposes)
+     */
+    public DatasetShape setDepth( int depth ) {
+        this.depth = depth;
+        return this;
+    }
+
+    /**
+     * @param propertyCount the distribution of the number of properties of each node
+     * @return this shape (for method chaining purposes)
+     */
+    public DatasetShape setPropertyCount( Distribution propertyCount ) {
+        this.propertyCount = propertyCount;
+        return this;
+    }
+
+    /**
+     * @param propertySize the distribution of the size of the property values: the number of characters of the string values,
+     *        or of bytes of the binary values
+     * @return this shape (for method chaining purposes)
+     */
+    public DatasetShape setPropertySize( Distribution propertySize ) {
+        this.propertySize = propertySize;
+        return this;
+    }
+
+    /**
+     * @param binaryRatio the fraction (between 0 and 1) of the property values which are binary rather than strings
+     * @return this shape (for method chaining purposes)
+     */
+    public DatasetShape setBinaryRatio( double binaryRatio ) {
+        this.binaryRatio = binaryRatio;
+        return this;
+    }
+
+    /**
+     * @param referenceDensity the fraction (between 0 and 1) of the nodes which reference another (earlier) node of the tree; the
+     *        same fraction of the nodes are referenceable
+     * @return this shape (for method chaining purposes)
+     */
+    public DatasetShape setReferenceDensity( double referenceDensity ) {
+        this.referenceDensity = referenceDensity;
+        return this;
+    }
+
+    /**
+     * @param batchSize the number of nodes which are created between two saves
+     * @return this shape (for method chaining purposes)
+     */
+    public DatasetShape setBatchSize( int batchSize ) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Distribution getFanOut() {
+        return fanOut;
+    }
+
+    public boolean isSingleParent() {
+        return singleParent;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public Distribution getPropertyCount() {
+        return propertyCount;
+    }
+
+    public Distribution getPropertySize() {
+        return propertySize;
+    }
+
+    public double getBinaryRatio() {
+        return binaryRatio;
+    }
+
+    public double getReferenceDensity() {
+        return referenceDensity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public String toString() {
+        return "seed=" + seed + ", fanOut=" + (singleParent ? SINGLE_PARENT_PREFIX : "") + fanOut + ", depth=" + depth
+               + ", propertyCount=" + propertyCount + ", propertySize=" + propertySize + ", binaryRatio=" + binaryRatio
+               + ", referenceDensity=" + referenceDensity + ", batchSize=" + batchSize;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A distribution of non-negative integers (e.g. of the number of children of a node, or of the size of a property value) from
+ * which a {@link DatasetGenerator} draws, given as a text spec which can be used as a suite parameter:
+ * <ul>
+ * <li>{@code N} - always N</li>
+ * <li>{@code uniform:MIN..MAX} - any value between MIN and MAX (inclusive), with the same probability</li>
+ * <li>{@code zipf:MAX:S} - a value between 1 and MAX, where the probability of k is proportional to 1/k^S: most values are
+ * small, but a few are very large (as are e.g. the sizes of the folders of a real content tree)</li>
+ * </ul>
+ */
+public final class Distribution {
+
+    private static final Pattern UNIFORM = Pattern.compile("uniform:(\\d+)\\.\\.(\\d+)");
+    private static final Pattern ZIPF = Pattern.compile("zipf:(\\d+):(\\d+(?:\\.\\d+)?)");
+    /** The largest MAX of a Zipf distribution, whose cumulative probabilities are kept in memory */
+    private static final int MAX_ZIPF_VALUES = 10000000;
+
+    private final String spec;
+    private final int min;
+    private final int max;
+    /** The cumulative probabilities of the values 1..max of a Zipf distribution, null for the other distributions */
+    private final double[] zipfCumulativeProbabilities;
+
+    private Distribution( String spec,
+                          int min,
+                          int max,
+                          double[] zipfCumulativeProbabilities ) {
+        this.spec = spec;
+        this.min = min;
+        this.max = max;
+        this.zipfCumulativeProbabilities = zipfCumulativeProbabilities;
+    }
+
+    /**
+     * Parses a distribution.
+     *
+     * @param spec the text spec of the distribution, as described by the class documentation
+     * @return a new distribution, never null
+     * @throws IllegalArgumentException if the spec is not valid
+     */
+    public static Distribution parse( String spec ) {
+        String trimmed = spec.trim();
+        if (trimmed.matches("\\d+")) {
+            return constant(Integer.parseInt(trimmed));
+        }
+        Matcher uniform = UNIFORM.matcher(trimmed);
+        if (uniform.matches()) {
+            return uniform(Integer.parseInt(uniform.group(1)), Integer.parseInt(uniform.group(2)));
+        }
+        Matcher zipf = ZIPF.matcher(trimmed);
+        if (zipf.matches()) {
+            return zipf(Integer.parseInt(zipf.group(1)), Double.parseDouble(zipf.group(2)));
+        }
+        throw new IllegalArgumentException("Invalid distribution: '" + spec + "', expected N, uniform:MIN..MAX or zipf:MAX:S");
+    }
+
+    /**
+     * @param value a non-negative value
+     * @return a distribution which always returns the given value
+     */
+    public static Distribution constant( int value ) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        return new Distribution(String.valueOf(value), value, value, null);
+    }
+
+    /**
+     * @param min the smallest value; must be non-negative
+     * @param max the largest value; must not be smaller than min
+     * @return a distribution of the values between min and max (inclusive), which have the same probability
+     */
+    public static Distribution uniform( int min,
+                                        int max ) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("Invalid range: " + min + ".." + max);
+        }
+        return new Distribution("uniform:" + min + ".." + max, min, max, null);
+    }
+
+    /**
+     * @param max the largest value; must be between 1 and 10 000 000
+     * @param exponent the exponent S of the distribution; the larger, the more skewed towards small values
+     * @return a distribution of the values between 1 and max, where the probability of k is proportional to 1/k^S
+     */
+    public static Distribution zipf( int max,
+                                     double exponent ) {
+        if (max < 1 || max > MAX_ZIPF_VALUES) {
+            throw new IllegalArgumentException("Invalid maximum value: " + max);
+        }
+        double[] cumulativeProbabilities = new double[max];
+        double total = 0;
+        for (int k = 1; k <= max; k++) {
+            total += 1 / Math.pow(k, exponent);
+            cumulativeProbabilities[k - 1] = total;
+        }
+        for (int i = 0; i < max; i++) {
+            cumulativeProbabilities[i] /= total;
+        }
+        return new Distribution("zipf:" + max + ":" + exponent, 1, max, cumulativeProbabilities);
+    }
+
+    /**
+     * Draws a value.
+     *
+     * @param random the source of randomness; may not be null
+     * @return a value of this distribution
+     */
+    public int sample( Random random ) {
+        if (zipfCumulativeProbabilities != null) {
+            int index = Arrays.binarySearch(zipfCumulativeProbabilities, random.nextDouble());
+            // a missing value is returned as (-(insertion point) - 1), and its insertion point is the value's index
+            return (index >= 0 ? index : -index - 1) + 1;
+        }
+        return min == max ? min : min + random.nextInt(max - min + 1);
+    }
+
+    /**
+     * @return the largest value of this distribution
+     */
+    public int getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
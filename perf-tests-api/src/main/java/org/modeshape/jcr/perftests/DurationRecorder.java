@@ -0,0 +1,230 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Records the durations (in nanoseconds) of the runs of a test in constant memory, however long the test runs: every duration is
+ * added to exact running statistics (count, sum, minimum, maximum, mean and standard deviation) and only the most recent
+ * durations are kept as raw samples, in a ring of primitive longs. Once the ring is full, all the durations are also added to a
+ * {@link LatencyHistogram}, which gives the percentiles of the whole test within a bounded relative error.
+ * <p>
+ * The ring grows up to its capacity as durations are recorded and the histogram is only created when the ring wraps, so the
+ * many tests which are run a few times only (e.g. the suite hooks) stay small.
+ * </p>
+ * <p>
+ * Instances are not thread safe, like {@link TestData} which owns them.
+ * </p>
+ */
+public final class DurationRecorder implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int INITIAL_SAMPLES_SIZE = 16;
+
+    private final int retainedSamples;
+    private long[] samples;
+    private LatencyHistogram histogram;
+    private int nextSample;
+    private boolean wrapped;
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private double mean;
+    /** The sum of the squared differences from the mean (Welford's algorithm) */
+    private double squaredDeviations;
+
+    /**
+     * @param retainedSamples the number of most recent durations which are kept as raw samples; must be positive
+     */
+    public DurationRecorder( int retainedSamples ) {
+        if (retainedSamples <= 0) {
+            throw new IllegalArgumentException("The number of retained samples must be positive: " + retainedSamples);
+        }
+        this.retainedSamples = retainedSamples;
+        this.samples = new long[Math.min(retainedSamples, INITIAL_SAMPLES_SIZE)];
+    }
+
+    /**
+     * Records a new duration.
+     *
+     * @param durationNanos a duration, in nanoseconds
+     */
+    public void record( long durationNanos ) {
+        addSample(durationNanos);
+        count++;
+        sum += durationNanos;
+        min = Math.min(min, durationNanos);
+        max = Math.max(max, durationNanos);
+        double delta = durationNanos - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (durationNanos - mean);
+    }
+
+    /**
+     * Adds all the durations recorded by another recorder (e.g. in a different JVM) to this one, as if they had been recorded
+     * after the durations of this recorder.
+     *
+     * @param other a recorder; may not be null
+     */
+    public void add( DurationRecorder other ) {
+        if (other.count == 0) {
+            return;
+        }
+        if (other.histogram != null) {
+            //the durations which the other recorder dropped can only be taken from its histogram
+            if (histogram == null) {
+                histogram = samplesHistogram();
+            }
+            histogram.add(other.histogram);
+            for (long sample : other.getRetainedSamples()) {
+                addRetainedSample(sample);
+            }
+        } else {
+            for (long sample : other.getRetainedSamples()) {
+                addSample(sample);
+            }
+        }
+        long totalCount = count + other.count;
+        double delta = other.mean - mean;
+        squaredDeviations += other.squaredDeviations + delta * delta * count * other.count / totalCount;
+        mean += delta * other.count / totalCount;
+        count = totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    private void addSample( long durationNanos ) {
+        if (histogram == null && nextSample == retainedSamples) {
+            //the ring is about to drop its first sample, so from now on all the durations go to the histogram as well
+            histogram = samplesHistogram();
+        }
+        if (histogram != null) {
+            histogram.recordValue(durationNanos);
+        }
+        addRetainedSample(durationNanos);
+    }
+
+    private void addRetainedSample( long durationNanos ) {
+        if (nextSample == samples.length && samples.length < retainedSamples) {
+            long[] grown = new long[(int)Math.min((long)samples.length * 2, retainedSamples)];
+            System.arraycopy(samples, 0, grown, 0, samples.length);
+            samples = grown;
+        }
+        if (nextSample == samples.length) {
+            nextSample = 0;
+            wrapped = true;
+        }
+        samples[nextSample++] = durationNanos;
+    }
+
+    private LatencyHistogram samplesHistogram() {
+        LatencyHistogram samplesHistogram = new LatencyHistogram();
+        for (long sample : getRetainedSamples()) {
+            samplesHistogram.recordValue(sample);
+        }
+        return samplesHistogram;
+    }
+
+    /**
+     * @return the number of durations recorded so far, which can be greater than the number of retained samples
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMin() {
+        return count > 0 ? min : 0;
+    }
+
+    public long getMax() {
+        return count > 0 ? max : 0;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return the sample standard deviation of all the recorded durations, or NaN if less than 2 durations were recorded
+     */
+    public double getStandardDeviation() {
+        return count > 1 ? Math.sqrt(squaredDeviations / (count - 1)) : Double.NaN;
+    }
+
+    /**
+     * @return the histogram of all the recorded durations; never null
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram != null ? histogram : samplesHistogram();
+    }
+
+    /**
+     * @return true if older durations have been dropped from the raw samples
+     */
+    public boolean isTruncated() {
+        return count > retainedSamples;
+    }
+
+    /**
+     * Returns the most recent durations, from the oldest to the most recent.
+     *
+     * @return a new array; never null
+     */
+    public long[] getRetainedSamples() {
+        if (!wrapped) {
+            long[] result = new long[nextSample];
+            System.arraycopy(samples, 0, result, 0, nextSample);
+            return result;
+        }
+        long[] result = new long[samples.length];
+        int start = nextSample % samples.length;
+        for (int i = 0; i < samples.length; i++) {
+            result[i] = samples[(start + i) % samples.length];
+        }
+        return result;
+    }
+
+    /**
+     * Returns a read-only list view of the most recent durations, which boxes them one at a time when they are read.
+     *
+     * @return a list, from the oldest to the most recent duration; never null
+     */
+    List<Long> retainedSamplesList() {
+        final long[] retained = getRetainedSamples();
+        return new AbstractList<Long>() {
+            @Override
+            public Long get( int index ) {
+                return retained[index];
+            }
+
+            @Override
+            public int size() {
+                return retained.length;
+            }
+        };
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.RuntimeMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Snapshot of the machine and of the environment in which the tests were run: the CPU, the memory, the kernel, the JVM and its
+ * flags, the configuration of the repository and the version of the JCR implementation. It is captured by the runner when the
+ * tests start and is stored with their results, so that results which were produced by different machines (e.g. different CI
+ * agents) can be told apart.
+ * <p>
+ * The hardware and kernel information is read from <code>/proc</code> (and is therefore only available on Linux), the JVM
+ * information from the platform MXBeans. Values which cannot be read are left out.
+ * </p>
+ */
+public final class EnvironmentInfo implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EnvironmentInfo.class);
+
+    public static final String HOST_NAME = "host.name";
+    public static final String CPU_MODEL = "cpu.model";
+    public static final String CPU_COUNT = "cpu.count";
+    public static final String CPU_PHYSICAL_CORES = "cpu.physicalCores";
+    public static final String CPU_GOVERNOR = "cpu.governor";
+    public static final String MEMORY_BYTES = "memory.bytes";
+    public static final String OS = "os";
+    public static final String KERNEL = "kernel";
+    public static final String JVM_VENDOR = "jvm.vendor";
+    public static final String JVM_NAME = "jvm.name";
+    public static final String JVM_VERSION = "jvm.version";
+    public static final String JVM_ARGS = "jvm.args";
+    public static final String JVM_GC = "jvm.gc";
+    public static final String HEAP_INITIAL_BYTES = "heap.initialBytes";
+    public static final String HEAP_MAX_BYTES = "heap.maxBytes";
+    public static final String CONFIGURATION_NAME = "configuration.name";
+    public static final String CONFIGURATION_FILE = "configuration.file";
+    public static final String CONFIGURATION_CONTENTS = "configuration.contents";
+    public static final String IMPLEMENTATION_NAME = "implementation.name";
+    public static final String IMPLEMENTATION_VERSION = "implementation.version";
+
+    /**
+     * The properties which describe the machine and the JVM, as opposed to what was tested: results for which any of them differ
+     * should not be compared directly.
+     */
+    public static final List<String> MACHINE_PROPERTIES = Collections.unmodifiableList(Arrays.asList(
+            CPU_MODEL, CPU_COUNT, CPU_PHYSICAL_CORES, CPU_GOVERNOR, MEMORY_BYTES, KERNEL, JVM_VENDOR, JVM_VERSION, JVM_ARGS,
+            HEAP_MAX_BYTES));
+
+    private static final String PROC_CPU_INFO = "/proc/cpuinfo";
+    private static final String PROC_MEM_INFO = "/proc/meminfo";
+
+    private final Map<String, String> properties;
+
+    private EnvironmentInfo( Map<String, String> properties ) {
+        this.properties = properties;
+    }
+
+    /**
+     * Captures the environment of the current JVM.
+     *
+     * @param runnerConfig the configuration of the runner, whose <code>configuration.file</code> property names the (classpath)
+     *        configuration file of the repository; may be null
+     * @return a new instance, never null
+     */
+    static EnvironmentInfo capture( RunnerCfg runnerConfig ) {
+        Map<String, String> properties = new TreeMap<String, String>();
+        put(properties, HOST_NAME, hostName());
+        captureCpu(properties);
+        put(properties, MEMORY_BYTES, totalMemoryBytes());
+        put(properties, OS, System.getProperty("os.name") + " " + System.getProperty("os.version") + " "
+                            + System.getProperty("os.arch"));
+        put(properties, KERNEL, firstLine("/proc/version"));
+
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        put(properties, JVM_VENDOR, System.getProperty("java.vm.vendor"));
+        put(properties, JVM_NAME, System.getProperty("java.vm.name"));
+        put(properties, JVM_VERSION, System.getProperty("java.runtime.version"));
+        put(properties, JVM_ARGS, join(runtime.getInputArguments(), " "));
+        List<String> collectors = new ArrayList<String>();
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collectors.add(gcBean.getName());
+        }
+        put(properties, JVM_GC, join(collectors, ", "));
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        put(properties, HEAP_INITIAL_BYTES, heap.getInit() >= 0 ? String.valueOf(heap.getInit()) : null);
+        put(properties, HEAP_MAX_BYTES, heap.getMax() >= 0 ? String.valueOf(heap.getMax()) : null);
+
+        put(properties, CONFIGURATION_NAME, System.getProperty(AbstractImplementationTest.CONFIGURATION_NAME_SYSTEM_PROPERTY_NAME));
+        String configurationFile = runnerConfig != null ? runnerConfig.getProperty(CONFIGURATION_FILE) : null;
+        if (configurationFile != null) {
+            configurationFile = configurationFile.trim();
+            put(properties, CONFIGURATION_FILE, configurationFile);
+            put(properties, CONFIGURATION_CONTENTS, resourceContents(configurationFile));
+        }
+        return new EnvironmentInfo(properties);
+    }
+
+    /**
+     * Reads back an environment which was stored via {@link #toProperties(String)}.
+     *
+     * @param properties the stored properties; may not be null
+     * @param prefix the prefix of the names of the environment properties (e.g. "environment."), or an empty string
+     * @return a new instance, never null
+     */
+    public static EnvironmentInfo fromProperties( Properties properties,
+                                                  String prefix ) {
+        Map<String, String> environment = new TreeMap<String, String>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(prefix)) {
+                environment.put(name.substring(prefix.length()), properties.getProperty(name));
+            }
+        }
+        return new EnvironmentInfo(environment);
+    }
+
+    /**
+     * Returns a copy of this environment, which also names the JCR implementation that was tested.
+     *
+     * @param name the name of the implementation; may be null if unknown
+     * @param version the version of the implementation; may be null if unknown
+     * @return a new instance, never null
+     */
+    public EnvironmentInfo withImplementation( String name,
+                                               String version ) {
+        Map<String, String> copy = new TreeMap<String, String>(properties);
+        put(copy, IMPLEMENTATION_NAME, name);
+        put(copy, IMPLEMENTATION_VERSION, version);
+        return new EnvironmentInfo(copy);
+    }
+
+    /**
+     * @param name the name of a property (e.g. {@link #CPU_MODEL})
+     * @return the value of the property, or null if it wasn't captured
+     */
+    public String get( String name ) {
+        return properties.get(name);
+    }
+
+    /**
+     * @return all the captured properties, sorted by name; never null
+     */
+    public Map<String, String> asMap() {
+        return Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * @param prefix the prefix to add to the name of each property, or an empty string
+     * @return the captured properties, which can be read back via {@link #fromProperties(Properties, String)}; never null
+     */
+    public Properties toProperties( String prefix ) {
+        Properties result = new Properties();
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            result.setProperty(prefix + entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@link #MACHINE_PROPERTIES machine properties} whose values differ between this environment and another one.
+     * Properties which weren't captured by either environment are ignored.
+     *
+     * @param other another environment; may not be null
+     * @return the names of the differing properties; never null
+     */
+    public List<String> machineDifferences( EnvironmentInfo other ) {
+        List<String> differences = new ArrayList<String>();
+        for (String name : MACHINE_PROPERTIES) {
+            String value = get(name);
+            String otherValue = other.get(name);
+            if (value != null && otherValue != null && !value.equals(otherValue)) {
+                differences.add(name);
+            }
+        }
+        return differences;
+    }
+
+    /**
+     * @return a one line description of the CPU and the memory of the machine, e.g. "Intel(R) Xeon(R) CPU E5-2670 0 @ 2.60GHz, 8 cpus, 15932 MB RAM"
+     */
+    public String machineSummary() {
+        List<String> parts = new ArrayList<String>();
+        if (get(CPU_MODEL) != null) {
+            parts.add(get(CPU_MODEL));
+        }
+        if (get(CPU_COUNT) != null) {
+            parts.add(get(CPU_COUNT) + " cpus");
+        }
+        if (get(MEMORY_BYTES) != null) {
+            parts.add(Long.parseLong(get(MEMORY_BYTES)) / (1024 * 1024) + " MB RAM");
+        }
+        return join(parts, ", ");
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+        return obj instanceof EnvironmentInfo && properties.equals(((EnvironmentInfo)obj).properties);
+    }
+
+    @Override
+    public int hashCode() {
+        return properties.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return properties.toString();
+    }
+
+    private static void captureCpu( Map<String, String> properties ) {
+        put(properties, CPU_COUNT, String.valueOf(Runtime.getRuntime().availableProcessors()));
+        List<String> cpuInfo = lines(PROC_CPU_INFO);
+        // each physical package (socket) is listed once per logical cpu, with the number of its cores
+        Set<String> physicalIds = new HashSet<String>();
+        String physicalId = null;
+        int physicalCores = 0;
+        for (String line : cpuInfo) {
+            String value = line.indexOf(':') >= 0 ? line.substring(line.indexOf(':') + 1).trim() : "";
+            if (line.startsWith("model name") && !properties.containsKey(CPU_MODEL)) {
+                put(properties, CPU_MODEL, value.replaceAll("\\s+", " "));
+            } else if (line.startsWith("physical id")) {
+                physicalId = value;
+            } else if (line.startsWith("cpu cores") && physicalId != null && physicalIds.add(physicalId)) {
+                physicalCores += Integer.parseInt(value);
+            }
+        }
+        if (physicalCores > 0) {
+            put(properties, CPU_PHYSICAL_CORES, String.valueOf(physicalCores));
+        }
+        put(properties, CPU_GOVERNOR, firstLine("/sys/devices/system/cpu/cpu0/cpufreq/scaling_governor"));
+    }
+
+    private static String totalMemoryBytes() {
+        for (String line : lines(PROC_MEM_INFO)) {
+            if (line.startsWith("MemTotal:")) {
+                // e.g. "MemTotal:       16314700 kB"
+                String[] parts = line.substring("MemTotal:".length()).trim().split("\\s+");
+                return String.valueOf(Long.parseLong(parts[0]) * 1024);
+            }
+        }
+        try {
+            OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+            if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+                return String.valueOf(((com.sun.management.OperatingSystemMXBean)osBean).getTotalPhysicalMemorySize());
+            }
+        } catch (LinkageError e) {
+            // not a HotSpot JVM
+        }
+        return null;
+    }
+
+    private static String hostName() {
+        String hostName = firstLine("/proc/sys/kernel/hostname");
+        if (hostName == null) {
+            hostName = System.getenv("HOSTNAME");
+        }
+        return hostName != null ? hostName : System.getenv("COMPUTERNAME");
+    }
+
+    private static String resourceContents( String resourceName ) {
+        InputStream stream = EnvironmentInfo.class.getClassLoader().getResourceAsStream(resourceName);
+        if (stream == null) {
+            LOGGER.debug("The repository configuration file {} is not in the classpath", resourceName);
+            return null;
+        }
+        try {
+            return join(readLines(stream), "\n");
+        } catch (IOException e) {
+            LOGGER.debug("Cannot read the repository configuration file " + resourceName, e);
+            return null;
+        }
+    }
+
+    private static String firstLine( String fileName ) {
+        List<String> lines = lines(fileName);
+        return lines.isEmpty() ? null : lines.get(0).trim();
+    }
+
+    /**
+     * Returns the lines of a (<code>/proc</code>) file, or an empty list if the file doesn't exist or cannot be read.
+     */
+    static List<String> lines( String fileName ) {
+        File file = new File(fileName);
+        if (!file.canRead()) {
+            return Collections.emptyList();
+        }
+        try {
+            return readLines(new FileInputStream(file));
+        } catch (IOException e) {
+            LOGGER.debug("Cannot read " + fileName, e);
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<String> readLines( InputStream stream ) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private static void put( Map<String, String> properties,
+                             String name,
+                             String value ) {
+        if (value != null && !value.trim().isEmpty()) {
+            properties.put(name, value);
+        }
+    }
+
+    private static String join( List<String> values,
+                                String separator ) {
+        StringBuilder builder = new StringBuilder();
+        for (Iterator<String> it = values.iterator(); it.hasNext();) {
+            builder.append(it.next());
+            if (it.hasNext()) {
+                builder.append(separator);
+            }
+        }
+        return builder.toString();
+    }
+}
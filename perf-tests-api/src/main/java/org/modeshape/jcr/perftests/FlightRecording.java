@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Java Flight Recorder recording of the current JVM, controlled via the {@code DiagnosticCommand} MBean (the equivalent of
+ * {@code jcmd JFR.start/JFR.stop}), so that no JFR API is needed at compile time. When the recording is stopped, the {@code .jfr}
+ * file is written and summarized by {@link FlightRecordingSummary}.
+ */
+final class FlightRecording {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlightRecording.class);
+
+    private static final String DIAGNOSTIC_COMMAND_MBEAN = "com.sun.management:type=DiagnosticCommand";
+    private static final AtomicInteger RECORDING_COUNTER = new AtomicInteger();
+
+    private final String name;
+    private final File recordingFile;
+    private final File summaryFile;
+
+    private FlightRecording( String name,
+                             File recordingFile,
+                             File summaryFile ) {
+        this.name = name;
+        this.recordingFile = recordingFile;
+        this.summaryFile = summaryFile;
+    }
+
+    /**
+     * Starts a new recording.
+     *
+     * @param recordingFile the file to which the recording is written when stopped
+     * @param summaryFile the file to which the text summary of the recording is written when stopped
+     * @param settings the name of the JFR settings (e.g. "profile" or "default") or the path of a settings file
+     * @return the started recording, or null if the JVM doesn't support JFR (in which case a warning is logged)
+     */
+    static FlightRecording start( File recordingFile,
+                                  File summaryFile,
+                                  String settings ) {
+        String name = "perftests-" + RECORDING_COUNTER.incrementAndGet();
+        try {
+            String output = diagnosticCommand("jfrStart", "name=" + name, "settings=" + settings);
+            LOGGER.debug("JFR.start: {}", output);
+            return new FlightRecording(name, recordingFile, summaryFile);
+        } catch (Exception e) {
+            LOGGER.warn("Cannot start a flight recording; the suites will be run without it", e);
+            return null;
+        }
+    }
+
+    /**
+     * Stops this recording, writing it and its summary. Failures are only logged, since they don't affect the measurements.
+     */
+    void stop() {
+        try {
+            diagnosticCommand("jfrStop", "name=" + name, "filename=" + recordingFile.getAbsolutePath());
+            LOGGER.info("Flight recording written to {}", recordingFile.getPath());
+        } catch (Exception e) {
+            LOGGER.warn("Cannot stop the flight recording " + name, e);
+            return;
+        }
+        try {
+            FlightRecordingSummary.write(recordingFile, summaryFile);
+        } catch (Exception e) {
+            LOGGER.warn("Cannot summarize the flight recording " + recordingFile, e);
+        }
+    }
+
+    static String diagnosticCommand( String operation,
+                                     String... arguments ) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Object result = server.invoke(new ObjectName(DIAGNOSTIC_COMMAND_MBEAN), operation, new Object[] {arguments},
+                                      new String[] {String[].class.getName()});
+        return String.valueOf(result);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a text summary of a JFR recording: the most sampled methods (top frames of the execution samples), the top allocation
+ * sites (by allocated bytes) and the lock contention hotspots (by blocked time, for monitor enters and thread parks).
+ * <p>
+ * The recording is read via the {@code jdk.jfr.consumer} API, which is accessed reflectively so that the framework still builds
+ * and runs on JVMs which don't have it; on such JVMs only the {@code .jfr} file is produced.
+ * </p>
+ */
+final class FlightRecordingSummary {
+
+    private static final int TOP_COUNT = 20;
+
+    /** frames which are skipped when looking for the code which waits on a lock */
+    private static final String[] PARKING_FRAME_PREFIXES = {"java.util.concurrent.locks.", "sun.misc.Unsafe",
+            "jdk.internal.misc.Unsafe", "java.lang.Object.wait"};
+
+    private final Map<String, Long> executionSamples = new HashMap<String, Long>();
+    private final Map<String, Long> allocatedBytes = new HashMap<String, Long>();
+    private final Map<String, Long> blockedNanos = new HashMap<String, Long>();
+
+    private FlightRecordingSummary() {
+    }
+
+    /**
+     * Reads a recording and writes its summary.
+     *
+     * @param recordingFile a {@code .jfr} file
+     * @param summaryFile the text file to write
+     * @throws Exception if the recording cannot be read (e.g. the JVM doesn't provide the JFR consumer API)
+     */
+    static void write( File recordingFile,
+                       File summaryFile ) throws Exception {
+        FlightRecordingSummary summary = new FlightRecordingSummary();
+        Class<?> recordingFileClass = Class.forName("jdk.jfr.consumer.RecordingFile");
+        Class<?> pathClass = Class.forName("java.nio.file.Path");
+        Object path = File.class.getMethod("toPath").invoke(recordingFile);
+        // the events are streamed one at a time, since the recording can be much larger than the heap of the measured JVM
+        Object recording = recordingFileClass.getConstructor(pathClass).newInstance(path);
+        Method hasMoreEvents = recordingFileClass.getMethod("hasMoreEvents");
+        Method readEvent = recordingFileClass.getMethod("readEvent");
+        long eventCount = 0;
+        try {
+            while ((Boolean)hasMoreEvents.invoke(recording)) {
+                summary.add(readEvent.invoke(recording));
+                eventCount++;
+            }
+        } finally {
+            recordingFileClass.getMethod("close").invoke(recording);
+        }
+
+        PrintStream ps = new PrintStream(new FileOutputStream(summaryFile));
+        try {
+            ps.println("Flight recording: " + recordingFile.getName() + " (" + eventCount + " events)");
+            summary.print(ps, "Top sampled methods [samples]", summary.executionSamples);
+            summary.print(ps, "Top allocation sites [allocated KB]", divide(summary.allocatedBytes, 1024));
+            summary.print(ps, "Top lock contention sites [blocked ms]", divide(summary.blockedNanos, 1000 * 1000));
+        } finally {
+            ps.close();
+        }
+    }
+
+    private void add( Object event ) throws Exception {
+        Object eventType = call(event, "getEventType");
+        String type = (String)call(eventType, "getName");
+        if ("jdk.ExecutionSample".equals(type)) {
+            increment(executionSamples, topFrame(event, false), 1);
+        } else if ("jdk.ObjectAllocationInNewTLAB".equals(type)) {
+            increment(allocatedBytes, topFrame(event, false), getLong(event, "tlabSize"));
+        } else if ("jdk.ObjectAllocationOutsideTLAB".equals(type)) {
+            increment(allocatedBytes, topFrame(event, false), getLong(event, "allocationSize"));
+        } else if ("jdk.ObjectAllocationSample".equals(type)) {
+            increment(allocatedBytes, topFrame(event, false), getLong(event, "weight"));
+        } else if ("jdk.JavaMonitorEnter".equals(type)) {
+            Object monitorClass = call(event, "getClass", "monitorClass");
+            String monitor = monitorClass != null ? (String)call(monitorClass, "getName") : "?";
+            increment(blockedNanos, monitor + " @ " + topFrame(event, false), durationNanos(event));
+        } else if ("jdk.ThreadPark".equals(type)) {
+            increment(blockedNanos, "park @ " + topFrame(event, true), durationNanos(event));
+        }
+    }
+
+    private String topFrame( Object event,
+                             boolean skipParkingFrames ) throws Exception {
+        Object stackTrace = call(event, "getStackTrace");
+        if (stackTrace == null) {
+            return "<no stack trace>";
+        }
+        String first = null;
+        for (Object frame : (List<?>)call(stackTrace, "getFrames")) {
+            Object method = call(frame, "getMethod");
+            String methodName = call(call(method, "getType"), "getName") + "." + call(method, "getName");
+            if (first == null) {
+                first = methodName;
+            }
+            if (!skipParkingFrames || !isParkingFrame(methodName)) {
+                return methodName;
+            }
+        }
+        return first != null ? first : "<no stack trace>";
+    }
+
+    private static boolean isParkingFrame( String methodName ) {
+        for (String prefix : PARKING_FRAME_PREFIXES) {
+            if (methodName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getLong( Object event,
+                                 String field ) throws Exception {
+        return (Long)call(event, "getLong", field);
+    }
+
+    private static long durationNanos( Object event ) throws Exception {
+        return (Long)call(call(event, "getDuration"), "toNanos");
+    }
+
+    private static Object call( Object target,
+                                String methodName,
+                                String... arguments ) throws Exception {
+        Class<?>[] parameterTypes = new Class<?>[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            parameterTypes[i] = String.class;
+        }
+        Method method = target.getClass().getMethod(methodName, parameterTypes);
+        method.setAccessible(true);
+        return method.invoke(target, (Object[])arguments);
+    }
+
+    private static void increment( Map<String, Long> counters,
+                                   String key,
+                                   long amount ) {
+        Long current = counters.get(key);
+        counters.put(key, current != null ? current + amount : amount);
+    }
+
+    private static Map<String, Long> divide( Map<String, Long> counters,
+                                            long divisor ) {
+        Map<String, Long> result = new HashMap<String, Long>();
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            result.put(entry.getKey(), entry.getValue() / divisor);
+        }
+        return result;
+    }
+
+    private void print( PrintStream ps,
+                        String title,
+                        Map<String, Long> counters ) {
+        ps.println("-----------------------------------------------------------------------");
+        ps.println(title);
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(counters.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare( Map.Entry<String, Long> first,
+                                Map.Entry<String, Long> second ) {
+                return second.getValue().compareTo(first.getValue());
+            }
+        });
+        if (entries.isEmpty()) {
+            ps.println("(no events)");
+        }
+        for (Map.Entry<String, Long> entry : entries.subList(0, Math.min(TOP_COUNT, entries.size()))) {
+            ps.printf("%12d  %s%n", entry.getValue(), entry.getKey());
+        }
+    }
+}
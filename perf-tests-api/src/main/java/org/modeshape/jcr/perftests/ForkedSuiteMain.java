@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.io.File;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry point of the child JVMs in which {@link SuiteRunner} runs each suite, when forking is enabled. It runs a single suite
+ * against the repository configured by an {@link AbstractImplementationTest} and appends the recorded {@link TestData} to the
+ * {@link ResultsJournal results journal} of the parent JVM, from where the parent reads it back.
+ * <p>
+ * The arguments are: the name of the implementation test class, the name of the suite class and the path of the journal.
+ * </p>
+ */
+final class ForkedSuiteMain {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForkedSuiteMain.class);
+
+    /**
+     * The system properties which are passed from the parent JVM to the child JVMs.
+     */
+    static final String[] INHERITED_SYSTEM_PROPERTIES = {AbstractImplementationTest.CONFIGURATION_NAME_SYSTEM_PROPERTY_NAME,
+            "java.io.tmpdir", "java.net.preferIPv4Stack", "java.net.preferIPv6Addresses"};
+
+    private ForkedSuiteMain() {
+    }
+
+    public static void main( String[] args ) {
+        int exitCode = 0;
+        try {
+            AbstractImplementationTest implementation = AbstractImplementationTest.newInstance(args[0]);
+            Class<? extends AbstractPerformanceTestSuite> testSuiteClass = Class.forName(args[1]).asSubclass(
+                    AbstractPerformanceTestSuite.class);
+
+            // the suite is already isolated, so it must be run in this JVM
+            implementation.runnerConfig.fork = false;
+            SuiteRunner runner = new SuiteRunner(implementation.testDescription, implementation.runnerConfig);
+            ResultsJournal journal = new ResultsJournal(new File(args[2]));
+            runner.getTestData().setJournal(journal);
+            runner.getTestData().recordEnvironment(EnvironmentInfo.capture(implementation.runnerConfig));
+            try {
+                runner.runPerformanceTest(testSuiteClass, implementation.repositoryFactoryParameters,
+                                          implementation.credentials);
+            } finally {
+                journal.close();
+            }
+        } catch (Throwable t) {
+            LOGGER.error("Error while running " + args[1], t);
+            exitCode = 1;
+        }
+        // repositories may leave non-daemon threads behind
+        System.exit(exitCode);
+    }
+}
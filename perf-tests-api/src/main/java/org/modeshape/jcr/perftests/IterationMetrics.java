@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.io.Serializable;
+
+/**
+ * The JVM resources used by a single measured run of a test: the bytes allocated by the thread which ran it, the number and
+ * duration of the garbage collections which happened during the run and the heap usage at the end of the run, and - if the
+ * runner samples them (see {@link RunnerCfg#setProcessSampling(int)}) - the OS resources used by the whole process during the
+ * run.
+ */
+public final class IterationMetrics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long allocatedBytes;
+    private final long gcCount;
+    private final long gcTimeMillis;
+    private final long heapUsedBytes;
+    private final ProcessUsage processUsage;
+
+    IterationMetrics( long allocatedBytes,
+                      long gcCount,
+                      long gcTimeMillis,
+                      long heapUsedBytes ) {
+        this(allocatedBytes, gcCount, gcTimeMillis, heapUsedBytes, null);
+    }
+
+    IterationMetrics( long allocatedBytes,
+                      long gcCount,
+                      long gcTimeMillis,
+                      long heapUsedBytes,
+                      ProcessUsage processUsage ) {
+        this.allocatedBytes = allocatedBytes;
+        this.gcCount = gcCount;
+        this.gcTimeMillis = gcTimeMillis;
+        this.heapUsedBytes = heapUsedBytes;
+        this.processUsage = processUsage;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the thread which ran the test, during the run.
+     *
+     * @return a number of bytes, or -1 if the JVM cannot measure the thread allocations
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the number of garbage collections (of all the collectors) which happened during the run.
+     *
+     * @return a number of collections, or -1 if not available
+     */
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    /**
+     * Returns the accumulated duration of the garbage collections which happened during the run.
+     *
+     * @return a number of milliseconds, or -1 if not available
+     */
+    public long getGcTimeMillis() {
+        return gcTimeMillis;
+    }
+
+    /**
+     * Returns the amount of heap memory used at the end of the run.
+     *
+     * @return a number of bytes
+     */
+    public long getHeapUsedBytes() {
+        return heapUsedBytes;
+    }
+
+    /**
+     * Returns the OS resources used by the whole process (i.e. by all its threads, including those of the repository and of the
+     * garbage collector) during the run.
+     *
+     * @return the resources used between the start and the end of the run, or null if they weren't sampled
+     */
+    public ProcessUsage getProcessUsage() {
+        return processUsage;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Captures the {@link IterationMetrics} of a measured run, using the platform MXBeans. The allocations are measured via the
+ * HotSpot specific {@code com.sun.management.ThreadMXBean}; on JVMs which don't provide it they are reported as -1. The
+ * {@link ProcessUsage OS resources} used by the process are optionally read from <code>/proc</code> as well, and a
+ * {@link StorageProbe} can be notified of the start and end of each run, outside of the window of the other measurements.
+ * <p>
+ * A probe must be started and stopped by the thread which runs the test.
+ * </p>
+ */
+final class IterationMetricsProbe {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IterationMetricsProbe.class);
+
+    private static final MemoryMXBean MEMORY_BEAN = ManagementFactory.getMemoryMXBean();
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+
+    private final boolean sampleProcess;
+    private final StorageProbe storageProbe;
+    private long startAllocatedBytes;
+    private long startGcCount;
+    private long startGcTimeMillis;
+    private ProcessUsage startProcessUsage;
+
+    /**
+     * @param sampleProcess true if the OS resources used by the process during the run should be measured as well
+     * @param storageProbe if not null, a probe which measures the storage used by each run
+     */
+    IterationMetricsProbe( boolean sampleProcess,
+                           StorageProbe storageProbe ) {
+        this.sampleProcess = sampleProcess;
+        this.storageProbe = storageProbe;
+    }
+
+    /**
+     * Takes the initial readings; should be called right before the measured run.
+     */
+    void start() {
+        if (storageProbe != null) {
+            storageProbe.iterationStarted();
+        }
+        // reading /proc allocates, so it is done before the allocations are measured
+        startProcessUsage = sampleProcess ? ProcessUsage.sample(System.currentTimeMillis()) : null;
+        startGcCount = totalGcCount();
+        startGcTimeMillis = totalGcTimeMillis();
+        startAllocatedBytes = currentThreadAllocatedBytes();
+    }
+
+    /**
+     * Takes the final readings; should be called right after the measured run.
+     *
+     * @return the metrics of the run, never null
+     */
+    IterationMetrics stop() {
+        long allocatedBytes = currentThreadAllocatedBytes();
+        long gcCount = totalGcCount();
+        long gcTimeMillis = totalGcTimeMillis();
+        ProcessUsage processUsage = null;
+        if (startProcessUsage != null) {
+            processUsage = ProcessUsage.sample(System.currentTimeMillis()).since(startProcessUsage);
+        }
+        if (storageProbe != null) {
+            storageProbe.iterationFinished();
+        }
+        return new IterationMetrics(difference(startAllocatedBytes, allocatedBytes), difference(startGcCount, gcCount),
+                                    difference(startGcTimeMillis, gcTimeMillis), MEMORY_BEAN.getHeapMemoryUsage().getUsed(),
+                                    processUsage);
+    }
+
+    private static long difference( long start,
+                                    long end ) {
+        return start < 0 || end < 0 ? -1 : end - start;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        if (ALLOCATION_BEAN == null) {
+            return -1;
+        }
+        return ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long totalGcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long count = gcBean.getCollectionCount();
+            if (count < 0) {
+                return -1;
+            }
+            total += count;
+        }
+        return total;
+    }
+
+    private static long totalGcTimeMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long time = gcBean.getCollectionTime();
+            if (time < 0) {
+                return -1;
+            }
+            total += time;
+        }
+        return total;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            if (threadBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean)threadBean;
+                if (allocationBean.isThreadAllocatedMemorySupported()) {
+                    allocationBean.setThreadAllocatedMemoryEnabled(true);
+                    return allocationBean;
+                }
+            }
+        } catch (LinkageError e) {
+            // not a HotSpot JVM
+        } catch (UnsupportedOperationException e) {
+            // the allocations cannot be measured
+        }
+        LOGGER.warn("The JVM cannot measure thread allocations; allocated bytes will not be reported");
+        return null;
+    }
+}
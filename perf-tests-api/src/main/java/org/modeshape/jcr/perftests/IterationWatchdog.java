@@ -0,0 +1,375 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the iterations of a suite, run one after the other or by several worker threads at the same time, and detects the ones
+ * which stall: an iteration stalls when it runs for longer than a fixed timeout, or for longer than a number of times the median
+ * duration of the previous iterations. Both the elapsed time of a running iteration and the durations from which the median is
+ * computed cover the whole iteration, including the per-iteration setup and cleanup of the suite. For each stalled iteration a
+ * full thread dump (with the owners of the contended locks and the deadlocked threads, if any) and the heap statistics are
+ * written to a file, and then the iteration is either left running or aborted.
+ * <p>
+ * An iteration is aborted by interrupting the thread running it, unless that thread has already finished the iteration, so that
+ * the interrupt never leaks into the next iteration of the thread. If the iteration still hasn't finished after another timeout,
+ * the thread is considered hung and the JVM is halted, so that a deadlocked suite fails the build (or the forked JVM, see
+ * {@link RunnerCfg#setFork(boolean, String...)}) instead of hanging it.
+ * </p>
+ */
+final class IterationWatchdog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IterationWatchdog.class);
+
+    /** How often the running iterations are checked */
+    private static final long CHECK_PERIOD_MILLIS = 100;
+    /** The number of iterations from which the running median is computed, and the minimum before it is used */
+    private static final int MEDIAN_WINDOW = 101;
+    private static final int MIN_MEDIAN_SAMPLES = 5;
+    /** Iterations shorter than this are never reported as stalled by the median check, however fast the previous ones were */
+    private static final long MIN_MEDIAN_STALL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /** The number of lines of the class histogram which are written with the heap statistics */
+    private static final int CLASS_HISTOGRAM_LINES = 40;
+
+    private final String suiteName;
+    private final long timeoutNanos;
+    private final double medianFactor;
+    private final boolean abort;
+    private final File dumpFilePrefix;
+    private final LinkedList<Long> recentDurations = new LinkedList<Long>();
+    private final List<String> stalls = new ArrayList<String>();
+    private final Map<Thread, Iteration> runningIterations = new ConcurrentHashMap<Thread, Iteration>();
+    private final AtomicInteger iterationCount = new AtomicInteger();
+    private final ScheduledExecutorService checker;
+
+    private volatile long stallThresholdNanos;
+    private int stallCount;
+
+    IterationWatchdog( String suiteName,
+                       long timeoutNanos,
+                       double medianFactor,
+                       boolean abort,
+                       File dumpFilePrefix ) {
+        this.suiteName = suiteName;
+        this.timeoutNanos = timeoutNanos;
+        this.medianFactor = medianFactor;
+        this.abort = abort;
+        this.dumpFilePrefix = dumpFilePrefix;
+        this.stallThresholdNanos = timeoutThreshold();
+        this.checker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread( Runnable runnable ) {
+                Thread thread = new Thread(runnable, "perftests-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.checker.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                check();
+            }
+        }, CHECK_PERIOD_MILLIS, CHECK_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Marks the start of an iteration, by the current thread.
+     */
+    void iterationStarted() {
+        runningIterations.put(Thread.currentThread(), new Iteration(iterationCount.incrementAndGet(), Thread.currentThread()));
+    }
+
+    /**
+     * Marks the end of the iteration of the current thread.
+     *
+     * @param succeeded whether the iteration completed normally; the duration of the failed iterations is not taken into account
+     *        by the median check
+     * @throws IllegalStateException if the iteration completed successfully but was aborted by the watchdog, which means it
+     *         ignored the interrupt and its results cannot be trusted
+     */
+    void iterationFinished( boolean succeeded ) {
+        Iteration iteration = runningIterations.remove(Thread.currentThread());
+        if (iteration == null) {
+            return;
+        }
+        long durationNanos = System.nanoTime() - iteration.start;
+        String reason;
+        synchronized (iteration) {
+            iteration.finished = true;
+            reason = iteration.abortReason;
+        }
+        if (reason != null) {
+            //clear the interrupt, in case the iteration didn't notice it
+            Thread.interrupted();
+            if (succeeded) {
+                throw new IllegalStateException("Aborted by the watchdog: " + reason);
+            }
+            return;
+        }
+        if (succeeded && medianFactor > 0) {
+            recordDuration(durationNanos);
+        }
+    }
+
+    /**
+     * Runs one iteration of a suite, by the current thread, under this watchdog.
+     *
+     * @param suite the suite, which must be set up
+     * @param metricsProbe if not null, a probe which is started and stopped around the test
+     * @return the timings of the iteration, never null
+     * @throws Exception if the iteration fails or is aborted
+     */
+    AbstractPerformanceTestSuite.RunTimes runIteration( AbstractPerformanceTestSuite suite,
+                                                        IterationMetricsProbe metricsProbe ) throws Exception {
+        AbstractPerformanceTestSuite.RunTimes times = null;
+        iterationStarted();
+        try {
+            times = suite.runTimed(metricsProbe);
+        } finally {
+            iterationFinished(times != null);
+        }
+        return times;
+    }
+
+    /**
+     * Forgets the durations of the previous iterations, when the suite starts running differently (e.g. with several threads),
+     * so that the median check only applies again once enough iterations have been run the new way.
+     */
+    synchronized void restartMedian() {
+        recentDurations.clear();
+        stallThresholdNanos = timeoutThreshold();
+    }
+
+    void stop() {
+        checker.shutdownNow();
+    }
+
+    /**
+     * Returns the descriptions of the iterations which stalled so far.
+     *
+     * @return a list of descriptions; never null
+     */
+    synchronized List<String> getStalls() {
+        return new ArrayList<String>(stalls);
+    }
+
+    private long timeoutThreshold() {
+        return timeoutNanos > 0 ? timeoutNanos : Long.MAX_VALUE;
+    }
+
+    private synchronized void recordDuration( long durationNanos ) {
+        recentDurations.add(durationNanos);
+        if (recentDurations.size() > MEDIAN_WINDOW) {
+            recentDurations.removeFirst();
+        }
+        if (recentDurations.size() >= MIN_MEDIAN_SAMPLES) {
+            List<Long> sorted = new ArrayList<Long>(recentDurations);
+            Collections.sort(sorted);
+            long medianThreshold = Math.max((long)(sorted.get(sorted.size() / 2) * medianFactor), MIN_MEDIAN_STALL_NANOS);
+            stallThresholdNanos = timeoutNanos > 0 ? Math.min(timeoutNanos, medianThreshold) : medianThreshold;
+        }
+    }
+
+    private void check() {
+        for (Iteration iteration : runningIterations.values()) {
+            long elapsed = System.nanoTime() - iteration.start;
+            if (!iteration.reported && elapsed > stallThresholdNanos) {
+                iteration.reported = true;
+                String description = reportStall(iteration.thread, iteration.number, elapsed);
+                if (abort) {
+                    synchronized (iteration) {
+                        if (!iteration.finished) {
+                            LOGGER.error("Aborting iteration #{} of {}", iteration.number, suiteName);
+                            iteration.abortReason = description;
+                            iteration.abortedAt = System.nanoTime();
+                            iteration.thread.interrupt();
+                        }
+                    }
+                }
+            } else if (iteration.abortReason != null
+                       && System.nanoTime() - iteration.abortedAt > Math.max(stallThresholdNanos, MIN_MEDIAN_STALL_NANOS)) {
+                LOGGER.error("Iteration #{} of {} is hung and cannot be aborted; halting the JVM", iteration.number, suiteName);
+                Runtime.getRuntime().halt(3);
+            }
+        }
+    }
+
+    private synchronized String reportStall( Thread thread,
+                                int iteration,
+                                long elapsedNanos ) {
+        File dumpFile = new File(dumpFilePrefix.getPath() + "-stall-" + (++stallCount) + ".txt");
+        String description = "iteration #" + iteration + " stalled for more than "
+                             + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms in " + thread.getName();
+        LOGGER.warn("{}: {}; writing a thread dump to {}", new Object[] {suiteName, description, dumpFile});
+        try {
+            writeDump(dumpFile, description);
+            description += " (see " + dumpFile.getName() + ")";
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write the thread dump", e);
+        }
+        stalls.add(description);
+        return description;
+    }
+
+    private void writeDump( File dumpFile,
+                            String description ) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(dumpFile));
+        try {
+            writer.println(suiteName + ": " + description + " (" + new Date() + ")");
+            writer.println();
+            printThreads(writer);
+            printHeapStatistics(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void printThreads( PrintWriter writer ) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long[] deadlocked = threads.isSynchronizerUsageSupported() ? threads.findDeadlockedThreads()
+                                                                    : threads.findMonitorDeadlockedThreads();
+        if (deadlocked != null) {
+            writer.println("Deadlocked threads:");
+            for (ThreadInfo info : threads.getThreadInfo(deadlocked)) {
+                if (info != null) {
+                    writer.println("  \"" + info.getThreadName() + "\" Id=" + info.getThreadId() + " waiting for "
+                                   + info.getLockName() + " owned by \"" + info.getLockOwnerName() + "\" Id="
+                                   + info.getLockOwnerId());
+                }
+            }
+            writer.println();
+        }
+
+        writer.println("Threads:");
+        for (ThreadInfo info : threads.dumpAllThreads(threads.isObjectMonitorUsageSupported(),
+                                                      threads.isSynchronizerUsageSupported())) {
+            printThread(writer, info);
+        }
+    }
+
+    /**
+     * Prints a thread like {@link ThreadInfo#toString()} does, but with the whole stack instead of its first frames only.
+     */
+    private static void printThread( PrintWriter writer,
+                                     ThreadInfo info ) {
+        StringBuilder header = new StringBuilder("\"").append(info.getThreadName()).append("\" Id=").append(info.getThreadId())
+                                                      .append(" ").append(info.getThreadState());
+        if (info.getLockName() != null) {
+            header.append(" on ").append(info.getLockName());
+        }
+        if (info.getLockOwnerName() != null) {
+            header.append(" owned by \"").append(info.getLockOwnerName()).append("\" Id=").append(info.getLockOwnerId());
+        }
+        if (info.isSuspended()) {
+            header.append(" (suspended)");
+        }
+        if (info.isInNative()) {
+            header.append(" (in native)");
+        }
+        writer.println(header);
+
+        StackTraceElement[] stackTrace = info.getStackTrace();
+        for (int i = 0; i < stackTrace.length; i++) {
+            writer.println("\tat " + stackTrace[i]);
+            if (i == 0 && info.getLockInfo() != null) {
+                writer.println("\t-  " + info.getThreadState().toString().toLowerCase() + " on " + info.getLockInfo());
+            }
+            for (MonitorInfo monitor : info.getLockedMonitors()) {
+                if (monitor.getLockedStackDepth() == i) {
+                    writer.println("\t-  locked " + monitor);
+                }
+            }
+        }
+        LockInfo[] synchronizers = info.getLockedSynchronizers();
+        if (synchronizers.length > 0) {
+            writer.println();
+            writer.println("\tNumber of locked synchronizers = " + synchronizers.length);
+            for (LockInfo synchronizer : synchronizers) {
+                writer.println("\t- " + synchronizer);
+            }
+        }
+        writer.println();
+    }
+
+    private static void printHeapStatistics( PrintWriter writer ) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        writer.println("Heap: " + memory.getHeapMemoryUsage());
+        writer.println("Non-heap: " + memory.getNonHeapMemoryUsage());
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            writer.println("  " + pool.getName() + ": " + pool.getUsage());
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            writer.println("  " + collector.getName() + ": " + collector.getCollectionCount() + " collections, "
+                           + collector.getCollectionTime() + " ms");
+        }
+        writer.println();
+        try {
+            String[] histogram = FlightRecording.diagnosticCommand("gcClassHistogram").trim().split("\n");
+            writer.println("Class histogram (top " + CLASS_HISTOGRAM_LINES + "):");
+            for (int i = 0; i < Math.min(histogram.length, CLASS_HISTOGRAM_LINES + 2); i++) {
+                writer.println(histogram[i]);
+            }
+        } catch (Exception e) {
+            writer.println("Class histogram not available: " + e);
+        }
+    }
+
+    /**
+     * An iteration which is running, by a given thread.
+     */
+    private static final class Iteration {
+        private final int number;
+        private final Thread thread;
+        private final long start = System.nanoTime();
+        private boolean reported;
+        private boolean finished;
+        private volatile String abortReason;
+        private volatile long abortedAt;
+
+        private Iteration( int number,
+                           Thread thread ) {
+            this.number = number;
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latency values (in nanoseconds) which uses log-linear buckets, in the spirit of HdrHistogram. Each power-of-two
+ * range is divided into {@link #SUB_BUCKET_COUNT} linear sub-buckets, so the relative error of any reported value is bounded by
+ * <code>1 / SUB_BUCKET_COUNT</code> (less than 1%) while the memory footprint stays constant, regardless of how many values are
+ * recorded.
+ * <p>
+ * Recording is lock-free, so a histogram instance can be shared by multiple threads.
+ * </p>
+ */
+public final class LatencyHistogram implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a new value into this histogram. Negative values are recorded as 0.
+     *
+     * @param value a value, normally a duration in nanoseconds
+     */
+    public void recordValue( long value ) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.incrementAndGet();
+        sum.addAndGet(value);
+        updateMin(value);
+        updateMax(value);
+    }
+
+    /**
+     * Adds all the values recorded by another histogram to this histogram.
+     *
+     * @param other a <code>LatencyHistogram</code> instance; may not be null
+     */
+    public void add( LatencyHistogram other ) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count > 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        sum.addAndGet(other.sum.get());
+        if (other.getCount() > 0) {
+            updateMin(other.min.get());
+            updateMax(other.max.get());
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMin() {
+        return getCount() > 0 ? min.get() : 0;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count > 0 ? (double)sum.get() / count : 0;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall.
+     *
+     * @param percentile a value between 0 and 100 (e.g. 99.9)
+     * @return the value at the given percentile, within the precision of this histogram, or 0 if no values were recorded
+     */
+    public long getValueAtPercentile( double percentile ) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        if (percentile >= 100) {
+            return getMax();
+        }
+        long targetCount = Math.max(1, (long)Math.ceil(percentile / 100 * count));
+        long cumulativeCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulativeCount += counts.get(i);
+            if (cumulativeCount >= targetCount) {
+                return Math.max(Math.min(highestValueInBucket(i), getMax()), getMin());
+            }
+        }
+        return getMax();
+    }
+
+    static int bucketIndex( long value ) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int)value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int)(value >>> shift);
+    }
+
+    static long highestValueInBucket( int index ) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index - (long)shift * SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private void updateMin( long value ) {
+        long current;
+        while (value < (current = min.get())) {
+            if (min.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    private void updateMax( long value ) {
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Open-loop execution engine, which runs an already set up suite at a fixed arrival rate rather than back-to-back. The runs are
+ * scheduled at fixed intervals (e.g. every 2ms for 500 ops/s) and the latency of each run is measured from the moment it
+ * <b>should</b> have started, according to the schedule, not from the moment it actually started. This way, when the repository
+ * stalls, all the runs which should have been issued during the stall are charged with the time they spent waiting, which
+ * corrects the coordinated omission that a closed-loop run suffers from.
+ * <p>
+ * Two operation latencies are recorded for each rate: <code>responseTime</code> (measured from the intended start) and
+ * <code>serviceTime</code> (measured from the actual start of <code>runTest()</code>), both up to the end of
+ * <code>runTest()</code>, so that the per-iteration setup and cleanup of the suite is not counted as service time.
+ * </p>
+ * <p>
+ * When the runs fall behind the schedule, they are issued back-to-back to catch up, but only until the end of the schedule plus
+ * a grace period (a tenth of the duration, at least a second): the scheduled runs which haven't been issued by then are recorded
+ * as dropped, and the runs still in progress are given another grace period to complete before the test is failed.
+ * </p>
+ */
+final class OpenLoopRun {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OpenLoopRun.class);
+
+    private static final long MIN_GRACE_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    static final String RESPONSE_TIME = "responseTime";
+    static final String SERVICE_TIME = "serviceTime";
+
+    private final AbstractPerformanceTestSuite suite;
+    private final IterationWatchdog watchdog;
+    private final TestData testData;
+    private final int ratePerSecond;
+    private final long durationNanos;
+    private final int threadCount;
+
+    OpenLoopRun( AbstractPerformanceTestSuite suite,
+                 IterationWatchdog watchdog,
+                 TestData testData,
+                 int ratePerSecond,
+                 long durationSeconds,
+                 int threadCount ) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid open-loop rate: " + ratePerSecond + " runs/s");
+        }
+        this.suite = suite;
+        this.watchdog = watchdog;
+        this.testData = testData;
+        this.ratePerSecond = ratePerSecond;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        this.threadCount = threadCount;
+    }
+
+    void execute() {
+        final String testName = suite.getName() + "[" + ratePerSecond + " ops/s]";
+        LOGGER.info("{} running for {} (s) with {} thread(s)....",
+                    new Object[] {testName, TimeUnit.NANOSECONDS.toSeconds(durationNanos), threadCount});
+
+        final long intervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        final long scheduleStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        final long scheduleEnd = scheduleStart + durationNanos;
+        long gracePeriodNanos = Math.max(MIN_GRACE_PERIOD_NANOS, durationNanos / 10);
+        final long issueDeadline = scheduleEnd + gracePeriodNanos;
+        long completionDeadline = issueDeadline + gracePeriodNanos;
+        long scheduledRuns = (durationNanos + intervalNanos - 1) / intervalNanos;
+        final AtomicLong nextSlot = new AtomicLong();
+        final LatencyHistogram responseTimes = new LatencyHistogram();
+        final LatencyHistogram serviceTimes = new LatencyHistogram();
+
+        ExecutorService executor = suite.getWorkerThreads().newFixedThreadPool(threadCount);
+        suite.setRunThreadCount(threadCount);
+        try {
+            List<Future<Long>> results = new ArrayList<Future<Long>>(threadCount);
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        long completed = 0;
+                        while (true) {
+                            long intendedStart = scheduleStart + nextSlot.getAndIncrement() * intervalNanos;
+                            if (intendedStart >= scheduleEnd || System.nanoTime() >= issueDeadline) {
+                                // the runs which are still scheduled past the deadline are dropped
+                                return completed;
+                            }
+                            long now;
+                            while ((now = System.nanoTime()) < intendedStart) {
+                                LockSupport.parkNanos(intendedStart - now);
+                            }
+                            AbstractPerformanceTestSuite.RunTimes times = watchdog != null ? watchdog.runIteration(suite, null)
+                                                                                           : suite.runTimed(null);
+                            responseTimes.recordValue(times.testEndNanos - intendedStart);
+                            serviceTimes.recordValue(times.testNanos());
+                            completed++;
+                        }
+                    }
+                }));
+            }
+
+            long completed = 0;
+            for (Future<Long> result : results) {
+                completed += result.get(Math.max(0, completionDeadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            long wallClockDuration = System.nanoTime() - scheduleStart;
+            if (completed < scheduledRuns) {
+                testData.recordDroppedRuns(testName, scheduledRuns - completed);
+            }
+
+            Map<String, LatencyHistogram> latencies = new HashMap<String, LatencyHistogram>();
+            latencies.put(RESPONSE_TIME, responseTimes);
+            latencies.put(SERVICE_TIME, serviceTimes);
+            testData.recordThroughput(testName, completed, wallClockDuration);
+            testData.recordOperations(testName, latencies);
+        } catch (ExecutionException e) {
+            testData.recordFailure(testName, e.getCause());
+        } catch (TimeoutException e) {
+            testData.recordFailure(testName, new TimeoutException("The runs in progress did not complete within "
+                                                                  + TimeUnit.NANOSECONDS.toMillis(gracePeriodNanos)
+                                                                  + " ms of the end of the schedule"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            testData.recordFailure(testName, e);
+        } finally {
+            suite.setRunThreadCount(1);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -17,6 +17,7 @@ public class OutputCfg {
     private final static String TEST_DATA_OUTPUT_FOLDER;
     private final static String TEST_DATA_OUTPUT_PACKAGE;
     private final static String REPORT_OUTPUT_FOLDER;
+    private final static String RESULTS_HISTORY_FOLDER;
 
     static {
         Properties configFile = new Properties();
@@ -28,6 +29,7 @@ public class OutputCfg {
         TEST_DATA_OUTPUT_FOLDER = readProperty(configFile, "test.data.output.folder");
         REPORT_OUTPUT_FOLDER = readProperty(configFile, "reports.output.folder");
         TEST_DATA_OUTPUT_PACKAGE = readProperty(configFile, "test.data.output.package");
+        RESULTS_HISTORY_FOLDER = configFile.getProperty("results.history.folder", "").trim();
     }
 
     /**
@@ -48,6 +50,16 @@ public class OutputCfg {
         return writableFolder(REPORT_OUTPUT_FOLDER);
     }
 
+    /**
+     * Returns the folder where the results of every run are kept, so that they survive <code>mvn clean</code> and can be
+     * compared across runs.
+     *
+     * @return a valid folder, or null if the results should not be kept
+     */
+    public static File resultsHistoryFolder() {
+        return RESULTS_HISTORY_FOLDER.isEmpty() ? null : writableFolder(RESULTS_HISTORY_FOLDER);
+    }
+
     /**
      * Returns the name of the package where the test data can be found in the classpath
      *
@@ -58,8 +70,8 @@ public class OutputCfg {
     }
 
     private static File writableFolder( String folderPath ) {
-        //always interpret the folder relative to the current working directory, which should be ${baseDir}
-        File folder = new File(".", folderPath);
+        //interpret relative folders against the current working directory, which should be ${baseDir}
+        File folder = new File(folderPath).isAbsolute() ? new File(folderPath) : new File(".", folderPath);
         if (folder.exists() && (!folder.isDirectory() || !folder.canWrite())) {
             throw new IllegalStateException("The path: " + folder.getAbsolutePath() + " does not represent a valid, writable folder");
         }
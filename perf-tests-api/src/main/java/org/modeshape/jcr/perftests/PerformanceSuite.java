@@ -0,0 +1,44 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Describes a performance test suite in the suite index, which is generated at build time (see {@link SuiteIndex}). Annotating
+ * a suite is optional: suites without this annotation are indexed as well, without any tags.
+ */
+@Documented
+@Retention( RetentionPolicy.RUNTIME )
+@Target( ElementType.TYPE )
+public @interface PerformanceSuite {
+
+    /**
+     * The tags of the suite (e.g. "query", "binary", "concurrency"), which can be used to select the suites to run via the
+     * <code>tests.tags</code> runner property.
+     */
+    String[] tags() default {};
+
+    /**
+     * The estimated duration of a default run of the suite, in seconds; 0 if unknown.
+     */
+    int estimatedDurationSeconds() default 0;
+}
@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples the {@link ProcessUsage OS resources} used by the JVM at a fixed interval while a suite runs, in order to tell
+ * whether the suite is CPU or I/O bound and how this changes over time.
+ * <p>
+ * The memory used by the time series is bounded: once it holds the maximum number of samples, every other sample is dropped
+ * and the interval is doubled, so that the series always covers the whole suite with evenly spaced samples.
+ * </p>
+ */
+final class ProcessSampler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessSampler.class);
+
+    private final int maxSamples;
+    private final long startMillis;
+    private final List<ProcessUsage> samples = new ArrayList<ProcessUsage>();
+    private final ScheduledExecutorService sampler;
+    private long ticks;
+    private long stride = 1;
+
+    /**
+     * Starts sampling.
+     *
+     * @param intervalMillis the number of milliseconds between two samples; must be positive
+     * @param maxSamples the maximum number of samples which are kept; must be at least 2
+     */
+    ProcessSampler( long intervalMillis,
+                    int maxSamples ) {
+        this.maxSamples = maxSamples;
+        this.startMillis = System.currentTimeMillis();
+        this.sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread( Runnable runnable ) {
+                Thread thread = new Thread(runnable, "perftests-process-sampler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.sampler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling, after taking a last sample.
+     *
+     * @return the samples, in chronological order; never null
+     */
+    synchronized List<ProcessUsage> stop() {
+        sampler.shutdownNow();
+        add(ProcessUsage.sample(System.currentTimeMillis() - startMillis));
+        return new ArrayList<ProcessUsage>(samples);
+    }
+
+    private synchronized void tick() {
+        if (sampler.isShutdown() || ticks++ % stride != 0) {
+            return;
+        }
+        try {
+            add(ProcessUsage.sample(System.currentTimeMillis() - startMillis));
+        } catch (RuntimeException e) {
+            LOGGER.warn("Cannot sample the resources used by the process; sampling stopped", e);
+            sampler.shutdown();
+        }
+    }
+
+    private void add( ProcessUsage sample ) {
+        samples.add(sample);
+        if (samples.size() >= maxSamples) {
+            // keep the even samples, which are evenly spaced at twice the interval
+            List<ProcessUsage> evenSamples = new ArrayList<ProcessUsage>(maxSamples);
+            for (int i = 0; i < samples.size(); i += 2) {
+                evenSamples.add(samples.get(i));
+            }
+            samples.clear();
+            samples.addAll(evenSamples);
+            stride *= 2;
+        }
+    }
+}
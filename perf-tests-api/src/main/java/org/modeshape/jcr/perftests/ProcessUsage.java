@@ -0,0 +1,254 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The OS resources used by the JVM, as reported by the Linux <code>/proc/self</code> files: the CPU time spent in user and
+ * kernel mode, the resident set size, the number of threads, the voluntary and involuntary context switches and the bytes read
+ * and written.
+ * <p>
+ * An instance is either a sample of the totals of the process at a given time, or the difference between two samples (see
+ * {@link #since(ProcessUsage)}), in which case the resident set size and the number of threads are those at the end of the
+ * interval. Values which cannot be read on this system are -1.
+ * </p>
+ */
+public final class ProcessUsage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String PROC_STAT = "/proc/self/stat";
+    private static final String PROC_STATUS = "/proc/self/status";
+    private static final String PROC_IO = "/proc/self/io";
+    private static final String PROC_TASKS = "/proc/self/task";
+    /** The unit of the CPU times in <code>/proc/self/stat</code> (USER_HZ), which is 100 on all the Linux architectures */
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+
+    private final long timeMillis;
+    private final long cpuUserMillis;
+    private final long cpuSystemMillis;
+    private final long residentBytes;
+    private final long threadCount;
+    private final long voluntaryContextSwitches;
+    private final long involuntaryContextSwitches;
+    private final long readBytes;
+    private final long writtenBytes;
+
+    ProcessUsage( long timeMillis,
+                  long cpuUserMillis,
+                  long cpuSystemMillis,
+                  long residentBytes,
+                  long threadCount,
+                  long voluntaryContextSwitches,
+                  long involuntaryContextSwitches,
+                  long readBytes,
+                  long writtenBytes ) {
+        this.timeMillis = timeMillis;
+        this.cpuUserMillis = cpuUserMillis;
+        this.cpuSystemMillis = cpuSystemMillis;
+        this.residentBytes = residentBytes;
+        this.threadCount = threadCount;
+        this.voluntaryContextSwitches = voluntaryContextSwitches;
+        this.involuntaryContextSwitches = involuntaryContextSwitches;
+        this.readBytes = readBytes;
+        this.writtenBytes = writtenBytes;
+    }
+
+    /**
+     * @return true if the <code>/proc</code> files of the current process can be read, i.e. if this is a Linux system
+     */
+    static boolean isSupported() {
+        return new File(PROC_STAT).canRead();
+    }
+
+    /**
+     * Reads the current totals of this process. The context switches are summed over the threads of the process, since
+     * <code>/proc/self/status</code> only counts those of the main thread; the switches of the threads which already ended are
+     * therefore not included.
+     *
+     * @param timeMillis the time of the sample, e.g. relative to the start of a suite
+     * @return a new sample, never null
+     */
+    static ProcessUsage sample( long timeMillis ) {
+        long cpuUserMillis = -1;
+        long cpuSystemMillis = -1;
+        List<String> stat = EnvironmentInfo.lines(PROC_STAT);
+        if (!stat.isEmpty()) {
+            // the name of the executable (2nd field) is in parentheses and can contain spaces, so the fields are counted from it
+            String line = stat.get(0);
+            String[] fields = line.substring(line.lastIndexOf(')') + 2).split(" ");
+            // utime and stime are the 14th and 15th fields of the whole line
+            cpuUserMillis = ticksToMillis(Long.parseLong(fields[11]));
+            cpuSystemMillis = ticksToMillis(Long.parseLong(fields[12]));
+        }
+        long residentBytes = -1;
+        long threadCount = -1;
+        for (String line : EnvironmentInfo.lines(PROC_STATUS)) {
+            if (line.startsWith("VmRSS:")) {
+                // e.g. "VmRSS:     123456 kB"
+                residentBytes = value(line) * 1024;
+            } else if (line.startsWith("Threads:")) {
+                threadCount = value(line);
+            }
+        }
+        long voluntaryContextSwitches = -1;
+        long involuntaryContextSwitches = -1;
+        String[] threadIds = new File(PROC_TASKS).list();
+        if (threadIds != null) {
+            voluntaryContextSwitches = 0;
+            involuntaryContextSwitches = 0;
+            for (String threadId : threadIds) {
+                // a thread which ended meanwhile has no lines
+                for (String line : EnvironmentInfo.lines(PROC_TASKS + "/" + threadId + "/status")) {
+                    if (line.startsWith("voluntary_ctxt_switches:")) {
+                        voluntaryContextSwitches += value(line);
+                    } else if (line.startsWith("nonvoluntary_ctxt_switches:")) {
+                        involuntaryContextSwitches += value(line);
+                    }
+                }
+            }
+        }
+        long readBytes = -1;
+        long writtenBytes = -1;
+        for (String line : EnvironmentInfo.lines(PROC_IO)) {
+            // the bytes which were actually fetched from / sent to the storage layer, as opposed to rchar / wchar
+            if (line.startsWith("read_bytes:")) {
+                readBytes = value(line);
+            } else if (line.startsWith("write_bytes:")) {
+                writtenBytes = value(line);
+            }
+        }
+        return new ProcessUsage(timeMillis, cpuUserMillis, cpuSystemMillis, residentBytes, threadCount, voluntaryContextSwitches,
+                                involuntaryContextSwitches, readBytes, writtenBytes);
+    }
+
+    /**
+     * Reads only the number of bytes this process caused to be written to the storage so far, which is much cheaper than a
+     * whole {@link #sample(long) sample}.
+     *
+     * @return the bytes written by the process, or -1 if not available
+     */
+    static long writtenBytes() {
+        for (String line : EnvironmentInfo.lines(PROC_IO)) {
+            if (line.startsWith("write_bytes:")) {
+                return value(line);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the resources used between an earlier sample and this one.
+     *
+     * @param start the earlier sample; may not be null
+     * @return a new instance, whose time is the duration of the interval
+     */
+    public ProcessUsage since( ProcessUsage start ) {
+        return new ProcessUsage(timeMillis - start.timeMillis, difference(start.cpuUserMillis, cpuUserMillis),
+                                difference(start.cpuSystemMillis, cpuSystemMillis), residentBytes, threadCount,
+                                switches(start.voluntaryContextSwitches, voluntaryContextSwitches),
+                                switches(start.involuntaryContextSwitches, involuntaryContextSwitches),
+                                difference(start.readBytes, readBytes), difference(start.writtenBytes, writtenBytes));
+    }
+
+    private static long difference( long start,
+                                    long end ) {
+        return start < 0 || end < 0 ? -1 : end - start;
+    }
+
+    private static long switches( long start,
+                                  long end ) {
+        // the switches of the threads which ended meanwhile are no longer summed, which can make the total decrease
+        return start < 0 || end < 0 ? -1 : Math.max(0, end - start);
+    }
+
+    private static long ticksToMillis( long ticks ) {
+        return ticks * 1000 / CLOCK_TICKS_PER_SECOND;
+    }
+
+    private static long value( String line ) {
+        return Long.parseLong(line.substring(line.indexOf(':') + 1).trim().split("\\s+")[0]);
+    }
+
+    /**
+     * @return the time of the sample in milliseconds (relative to the start of the sampling), or the duration of the interval
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * @return the CPU time spent by all the threads of the process in user mode, in milliseconds (with a resolution of 10ms)
+     */
+    public long getCpuUserMillis() {
+        return cpuUserMillis;
+    }
+
+    /**
+     * @return the CPU time spent by all the threads of the process in kernel mode, in milliseconds (with a resolution of 10ms)
+     */
+    public long getCpuSystemMillis() {
+        return cpuSystemMillis;
+    }
+
+    /**
+     * @return the resident set size of the process, in bytes
+     */
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * @return the number of threads of the process
+     */
+    public long getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @return the number of times the threads of the process gave up the CPU, e.g. to wait for I/O or a lock
+     */
+    public long getVoluntaryContextSwitches() {
+        return voluntaryContextSwitches;
+    }
+
+    /**
+     * @return the number of times the threads of the process were preempted, e.g. because there were more runnable threads
+     *         than CPUs
+     */
+    public long getInvoluntaryContextSwitches() {
+        return involuntaryContextSwitches;
+    }
+
+    /**
+     * @return the number of bytes the process caused to be read from the storage (reads served from the page cache are not
+     *         counted)
+     */
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    /**
+     * @return the number of bytes the process caused to be written to the storage
+     */
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+}
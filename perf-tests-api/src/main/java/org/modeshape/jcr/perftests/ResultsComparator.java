@@ -0,0 +1,270 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.commons.math.MathException;
+import org.apache.commons.math.distribution.NormalDistributionImpl;
+import org.apache.commons.math.stat.ranking.NaturalRanking;
+
+/**
+ * Compares the durations of the tests of a baseline result set against those of a candidate result set, in order to tell real
+ * regressions and improvements apart from noise.
+ * <p>
+ * For each test, the ratios (candidate / baseline) of the medians and of the 99th percentiles are estimated together with their
+ * bootstrap confidence intervals, and a Mann-Whitney U test tells whether the durations of the two result sets come from the
+ * same distribution. A test is reported as regressed or improved only if the U test is significant, the confidence interval of
+ * the median ratio doesn't include 1 and the median changed by at least a minimum amount; otherwise it is unchanged.
+ * </p>
+ */
+public final class ResultsComparator {
+
+    public static final int DEFAULT_RESAMPLES = 10000;
+    public static final double DEFAULT_CONFIDENCE_LEVEL = 0.95;
+    public static final double DEFAULT_SIGNIFICANCE_LEVEL = 0.05;
+    public static final double DEFAULT_MINIMUM_CHANGE = 0.02;
+
+    /** The largest total sample size for which the exact distribution of U is used, when there are no ties */
+    private static final int MAX_EXACT_SAMPLE_SIZE = 40;
+    private static final long SEED = 0x5EEDL;
+
+    private final int resamples;
+    private final double confidenceLevel;
+    private final double significanceLevel;
+    private final double minimumChange;
+
+    public ResultsComparator() {
+        this(DEFAULT_RESAMPLES, DEFAULT_CONFIDENCE_LEVEL, DEFAULT_SIGNIFICANCE_LEVEL, DEFAULT_MINIMUM_CHANGE);
+    }
+
+    /**
+     * @param resamples the number of bootstrap resamples from which the confidence intervals are computed
+     * @param confidenceLevel the confidence level of the intervals (e.g. 0.95)
+     * @param significanceLevel the p-value under which the U test is significant (e.g. 0.05)
+     * @param minimumChange the smallest relative change of the median which is reported (e.g. 0.02 for 2%)
+     */
+    public ResultsComparator( int resamples,
+                              double confidenceLevel,
+                              double significanceLevel,
+                              double minimumChange ) {
+        this.resamples = resamples;
+        this.confidenceLevel = confidenceLevel;
+        this.significanceLevel = significanceLevel;
+        this.minimumChange = minimumChange;
+    }
+
+    /**
+     * Compares the tests which are present in both result sets.
+     *
+     * @param baseline a map of the form [test name, (duration 1, duration 2...)]
+     * @param candidate a map of the same form
+     * @return the comparisons, in the iteration order of the baseline map; never null
+     */
+    public List<TestComparison> compare( Map<String, ? extends List<? extends Number>> baseline,
+                                         Map<String, ? extends List<? extends Number>> candidate ) {
+        List<TestComparison> comparisons = new ArrayList<TestComparison>();
+        for (Map.Entry<String, ? extends List<? extends Number>> entry : baseline.entrySet()) {
+            List<? extends Number> candidateDurations = candidate.get(entry.getKey());
+            if (candidateDurations != null && !candidateDurations.isEmpty() && !entry.getValue().isEmpty()) {
+                comparisons.add(compare(entry.getKey(), entry.getValue(), candidateDurations));
+            }
+        }
+        return comparisons;
+    }
+
+    /**
+     * Compares the durations of a test.
+     *
+     * @param testName the name of the test
+     * @param baseline the baseline durations; may not be empty
+     * @param candidate the candidate durations, in the same unit; may not be empty
+     * @return the comparison; never null
+     */
+    public TestComparison compare( String testName,
+                                   List<? extends Number> baseline,
+                                   List<? extends Number> candidate ) {
+        StatisticalData baselineData = new StatisticalData(baseline);
+        StatisticalData candidateData = new StatisticalData(candidate);
+        double[] baselineValues = baselineData.values();
+        double[] candidateValues = candidateData.values();
+
+        double medianRatio = candidateData.median() / baselineData.median();
+        double p99Ratio = candidateData.percentile(0.99) / baselineData.percentile(0.99);
+        double[][] intervals = bootstrapIntervals(baselineValues, candidateValues);
+
+        double baselineGreater = uStatistic(baselineValues, candidateValues);
+        double pairs = (double)baselineValues.length * candidateValues.length;
+        double effectSize = (pairs - 2 * baselineGreater) / pairs;
+        double pValue = mannWhitneyPValue(baselineValues, candidateValues, baselineGreater);
+
+        TestComparison.Verdict verdict = TestComparison.Verdict.UNCHANGED;
+        boolean significant = pValue < significanceLevel && Math.abs(medianRatio - 1) >= minimumChange;
+        if (significant && intervals[0][0] > 1) {
+            verdict = TestComparison.Verdict.REGRESSED;
+        } else if (significant && intervals[0][1] < 1) {
+            verdict = TestComparison.Verdict.IMPROVED;
+        }
+        return new TestComparison(testName, baselineValues.length, candidateValues.length, medianRatio, intervals[0], p99Ratio,
+                                  intervals[1], pValue, effectSize, verdict);
+    }
+
+    /**
+     * Computes the percentile bootstrap confidence intervals of the median ratio and of the 99th percentile ratio, by resampling
+     * both result sets independently.
+     *
+     * @return [[median ratio lower bound, upper bound], [p99 ratio lower bound, upper bound]]
+     */
+    private double[][] bootstrapIntervals( double[] baseline,
+                                           double[] candidate ) {
+        Random random = new Random(SEED);
+        double[] medianRatios = new double[resamples];
+        double[] p99Ratios = new double[resamples];
+        double[] baselineSample = new double[baseline.length];
+        double[] candidateSample = new double[candidate.length];
+        for (int i = 0; i < resamples; i++) {
+            resample(baseline, baselineSample, random);
+            resample(candidate, candidateSample, random);
+            medianRatios[i] = StatisticalData.median(candidateSample) / StatisticalData.median(baselineSample);
+            p99Ratios[i] = StatisticalData.percentileOfSorted(candidateSample, 0.99)
+                           / StatisticalData.percentileOfSorted(baselineSample, 0.99);
+        }
+        return new double[][] {interval(medianRatios), interval(p99Ratios)};
+    }
+
+    private static void resample( double[] values,
+                                  double[] sample,
+                                  Random random ) {
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = values[random.nextInt(values.length)];
+        }
+        Arrays.sort(sample);
+    }
+
+    private double[] interval( double[] estimates ) {
+        Arrays.sort(estimates);
+        double tail = (1 - confidenceLevel) / 2;
+        return new double[] {StatisticalData.percentileOfSorted(estimates, Math.max(tail, Double.MIN_VALUE)),
+            StatisticalData.percentileOfSorted(estimates, 1 - tail)};
+    }
+
+    /**
+     * Returns the U statistic of the first sample: the number of (first, second) pairs in which the value from the first sample is
+     * greater, ties counting as half.
+     */
+    static double uStatistic( double[] first,
+                              double[] second ) {
+        double[] ranks = new NaturalRanking().rank(concat(first, second));
+        double rankSum = 0;
+        for (int i = 0; i < first.length; i++) {
+            rankSum += ranks[i];
+        }
+        return rankSum - first.length * (first.length + 1) / 2.0;
+    }
+
+    /**
+     * Returns the two-sided p-value of the Mann-Whitney U test. The exact distribution of U is used for small samples without
+     * ties, and the normal approximation (with the tie and continuity corrections) otherwise.
+     */
+    static double mannWhitneyPValue( double[] first,
+                                     double[] second,
+                                     double u ) {
+        int n1 = first.length;
+        int n2 = second.length;
+        double[] all = concat(first, second);
+        Arrays.sort(all);
+        double tieCorrection = 0;
+        for (int i = 0; i < all.length;) {
+            int j = i;
+            while (j < all.length && all[j] == all[i]) {
+                j++;
+            }
+            double ties = j - i;
+            tieCorrection += ties * ties * ties - ties;
+            i = j;
+        }
+
+        if (tieCorrection == 0 && n1 + n2 <= MAX_EXACT_SAMPLE_SIZE) {
+            return exactPValue(n1, n2, (long)u);
+        }
+        int n = n1 + n2;
+        double variance = n1 * (double)n2 / 12.0 * ((n + 1) - tieCorrection / ((double)n * (n - 1)));
+        if (variance <= 0) {
+            //all the values are equal
+            return 1;
+        }
+        double deviation = Math.max(Math.abs(u - n1 * (double)n2 / 2) - 0.5, 0);
+        try {
+            return Math.min(1, 2 * (1 - new NormalDistributionImpl().cumulativeProbability(deviation / Math.sqrt(variance))));
+        } catch (MathException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Computes the p-value from the number of ways of obtaining each value of U, given by the recurrence
+     * count(m, n, u) = count(m - 1, n, u - n) + count(m, n - 1, u).
+     */
+    private static double exactPValue( int n1,
+                                       int n2,
+                                       long u ) {
+        double[][] counts = new double[n2 + 1][];
+        for (int n = 0; n <= n2; n++) {
+            counts[n] = new double[] {1};
+        }
+        for (int m = 1; m <= n1; m++) {
+            double[][] next = new double[n2 + 1][];
+            next[0] = new double[] {1};
+            for (int n = 1; n <= n2; n++) {
+                next[n] = new double[m * n + 1];
+                for (int value = 0; value < next[n].length; value++) {
+                    double count = value < next[n - 1].length ? next[n - 1][value] : 0;
+                    if (value >= n && value - n < counts[n].length) {
+                        count += counts[n][value - n];
+                    }
+                    next[n][value] = count;
+                }
+            }
+            counts = next;
+        }
+        double[] distribution = counts[n2];
+        double total = 0;
+        double lower = 0;
+        double upper = 0;
+        for (int value = 0; value < distribution.length; value++) {
+            total += distribution[value];
+            if (value <= u) {
+                lower += distribution[value];
+            }
+            if (value >= u) {
+                upper += distribution[value];
+            }
+        }
+        return Math.min(1, 2 * Math.min(lower, upper) / total);
+    }
+
+    private static double[] concat( double[] first,
+                                    double[] second ) {
+        double[] all = new double[first.length + second.length];
+        System.arraycopy(first, 0, all, 0, first.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        return all;
+    }
+}
@@ -0,0 +1,560 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only file to which everything recorded in a {@link TestData} is written as soon as it is recorded, so that the results
+ * of the suites which have already run survive a JVM which dies (e.g. with an <code>OutOfMemoryError</code>) before the outputs
+ * are generated at the end of the run.
+ * <p>
+ * Each record is written with a single write call and is framed by its length, so that a record cut short by the death of the
+ * JVM is recognized and dropped when the journal is read back. The records of each suite are enclosed between a "suite started"
+ * and a "suite completed" record, written by the {@link SuiteRunner}: when a run is {@link RunnerCfg#setResume(boolean)
+ * resumed}, the data of the completed suites is read back from the journal and those suites are skipped. The data of a suite
+ * which didn't complete is discarded and the suite is run again, unless its previous attempt didn't complete either, in which
+ * case its partial data is kept and it is recorded as failed, rather than letting it kill every resumed run.
+ * </p>
+ */
+final class ResultsJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultsJournal.class);
+
+    /** the number of attempts which must die before a suite isn't run again by a resumed run */
+    static final int MAX_SUITE_ATTEMPTS = 2;
+
+    private static final byte SUITE_STARTED = 1;
+    private static final byte SUITE_COMPLETED = 2;
+    private static final byte SUCCESS = 3;
+    private static final byte METRICS = 4;
+    private static final byte OPERATIONS = 5;
+    private static final byte BACKGROUND_JOB = 6;
+    private static final byte INVALID = 7;
+    private static final byte STALL = 8;
+    private static final byte THROUGHPUT = 9;
+    private static final byte WARMUP = 10;
+    private static final byte FAILURE = 11;
+    private static final byte IMPLEMENTATION = 12;
+    private static final byte ENVIRONMENT = 13;
+    private static final byte PROCESS_SAMPLES = 14;
+    private static final byte STORAGE = 15;
+    private static final byte DROPPED_RUNS = 16;
+    private static final byte THREAD_LATENCIES = 17;
+
+    private final File file;
+    private FileOutputStream output;
+    private boolean failed;
+
+    /**
+     * @param file the journal file; it is created when the first record is written
+     */
+    ResultsJournal( File file ) {
+        this.file = file;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Deletes the records of a previous run, if any.
+     */
+    void clear() {
+        close();
+        if (file.exists() && !file.delete()) {
+            throw new IllegalStateException("Cannot delete the results journal " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns the position at which the next record will be written, which can be passed to {@link #read(long, TestData)} to
+     * read only the records written after this call (e.g. by another JVM).
+     *
+     * @return a position in the journal file
+     */
+    long position() {
+        return file.length();
+    }
+
+    void suiteStarted( String suiteName ) {
+        append(SUITE_STARTED, suiteName);
+    }
+
+    /**
+     * Marks the end of a suite and forces the journal to the disk, so that the results of the suite also survive a crash of the
+     * machine.
+     */
+    void suiteCompleted( String suiteName ) {
+        append(SUITE_COMPLETED, suiteName);
+        if (output != null) {
+            try {
+                output.getFD().sync();
+            } catch (IOException e) {
+                LOGGER.warn("Cannot sync the results journal " + file.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    void recordSuccess( String testName,
+                        long durationNanos ) {
+        append(SUCCESS, testName, durationNanos);
+    }
+
+    void recordMetrics( String testName,
+                        IterationMetrics metrics ) {
+        ProcessUsage usage = metrics.getProcessUsage();
+        if (usage == null) {
+            append(METRICS, testName, metrics.getAllocatedBytes(), metrics.getGcCount(), metrics.getGcTimeMillis(),
+                   metrics.getHeapUsedBytes(), false);
+            return;
+        }
+        append(METRICS, testName, metrics.getAllocatedBytes(), metrics.getGcCount(), metrics.getGcTimeMillis(),
+               metrics.getHeapUsedBytes(), true, usage.getTimeMillis(), usage.getCpuUserMillis(), usage.getCpuSystemMillis(),
+               usage.getResidentBytes(), usage.getThreadCount(), usage.getVoluntaryContextSwitches(),
+               usage.getInvoluntaryContextSwitches(), usage.getReadBytes(), usage.getWrittenBytes());
+    }
+
+    void recordStorage( String testName,
+                        StorageMetrics storage ) {
+        append(STORAGE, testName, storage);
+    }
+
+    void recordProcessSamples( String testName,
+                               List<ProcessUsage> samples ) {
+        append(PROCESS_SAMPLES, testName, new ArrayList<ProcessUsage>(samples));
+    }
+
+    void recordOperations( String testName,
+                           Map<String, LatencyHistogram> operationLatencies ) {
+        append(OPERATIONS, testName, new HashMap<String, LatencyHistogram>(operationLatencies));
+    }
+
+    void recordThreadLatencies( String testName,
+                                List<LatencyHistogram> threadLatencies ) {
+        append(THREAD_LATENCIES, testName, new ArrayList<LatencyHistogram>(threadLatencies));
+    }
+
+    void recordBackgroundJob( String testName,
+                              BackgroundJobStats stats ) {
+        append(BACKGROUND_JOB, testName, stats);
+    }
+
+    void recordInvalid( String testName,
+                        String reason ) {
+        append(INVALID, testName, reason);
+    }
+
+    void recordStall( String testName,
+                      String description ) {
+        append(STALL, testName, description);
+    }
+
+    void recordThroughput( String testName,
+                           long runs,
+                           long wallClockNanos ) {
+        append(THROUGHPUT, testName, runs, wallClockNanos);
+    }
+
+    void recordDroppedRuns( String testName,
+                            long droppedRuns ) {
+        append(DROPPED_RUNS, testName, droppedRuns);
+    }
+
+    void recordWarmup( String testName,
+                       int warmupRuns,
+                       boolean steadyState ) {
+        append(WARMUP, testName, warmupRuns, steadyState);
+    }
+
+    void recordFailure( String testName,
+                        Throwable cause ) {
+        append(FAILURE, testName, String.valueOf(cause));
+    }
+
+    void recordImplementation( String name,
+                               String version ) {
+        if (name != null) {
+            append(IMPLEMENTATION, name, version != null ? version : "");
+        }
+    }
+
+    void recordEnvironment( EnvironmentInfo environment ) {
+        append(ENVIRONMENT, environment);
+    }
+
+    /**
+     * Writes a record to the journal. A failure to write is logged but doesn't fail the run, whose results are still kept in
+     * memory; no other record is written after such a failure, so the journal never contains a gap.
+     */
+    private synchronized void append( byte type,
+                                      Object... fields ) {
+        if (failed) {
+            return;
+        }
+        if (output == null) {
+            try {
+                output = new FileOutputStream(file, true);
+            } catch (IOException e) {
+                LOGGER.error("Cannot open the results journal " + file.getAbsolutePath() + ", the results won't be journaled", e);
+                failed = true;
+                return;
+            }
+        }
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(payload);
+            data.writeByte(type);
+            for (Object field : fields) {
+                writeField(data, field);
+            }
+            data.flush();
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream(payload.size() + 4);
+            DataOutputStream framed = new DataOutputStream(record);
+            framed.writeInt(payload.size());
+            payload.writeTo(framed);
+            framed.flush();
+            output.write(record.toByteArray());
+        } catch (IOException e) {
+            LOGGER.error("Cannot write to the results journal " + file.getAbsolutePath() + ", the results won't be journaled", e);
+            close();
+            failed = true;
+        }
+    }
+
+    private void writeField( DataOutputStream data,
+                             Object field ) throws IOException {
+        if (field instanceof String) {
+            data.writeUTF((String)field);
+        } else if (field instanceof Long) {
+            data.writeLong((Long)field);
+        } else if (field instanceof Integer) {
+            data.writeInt((Integer)field);
+        } else if (field instanceof Boolean) {
+            data.writeBoolean((Boolean)field);
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream objectOutput = new ObjectOutputStream(bytes);
+            objectOutput.writeObject(field);
+            objectOutput.close();
+            data.writeInt(bytes.size());
+            bytes.writeTo(data);
+        }
+    }
+
+    synchronized void close() {
+        if (output == null) {
+            return;
+        }
+        try {
+            output.close();
+        } catch (IOException e) {
+            LOGGER.warn("Cannot close the results journal " + file.getAbsolutePath(), e);
+        }
+        output = null;
+    }
+
+    /**
+     * Reads back the data of the suites which were completed by a previous run, so that the run can be resumed. The incomplete
+     * records at the end of the journal, if any, are removed from the file so that the new records can be appended to it.
+     *
+     * @param testData the test data to which the data of the completed suites is added
+     * @return the names of the suites which shouldn't be run again: the completed ones and the ones which didn't complete in
+     *         {@link #MAX_SUITE_ATTEMPTS} attempts; never null
+     * @throws IOException if the journal cannot be read
+     */
+    Set<String> recover( TestData testData ) throws IOException {
+        Set<String> doneSuites = new LinkedHashSet<String>();
+        if (!file.exists()) {
+            return doneSuites;
+        }
+        close();
+
+        Map<String, Integer> failedAttempts = new HashMap<String, Integer>();
+        Map<String, List<byte[]>> lastAttemptRecords = new HashMap<String, List<byte[]>>();
+        String currentSuite = null;
+        List<byte[]> currentRecords = new ArrayList<byte[]>();
+
+        RecordReader reader = new RecordReader(0);
+        try {
+            for (byte[] record = reader.next(); record != null; record = reader.next()) {
+                DataInputStream data = new DataInputStream(new ByteArrayInputStream(record));
+                byte type = data.readByte();
+                if (type == SUITE_STARTED) {
+                    if (currentSuite != null) {
+                        attemptDied(currentSuite, currentRecords, failedAttempts, lastAttemptRecords);
+                    }
+                    currentSuite = data.readUTF();
+                    currentRecords = new ArrayList<byte[]>();
+                } else if (type == SUITE_COMPLETED) {
+                    for (byte[] suiteRecord : currentRecords) {
+                        apply(suiteRecord, testData);
+                    }
+                    doneSuites.add(data.readUTF());
+                    currentSuite = null;
+                    currentRecords = new ArrayList<byte[]>();
+                } else if (currentSuite != null) {
+                    currentRecords.add(record);
+                } else {
+                    apply(record, testData);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        if (currentSuite != null) {
+            attemptDied(currentSuite, currentRecords, failedAttempts, lastAttemptRecords);
+        }
+        truncate(reader.validLength);
+
+        for (Map.Entry<String, Integer> entry : failedAttempts.entrySet()) {
+            String suiteName = entry.getKey();
+            if (doneSuites.contains(suiteName)) {
+                continue;
+            }
+            if (entry.getValue() < MAX_SUITE_ATTEMPTS) {
+                LOGGER.warn("The previous run died while running {}, which will be run again", suiteName);
+                continue;
+            }
+            LOGGER.warn("{} attempts to run {} died, keeping the results of the last one", entry.getValue(), suiteName);
+            for (byte[] suiteRecord : lastAttemptRecords.get(suiteName)) {
+                apply(suiteRecord, testData);
+            }
+            testData.recordFailure(suiteName, new IllegalStateException("The JVM died while running " + suiteName + " "
+                                                                        + entry.getValue() + " times"));
+            doneSuites.add(suiteName);
+        }
+        LOGGER.info("Resuming the run recorded in {}: {} suites already done", file.getAbsolutePath(), doneSuites.size());
+        return doneSuites;
+    }
+
+    private void attemptDied( String suiteName,
+                              List<byte[]> records,
+                              Map<String, Integer> failedAttempts,
+                              Map<String, List<byte[]>> lastAttemptRecords ) {
+        Integer attempts = failedAttempts.get(suiteName);
+        failedAttempts.put(suiteName, attempts == null ? 1 : attempts + 1);
+        lastAttemptRecords.put(suiteName, records);
+    }
+
+    /**
+     * Reads the data records which were written after a given position, regardless of the suite they belong to. This is used to
+     * collect the results of a suite run by another JVM, including the partial results of a JVM which died.
+     *
+     * @param position a position returned by {@link #position()}
+     * @param testData the test data to which the records are added
+     * @throws IOException if the journal cannot be read
+     */
+    void read( long position,
+               TestData testData ) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        RecordReader reader = new RecordReader(position);
+        try {
+            for (byte[] record = reader.next(); record != null; record = reader.next()) {
+                apply(record, testData);
+            }
+        } finally {
+            reader.close();
+        }
+        // another JVM may have died in the middle of a record, which must not be followed by the next ones
+        truncate(reader.validLength);
+    }
+
+    private void truncate( long validLength ) throws IOException {
+        if (validLength == file.length()) {
+            return;
+        }
+        LOGGER.warn("Dropping {} bytes of incomplete records at the end of {}", file.length() - validLength,
+                    file.getAbsolutePath());
+        close();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(validLength);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void apply( byte[] record,
+                        TestData testData ) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = data.readByte();
+        switch (type) {
+            case SUCCESS:
+                testData.addDuration(data.readUTF(), data.readLong());
+                break;
+            case METRICS: {
+                String testName = data.readUTF();
+                long allocatedBytes = data.readLong();
+                long gcCount = data.readLong();
+                long gcTimeMillis = data.readLong();
+                long heapUsedBytes = data.readLong();
+                ProcessUsage usage = null;
+                if (data.readBoolean()) {
+                    usage = new ProcessUsage(data.readLong(), data.readLong(), data.readLong(), data.readLong(), data.readLong(),
+                                             data.readLong(), data.readLong(), data.readLong(), data.readLong());
+                }
+                testData.recordMetrics(testName, new IterationMetrics(allocatedBytes, gcCount, gcTimeMillis, heapUsedBytes, usage));
+                break;
+            }
+            case OPERATIONS: {
+                String testName = data.readUTF();
+                @SuppressWarnings( "unchecked" )
+                Map<String, LatencyHistogram> operationLatencies = (Map<String, LatencyHistogram>)readObject(data);
+                testData.recordOperations(testName, operationLatencies);
+                break;
+            }
+            case THREAD_LATENCIES: {
+                String testName = data.readUTF();
+                @SuppressWarnings( "unchecked" )
+                List<LatencyHistogram> threadLatencies = (List<LatencyHistogram>)readObject(data);
+                testData.recordThreadLatencies(testName, threadLatencies);
+                break;
+            }
+            case BACKGROUND_JOB:
+                testData.recordBackgroundJob(data.readUTF(), (BackgroundJobStats)readObject(data));
+                break;
+            case INVALID:
+                testData.recordInvalid(data.readUTF(), data.readUTF());
+                break;
+            case STALL:
+                testData.recordStall(data.readUTF(), data.readUTF());
+                break;
+            case THROUGHPUT:
+                testData.recordThroughput(data.readUTF(), data.readLong(), data.readLong());
+                break;
+            case DROPPED_RUNS:
+                testData.recordDroppedRuns(data.readUTF(), data.readLong());
+                break;
+            case WARMUP:
+                testData.recordWarmup(data.readUTF(), data.readInt(), data.readBoolean());
+                break;
+            case FAILURE:
+                testData.recordFailure(data.readUTF(), new JournaledFailure(data.readUTF()));
+                break;
+            case IMPLEMENTATION:
+                testData.recordImplementation(data.readUTF(), data.readUTF());
+                break;
+            case ENVIRONMENT:
+                testData.recordEnvironment((EnvironmentInfo)readObject(data));
+                break;
+            case STORAGE:
+                testData.recordStorage(data.readUTF(), (StorageMetrics)readObject(data));
+                break;
+            case PROCESS_SAMPLES: {
+                String testName = data.readUTF();
+                @SuppressWarnings( "unchecked" )
+                List<ProcessUsage> samples = (List<ProcessUsage>)readObject(data);
+                testData.recordProcessSamples(testName, samples);
+                break;
+            }
+            default:
+                // suite markers are only meaningful when recovering
+                break;
+        }
+    }
+
+    private Object readObject( DataInputStream data ) throws IOException {
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return objectInput.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class in the results journal: " + e.getMessage());
+        } finally {
+            objectInput.close();
+        }
+    }
+
+    /**
+     * Reads the framed records of the journal file, one at a time, stopping at the first incomplete one.
+     */
+    private final class RecordReader {
+
+        private final DataInputStream input;
+        private long validLength;
+
+        private RecordReader( long position ) throws IOException {
+            FileInputStream fileInput = new FileInputStream(file);
+            if (fileInput.skip(position) != position) {
+                fileInput.close();
+                throw new IOException("The results journal " + file.getAbsolutePath() + " is shorter than " + position + " bytes");
+            }
+            this.input = new DataInputStream(new BufferedInputStream(fileInput));
+            this.validLength = position;
+        }
+
+        private byte[] next() throws IOException {
+            try {
+                int length = input.readInt();
+                if (length <= 0) {
+                    return null;
+                }
+                byte[] record = new byte[length];
+                input.readFully(record);
+                validLength += length + 4;
+                return record;
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        private void close() throws IOException {
+            input.close();
+        }
+    }
+
+    /**
+     * The failure of a test read back from the journal, of which only the description is known.
+     */
+    private static final class JournaledFailure extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private JournaledFailure( String description ) {
+            super(description);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
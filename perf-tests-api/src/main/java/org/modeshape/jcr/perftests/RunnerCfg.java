@@ -16,12 +16,14 @@
  */
 package org.modeshape.jcr.perftests;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import javax.jcr.Repository;
 import javax.jcr.RepositoryFactory;
 import org.slf4j.Logger;
@@ -49,14 +51,61 @@ public final class RunnerCfg {
      */
     private static final int DEFAULT_WARMUP_COUNT = 1;
 
+    /**
+     * The default value for the {@link #setOpenLoopRates(int, int, int...) open loop duration} is {@value} seconds.
+     */
+    private static final int DEFAULT_OPEN_LOOP_DURATION = 10;
+
+    /**
+     * The default values for the {@link #setSteadyStateWarmup(int, double, int) steady state warmup} parameters.
+     */
+    private static final int DEFAULT_STEADY_STATE_WINDOW = 5;
+    private static final double DEFAULT_STEADY_STATE_MAX_CV = 0.05;
+    private static final int DEFAULT_STEADY_STATE_MAX_RUNS = 50;
+
+    /**
+     * The default value for the {@link #setProcessSampling(int) process sampling interval} is {@value} milliseconds.
+     */
+    private static final int DEFAULT_PROCESS_SAMPLING_INTERVAL = 1000;
+
     final List<String> excludeTestsRegExp = new ArrayList<String>();
     final List<String> includeTestsRegExp = new ArrayList<String>();
+    final List<String> includeTags = new ArrayList<String>();
     private Callable<?> beforeRunningSuiteRunnable;
     private AfterOperation afterRunningSuiteRunnable;
+    private AfterOperation beforeRestartingRepositoryRunnable;
     final Properties configurationProperties;
 
     int repeatCount = DEFAULT_REPEAT_COUNT;
     int warmupCount = DEFAULT_WARMUP_COUNT;
+    final List<Integer> threadCounts = new ArrayList<Integer>();
+    final List<Integer> openLoopRates = new ArrayList<Integer>();
+    int openLoopDurationSeconds = DEFAULT_OPEN_LOOP_DURATION;
+    int openLoopThreadCount = 1;
+    int warmupDurationSeconds = 0;
+    int measureDurationSeconds = 0;
+    boolean steadyStateWarmup = false;
+    int steadyStateWindow = DEFAULT_STEADY_STATE_WINDOW;
+    double steadyStateMaxCv = DEFAULT_STEADY_STATE_MAX_CV;
+    int steadyStateMaxRuns = DEFAULT_STEADY_STATE_MAX_RUNS;
+    boolean virtualThreads = false;
+    boolean fork = false;
+    final List<String> forkJvmArgs = new ArrayList<String>();
+    boolean flightRecording = false;
+    String flightRecordingSettings = "profile";
+    int retainedSamples = TestData.DEFAULT_RETAINED_SAMPLES;
+    int watchdogTimeoutSeconds = 0;
+    double watchdogMedianFactor = 0;
+    boolean watchdogAbort = false;
+    boolean resume = false;
+    int processSamplingIntervalMillis = DEFAULT_PROCESS_SAMPLING_INTERVAL;
+    boolean storageMetrics = true;
+    boolean storageContentMetrics = false;
+    boolean populatedColdStart = true;
+    /** The directories in which the repository stores its content, see {@link #setStorageMetrics(boolean)} */
+    final List<File> storageDirectories = new ArrayList<File>();
+    /** The {@link AbstractImplementationTest} subclass which created this configuration, used when forking child JVMs */
+    String implementationClassName;
 
     RunnerCfg( String fileName ) {
         configurationProperties = new Properties();
@@ -134,6 +183,18 @@ public final class RunnerCfg {
         return this;
     }
 
+    /**
+     * Adds tags to select the tests to run: when tags are set, only the tests which have at least one of them (see
+     * {@link PerformanceSuite#tags()}) are run, in addition to the include/exclude patterns.
+     *
+     * @param tags the tags of the tests that should be included (e.g. "query", "binary", "concurrency")
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg addTagsToInclude( String... tags ) {
+        this.includeTags.addAll(Arrays.asList(tags));
+        return this;
+    }
+
     /**
      * Set the number of times the tests should be repeated (after warming up). The value will affect the quality of the
      * statistical results. The default is {@link #DEFAULT_REPEAT_COUNT}.
@@ -158,11 +219,305 @@ public final class RunnerCfg {
         return this;
     }
 
+    /**
+     * Set time budgets for the warmup and the measured phases, instead of fixed iteration counts. When a budget is set, each test
+     * is run repeatedly until the budget is spent (but at least once) and every run is recorded, so that fast suites produce many
+     * samples while slow suites don't take longer than the budget. By default, no budgets are set and the
+     * {@link #setWarmupCount(int) warmup count} and {@link #setRepeatCount(int) repeat count} are used.
+     *
+     * @param warmupDurationSeconds the warmup time budget, in seconds; 0 means the warmup count is used instead
+     * @param measureDurationSeconds the measurement time budget, in seconds; 0 means the repeat count is used instead
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setDurations( int warmupDurationSeconds,
+                                   int measureDurationSeconds ) {
+        this.warmupDurationSeconds = warmupDurationSeconds;
+        this.measureDurationSeconds = measureDurationSeconds;
+        return this;
+    }
+
+    /**
+     * Enables the steady state warmup: instead of running a fixed number of warmup iterations, each test is warmed up until the
+     * coefficient of variation (standard deviation / mean) of the durations of its last <code>window</code> runs drops to
+     * <code>maxCoefficientOfVariation</code> or below. The {@link #setWarmupCount(int) warmup count} becomes the minimum number
+     * of warmup runs, while <code>maxRuns</code> (and the warmup duration, if set) cap the warmup of tests which never
+     * stabilise.
+     *
+     * @param window the number of consecutive runs over which the stability is judged; must be at least 2
+     * @param maxCoefficientOfVariation the stability threshold (e.g. 0.05 for 5%)
+     * @param maxRuns the maximum number of warmup runs
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setSteadyStateWarmup( int window,
+                                           double maxCoefficientOfVariation,
+                                           int maxRuns ) {
+        this.steadyStateWarmup = true;
+        this.steadyStateWindow = window;
+        this.steadyStateMaxCv = maxCoefficientOfVariation;
+        this.steadyStateMaxRuns = maxRuns;
+        return this;
+    }
+
+    long warmupDurationNanos() {
+        return TimeUnit.SECONDS.toNanos(warmupDurationSeconds);
+    }
+
+    long measureDurationNanos() {
+        return TimeUnit.SECONDS.toNanos(measureDurationSeconds);
+    }
+
+    /**
+     * Set the numbers of threads with which the suites that support concurrent runs are executed, after the regular
+     * (single-threaded) measurements. For each value, the test is repeated by that many threads at the same time, each thread
+     * using its own session. By default, no multi-threaded runs are performed.
+     *
+     * @param threadCounts the concurrency levels (e.g. 1, 2, 4, 8)
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setThreadCounts( int... threadCounts ) {
+        this.threadCounts.clear();
+        for (int threadCount : threadCounts) {
+            this.threadCounts.add(threadCount);
+        }
+        return this;
+    }
+
+    /**
+     * Set the arrival rates at which each suite is additionally run in open-loop mode, after the regular runs. In this mode, runs
+     * are issued on a fixed schedule and their latency is measured from their intended start time, so that stalls of the
+     * repository are not hidden by a slower issue rate. By default, no open-loop runs are performed.
+     *
+     * @param durationSeconds how long each rate should be sustained, in seconds
+     * @param threadCount the number of threads issuing the scheduled runs; values greater than 1 are only used for suites which
+     * support concurrent runs
+     * @param ratesPerSecond the target rates, in runs per second
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setOpenLoopRates( int durationSeconds,
+                                       int threadCount,
+                                       int... ratesPerSecond ) {
+        this.openLoopDurationSeconds = durationSeconds;
+        this.openLoopThreadCount = threadCount;
+        this.openLoopRates.clear();
+        for (int rate : ratesPerSecond) {
+            this.openLoopRates.add(validOpenLoopRate(rate));
+        }
+        return this;
+    }
+
+    private static int validOpenLoopRate( int ratePerSecond ) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid open-loop rate: " + ratePerSecond + " (must be greater than 0)");
+        }
+        return ratePerSecond;
+    }
+
+    /**
+     * Sets whether the background jobs and the concurrent workers of the suites should run on virtual threads instead of
+     * platform threads, so that suites can be run with tens of thousands of concurrent sessions (e.g. via the
+     * {@link #setThreadCounts(int...) thread counts} or the suite parameters). Requires a JDK 21+ runtime.
+     *
+     * @param virtualThreads true if virtual threads should be used
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setVirtualThreads( boolean virtualThreads ) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    /**
+     * Sets whether each test suite should be run in a fresh child JVM, so that the garbage, JIT profiles and threads left by a
+     * suite don't influence the next one. Forking is only possible for runners created by an {@link AbstractImplementationTest}.
+     *
+     * @param fork true if each suite should be run in its own JVM
+     * @param jvmArgs the arguments of the child JVMs
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setFork( boolean fork,
+                              String... jvmArgs ) {
+        this.fork = fork;
+        this.forkJvmArgs.clear();
+        this.forkJvmArgs.addAll(Arrays.asList(jvmArgs));
+        return this;
+    }
+
+    /**
+     * Sets whether a Java Flight Recorder recording should be made of the measured runs of each suite. The recordings (and their
+     * text summaries) are written next to the other test data output.
+     *
+     * @param flightRecording true if the suites should be recorded
+     * @param settings the JFR settings: "default", "profile" or the path to a .jfc file
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setFlightRecording( boolean flightRecording,
+                                         String settings ) {
+        this.flightRecording = flightRecording;
+        this.flightRecordingSettings = settings;
+        return this;
+    }
+
+    /**
+     * Sets the number of most recent durations (and JVM metrics) of each test which are kept as raw samples, and are written to
+     * the csv output. The statistics of the older runs are only kept in a histogram with a bounded relative error, so that the
+     * memory used by the runner doesn't grow with the duration of the tests. The default is
+     * {@link TestData#DEFAULT_RETAINED_SAMPLES}.
+     *
+     * @param retainedSamples the number of samples; must be positive
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setRetainedSamples( int retainedSamples ) {
+        this.retainedSamples = retainedSamples;
+        return this;
+    }
+
+    /**
+     * Configures the watchdog which detects the iterations of the suites that stall. For each stalled iteration, a thread dump
+     * (with the owners of the contended locks) and the heap statistics are written next to the other test data output.
+     *
+     * @param timeoutSeconds the number of seconds after which an iteration is considered stalled, or 0 for no fixed timeout
+     * @param medianFactor the number of times the median duration of the previous iterations after which an iteration is
+     *        considered stalled, or 0 to disable this check
+     * @param abort true if stalled iterations should be aborted, failing the suite, false if they should be left running
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setWatchdog( int timeoutSeconds,
+                                  double medianFactor,
+                                  boolean abort ) {
+        this.watchdogTimeoutSeconds = timeoutSeconds;
+        this.watchdogMedianFactor = medianFactor;
+        this.watchdogAbort = abort;
+        return this;
+    }
+
+    /**
+     * Sets whether the run should resume the previous one, instead of starting over. Everything recorded by a run is journaled
+     * as soon as it is recorded, next to the other test data output: when resuming, the results of the suites completed by the
+     * previous run are read back from its journal and those suites are skipped, so that a run which died (e.g. with an
+     * <code>OutOfMemoryError</code>) doesn't have to be started over. The outputs are then generated from all the results.
+     *
+     * @param resume true if the previous run should be resumed
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setResume( boolean resume ) {
+        this.resume = resume;
+        return this;
+    }
+
+    /**
+     * Sets the interval at which the OS resources used by the JVM (CPU user and system time, resident memory, threads, context
+     * switches and the bytes read and written) are sampled from <code>/proc</code> while each suite runs. The resources used by
+     * each measured run are recorded as well, so that it can be told whether a suite is CPU or I/O bound. Sampling is only
+     * possible on Linux. The default is {@link #DEFAULT_PROCESS_SAMPLING_INTERVAL}.
+     *
+     * @param intervalMillis the number of milliseconds between two samples, or 0 to disable the sampling
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setProcessSampling( int intervalMillis ) {
+        this.processSamplingIntervalMillis = intervalMillis;
+        return this;
+    }
+
+    /**
+     * Sets whether the storage used by each suite is measured, when the repository configuration persists its content in the
+     * test directories (see {@link AbstractImplementationTest}): the bytes on disk of its content, binaries and indexes before
+     * the suite is set up and at the end of the measured runs, and the bytes written by the process during the measured
+     * iterations. The default is true.
+     *
+     * @param storageMetrics true if the storage should be measured
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setStorageMetrics( boolean storageMetrics ) {
+        this.storageMetrics = storageMetrics;
+        return this;
+    }
+
+    /**
+     * Sets whether the nodes and the logical bytes saved by each measured iteration, and the growth of the storage meanwhile, are
+     * measured as well when the {@link #setStorageMetrics(boolean) storage is measured}. This traverses the whole workspace and
+     * the test directories before and after each iteration, which isn't timed but loads the workspace into the caches of the
+     * repository and creates garbage, and therefore affects the measured durations. The default is false.
+     *
+     * @param storageContentMetrics true if the content saved by each iteration should be measured
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setStorageContentMetrics( boolean storageContentMetrics ) {
+        this.storageContentMetrics = storageContentMetrics;
+        return this;
+    }
+
+    /**
+     * Sets whether the cold start of a populated repository is measured before the suites are run: the repository is populated
+     * with a generated dataset (which includes binary values), shut down and started again against the same directories. This is
+     * only done when the repository configuration persists its content in the test directories (see
+     * {@link AbstractImplementationTest}). The default is true.
+     *
+     * @param populatedColdStart true if the cold start of a populated repository should be measured
+     * @return this runner configuration (for method chaining purposes)
+     */
+    public RunnerCfg setPopulatedColdStart( boolean populatedColdStart ) {
+        this.populatedColdStart = populatedColdStart;
+        return this;
+    }
+
+    boolean processSamplingEnabled() {
+        return processSamplingIntervalMillis > 0 && ProcessUsage.isSupported();
+    }
+
+    boolean watchdogEnabled() {
+        return watchdogTimeoutSeconds > 0 || watchdogMedianFactor > 0;
+    }
+
     private void initRunner( Properties configParams ) {
         parseMultiValuedString(configParams.getProperty("tests.exclude"), excludeTestsRegExp);
         parseMultiValuedString(configParams.getProperty("tests.include"), includeTestsRegExp);
+        parseMultiValuedString(configParams.getProperty("tests.tags"), includeTags);
         repeatCount = Integer.valueOf(configParams.getProperty("repeat.count", Integer.toString(DEFAULT_REPEAT_COUNT)));
         warmupCount = Integer.valueOf(configParams.getProperty("warmup.count", Integer.toString(DEFAULT_WARMUP_COUNT)));
+        warmupDurationSeconds = Integer.valueOf(configParams.getProperty("warmup.duration", "0"));
+        measureDurationSeconds = Integer.valueOf(configParams.getProperty("measure.duration", "0"));
+        steadyStateWarmup = Boolean.valueOf(configParams.getProperty("warmup.steadyState", "false"));
+        steadyStateWindow = Integer.valueOf(configParams.getProperty("warmup.steadyState.window",
+                                                                     Integer.toString(DEFAULT_STEADY_STATE_WINDOW)));
+        steadyStateMaxCv = Double.valueOf(configParams.getProperty("warmup.steadyState.maxCv",
+                                                                   Double.toString(DEFAULT_STEADY_STATE_MAX_CV)));
+        steadyStateMaxRuns = Integer.valueOf(configParams.getProperty("warmup.steadyState.maxRuns",
+                                                                      Integer.toString(DEFAULT_STEADY_STATE_MAX_RUNS)));
+        List<String> threads = new ArrayList<String>();
+        parseMultiValuedString(configParams.getProperty("threads"), threads);
+        threadCounts.clear();
+        for (String threadCount : threads) {
+            threadCounts.add(Integer.valueOf(threadCount));
+        }
+        List<String> rates = new ArrayList<String>();
+        parseMultiValuedString(configParams.getProperty("openloop.rates"), rates);
+        openLoopRates.clear();
+        for (String rate : rates) {
+            openLoopRates.add(validOpenLoopRate(Integer.valueOf(rate)));
+        }
+        openLoopDurationSeconds = Integer.valueOf(configParams.getProperty("openloop.duration",
+                                                                           Integer.toString(DEFAULT_OPEN_LOOP_DURATION)));
+        openLoopThreadCount = Integer.valueOf(configParams.getProperty("openloop.threads", "1"));
+        virtualThreads = Boolean.valueOf(configParams.getProperty("threads.virtual", "false"));
+        flightRecording = Boolean.valueOf(configParams.getProperty("jfr", "false"));
+        flightRecordingSettings = configParams.getProperty("jfr.settings", "profile");
+        retainedSamples = Integer.valueOf(configParams.getProperty("samples.retained",
+                                                                   Integer.toString(TestData.DEFAULT_RETAINED_SAMPLES)));
+        watchdogTimeoutSeconds = Integer.valueOf(configParams.getProperty("watchdog.timeout", "0"));
+        watchdogMedianFactor = Double.valueOf(configParams.getProperty("watchdog.medianFactor", "0"));
+        watchdogAbort = Boolean.valueOf(configParams.getProperty("watchdog.abort", "false"));
+        resume = Boolean.valueOf(configParams.getProperty("resume", "false"));
+        storageMetrics = Boolean.valueOf(configParams.getProperty("storage.metrics", "true"));
+        storageContentMetrics = Boolean.valueOf(configParams.getProperty("storage.content", "false"));
+        populatedColdStart = Boolean.valueOf(configParams.getProperty("coldstart.populated", "true"));
+        processSamplingIntervalMillis = Integer.valueOf(configParams.getProperty("process.sampling.interval",
+                                                                                 Integer.toString(DEFAULT_PROCESS_SAMPLING_INTERVAL)));
+        fork = Boolean.valueOf(configParams.getProperty("fork", "false"));
+        forkJvmArgs.clear();
+        for (String jvmArg : configParams.getProperty("fork.jvmArgs", "").split("\\s+")) {
+            if (!jvmArg.isEmpty()) {
+                forkJvmArgs.add(jvmArg);
+            }
+        }
     }
 
     protected void parseMultiValuedString( String multiValueString,
@@ -186,6 +541,16 @@ public final class RunnerCfg {
         afterRunningSuiteRunnable = operation;
     }
 
+    /**
+     * Registers the operation which shuts a repository down without removing its content, so that it can be started again
+     * against the same directories (see {@link #setPopulatedColdStart(boolean)}).
+     *
+     * @param operation the operation; may be null
+     */
+    public void runBeforeRestartingRepository( AfterOperation operation ) {
+        beforeRestartingRepositoryRunnable = operation;
+    }
+
     public void beforeRunningSuite() throws Exception {
         if (beforeRunningSuiteRunnable != null) {
             beforeRunningSuiteRunnable.call();
@@ -199,6 +564,13 @@ public final class RunnerCfg {
         }
     }
 
+    public void beforeRestartingRepository( RepositoryFactory repositoryFactory,
+                                            Repository repository ) throws Exception {
+        if (beforeRestartingRepositoryRunnable != null) {
+            beforeRestartingRepositoryRunnable.call(repositoryFactory, repository);
+        }
+    }
+
     public static interface AfterOperation {
         void call( RepositoryFactory repositoryFactory,
                    Repository repository ) throws Exception;
@@ -19,7 +19,6 @@ package org.modeshape.jcr.perftests;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import org.apache.commons.math.stat.descriptive.SummaryStatistics;
 
 /**
  * Class which provides various statistical information based on a number of numerical values.
@@ -29,42 +28,98 @@ import org.apache.commons.math.stat.descriptive.SummaryStatistics;
 public final class StatisticalData {
 
     private final double[] values;
-    private final SummaryStatistics summaryStatistics;
+    private final double standardDeviation;
 
     public StatisticalData( List<? extends Number> valuesList ) {
-        this(valuesList.toArray(valuesList.toArray(new Number[valuesList.size()])));
+        this(toDoubles(valuesList));
     }
 
     public StatisticalData( Number... values ) {
+        this(toDoubles(values));
+    }
+
+    /**
+     * Creates the statistical data of primitive values, e.g. the samples of a {@link DurationRecorder}, without boxing them.
+     *
+     * @param values the values; may not be null or empty
+     */
+    public StatisticalData( long[] values ) {
+        this(toDoubles(values));
+    }
+
+    /**
+     * @param values the values, which are copied; may not be null or empty
+     */
+    public StatisticalData( double[] values ) {
         if (values == null || values.length == 0) {
             throw new IllegalArgumentException("The set of values for the statistical data cannot be empty or null");
         }
-        this.summaryStatistics = new SummaryStatistics();
+        this.values = values.clone();
+        // store the values in ascending order
+        Arrays.sort(this.values);
+        this.standardDeviation = standardDeviation(this.values);
+    }
+
+    private static double[] toDoubles( List<? extends Number> values ) {
+        double[] result = new double[values.size()];
+        int i = 0;
         for (Number value : values) {
-            this.summaryStatistics.addValue(value.doubleValue());
+            result[i++] = value.doubleValue();
         }
-        this.values = new double[values.length];
+        return result;
+    }
+
+    private static double[] toDoubles( Number[] values ) {
+        if (values == null) {
+            return null;
+        }
+        double[] result = new double[values.length];
         for (int i = 0; i < values.length; i++) {
-            this.values[i] = values[i].doubleValue();
+            result[i] = values[i].doubleValue();
         }
-        // store the values in ascending order
-        Arrays.sort(this.values);
+        return result;
+    }
+
+    private static double[] toDoubles( long[] values ) {
+        if (values == null) {
+            return null;
+        }
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the sample standard deviation, computed with the two pass algorithm, or 0 for a single value.
+     */
+    private static double standardDeviation( double[] values ) {
+        if (values.length == 1) {
+            return 0;
+        }
+        double mean = avg(values);
+        double squaredDeviations = 0;
+        for (double value : values) {
+            squaredDeviations += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(squaredDeviations / (values.length - 1));
     }
 
     public long count() {
-        return summaryStatistics.getN();
+        return values.length;
     }
 
     public double min() {
-        return summaryStatistics.getMin();
+        return values[0];
     }
 
     public double max() {
-        return summaryStatistics.getMax();
+        return values[values.length - 1];
     }
 
     public double standardDeviation() {
-        return summaryStatistics.getStandardDeviation();
+        return standardDeviation;
     }
 
     public double lowerQuartile() {
@@ -99,10 +154,28 @@ public final class StatisticalData {
                                                                                                                                    values.length));
     }
 
+    /**
+     * Returns the value below which a given fraction of the values fall, using the nearest rank method (e.g. the 99th
+     * percentile of 10 values is the largest of them).
+     *
+     * @param fraction the fraction of the values, between 0 (exclusive) and 1 (inclusive)
+     * @return the percentile
+     */
+    public double percentile( double fraction ) {
+        return percentileOfSorted(values, fraction);
+    }
+
     public double[] fiveNumberSummary() {
         return new double[] {min(), lowerQuartile(), median(), upperQuartile(), max()};
     }
 
+    /**
+     * @return a copy of the values, in ascending order
+     */
+    public double[] values() {
+        return values.clone();
+    }
+
     public List<Double> valuesList() {
         List<Double> result = new ArrayList<Double>(values.length);
         for (double value : values) {
@@ -111,7 +184,16 @@ public final class StatisticalData {
         return result;
     }
 
-    private double median( double... values ) {
+    static double percentileOfSorted( double[] sortedValues,
+                                      double fraction ) {
+        if (fraction <= 0 || fraction > 1) {
+            throw new IllegalArgumentException("The fraction must be in (0, 1]: " + fraction);
+        }
+        int rank = (int)Math.ceil(fraction * sortedValues.length);
+        return sortedValues[Math.max(rank, 1) - 1];
+    }
+
+    static double median( double... values ) {
         if (values.length == 1) {
             return values[0];
         }
@@ -122,7 +204,7 @@ public final class StatisticalData {
         return values[middleIdx];
     }
 
-    private double avg( double... values ) {
+    private static double avg( double... values ) {
         double sum = 0;
         for (double value : values) {
             sum += value;
@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+/**
+ * Detects when the durations of consecutive runs of a test have stabilised, by computing the coefficient of variation (standard
+ * deviation / mean) over a sliding window of the most recent durations. The test is considered to be in a steady state once the
+ * window is full and its coefficient of variation is not greater than a given threshold.
+ */
+final class SteadyStateDetector {
+
+    private final long[] window;
+    private final double maxCoefficientOfVariation;
+    private int sampleCount;
+
+    SteadyStateDetector( int windowSize,
+                         double maxCoefficientOfVariation ) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("The steady state window must contain at least 2 runs");
+        }
+        this.window = new long[windowSize];
+        this.maxCoefficientOfVariation = maxCoefficientOfVariation;
+    }
+
+    /**
+     * Adds the duration of a new run to the sliding window.
+     *
+     * @param durationNanos the duration of the run
+     * @return true if, after adding the duration, the runs are in a steady state
+     */
+    boolean addSample( long durationNanos ) {
+        window[sampleCount % window.length] = durationNanos;
+        sampleCount++;
+        return isSteady();
+    }
+
+    boolean isSteady() {
+        return sampleCount >= window.length && coefficientOfVariation() <= maxCoefficientOfVariation;
+    }
+
+    double coefficientOfVariation() {
+        int size = Math.min(sampleCount, window.length);
+        if (size < 2) {
+            return Double.NaN;
+        }
+        double mean = 0;
+        for (int i = 0; i < size; i++) {
+            mean += window[i];
+        }
+        mean /= size;
+        if (mean == 0) {
+            return 0;
+        }
+        double variance = 0;
+        for (int i = 0; i < size; i++) {
+            variance += (window[i] - mean) * (window[i] - mean);
+        }
+        variance /= size - 1;
+        return Math.sqrt(variance) / mean;
+    }
+}
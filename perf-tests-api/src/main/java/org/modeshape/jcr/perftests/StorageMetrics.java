@@ -0,0 +1,184 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The storage used by a suite which was run against a persistent repository configuration: the bytes on disk of the
+ * directories of the configuration (by {@link #CONTENT content}, {@link #BINARIES binaries}, {@link #INDEXES indexes} and
+ * {@link #OTHER other} files) at the end of the measured runs and before the suite was set up, and - summed over the measured
+ * iterations, from the end of <code>beforeTestRun()</code> to the start of <code>afterTestRun()</code> - the bytes written by
+ * the process to the storage and, if they were requested, the growth of the storage and the nodes and the logical bytes (i.e.
+ * the lengths of the property values) which the iterations saved to the workspace.
+ * <p>
+ * From these, the bytes on disk per node and the write amplification (the bytes written per logical byte stored) are derived.
+ * Since the process counters include every write of the process, the bytes which the runner itself appended to the results
+ * journal and to the log files are reported separately.
+ * </p>
+ */
+public final class StorageMetrics implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    /** The persistent store of the nodes, e.g. the ModeShape "content" folder or the Jackrabbit Derby databases */
+    public static final String CONTENT = "content";
+    /** The binary store, e.g. the ModeShape "binaries" folder or the Jackrabbit data store */
+    public static final String BINARIES = "binaries";
+    /** The query indexes */
+    public static final String INDEXES = "indexes";
+    /** Any other file written by the repository */
+    public static final String OTHER = "other";
+
+    private final Map<String, Long> diskBytes;
+    private final long initialDiskBytes;
+    private final int iterationCount;
+    private final long iterationDiskGrowthBytes;
+    private final long nodeCount;
+    private final long logicalBytes;
+    private final long writtenBytes;
+    private final long journalBytes;
+    private final long logBytes;
+
+    StorageMetrics( Map<String, Long> diskBytes,
+                    long initialDiskBytes,
+                    int iterationCount,
+                    long iterationDiskGrowthBytes,
+                    long nodeCount,
+                    long logicalBytes,
+                    long writtenBytes,
+                    long journalBytes,
+                    long logBytes ) {
+        this.diskBytes = new TreeMap<String, Long>(diskBytes);
+        this.initialDiskBytes = initialDiskBytes;
+        this.iterationCount = iterationCount;
+        this.iterationDiskGrowthBytes = iterationDiskGrowthBytes;
+        this.nodeCount = nodeCount;
+        this.logicalBytes = logicalBytes;
+        this.writtenBytes = writtenBytes;
+        this.journalBytes = journalBytes;
+        this.logBytes = logBytes;
+    }
+
+    /**
+     * @return the bytes on disk at the end of the measured runs, by kind of file ({@link #CONTENT}, {@link #BINARIES},
+     *         {@link #INDEXES} or {@link #OTHER}); never null
+     */
+    public Map<String, Long> getDiskBytesByKind() {
+        return Collections.unmodifiableMap(diskBytes);
+    }
+
+    /**
+     * @param kind a kind of file, e.g. {@link #CONTENT}
+     * @return the bytes on disk of the files of the given kind at the end of the measured runs
+     */
+    public long getDiskBytes( String kind ) {
+        Long bytes = diskBytes.get(kind);
+        return bytes != null ? bytes : 0;
+    }
+
+    /**
+     * @return the total bytes on disk at the end of the measured runs
+     */
+    public long getDiskBytes() {
+        long total = 0;
+        for (Long bytes : diskBytes.values()) {
+            total += bytes;
+        }
+        return total;
+    }
+
+    /**
+     * @return the bytes by which the storage grew between the set up of the suite and the end of the measured runs
+     */
+    public long getDiskGrowthBytes() {
+        return getDiskBytes() - initialDiskBytes;
+    }
+
+    /**
+     * @return the number of measured iterations over which the nodes, the logical bytes and the written bytes were summed
+     */
+    public int getIterationCount() {
+        return iterationCount;
+    }
+
+    /**
+     * @return the bytes by which the storage grew during the measured iterations, i.e. before the cleanup of each iteration, or
+     *         -1 if it wasn't measured
+     */
+    public long getIterationDiskGrowthBytes() {
+        return iterationDiskGrowthBytes;
+    }
+
+    /**
+     * @return the number of nodes (outside of <code>/jcr:system</code>) which the measured iterations saved to the workspace,
+     *         or -1 if they weren't counted or the workspace couldn't be read
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the total length of the property values which the measured iterations saved to the workspace, or -1 if they
+     *         weren't counted or the workspace couldn't be read; the length of a binary value is its number of bytes and that of any other value the
+     *         number of characters of its string form
+     */
+    public long getLogicalBytes() {
+        return logicalBytes;
+    }
+
+    /**
+     * @return the bytes written by the whole process to the storage during the measured iterations, as reported by
+     *         <code>/proc/self/io</code>, or -1 if not available
+     */
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * @return the bytes appended to the results journal between the set up of the suite and the end of the measured runs, or -1
+     *         if the results weren't journaled
+     */
+    public long getJournalBytes() {
+        return journalBytes;
+    }
+
+    /**
+     * @return the bytes appended to the log files between the set up of the suite and the end of the measured runs, or -1 if the
+     *         log files are not known
+     */
+    public long getLogBytes() {
+        return logBytes;
+    }
+
+    /**
+     * @return the growth of the storage during the measured iterations per node they saved, or NaN if they didn't save any node
+     */
+    public double getDiskBytesPerNode() {
+        return nodeCount > 0 ? (double) iterationDiskGrowthBytes / nodeCount : Double.NaN;
+    }
+
+    /**
+     * @return the bytes written to the storage per logical byte saved by the measured iterations, or NaN if not available
+     */
+    public double getWriteAmplification() {
+        return writtenBytes >= 0 && logicalBytes > 0 ? (double) writtenBytes / logicalBytes : Double.NaN;
+    }
+}
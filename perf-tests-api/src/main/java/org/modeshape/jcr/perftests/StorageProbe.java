@@ -0,0 +1,307 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.jcr.Credentials;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the {@link StorageMetrics storage} used by a suite. The bytes on disk of the directories of the repository
+ * configuration (see the <code>tests.dirs</code> property of {@link AbstractImplementationTest}) are measured before the suite is
+ * set up and at the end of its measured runs. The bytes written by the process are measured at the start and at the end of each
+ * measured iteration (i.e. after <code>beforeTestRun()</code> and before <code>afterTestRun()</code>, which usually removes what
+ * the iteration saved), and the differences are summed. The bytes appended to the results journal and to the log files are
+ * measured separately.
+ * <p>
+ * Optionally, the nodes and the logical bytes of the workspace and the bytes on disk are measured around each measured iteration
+ * as well. This traverses the whole workspace and the directories twice per iteration: it isn't timed, but it loads the whole
+ * workspace into the caches of the repository and creates garbage, which affects the following iterations, so it is only done
+ * when requested.
+ * <p>
+ * Each file is classified by the nearest of its parent directories whose name is a well known one: e.g. the ModeShape
+ * "content", "binaries" and "indexes" folders and the Jackrabbit "db" (Derby), "datastore" and "index" folders. The sizes are
+ * the lengths of the files, which may differ from the blocks allocated for them by the file system.
+ * </p>
+ */
+final class StorageProbe {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StorageProbe.class);
+
+    private static final Map<String, String> KIND_BY_DIRECTORY_NAME = new HashMap<String, String>();
+
+    static {
+        for (String name : Arrays.asList("content", "db")) {
+            KIND_BY_DIRECTORY_NAME.put(name, StorageMetrics.CONTENT);
+        }
+        for (String name : Arrays.asList("binaries", "datastore")) {
+            KIND_BY_DIRECTORY_NAME.put(name, StorageMetrics.BINARIES);
+        }
+        for (String name : Arrays.asList("indexes", "index")) {
+            KIND_BY_DIRECTORY_NAME.put(name, StorageMetrics.INDEXES);
+        }
+    }
+
+    private final List<File> directories;
+    private final Repository repository;
+    private final Credentials credentials;
+    private final File journalFile;
+    private final List<File> logFiles;
+    private final boolean countContent;
+    private long initialDiskBytes;
+    private long initialJournalBytes;
+    private long initialLogBytes;
+
+    private int iterationCount;
+    private long iterationDiskGrowthBytes;
+    private long nodeCount;
+    private long logicalBytes;
+    private long writtenBytes;
+    private long[] iterationStartContent;
+    private long iterationStartDiskBytes;
+    private long iterationStartWrittenBytes;
+
+    /**
+     * @param directories the directories in which the repository stores its content; may not be null
+     * @param repository the repository whose workspace is measured; may not be null
+     * @param credentials the credentials used to read the workspace; may be null
+     * @param journalFile the file of the results journal, or null if the results aren't journaled
+     * @param logFiles the files to which the log is written, see {@link #logFiles()}; may not be null
+     * @param countContent true if the workspace and the directories should be measured around each iteration
+     */
+    StorageProbe( List<File> directories,
+                  Repository repository,
+                  Credentials credentials,
+                  File journalFile,
+                  List<File> logFiles,
+                  boolean countContent ) {
+        this.directories = directories;
+        this.repository = repository;
+        this.credentials = credentials;
+        this.journalFile = journalFile;
+        this.logFiles = logFiles;
+        this.countContent = countContent;
+    }
+
+    /**
+     * @param directories a list of directories; may not be null
+     * @return true if any file of the given directories is not empty, i.e. if the repository stores its content on disk
+     */
+    static boolean hasStoredContent( List<File> directories ) {
+        return !diskBytes(directories).isEmpty();
+    }
+
+    /**
+     * Returns the files to which the log is written, if log4j is the logging backend: those of its root file appenders.
+     *
+     * @return a list of files, never null
+     */
+    static List<File> logFiles() {
+        List<File> files = new ArrayList<File>();
+        try {
+            Class<?> fileAppenderClass = Class.forName("org.apache.log4j.FileAppender");
+            Object rootLogger = Class.forName("org.apache.log4j.LogManager").getMethod("getRootLogger").invoke(null);
+            Enumeration<?> appenders = (Enumeration<?>)rootLogger.getClass().getMethod("getAllAppenders").invoke(rootLogger);
+            while (appenders.hasMoreElements()) {
+                Object appender = appenders.nextElement();
+                if (fileAppenderClass.isInstance(appender)) {
+                    Object fileName = fileAppenderClass.getMethod("getFile").invoke(appender);
+                    if (fileName != null) {
+                        files.add(new File(fileName.toString()));
+                    }
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            // another logging backend
+        } catch (Exception e) {
+            LOGGER.debug("Cannot read the log4j appenders", e);
+        }
+        return files;
+    }
+
+    /**
+     * Takes the initial measurements; should be called before the suite is set up.
+     */
+    void start() {
+        initialDiskBytes = total(diskBytes(directories));
+        initialJournalBytes = journalFile != null ? journalFile.length() : -1;
+        initialLogBytes = length(logFiles);
+        iterationCount = 0;
+        iterationDiskGrowthBytes = countContent ? 0 : -1;
+        nodeCount = countContent ? 0 : -1;
+        logicalBytes = countContent ? 0 : -1;
+        writtenBytes = 0;
+    }
+
+    /**
+     * Takes the measurements of the start of a measured iteration; should be called after <code>beforeTestRun()</code>.
+     */
+    void iterationStarted() {
+        if (countContent) {
+            iterationStartContent = nodeCount >= 0 ? workspaceContent() : null;
+            iterationStartDiskBytes = total(diskBytes(directories));
+        }
+        // read last, so that the window only covers the iteration
+        iterationStartWrittenBytes = ProcessUsage.writtenBytes();
+    }
+
+    /**
+     * Takes the measurements of the end of a measured iteration and adds the differences to the totals; should be called before
+     * <code>afterTestRun()</code>.
+     */
+    void iterationFinished() {
+        // read first, so that the window only covers the iteration
+        long endWrittenBytes = ProcessUsage.writtenBytes();
+        iterationCount++;
+        if (writtenBytes >= 0 && iterationStartWrittenBytes >= 0 && endWrittenBytes >= 0) {
+            writtenBytes += endWrittenBytes - iterationStartWrittenBytes;
+        } else {
+            writtenBytes = -1;
+        }
+        if (!countContent) {
+            return;
+        }
+        iterationDiskGrowthBytes += total(diskBytes(directories)) - iterationStartDiskBytes;
+        long[] endContent = iterationStartContent != null ? workspaceContent() : null;
+        if (endContent != null) {
+            // an iteration which removes content doesn't save anything
+            nodeCount += Math.max(0, endContent[0] - iterationStartContent[0]);
+            logicalBytes += Math.max(0, endContent[1] - iterationStartContent[1]);
+        } else {
+            nodeCount = -1;
+            logicalBytes = -1;
+        }
+    }
+
+    /**
+     * Takes the final measurements; should be called at the end of the measured runs, before the suite is torn down.
+     *
+     * @return the storage used by the suite, never null
+     */
+    StorageMetrics stop() {
+        long journalBytes = initialJournalBytes >= 0 ? journalFile.length() - initialJournalBytes : -1;
+        long logBytes = initialLogBytes >= 0 ? Math.max(0, length(logFiles) - initialLogBytes) : -1;
+        return new StorageMetrics(diskBytes(directories), initialDiskBytes, iterationCount, iterationDiskGrowthBytes, nodeCount,
+                                  logicalBytes, iterationCount > 0 ? writtenBytes : -1, journalBytes, logBytes);
+    }
+
+    /**
+     * Returns the number of nodes and the total length of the property values of the workspace, outside of
+     * <code>/jcr:system</code>, or null if the workspace cannot be read.
+     */
+    private long[] workspaceContent() {
+        try {
+            Session session = repository.login(credentials);
+            try {
+                long[] content = new long[2];
+                addContent(session.getRootNode(), content);
+                return content;
+            } finally {
+                session.logout();
+            }
+        } catch (RepositoryException e) {
+            LOGGER.warn("Cannot count the nodes of the workspace", e);
+            return null;
+        }
+    }
+
+    private static void addContent( Node node,
+                                    long[] content ) throws RepositoryException {
+        content[0]++;
+        for (PropertyIterator properties = node.getProperties(); properties.hasNext();) {
+            Property property = properties.nextProperty();
+            if (property.isMultiple()) {
+                for (long length : property.getLengths()) {
+                    content[1] += Math.max(0, length);
+                }
+            } else {
+                content[1] += Math.max(0, property.getLength());
+            }
+        }
+        for (NodeIterator children = node.getNodes(); children.hasNext();) {
+            Node child = children.nextNode();
+            if (!"jcr:system".equals(child.getName())) {
+                addContent(child, content);
+            }
+        }
+    }
+
+    private static Map<String, Long> diskBytes( List<File> directories ) {
+        Map<String, Long> bytesByKind = new TreeMap<String, Long>();
+        for (File directory : directories) {
+            addDiskBytes(directory, StorageMetrics.OTHER, bytesByKind);
+        }
+        return bytesByKind;
+    }
+
+    private static void addDiskBytes( File file,
+                                      String kind,
+                                      Map<String, Long> bytesByKind ) {
+        File[] children = file.listFiles();
+        if (children == null) {
+            // a file, or a directory which was removed meanwhile
+            long length = file.length();
+            if (length > 0) {
+                Long bytes = bytesByKind.get(kind);
+                bytesByKind.put(kind, bytes != null ? bytes + length : length);
+            }
+            return;
+        }
+        for (File child : children) {
+            String childKind = child.isDirectory() && KIND_BY_DIRECTORY_NAME.containsKey(child.getName())
+                               ? KIND_BY_DIRECTORY_NAME.get(child.getName()) : kind;
+            addDiskBytes(child, childKind, bytesByKind);
+        }
+    }
+
+    /**
+     * Returns the total length of the given files, or -1 if there are none.
+     */
+    private static long length( List<File> files ) {
+        if (files.isEmpty()) {
+            return -1;
+        }
+        long length = 0;
+        for (File file : files) {
+            length += file.length();
+        }
+        return length;
+    }
+
+    private static long total( Map<String, Long> bytesByKind ) {
+        long total = 0;
+        for (Long bytes : bytesByKind.values()) {
+            total += bytes;
+        }
+        return total;
+    }
+}
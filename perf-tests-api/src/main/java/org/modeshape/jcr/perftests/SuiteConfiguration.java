@@ -19,43 +19,94 @@ package org.modeshape.jcr.perftests;
 import javax.jcr.Credentials;
 import javax.jcr.Repository;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Holder for the properties used to configure a test suite. Some of the configuration properties can be loaded from a config
  * file (e.g. testsuite.properties)
+ * <p>
+ * Suites read their parameters via the typed getters (e.g. {@link #getInt(String, int)}), passing the default value of each
+ * parameter. A parameter named {@code param} is looked up as {@code testsuite.config.<SuiteName>.param} and then as
+ * {@code testsuite.config.param}. A value can also be a sweep: a comma separated list of values and/or {@code from..to[:step]}
+ * integer ranges, wrapped in {@code sweep(...)} (e.g. {@code sweep(10,100,1000)} or {@code sweep(1..8:2)}), in which case
+ * {@link SuiteRunner} runs the suite once for each value and tags the results with the values of the parameters (e.g.
+ * {@code CreateChildNodesTestSuite[nodeCount=100]}). Any other value, even if it contains commas, is a single value.
+ * </p>
  *
  * @author Horia Chiorean
  */
 public final class SuiteConfiguration {
 
+    private static final String PROPERTY_PREFIX = "testsuite.config.";
+    private static final Pattern SWEEP_PATTERN = Pattern.compile("sweep\\((.*)\\)", Pattern.DOTALL);
+    private static final Pattern RANGE_PATTERN = Pattern.compile("(-?\\d+)\\.\\.(-?\\d+)(?::(\\d+))?");
     private static final int DEFAULT_NODE_COUNT = 10;
+    /** The seed of the random data of the suites, when none is configured */
+    static final long DEFAULT_SEED = 42L;
 
     private final Repository repository;
     private final Credentials credentials;
-    private final int nodeCount;
+    private final Properties properties;
+    private final String suiteName;
+    /** the values of the swept parameters for the current run, [parameter name, value] */
+    private final Map<String, String> sweepValues;
+    /** the parameters read by the suite which have multiple values, [parameter name, values] */
+    private final Map<String, List<String>> sweeps = Collections.synchronizedMap(new TreeMap<String, List<String>>());
 
     SuiteConfiguration( Repository repository, Credentials credentials, String configFile ) throws IOException {
+        this(repository, credentials, loadPropertiesFile(configFile), null, Collections.<String, String>emptyMap());
+    }
+
+    private SuiteConfiguration( Repository repository,
+                                Credentials credentials,
+                                Properties properties,
+                                String suiteName,
+                                Map<String, String> sweepValues ) {
         this.repository = repository;
         this.credentials = credentials;
-        Properties properties  = loadPropertiesFile(configFile);
-        String nodeCount = properties.getProperty("testsuite.config.nodeCount");
-        if (nodeCount != null && !nodeCount.isEmpty()) {
-            this.nodeCount = Integer.valueOf(nodeCount);
-        }
-        else {
-            this.nodeCount = DEFAULT_NODE_COUNT;
-        }
+        this.properties = properties;
+        this.suiteName = suiteName;
+        this.sweepValues = sweepValues;
     }
 
-    private Properties loadPropertiesFile( String configFile ) throws IOException {
+    private static Properties loadPropertiesFile( String configFile ) throws IOException {
         Properties suiteProperties = new Properties();
-        suiteProperties.load(getClass().getClassLoader().getResourceAsStream(configFile));
+        suiteProperties.load(SuiteConfiguration.class.getClassLoader().getResourceAsStream(configFile));
         return suiteProperties;
     }
 
+    /**
+     * Creates a configuration for running a given suite, where the given swept parameters have fixed values.
+     *
+     * @param suiteName the simple name of the suite class, used to look up suite-specific parameters
+     * @param sweepValues the values of the swept parameters, [parameter name, value]
+     * @return a new configuration, never null
+     */
+    SuiteConfiguration forSuite( String suiteName,
+                                 Map<String, String> sweepValues ) {
+        return new SuiteConfiguration(repository, credentials, properties, suiteName, sweepValues);
+    }
+
     public int getNodeCount() {
-        return nodeCount;
+        return getInt("nodeCount", DEFAULT_NODE_COUNT);
+    }
+
+    /**
+     * Returns the seed from which the suites derive their random data (the {@code seed} parameter), so that two runs of a suite
+     * with the same configuration read and write the same content.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return getLong("seed", DEFAULT_SEED);
     }
 
     public Repository getRepository() {
@@ -65,4 +116,167 @@ public final class SuiteConfiguration {
     public Credentials getCredentials() {
         return credentials;
     }
+
+    /**
+     * Returns the value of an integer suite parameter.
+     *
+     * @param name the name of the parameter, without the {@code testsuite.config.} prefix
+     * @param defaultValue the value used when the parameter isn't configured
+     * @return the value of the parameter
+     */
+    public int getInt( String name,
+                       int defaultValue ) {
+        String value = getValue(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    /**
+     * Returns the value of a long suite parameter.
+     *
+     * @param name the name of the parameter, without the {@code testsuite.config.} prefix
+     * @param defaultValue the value used when the parameter isn't configured
+     * @return the value of the parameter
+     */
+    public long getLong( String name,
+                         long defaultValue ) {
+        String value = getValue(name);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    /**
+     * Returns the value of a boolean suite parameter.
+     *
+     * @param name the name of the parameter, without the {@code testsuite.config.} prefix
+     * @param defaultValue the value used when the parameter isn't configured
+     * @return the value of the parameter
+     */
+    public boolean getBoolean( String name,
+                               boolean defaultValue ) {
+        String value = getValue(name);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    /**
+     * Returns the value of a string suite parameter.
+     *
+     * @param name the name of the parameter, without the {@code testsuite.config.} prefix
+     * @param defaultValue the value used when the parameter isn't configured
+     * @return the value of the parameter
+     */
+    public String getString( String name,
+                             String defaultValue ) {
+        String value = getValue(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private String getValue( String name ) {
+        String value = null;
+        if (suiteName != null) {
+            value = properties.getProperty(PROPERTY_PREFIX + suiteName + "." + name);
+        }
+        if (value == null || value.trim().isEmpty()) {
+            value = properties.getProperty(PROPERTY_PREFIX + name);
+        }
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        Matcher sweep = SWEEP_PATTERN.matcher(value.trim());
+        if (!sweep.matches()) {
+            return value.trim();
+        }
+        List<String> values = parseValues(sweep.group(1));
+        if (values.size() > 1) {
+            sweeps.put(name, values);
+        }
+        return sweepValues.containsKey(name) ? sweepValues.get(name) : values.get(0);
+    }
+
+    /**
+     * Returns the parameters which were read so far and which have several values.
+     *
+     * @return a map of [parameter name, values], never null
+     */
+    Map<String, List<String>> getSweeps() {
+        synchronized (sweeps) {
+            return new TreeMap<String, List<String>>(sweeps);
+        }
+    }
+
+    /**
+     * Returns a tag describing the values of the swept parameters, to be appended to the names of the results.
+     *
+     * @return a tag like {@code [nodeCount=100,fileSize=1024]}, or an empty string if no parameter is swept
+     */
+    String getParameterTag() {
+        Map<String, List<String>> currentSweeps = getSweeps();
+        if (currentSweeps.isEmpty()) {
+            return "";
+        }
+        StringBuilder tag = new StringBuilder("[");
+        for (Map.Entry<String, List<String>> entry : currentSweeps.entrySet()) {
+            if (tag.length() > 1) {
+                tag.append(",");
+            }
+            String name = entry.getKey();
+            tag.append(name).append("=").append(sweepValues.containsKey(name) ? sweepValues.get(name) : entry.getValue().get(0));
+        }
+        return tag.append("]").toString();
+    }
+
+    /**
+     * Expands the values of a sweep, which may contain comma separated values and {@code from..to[:step]} ranges.
+     *
+     * @param value the values between the parentheses of {@code sweep(...)}
+     * @return the list of values, never empty
+     */
+    static List<String> parseValues( String value ) {
+        List<String> values = new ArrayList<String>();
+        for (String token : value.split(",")) {
+            token = token.trim();
+            if (token.isEmpty()) {
+                continue;
+            }
+            Matcher range = RANGE_PATTERN.matcher(token);
+            if (!range.matches()) {
+                values.add(token);
+                continue;
+            }
+            long from = Long.parseLong(range.group(1));
+            long to = Long.parseLong(range.group(2));
+            long step = range.group(3) != null ? Long.parseLong(range.group(3)) : 1;
+            if (step <= 0 || to < from) {
+                throw new IllegalArgumentException("Invalid range: " + token);
+            }
+            for (long i = from; i <= to; i += step) {
+                values.add(Long.toString(i));
+            }
+        }
+        if (values.isEmpty()) {
+            values.add(value.trim());
+        }
+        return values;
+    }
+
+    /**
+     * Returns all the combinations of values of the given parameters.
+     *
+     * @param sweeps the values of each parameter, [parameter name, values]
+     * @return a list of [parameter name, value] maps, in the order in which the parameters and the values were given
+     */
+    static List<Map<String, String>> combinations( Map<String, List<String>> sweeps ) {
+        List<Map<String, String>> combinations = new ArrayList<Map<String, String>>();
+        combinations.add(new LinkedHashMap<String, String>());
+        for (Map.Entry<String, List<String>> entry : sweeps.entrySet()) {
+            List<Map<String, String>> expanded = new ArrayList<Map<String, String>>();
+            for (Map<String, String> combination : combinations) {
+                for (String value : entry.getValue()) {
+                    Map<String, String> newCombination = new LinkedHashMap<String, String>(combination);
+                    newCombination.put(entry.getKey(), value);
+                    expanded.add(newCombination);
+                }
+            }
+            combinations = expanded;
+        }
+        return combinations;
+    }
 }
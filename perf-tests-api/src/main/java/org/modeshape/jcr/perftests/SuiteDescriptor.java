@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The entry of a performance test suite in a {@link SuiteIndex}: the name of the suite class, its tags and its estimated
+ * duration, which are known without loading the class.
+ */
+public final class SuiteDescriptor {
+
+    private final String className;
+    private final Set<String> tags;
+    private final int estimatedDurationSeconds;
+
+    public SuiteDescriptor( String className,
+                            String[] tags,
+                            int estimatedDurationSeconds ) {
+        this.className = className;
+        this.tags = Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(tags)));
+        this.estimatedDurationSeconds = estimatedDurationSeconds;
+    }
+
+    /**
+     * Creates the descriptor of a suite class, from its {@link PerformanceSuite} annotation.
+     *
+     * @param suiteClass the class of a suite; may not be null
+     * @return a descriptor, never null
+     */
+    static SuiteDescriptor forClass( Class<? extends AbstractPerformanceTestSuite> suiteClass ) {
+        PerformanceSuite annotation = suiteClass.getAnnotation(PerformanceSuite.class);
+        return annotation != null ? new SuiteDescriptor(suiteClass.getName(), annotation.tags(),
+                                                        annotation.estimatedDurationSeconds()) : new SuiteDescriptor(
+                suiteClass.getName(), new String[0], 0);
+    }
+
+    /**
+     * @return the fully qualified (binary) name of the suite class
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the name of the suite class, without its package (and enclosing classes)
+     */
+    public String getSimpleName() {
+        return className.substring(Math.max(className.lastIndexOf('.'), className.lastIndexOf('$')) + 1);
+    }
+
+    /**
+     * @return the tags of the suite, never null
+     */
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    /**
+     * @return the estimated duration of a default run of the suite, in seconds; 0 if unknown
+     */
+    public int getEstimatedDurationSeconds() {
+        return estimatedDurationSeconds;
+    }
+
+    /**
+     * Loads the class of the suite.
+     *
+     * @return the suite class, never null
+     * @throws ClassNotFoundException if the class cannot be found
+     */
+    Class<? extends AbstractPerformanceTestSuite> loadClass() throws ClassNotFoundException {
+        return Class.forName(className, false, SuiteDescriptor.class.getClassLoader()).asSubclass(AbstractPerformanceTestSuite.class);
+    }
+
+    @Override
+    public String toString() {
+        return className + tags;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.util.List;
+
+/**
+ * An index of performance test suites, generated at build time by the <code>perf-tests-index</code> annotation processor and
+ * loaded via {@link java.util.ServiceLoader}, so that the runner doesn't have to scan the classpath for suites.
+ */
+public interface SuiteIndex {
+
+    /**
+     * @return the descriptors of all the concrete suites in the index, never null
+     */
+    List<SuiteDescriptor> getSuites();
+}
@@ -16,21 +16,47 @@
  */
 package org.modeshape.jcr.perftests;
 
+import javax.jcr.Binary;
 import javax.jcr.Credentials;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
 import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
 import javax.jcr.RepositoryFactory;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
 import org.modeshape.jcr.perftests.output.CsvOutput;
+import org.modeshape.jcr.perftests.output.HistoryOutput;
+import org.modeshape.jcr.perftests.util.BinaryImpl;
 import org.reflections.Reflections;
 import org.reflections.scanners.TypesScanner;
 import org.reflections.util.ClasspathHelper;
 import org.reflections.util.ConfigurationBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -46,6 +72,24 @@ public final class SuiteRunner {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SuiteRunner.class);
 
+    /** the lifecycle hooks of the suites whose durations are recorded separately from the measured runs */
+    private static final String BEFORE_SUITE = "beforeSuite";
+    private static final String BEFORE_TEST_RUN = "beforeTestRun";
+    private static final String AFTER_TEST_RUN = "afterTestRun";
+    private static final String AFTER_SUITE = "afterSuite";
+
+    /** the fraction of failed executions of a background job above which the measured runs are flagged as invalid */
+    private static final double MAX_BACKGROUND_JOB_ERROR_RATIO = 0.5;
+
+    /** the suffix of the file to which the results are journaled while they are recorded */
+    private static final String JOURNAL_FILE_SUFFIX = ".journal";
+    /** the name of the test which records the cold start of the repository before each suite */
+    private static final String INIT_OPERATION_NAME = "Repository initialization";
+    /** the name of the test which records the cold start of a populated repository, see {@link RunnerCfg#setPopulatedColdStart} */
+    private static final String POPULATED_INIT_OPERATION_NAME = "Repository initialization (populated)";
+    /** the name of the root node of the content of the populated repository */
+    private static final String COLD_START_FIXTURE = "coldStartFixture";
+
     private final TestData testData;
     private final RunnerCfg runnerConfig;
 
@@ -67,7 +111,7 @@ public final class SuiteRunner {
      */
     public SuiteRunner( String repositoryName,
                         RunnerCfg runnerConfig ) {
-        this.testData = new TestData(repositoryName);
+        this.testData = new TestData(repositoryName, runnerConfig.retainedSamples);
         this.runnerConfig = runnerConfig;
     }
 
@@ -83,35 +127,190 @@ public final class SuiteRunner {
     public void runPerformanceTests( Map<?, ?> repositoryConfigParams,
                                      Credentials credentials ) throws Exception {
         // Load the test suite, and run each suite by itself with a clean repository ...
-        Set<Class<? extends AbstractPerformanceTestSuite>> testSuites = loadPerformanceTestSuites();
-        for (Class<? extends AbstractPerformanceTestSuite> testSuiteClass : testSuites) {
+        Set<Class<? extends AbstractPerformanceTestSuite>> testSuites = selectedTestSuites();
+        boolean fork = runnerConfig.fork;
+        if (fork && runnerConfig.implementationClassName == null) {
+            LOGGER.warn("Suites can only be run in forked JVMs by an AbstractImplementationTest; running them in this JVM");
+            fork = false;
+        }
 
-            // Before running each suite ...
-            runnerConfig.beforeRunningSuite();
+        ResultsJournal journal = new ResultsJournal(journalFile());
+        Set<String> doneSuites = Collections.emptySet();
+        if (runnerConfig.resume) {
+            doneSuites = journal.recover(testData);
+        } else {
+            journal.clear();
+        }
+        testData.setJournal(journal);
+        testData.recordEnvironment(EnvironmentInfo.capture(runnerConfig));
+        if (runnerConfig.processSamplingIntervalMillis > 0 && !ProcessUsage.isSupported()) {
+            LOGGER.warn("The resources used by the process can only be sampled on Linux; process sampling is disabled");
+        }
+        try {
+            if (runnerConfig.populatedColdStart && !runnerConfig.storageDirectories.isEmpty()) {
+                runPopulatedColdStart(repositoryConfigParams, credentials);
+            }
+            for (Class<? extends AbstractPerformanceTestSuite> testSuiteClass : testSuites) {
+                String suiteName = testSuiteClass.getName();
+                if (doneSuites.contains(suiteName)) {
+                    LOGGER.info("Skipping {}, which was done by the resumed run", testSuiteClass.getSimpleName());
+                    continue;
+                }
+                journal.suiteStarted(suiteName);
+                if (!fork) {
+                    runPerformanceTest(testSuiteClass, repositoryConfigParams, credentials);
+                } else {
+                    new ForkedSuiteRun(testSuiteClass, journal).execute();
+                }
+                journal.suiteCompleted(suiteName);
+            }
+        } finally {
+            testData.setJournal(null);
+            journal.close();
+        }
 
-            // Run the suite ...
-            RepositoryFactory repositoryFactory = null;
-            Repository repository = null;
-            try {
-                for (RepositoryFactory factory : ServiceLoader.load(RepositoryFactory.class)) {
-                    repository = new RepositoryInitRun(credentials, factory, repositoryConfigParams).execute();
-                    if (repository == null) {
-                        continue;
-                    }
+        new CsvOutput().generateOutput(testData);
+        File historyFolder = OutputCfg.resultsHistoryFolder();
+        if (historyFolder != null) {
+            new HistoryOutput(historyFolder, runnerConfig.configurationProperties).generateOutput(testData);
+        }
+    }
+
+    /**
+     * Runs a single test suite in the current JVM, against a clean repository. If some of the parameters of the suite are swept,
+     * the suite is run again for each combination of their values, each time against a clean repository.
+     *
+     * @param testSuiteClass the class of the suite
+     * @param repositoryConfigParams a map of config params {@link javax.jcr.RepositoryFactory#getRepository(java.util.Map)}
+     * @param credentials a set of credentials which may be needed by a certain repo to run. It can be null.
+     * @throws Exception if anything unexpected happens during the run
+     */
+    void runPerformanceTest( Class<? extends AbstractPerformanceTestSuite> testSuiteClass,
+                             Map<?, ?> repositoryConfigParams,
+                             Credentials credentials ) throws Exception {
+        // the first run uses the first value of each parameter and tells which parameters are swept
+        List<Map<String, String>> combinations = Collections.singletonList(Collections.<String, String>emptyMap());
+        for (int i = 0; i < combinations.size(); i++) {
+            Map<String, List<String>> sweeps = runPerformanceTest(testSuiteClass, repositoryConfigParams, credentials,
+                                                                  combinations.get(i));
+            if (i == 0 && sweeps != null) {
+                combinations = SuiteConfiguration.combinations(sweeps);
+            }
+        }
+    }
 
+    /**
+     * Runs a test suite once, with the given values of its swept parameters, against a clean repository.
+     *
+     * @return the swept parameters of the suite, or null if the suite wasn't run
+     */
+    private Map<String, List<String>> runPerformanceTest( Class<? extends AbstractPerformanceTestSuite> testSuiteClass,
+                                                          Map<?, ?> repositoryConfigParams,
+                                                          Credentials credentials,
+                                                          Map<String, String> parameterValues ) throws Exception {
+        // Before running each suite ...
+        runnerConfig.beforeRunningSuite();
+
+        // Run the suite ...
+        RepositoryFactory repositoryFactory = null;
+        Repository repository = null;
+        try {
+            for (RepositoryFactory factory : ServiceLoader.load(RepositoryFactory.class)) {
+                repository = new RepositoryInitRun(credentials, factory, repositoryConfigParams).execute();
+                if (repository == null) {
+                    continue;
+                }
+
+                repositoryFactory = factory;
+                SuiteConfiguration suiteConfiguration = new SuiteConfiguration(repository, credentials,
+                                                                               "testsuite.properties");
+                return runTestSuite(suiteConfiguration, testSuiteClass, parameterValues);
+            }
+            return null;
+        } finally {
+            // Always after the suite is run ...
+            runnerConfig.afterRunningSuite(repositoryFactory, repository);
+        }
+    }
+
+    /**
+     * Measures the cold start of a populated repository, as the "Repository initialization (populated)" test and its phases: a
+     * clean repository is populated with a generated dataset (which includes binary values, some of them in an
+     * <code>nt:file</code> node), shut down without removing its content and started again. Nothing is recorded if the
+     * repository doesn't persist its content in the test directories, or if the content didn't survive the restart (e.g. for an
+     * in-memory repository which only writes its configuration to the directories). The results are not journaled, so the
+     * cold start is measured again when a run is resumed.
+     */
+    private void runPopulatedColdStart( Map<?, ?> repositoryConfigParams,
+                                        Credentials credentials ) throws Exception {
+        runnerConfig.beforeRunningSuite();
+        RepositoryFactory repositoryFactory = null;
+        Repository repository = null;
+        try {
+            for (RepositoryFactory factory : ServiceLoader.load(RepositoryFactory.class)) {
+                repository = factory.getRepository(repositoryConfigParams);
+                if (repository != null) {
                     repositoryFactory = factory;
-                    SuiteConfiguration suiteConfiguration = new SuiteConfiguration(repository, credentials,
-                                                                                   "testsuite.properties");
-                    runTestSuite(suiteConfiguration, testSuiteClass);
                     break;
                 }
+            }
+            if (repository == null) {
+                return;
+            }
+            LOGGER.info("Populating the repository to measure its cold start...");
+            populateColdStartFixture(repository, credentials);
+            runnerConfig.beforeRestartingRepository(repositoryFactory, repository);
+            if (!StorageProbe.hasStoredContent(runnerConfig.storageDirectories)) {
+                LOGGER.info("The repository doesn't persist its content, the cold start of a populated repository is not measured");
+                return;
+            }
+
+            TestData coldStartData = new TestData(testData.getRepositoryName(), runnerConfig.retainedSamples);
+            repository = new RepositoryInitRun(credentials, repositoryFactory, repositoryConfigParams, coldStartData,
+                                               POPULATED_INIT_OPERATION_NAME).execute();
+            if (repository == null) {
+                testData.merge(coldStartData);
+                return;
+            }
+            Session session = repository.login(credentials);
+            try {
+                if (session.nodeExists("/" + COLD_START_FIXTURE)) {
+                    testData.merge(coldStartData);
+                } else {
+                    LOGGER.info("The content of the repository didn't survive its restart, its cold start is not recorded");
+                }
             } finally {
-                // Always after the suite is run ...
-                runnerConfig.afterRunningSuite(repositoryFactory, repository);
+                session.logout();
             }
+        } finally {
+            runnerConfig.afterRunningSuite(repositoryFactory, repository);
         }
+    }
 
-        new CsvOutput().generateOutput(testData);
+    private static void populateColdStartFixture( Repository repository,
+                                                  Credentials credentials ) throws RepositoryException {
+        Session session = repository.login(credentials);
+        try {
+            DatasetShape shape = new DatasetShape().setFanOut(Distribution.constant(10)).setDepth(3)
+                                                   .setPropertyCount(Distribution.constant(2))
+                                                   .setPropertySize(Distribution.constant(1024)).setBinaryRatio(0.1);
+            Node fixture = new DatasetGenerator(shape).generate(session.getRootNode(), COLD_START_FIXTURE);
+            Node content = fixture.addNode("file", "nt:file").addNode("jcr:content", "nt:resource");
+            content.setProperty("jcr:mimeType", "application/octet-stream");
+            content.setProperty("jcr:lastModified", Calendar.getInstance());
+            content.setProperty("jcr:data", new BinaryImpl(1024, new Random(shape.getSeed())));
+            session.save();
+        } finally {
+            session.logout();
+        }
+    }
+
+    /**
+     * Returns the file to which the results are journaled while they are recorded, next to the other test data output.
+     */
+    private File journalFile() {
+        String fileName = testData.getRepositoryName().toLowerCase().replaceAll(" ", "-") + JOURNAL_FILE_SUFFIX;
+        return new File(OutputCfg.testDataOutputFolder(), fileName);
     }
 
     /**
@@ -123,44 +322,70 @@ public final class SuiteRunner {
         return testData;
     }
 
-    private void runTestSuite( SuiteConfiguration suiteConfiguration,
-                               Class<? extends AbstractPerformanceTestSuite> testSuiteClass ) throws Exception {
-        final AbstractPerformanceTestSuite testSuite = testSuiteClass.getConstructor(SuiteConfiguration.class).newInstance(
-                suiteConfiguration);
-
+    private Map<String, List<String>> runTestSuite( SuiteConfiguration suiteConfiguration,
+                                                    Class<? extends AbstractPerformanceTestSuite> testSuiteClass,
+                                                    Map<String, String> parameterValues ) throws Exception {
         if (isSuiteExcluded(testSuiteClass)) {
-            return;
+            return null;
         }
 
+        String suiteName = testSuiteClass.getSimpleName();
+        SuiteConfiguration configuration = suiteConfiguration.forSuite(suiteName, parameterValues);
+        final AbstractPerformanceTestSuite testSuite = newTestSuite(testSuiteClass, configuration);
+
         if (!testSuite.isCompatibleWithCurrentRepository()) {
             LOGGER.warn("Test suite {} not compatible with {}",
                         new Object[] { testSuite.getClass().getSimpleName(), testData.getRepositoryName() });
-            return;
+            return null;
         }
 
-        LOGGER.info("Starting suite: {}[warmup #:{}, repeat#{}]",
-                    new Object[] { testSuiteClass.getSimpleName(), runnerConfig.warmupCount, runnerConfig.repeatCount });
+        logSuiteStart(parameterValues.isEmpty() ? suiteName : suiteName + parameterValues);
+        new SuiteRun(testSuite, runnerConfig).execute();
+        return configuration.getSweeps();
+    }
 
-        new SuiteRun(testSuite, runnerConfig.warmupCount, runnerConfig.repeatCount).execute();
+    private AbstractPerformanceTestSuite newTestSuite( Class<? extends AbstractPerformanceTestSuite> testSuiteClass,
+                                                       SuiteConfiguration suiteConfiguration ) throws Exception {
+        AbstractPerformanceTestSuite testSuite = testSuiteClass.getConstructor(SuiteConfiguration.class)
+                                                               .newInstance(suiteConfiguration);
+        testSuite.setWorkerThreads(WorkerThreads.forMode(runnerConfig.virtualThreads));
+        return testSuite;
+    }
+
+    private void logSuiteStart( String suiteName ) {
+        if (runnerConfig.measureDurationSeconds > 0) {
+            LOGGER.info("Starting suite: {}[warmup (s):{}, measure (s):{}]",
+                        new Object[] { suiteName, runnerConfig.warmupDurationSeconds, runnerConfig.measureDurationSeconds });
+        } else {
+            LOGGER.info("Starting suite: {}[warmup #:{}, repeat#{}]",
+                        new Object[] { suiteName, runnerConfig.warmupCount, runnerConfig.repeatCount });
+        }
     }
 
     private boolean isSuiteExcluded( Class<? extends AbstractPerformanceTestSuite> testSuiteClass ) {
+        return isSuiteExcluded(SuiteDescriptor.forClass(testSuiteClass));
+    }
+
+    private boolean isSuiteExcluded( SuiteDescriptor suite ) {
         // first search excluded list
-        if (patternMatchesSuiteName(testSuiteClass, runnerConfig.excludeTestsRegExp)) {
+        if (patternMatchesSuiteName(suite, runnerConfig.excludeTestsRegExp)) {
             return true;
         }
         // then search included list
-        return !runnerConfig.includeTestsRegExp.isEmpty() && !patternMatchesSuiteName(testSuiteClass,
-                                                                                      runnerConfig.includeTestsRegExp);
+        if (!runnerConfig.includeTestsRegExp.isEmpty() && !patternMatchesSuiteName(suite, runnerConfig.includeTestsRegExp)) {
+            return true;
+        }
+        // and finally the included tags
+        return !runnerConfig.includeTags.isEmpty() && Collections.disjoint(runnerConfig.includeTags, suite.getTags());
     }
 
-    private boolean patternMatchesSuiteName( Class<? extends AbstractPerformanceTestSuite> suiteClass,
+    private boolean patternMatchesSuiteName( SuiteDescriptor suite,
                                              List<String> patternsList ) {
         for (Iterator<String> iterator = patternsList.iterator(); iterator.hasNext(); ) {
             String patternString = iterator.next();
             try {
                 Pattern pattern = Pattern.compile(patternString);
-                if (pattern.matcher(suiteClass.getName()).matches() || pattern.matcher(suiteClass.getSimpleName()).matches()) {
+                if (pattern.matcher(suite.getClassName()).matches() || pattern.matcher(suite.getSimpleName()).matches()) {
                     return true;
                 }
             } catch (PatternSyntaxException e) {
@@ -171,88 +396,560 @@ public final class SuiteRunner {
         return false;
     }
 
-    private Set<Class<? extends AbstractPerformanceTestSuite>> loadPerformanceTestSuites() {
+    /**
+     * Returns the discovered test suites which are not excluded by the include/exclude patterns and the tags of the runner
+     * configuration.
+     *
+     * @return a set of suite classes, sorted by name; never null
+     * @throws ClassNotFoundException if an indexed suite class cannot be loaded
+     */
+    Set<Class<? extends AbstractPerformanceTestSuite>> selectedTestSuites() throws ClassNotFoundException {
+        Set<Class<? extends AbstractPerformanceTestSuite>> selected = new TreeSet<Class<? extends AbstractPerformanceTestSuite>>(
+                new Comparator<Class<?>>() {
+                    @Override
+                    public int compare( Class<?> first,
+                                        Class<?> second ) {
+                        return first.getName().compareTo(second.getName());
+                    }
+                });
+        int estimatedDurationSeconds = 0;
+        for (SuiteDescriptor suite : loadPerformanceTestSuites()) {
+            if (!isSuiteExcluded(suite)) {
+                selected.add(suite.loadClass());
+                estimatedDurationSeconds += suite.getEstimatedDurationSeconds();
+            }
+        }
+        LOGGER.info("Selected {} test suites{}", selected.size(),
+                    estimatedDurationSeconds > 0 ? " (estimated duration: " + estimatedDurationSeconds + " s)" : "");
+        return selected;
+    }
+
+    /**
+     * Loads the descriptors of all the concrete test suites from the {@link SuiteIndex suite indexes} generated at build time,
+     * falling back to scanning the classpath when no index is found (e.g. for suites compiled without the index processor).
+     */
+    private List<SuiteDescriptor> loadPerformanceTestSuites() {
+        List<SuiteDescriptor> suites = new ArrayList<SuiteDescriptor>();
+        for (SuiteIndex suiteIndex : ServiceLoader.load(SuiteIndex.class, SuiteIndex.class.getClassLoader())) {
+            suites.addAll(suiteIndex.getSuites());
+        }
+        if (!suites.isEmpty()) {
+            return suites;
+        }
+
+        LOGGER.info("No suite index found, scanning the classpath for test suites");
         ConfigurationBuilder builder = new ConfigurationBuilder().addUrls(ClasspathHelper.forPackage("org.modeshape"))
                                                                  .setScanners(new TypesScanner()).useParallelExecutor();
         Reflections reflections = new Reflections(builder);
-        return reflections.getSubTypesOf(AbstractPerformanceTestSuite.class);
+        for (Class<? extends AbstractPerformanceTestSuite> suiteClass : reflections.getSubTypesOf(AbstractPerformanceTestSuite.class)) {
+            if (!Modifier.isAbstract(suiteClass.getModifiers()) && Modifier.isPublic(suiteClass.getModifiers())) {
+                suites.add(SuiteDescriptor.forClass(suiteClass));
+            }
+        }
+        return suites;
+    }
+
+    /**
+     * Decides whether another iteration should be run: if a time budget is set, iterations are run until it is spent (but at
+     * least once), otherwise the given number of iterations is run.
+     */
+    private static boolean withinBudget( int iteration,
+                                         int count,
+                                         long durationNanos,
+                                         long startNanos ) {
+        if (durationNanos > 0) {
+            return iteration == 0 || System.nanoTime() - startNanos < durationNanos;
+        }
+        return iteration < count;
     }
 
     private final class SuiteRun {
 
         private final AbstractPerformanceTestSuite suite;
-        private final int warmupCount;
-        private final int runCount;
+        private final RunnerCfg config;
+        private IterationWatchdog watchdog;
+        private StorageProbe storageProbe;
 
         private SuiteRun( AbstractPerformanceTestSuite suite,
-                          int warmupCount,
-                          int runCount ) {
+                          RunnerCfg config ) {
             this.suite = suite;
-            this.warmupCount = warmupCount;
-            this.runCount = runCount;
+            this.config = config;
         }
 
         void execute() throws Exception {
             String suiteName = suite.getClass().getSimpleName();
             LOGGER.info("Starting {} ....", suiteName);
+            ProcessSampler processSampler = null;
+            if (config.processSamplingEnabled()) {
+                processSampler = new ProcessSampler(config.processSamplingIntervalMillis, Math.max(2, config.retainedSamples));
+            }
             //run the warmup without recording
             try {
+                storageProbe = startStorageProbe();
                 LOGGER.info("{} setUp()....", suiteName);
                 suite.setUp();
+                recordPhase(BEFORE_SUITE, suite.getBeforeSuiteNanos(), 1);
 
-                LOGGER.info("{} warming up....", suiteName);
-                for (int i = 0; i < warmupCount; i++) {
-                    suite.run();
+                if (config.watchdogEnabled()) {
+                    watchdog = new IterationWatchdog(suite.getName(), TimeUnit.SECONDS.toNanos(config.watchdogTimeoutSeconds),
+                                                     config.watchdogMedianFactor, config.watchdogAbort,
+                                                     new File(OutputCfg.testDataOutputFolder(), outputFileName()));
                 }
+                LOGGER.info("{} warming up....", suiteName);
+                warmUp(suiteName);
+                suite.resetOperationLatencies();
+                suite.resetBackgroundJobs();
 
                 //run & record
-                for (int i = 0; i < runCount; i++) {
-                    long start = System.nanoTime();
-                    suite.run();
-                    long duration = System.nanoTime() - start;
-                    getTestData().recordSuccess(suiteName, duration, i + 1);
+                FlightRecording recording = config.flightRecording ? startFlightRecording() : null;
+                try {
+                    measure(suiteName);
+                } finally {
+                    if (recording != null) {
+                        recording.stop();
+                    }
+                }
+                if (storageProbe != null) {
+                    getTestData().recordStorage(suite.getName(), storageProbe.stop());
                 }
                 LOGGER.info("{} tearDown()....", suiteName);
                 suite.tearDown();
+                recordPhase(AFTER_SUITE, suite.getAfterSuiteNanos(), 1);
             } catch (Throwable throwable) {
                 LOGGER.error("Error while running " + suiteName, throwable);
-                getTestData().recordFailure(suiteName, throwable);
+                getTestData().recordFailure(suite.getName(), throwable);
+            } finally {
+                if (watchdog != null) {
+                    watchdog.stop();
+                    for (String stall : watchdog.getStalls()) {
+                        getTestData().recordStall(suite.getName(), stall);
+                    }
+                }
+                if (processSampler != null) {
+                    getTestData().recordProcessSamples(suite.getName(), processSampler.stop());
+                }
+            }
+        }
+
+        /**
+         * Starts measuring the storage used by the suite, if the repository stores its content in the test directories.
+         */
+        private StorageProbe startStorageProbe() {
+            if (!config.storageMetrics || !StorageProbe.hasStoredContent(config.storageDirectories)) {
+                return null;
             }
+            StorageProbe probe = new StorageProbe(config.storageDirectories, suite.suiteConfiguration.getRepository(),
+                                                  suite.suiteConfiguration.getCredentials(), getTestData().getJournalFile(),
+                                                  StorageProbe.logFiles(), config.storageContentMetrics);
+            probe.start();
+            return probe;
+        }
+
+        /**
+         * Runs one (warmup or measured) iteration of the suite, under the watchdog if there is one.
+         */
+        private AbstractPerformanceTestSuite.RunTimes runIteration( IterationMetricsProbe metricsProbe ) throws Exception {
+            return watchdog != null ? watchdog.runIteration(suite, metricsProbe) : suite.runTimed(metricsProbe);
+        }
+
+        private void measure( String suiteName ) throws Exception {
+            long measureStart = System.nanoTime();
+            int runs = 0;
+            IterationMetricsProbe metricsProbe = new IterationMetricsProbe(config.processSamplingEnabled(), storageProbe);
+            for (; withinBudget(runs, config.repeatCount, config.measureDurationNanos(), measureStart); runs++) {
+                AbstractPerformanceTestSuite.RunTimes times = runIteration(metricsProbe);
+                getTestData().recordSuccess(suite.getName(), times.testNanos(), runs + 1);
+                getTestData().recordMetrics(suite.getName(), times.metrics);
+                recordPhase(BEFORE_TEST_RUN, times.beforeTestRunNanos, runs + 1);
+                recordPhase(AFTER_TEST_RUN, times.afterTestRunNanos, runs + 1);
+            }
+            LOGGER.info("{} completed {} runs in {} (s)", new Object[] {suiteName, runs,
+                    (double) (System.nanoTime() - measureStart) / TimeUnit.SECONDS.toNanos(1)});
+            getTestData().recordOperations(suite.getName(), suite.getOperationLatencies());
+            recordBackgroundJobs(System.nanoTime() - measureStart);
+
+            if (!config.threadCounts.isEmpty()) {
+                if (suite.supportsConcurrentRuns()) {
+                    for (int threadCount : config.threadCounts) {
+                        if (watchdog != null) {
+                            watchdog.restartMedian();
+                        }
+                        new ConcurrentSuiteRun(suite, watchdog, threadCount, config.repeatCount,
+                                               config.measureDurationNanos()).execute();
+                    }
+                } else {
+                    LOGGER.info("{} does not support concurrent runs", suiteName);
+                }
+            }
+
+            int openLoopThreads = suite.supportsConcurrentRuns() ? config.openLoopThreadCount : 1;
+            for (int rate : config.openLoopRates) {
+                if (watchdog != null) {
+                    watchdog.restartMedian();
+                }
+                new OpenLoopRun(suite, watchdog, getTestData(), rate, config.openLoopDurationSeconds, openLoopThreads).execute();
+            }
+        }
+
+        /**
+         * Records the duration of one of the lifecycle hooks of the suite as a separate test, named after the suite and the hook
+         * (e.g. <code>CreateChildNodesTestSuite.afterTestRun</code>), unless the suite doesn't implement the hook.
+         */
+        private void recordPhase( String hookName,
+                                  long durationNanos,
+                                  int runCount ) {
+            if (suite.implementsHook(hookName)) {
+                getTestData().recordSuccess(suite.getName() + "." + hookName, durationNanos, runCount);
+            }
+        }
+
+        private void recordBackgroundJobs( long durationNanos ) {
+            for (BackgroundJobStats stats : suite.getBackgroundJobStats(durationNanos)) {
+                getTestData().recordBackgroundJob(suite.getName(), stats);
+                if (stats.getFailure() != null) {
+                    getTestData().recordInvalid(suite.getName(), "background job " + stats.getName() + " died: "
+                                                                 + stats.getFailure());
+                } else if (stats.getLatencies().getCount() == 0) {
+                    getTestData().recordInvalid(suite.getName(), "background job " + stats.getName()
+                                                                 + " completed no operation (" + stats.getErrorCount()
+                                                                 + " failed)");
+                } else if (stats.getErrorRatio() > MAX_BACKGROUND_JOB_ERROR_RATIO) {
+                    getTestData().recordInvalid(suite.getName(),
+                                                String.format("background job %s failed %d of %d executions",
+                                                              stats.getName(), stats.getErrorCount(),
+                                                              stats.getErrorCount() + stats.getLatencies().getCount()));
+                }
+            }
+        }
+
+        /**
+         * Returns the prefix of the names of the files written for this suite, next to the other test data output.
+         */
+        private String outputFileName() {
+            String fileName = getTestData().getRepositoryName() + "-" + suite.getName();
+            return fileName.toLowerCase().replaceAll("[^a-z0-9._-]+", "-");
+        }
+
+        private FlightRecording startFlightRecording() {
+            String fileName = outputFileName();
+            File outputFolder = OutputCfg.testDataOutputFolder();
+            return FlightRecording.start(new File(outputFolder, fileName + ".jfr"), new File(outputFolder, fileName + "-jfr.txt"),
+                                         config.flightRecordingSettings);
+        }
+
+        private void warmUp( String suiteName ) throws Exception {
+            long warmupStart = System.nanoTime();
+            if (!config.steadyStateWarmup) {
+                int runs = 0;
+                for (; withinBudget(runs, config.warmupCount, config.warmupDurationNanos(), warmupStart); runs++) {
+                    runIteration(null);
+                }
+                getTestData().recordWarmup(suite.getName(), runs, false);
+                return;
+            }
+
+            SteadyStateDetector detector = new SteadyStateDetector(config.steadyStateWindow, config.steadyStateMaxCv);
+            int runs = 0;
+            boolean steady = false;
+            while (runs < config.steadyStateMaxRuns) {
+                steady = detector.addSample(runIteration(null).testNanos());
+                runs++;
+                if (steady && runs >= config.warmupCount) {
+                    break;
+                }
+                if (config.warmupDurationNanos() > 0 && System.nanoTime() - warmupStart >= config.warmupDurationNanos()) {
+                    break;
+                }
+            }
+            if (!steady) {
+                LOGGER.warn("{} did not reach a steady state after {} warmup runs (coefficient of variation: {})",
+                            new Object[] {suiteName, runs, detector.coefficientOfVariation()});
+            }
+            getTestData().recordWarmup(suite.getName(), runs, steady);
         }
     }
 
+    /**
+     * Runs the measured phase of an already set up suite from a number of threads at the same time, each thread repeating the
+     * test for a given number of times (closed loop).
+     */
+    private final class ConcurrentSuiteRun {
+
+        private final AbstractPerformanceTestSuite suite;
+        private final IterationWatchdog watchdog;
+        private final int threadCount;
+        private final int runCount;
+        private final long durationNanos;
+
+        private ConcurrentSuiteRun( AbstractPerformanceTestSuite suite,
+                                    IterationWatchdog watchdog,
+                                    int threadCount,
+                                    int runCount,
+                                    long durationNanos ) {
+            this.suite = suite;
+            this.watchdog = watchdog;
+            this.threadCount = threadCount;
+            this.runCount = runCount;
+            this.durationNanos = durationNanos;
+        }
+
+        void execute() {
+            final String testName = suite.getName() + "[" + threadCount + " threads]";
+            LOGGER.info("{} running....", testName);
+
+            final CountDownLatch startLatch = new CountDownLatch(1);
+            ExecutorService executor = suite.getWorkerThreads().newFixedThreadPool(threadCount);
+            suite.setRunThreadCount(threadCount);
+            try {
+                List<Future<List<Long>>> results = new ArrayList<Future<List<Long>>>(threadCount);
+                for (int i = 0; i < threadCount; i++) {
+                    results.add(executor.submit(new Callable<List<Long>>() {
+                        @Override
+                        public List<Long> call() throws Exception {
+                            List<Long> durations = new ArrayList<Long>(runCount);
+                            startLatch.await();
+                            long measureStart = System.nanoTime();
+                            for (int i = 0; withinBudget(i, runCount, durationNanos, measureStart); i++) {
+                                AbstractPerformanceTestSuite.RunTimes times;
+                                times = watchdog != null ? watchdog.runIteration(suite, null) : suite.runTimed(null);
+                                durations.add(times.testNanos());
+                            }
+                            return durations;
+                        }
+                    }));
+                }
+
+                suite.resetOperationLatencies();
+                long start = System.nanoTime();
+                startLatch.countDown();
+                List<List<Long>> threadDurations = new ArrayList<List<Long>>(threadCount);
+                for (Future<List<Long>> result : results) {
+                    threadDurations.add(result.get());
+                }
+                long wallClockDuration = System.nanoTime() - start;
+
+                long runs = 0;
+                List<LatencyHistogram> threadLatencies = new ArrayList<LatencyHistogram>(threadCount);
+                for (List<Long> durations : threadDurations) {
+                    LatencyHistogram latencies = new LatencyHistogram();
+                    for (int i = 0; i < durations.size(); i++) {
+                        getTestData().recordSuccess(testName, durations.get(i), i + 1);
+                        latencies.recordValue(durations.get(i));
+                    }
+                    threadLatencies.add(latencies);
+                    runs += durations.size();
+                }
+                getTestData().recordThroughput(testName, runs, wallClockDuration);
+                if (threadCount > 1) {
+                    // only summarized, since the runs of all the threads are already recorded as the test itself
+                    getTestData().recordThreadLatencies(testName, threadLatencies);
+                }
+                getTestData().recordOperations(testName, suite.getOperationLatencies());
+            } catch (ExecutionException e) {
+                getTestData().recordFailure(testName, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                getTestData().recordFailure(testName, e);
+            } finally {
+                suite.setRunThreadCount(1);
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private final class ForkedSuiteRun {
+
+        private final Class<? extends AbstractPerformanceTestSuite> testSuiteClass;
+        private final ResultsJournal journal;
+
+        private ForkedSuiteRun( Class<? extends AbstractPerformanceTestSuite> testSuiteClass,
+                                ResultsJournal journal ) {
+            this.testSuiteClass = testSuiteClass;
+            this.journal = journal;
+        }
+
+        /**
+         * Runs the suite in a child JVM, which appends its results to the journal of this runner. They are read back from there
+         * once the child exits, so that the results recorded by a child which died are not lost either.
+         */
+        void execute() throws Exception {
+            String suiteName = testSuiteClass.getSimpleName();
+            long journalPosition = journal.position();
+            try {
+                List<String> command = new ArrayList<String>();
+                command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+                command.addAll(runnerConfig.forkJvmArgs);
+                for (String property : ForkedSuiteMain.INHERITED_SYSTEM_PROPERTIES) {
+                    String value = System.getProperty(property);
+                    if (value != null) {
+                        command.add("-D" + property + "=" + value);
+                    }
+                }
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(ForkedSuiteMain.class.getName());
+                command.add(runnerConfig.implementationClassName);
+                command.add(testSuiteClass.getName());
+                command.add(journal.getFile().getAbsolutePath());
+
+                LOGGER.info("Starting {} in a new JVM: {}", suiteName, runnerConfig.forkJvmArgs);
+                Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+                BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                try {
+                    for (String line = output.readLine(); line != null; line = output.readLine()) {
+                        // relayed through the logger, so that it is configured (and redirected) like the output of this JVM
+                        LOGGER.info("[{}] {}", suiteName, line);
+                    }
+                } finally {
+                    output.close();
+                }
+                int exitCode = process.waitFor();
+                if (exitCode != 0) {
+                    testData.recordFailure(suiteName, new IllegalStateException("The JVM running " + suiteName
+                                                                                + " exited with code " + exitCode));
+                }
+            } finally {
+                TestData suiteData = new TestData(testData.getRepositoryName(), runnerConfig.retainedSamples);
+                journal.read(journalPosition, suiteData);
+                testData.merge(suiteData);
+            }
+        }
+    }
+
+    /**
+     * Initializes the repository before each suite and records how long its cold start took: the total (engine start and first
+     * login) as "Repository initialization", and each step of the cold start as a sub-phase of its own (e.g. "Repository
+     * initialization.firstQuery"), including the steps which load the parts of the repository the suites will use later on.
+     */
     private final class RepositoryInitRun {
 
         private final RepositoryFactory repositoryFactory;
         private final Map<?, ?> repositoryConfigParams;
         private final Credentials credentials;
+        private final TestData initData;
+        private final String operationName;
 
         private RepositoryInitRun( Credentials credentials,
                                    RepositoryFactory repositoryFactory,
                                    Map<?, ?> repositoryConfigParams ) {
+            this(credentials, repositoryFactory, repositoryConfigParams, testData, INIT_OPERATION_NAME);
+        }
+
+        private RepositoryInitRun( Credentials credentials,
+                                   RepositoryFactory repositoryFactory,
+                                   Map<?, ?> repositoryConfigParams,
+                                   TestData initData,
+                                   String operationName ) {
             this.credentials = credentials;
             this.repositoryFactory = repositoryFactory;
             this.repositoryConfigParams = repositoryConfigParams;
+            this.initData = initData;
+            this.operationName = operationName;
         }
 
         Repository execute() throws Exception {
-            String operationName = "Repository initialization";
+            Repository repository;
+            Session session;
             try {
                 long start = System.nanoTime();
 
-                Repository repository = repositoryFactory.getRepository(repositoryConfigParams);
+                repository = repositoryFactory.getRepository(repositoryConfigParams);
                 if (repository == null) {
                     return null;
                 }
-                repository.login(credentials).logout();
+                long engineStarted = recordPhase("engineStart", start);
+                initData.recordImplementation(repository.getDescriptor(Repository.REP_NAME_DESC),
+                                                   repository.getDescriptor(Repository.REP_VERSION_DESC));
+                session = repository.login(credentials);
+                recordPhase("firstLogin", engineStarted);
 
                 long duration = System.nanoTime() - start;
-                getTestData().recordSuccess(operationName, duration, 1);
-                return repository;
+                initData.recordSuccess(operationName, duration, 1);
             } catch (Throwable t) {
-                getTestData().recordFailure(operationName, t);
+                initData.recordFailure(operationName, t);
                 return null;
             }
+
+            try {
+                loadWorkspace(session);
+                runFirstQuery(session);
+                readFirstBinary(session);
+            } finally {
+                session.logout();
+            }
+            return repository;
+        }
+
+        private void loadWorkspace( Session session ) {
+            long start = System.nanoTime();
+            try {
+                for (NodeIterator children = session.getRootNode().getNodes(); children.hasNext(); ) {
+                    children.nextNode();
+                }
+                recordPhase("firstWorkspaceLoad", start);
+            } catch (Exception e) {
+                initData.recordFailure(operationName + ".firstWorkspaceLoad", e);
+            }
+        }
+
+        private void runFirstQuery( Session session ) {
+            long start = System.nanoTime();
+            try {
+                Query query = session.getWorkspace().getQueryManager().createQuery("SELECT * FROM [nt:base]", Query.JCR_SQL2);
+                query.setLimit(1);
+                query.execute().getNodes().hasNext();
+                recordPhase("firstQuery", start);
+            } catch (Exception e) {
+                initData.recordFailure(operationName + ".firstQuery", e);
+            }
+        }
+
+        /**
+         * Reads the first bytes of an existing binary value, so that the binary store is opened. The binary is looked up by a query,
+         * which is timed separately ("firstBinaryLookup") so that "firstBinaryAccess" only measures the opening of the store. If the
+         * repository doesn't contain any binary (e.g. it is empty), nothing is recorded: no binary is created, since this step
+         * must not change the content of the repository.
+         */
+        private void readFirstBinary( Session session ) {
+            long start = System.nanoTime();
+            String binaryPath;
+            try {
+                Query query = session.getWorkspace().getQueryManager().createQuery("SELECT * FROM [nt:resource]", Query.JCR_SQL2);
+                query.setLimit(1);
+                NodeIterator resources = query.execute().getNodes();
+                if (!resources.hasNext()) {
+                    LOGGER.debug("The repository doesn't contain any binary, its binary store is not opened");
+                    return;
+                }
+                binaryPath = resources.nextNode().getProperty(Property.JCR_DATA).getPath();
+                start = recordPhase("firstBinaryLookup", start);
+            } catch (Exception e) {
+                initData.recordFailure(operationName + ".firstBinaryLookup", e);
+                return;
+            }
+            try {
+                Binary binary = session.getProperty(binaryPath).getBinary();
+                try {
+                    InputStream stream = binary.getStream();
+                    try {
+                        stream.read();
+                    } finally {
+                        stream.close();
+                    }
+                } finally {
+                    binary.dispose();
+                }
+                recordPhase("firstBinaryAccess", start);
+            } catch (Exception e) {
+                initData.recordFailure(operationName + ".firstBinaryAccess", e);
+            }
+        }
+
+        private long recordPhase( String phaseName,
+                                  long startNanos ) {
+            long now = System.nanoTime();
+            initData.recordSuccess(operationName + "." + phaseName, now - startNanos, 1);
+            return now;
         }
     }
 }
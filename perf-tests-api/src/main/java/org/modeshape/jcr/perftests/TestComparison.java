@@ -0,0 +1,131 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+/**
+ * The result of the comparison of the durations of a test between a baseline and a candidate result set, as computed by
+ * {@link ResultsComparator}. Ratios are candidate / baseline, so a ratio greater than 1 means the candidate is slower.
+ */
+public final class TestComparison {
+
+    /**
+     * The classification of a test, based on the significance and the size of the change of its durations.
+     */
+    public enum Verdict {
+        IMPROVED,
+        REGRESSED,
+        UNCHANGED
+    }
+
+    private final String testName;
+    private final int baselineCount;
+    private final int candidateCount;
+    private final double medianRatio;
+    private final double[] medianRatioInterval;
+    private final double p99Ratio;
+    private final double[] p99RatioInterval;
+    private final double pValue;
+    private final double effectSize;
+    private final Verdict verdict;
+
+    TestComparison( String testName,
+                    int baselineCount,
+                    int candidateCount,
+                    double medianRatio,
+                    double[] medianRatioInterval,
+                    double p99Ratio,
+                    double[] p99RatioInterval,
+                    double pValue,
+                    double effectSize,
+                    Verdict verdict ) {
+        this.testName = testName;
+        this.baselineCount = baselineCount;
+        this.candidateCount = candidateCount;
+        this.medianRatio = medianRatio;
+        this.medianRatioInterval = medianRatioInterval;
+        this.p99Ratio = p99Ratio;
+        this.p99RatioInterval = p99RatioInterval;
+        this.pValue = pValue;
+        this.effectSize = effectSize;
+        this.verdict = verdict;
+    }
+
+    public String getTestName() {
+        return testName;
+    }
+
+    public int getBaselineCount() {
+        return baselineCount;
+    }
+
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+
+    /**
+     * @return the ratio of the median durations, candidate / baseline
+     */
+    public double getMedianRatio() {
+        return medianRatio;
+    }
+
+    /**
+     * @return the [lower, upper] bounds of the bootstrap confidence interval of the median ratio
+     */
+    public double[] getMedianRatioInterval() {
+        return medianRatioInterval.clone();
+    }
+
+    /**
+     * @return the ratio of the 99th percentiles of the durations, candidate / baseline
+     */
+    public double getP99Ratio() {
+        return p99Ratio;
+    }
+
+    /**
+     * @return the [lower, upper] bounds of the bootstrap confidence interval of the 99th percentile ratio
+     */
+    public double[] getP99RatioInterval() {
+        return p99RatioInterval.clone();
+    }
+
+    /**
+     * @return the two-sided p-value of the Mann-Whitney U test, i.e. the probability of observing durations at least this
+     *         different if both result sets came from the same distribution
+     */
+    public double getPValue() {
+        return pValue;
+    }
+
+    /**
+     * @return Cliff's delta, between -1 (every candidate run is faster than every baseline run) and 1 (every candidate run is
+     *         slower), 0 meaning the runs of both result sets overlap completely
+     */
+    public double getEffectSize() {
+        return effectSize;
+    }
+
+    public Verdict getVerdict() {
+        return verdict;
+    }
+
+    @Override
+    public String toString() {
+        return testName + ": " + verdict + " (median ratio " + medianRatio + ", p=" + pValue + ", delta=" + effectSize + ")";
+    }
+}
@@ -18,6 +18,8 @@ package org.modeshape.jcr.perftests;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.io.File;
+import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
@@ -26,38 +28,334 @@ import java.util.concurrent.TimeUnit;
  *
  * @author Horia Chiorean
  */
-public final class TestData {
+public final class TestData implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TestData.class);
 
-    /** Map [test name, [test duration 1(ns), test duration 2(ns)]] */
-    private final Map<String, List<Long>> durationsMap = new TreeMap<String, List<Long>>();
+    /** The default number of most recent durations (and run metrics) of each test which are kept */
+    public static final int DEFAULT_RETAINED_SAMPLES = 10000;
+
+    /** Map [test name, recorder of the test durations(ns)] */
+    private final Map<String, DurationRecorder> durationsMap = new TreeMap<String, DurationRecorder>();
+
+    /** Map [test name, [most recent test runs metrics]] */
+    private final Map<String, LinkedList<IterationMetrics>> metricsMap = new TreeMap<String, LinkedList<IterationMetrics>>();
+
+    /** Map [test name, [operation name, operation latencies(ns)]] */
+    private final Map<String, Map<String, LatencyHistogram>> operationsMap = new TreeMap<String, Map<String, LatencyHistogram>>();
+
+    /** Map [test name, [thread 1 run latencies(ns), thread 2 run latencies(ns)]] */
+    private final Map<String, List<LatencyHistogram>> threadLatenciesMap = new TreeMap<String, List<LatencyHistogram>>();
+
+    /** Map [test name, [background job 1 stats, background job 2 stats]] */
+    private final Map<String, List<BackgroundJobStats>> backgroundJobsMap = new TreeMap<String, List<BackgroundJobStats>>();
+
+    /** Map [test name, reason for which the results of the test are invalid] */
+    private final Map<String, String> invalidTests = new TreeMap<String, String>();
+
+    /** Map [test name, [stalled iteration 1 description, stalled iteration 2 description]] */
+    private final Map<String, List<String>> stallsMap = new TreeMap<String, List<String>>();
+
+    /** Map [test name, [OS resources used by the process, sampled while the test ran]] */
+    private final Map<String, List<ProcessUsage>> processSamplesMap = new TreeMap<String, List<ProcessUsage>>();
+
+    /** Map [test name, storage used by the test] */
+    private final Map<String, StorageMetrics> storageMap = new TreeMap<String, StorageMetrics>();
+
+    /** Map [test name, [number of test runs, wall clock duration of all the runs(ns)]] */
+    private final Map<String, long[]> throughputMap = new TreeMap<String, long[]>();
+
+    /** Map [test name, number of scheduled open-loop runs which were never issued] */
+    private final Map<String, Long> droppedRunsMap = new TreeMap<String, Long>();
+
+    /** Map [test name, number of warmup runs] */
+    private final Map<String, Integer> warmupRunsMap = new TreeMap<String, Integer>();
+
+    /** List of the names of the tests which were warmed up until a steady state was reached */
+    private final Set<String> steadyStateTests = new TreeSet<String>();
 
     /** List of the names of the operations that have failed */
     private final Set<String> failedTests = new TreeSet<String>();
 
     private final String repositoryName;
+    private final int retainedSamples;
+
+    /** The name and the version of the JCR implementation, as described by the repository */
+    private String implementationName;
+    private String implementationVersion;
+
+    /** The machine and the environment in which the tests were run */
+    private EnvironmentInfo environment;
+
+    /** The journal to which everything is written as soon as it is recorded, if any */
+    private transient ResultsJournal journal;
 
     public TestData( String repositoryName ) {
+        this(repositoryName, DEFAULT_RETAINED_SAMPLES);
+    }
+
+    /**
+     * @param repositoryName the name of the repository against which the tests are run
+     * @param retainedSamples the number of most recent durations and run metrics of each test which are kept as raw samples; the
+     *        statistics of the older runs are only kept in a histogram, so that the memory used doesn't grow with the number of
+     *        runs
+     */
+    public TestData( String repositoryName, int retainedSamples ) {
         this.repositoryName = repositoryName;
+        this.retainedSamples = retainedSamples;
+    }
+
+    /**
+     * Sets the journal to which all the data recorded from now on is written. The data added by {@link #merge(TestData)} is not
+     * journaled, since it was journaled by the instance which recorded it.
+     *
+     * @param journal a journal, or null to stop journaling
+     */
+    void setJournal( ResultsJournal journal ) {
+        this.journal = journal;
+    }
+
+    /**
+     * @return the file of the journal to which the recorded data is written, or null if it isn't journaled
+     */
+    File getJournalFile() {
+        return journal != null ? journal.getFile() : null;
     }
 
     void recordSuccess( String operationName, long durationNanos, int runCount ) {
         LOGGER.info("{} #{}: {} (s)", new Object[] {operationName, runCount, (double) durationNanos / TimeUnit.SECONDS.toNanos(1)});
 
-        List<Long> testData = durationsMap.get(operationName);
-        if (testData != null) {
-            testData.add(durationNanos);
+        addDuration(operationName, durationNanos);
+    }
+
+    /**
+     * Records the duration of a test run, without logging it (e.g. when the run is read back from a journal).
+     */
+    void addDuration( String testName, long durationNanos ) {
+        if (journal != null) {
+            journal.recordSuccess(testName, durationNanos);
+        }
+        durationRecorder(testName).record(durationNanos);
+    }
+
+    private DurationRecorder durationRecorder( String testName ) {
+        DurationRecorder recorder = durationsMap.get(testName);
+        if (recorder == null) {
+            recorder = new DurationRecorder(retainedSamples);
+            durationsMap.put(testName, recorder);
+        }
+        return recorder;
+    }
+
+    void recordMetrics( String testName, IterationMetrics metrics ) {
+        if (journal != null) {
+            journal.recordMetrics(testName, metrics);
+        }
+        LinkedList<IterationMetrics> testMetrics = metricsMap.get(testName);
+        if (testMetrics == null) {
+            testMetrics = new LinkedList<IterationMetrics>();
+            metricsMap.put(testName, testMetrics);
+        }
+        testMetrics.add(metrics);
+        if (testMetrics.size() > retainedSamples) {
+            testMetrics.removeFirst();
+        }
+    }
+
+    void recordOperations( String testName, Map<String, LatencyHistogram> operationLatencies ) {
+        if (operationLatencies.isEmpty()) {
+            return;
+        }
+        if (journal != null) {
+            journal.recordOperations(testName, operationLatencies);
+        }
+        Map<String, LatencyHistogram> testOperations = operationsMap.get(testName);
+        if (testOperations == null) {
+            testOperations = new TreeMap<String, LatencyHistogram>();
+            operationsMap.put(testName, testOperations);
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : operationLatencies.entrySet()) {
+            LatencyHistogram histogram = testOperations.get(entry.getKey());
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                testOperations.put(entry.getKey(), histogram);
+            }
+            histogram.add(entry.getValue());
+        }
+    }
+
+    void recordThreadLatencies( String testName, List<LatencyHistogram> threadLatencies ) {
+        if (journal != null) {
+            journal.recordThreadLatencies(testName, threadLatencies);
+        }
+        threadLatenciesMap.put(testName, new ArrayList<LatencyHistogram>(threadLatencies));
+    }
+
+    void recordBackgroundJob( String testName, BackgroundJobStats stats ) {
+        LOGGER.info("{}: background job {} x{} achieved {} ops/s with {} errors", new Object[] {testName, stats.getName(),
+                stats.getJobCount(), stats.getOperationsPerSecond(), stats.getErrorCount()});
+        if (journal != null) {
+            journal.recordBackgroundJob(testName, stats);
+        }
+        List<BackgroundJobStats> testJobs = backgroundJobsMap.get(testName);
+        if (testJobs == null) {
+            testJobs = new ArrayList<BackgroundJobStats>();
+            backgroundJobsMap.put(testName, testJobs);
+        }
+        testJobs.add(stats);
+    }
+
+    void recordInvalid( String testName, String reason ) {
+        LOGGER.warn("{} is invalid: {}", testName, reason);
+        if (journal != null) {
+            journal.recordInvalid(testName, reason);
+        }
+        if (!invalidTests.containsKey(testName)) {
+            invalidTests.put(testName, reason);
+        }
+    }
+
+    void recordThroughput( String testName, long runs, long wallClockNanos ) {
+        LOGGER.info("{}: {} runs in {} (s)", new Object[] {testName, runs, (double) wallClockNanos / TimeUnit.SECONDS.toNanos(1)});
+        if (journal != null) {
+            journal.recordThroughput(testName, runs, wallClockNanos);
+        }
+        throughputMap.put(testName, new long[] {runs, wallClockNanos});
+    }
+
+    void recordDroppedRuns( String testName, long droppedRuns ) {
+        LOGGER.warn("{}: {} scheduled runs were dropped", testName, droppedRuns);
+        if (journal != null) {
+            journal.recordDroppedRuns(testName, droppedRuns);
+        }
+        droppedRunsMap.put(testName, droppedRuns);
+    }
+
+    void recordWarmup( String testName, int warmupRuns, boolean steadyState ) {
+        LOGGER.info("{} warmed up with {} runs{}", new Object[] {testName, warmupRuns, steadyState ? " (steady state)" : ""});
+        if (journal != null) {
+            journal.recordWarmup(testName, warmupRuns, steadyState);
+        }
+        warmupRunsMap.put(testName, warmupRuns);
+        if (steadyState) {
+            steadyStateTests.add(testName);
         } else {
-            testData = new ArrayList<Long>();
-            testData.add(durationNanos);
-            durationsMap.put(operationName, testData);
+            steadyStateTests.remove(testName);
         }
     }
 
     void recordFailure( String operationName, Throwable cause ) {
         failedTests.add(operationName);
         LOGGER.warn(operationName + " failure", cause);
+        if (journal != null) {
+            journal.recordFailure(operationName, cause);
+        }
+    }
+
+    void recordImplementation( String name, String version ) {
+        if (journal != null) {
+            journal.recordImplementation(name, version);
+        }
+        this.implementationName = name;
+        this.implementationVersion = version;
+    }
+
+    void recordEnvironment( EnvironmentInfo environment ) {
+        if (journal != null) {
+            journal.recordEnvironment(environment);
+        }
+        this.environment = environment;
+    }
+
+    void recordStall( String testName, String description ) {
+        if (journal != null) {
+            journal.recordStall(testName, description);
+        }
+        List<String> testStalls = stallsMap.get(testName);
+        if (testStalls == null) {
+            testStalls = new ArrayList<String>();
+            stallsMap.put(testName, testStalls);
+        }
+        testStalls.add(description);
+    }
+
+    void recordProcessSamples( String testName, List<ProcessUsage> samples ) {
+        if (journal != null) {
+            journal.recordProcessSamples(testName, samples);
+        }
+        processSamplesMap.put(testName, new ArrayList<ProcessUsage>(samples));
+    }
+
+    void recordStorage( String testName, StorageMetrics storage ) {
+        if (journal != null) {
+            journal.recordStorage(testName, storage);
+        }
+        storageMap.put(testName, storage);
+    }
+
+    /**
+     * Adds all the data recorded by another instance (e.g. by a suite which was run in a different JVM) to this one.
+     *
+     * @param other the test data to add; may not be null
+     */
+    void merge( TestData other ) {
+        ResultsJournal mergeJournal = journal;
+        journal = null;
+        try {
+            mergeData(other);
+        } finally {
+            journal = mergeJournal;
+        }
+    }
+
+    private void mergeData( TestData other ) {
+        for (Map.Entry<String, DurationRecorder> entry : other.durationsMap.entrySet()) {
+            durationRecorder(entry.getKey()).add(entry.getValue());
+        }
+        for (Map.Entry<String, LinkedList<IterationMetrics>> entry : other.metricsMap.entrySet()) {
+            for (IterationMetrics metrics : entry.getValue()) {
+                recordMetrics(entry.getKey(), metrics);
+            }
+        }
+        for (Map.Entry<String, Map<String, LatencyHistogram>> entry : other.operationsMap.entrySet()) {
+            recordOperations(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, List<LatencyHistogram>> entry : other.threadLatenciesMap.entrySet()) {
+            recordThreadLatencies(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, List<BackgroundJobStats>> entry : other.backgroundJobsMap.entrySet()) {
+            for (BackgroundJobStats stats : entry.getValue()) {
+                recordBackgroundJob(entry.getKey(), stats);
+            }
+        }
+        for (Map.Entry<String, String> entry : other.invalidTests.entrySet()) {
+            recordInvalid(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, List<String>> entry : other.stallsMap.entrySet()) {
+            for (String description : entry.getValue()) {
+                recordStall(entry.getKey(), description);
+            }
+        }
+        for (Map.Entry<String, List<ProcessUsage>> entry : other.processSamplesMap.entrySet()) {
+            recordProcessSamples(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, StorageMetrics> entry : other.storageMap.entrySet()) {
+            recordStorage(entry.getKey(), entry.getValue());
+        }
+        if (implementationName == null) {
+            recordImplementation(other.implementationName, other.implementationVersion);
+        }
+        if (other.environment != null) {
+            // the other data was recorded by the JVM which actually ran the tests (e.g. with different JVM arguments)
+            recordEnvironment(other.environment);
+        }
+        throughputMap.putAll(other.throughputMap);
+        droppedRunsMap.putAll(other.droppedRunsMap);
+        warmupRunsMap.putAll(other.warmupRunsMap);
+        steadyStateTests.addAll(other.steadyStateTests);
+        failedTests.addAll(other.failedTests);
     }
 
     public Set<String> getSuccessfulTestNames() {
@@ -68,14 +366,307 @@ public final class TestData {
         return Collections.unmodifiableSet(failedTests);
     }
 
+    /**
+     * Returns the most recent durations of a test (all of them, unless the test was run more times than the number of retained
+     * samples).
+     *
+     * @param testName the name of a test
+     * @return a read-only list of durations, from the oldest to the most recent; never null
+     * @see #getTestDurations(String)
+     */
     public List<Long> getTestDurationsNanos(String testName) {
         if (!durationsMap.containsKey(testName)) {
-            Collections.emptyList();
+            return Collections.emptyList();
+        }
+        return durationsMap.get(testName).retainedSamplesList();
+    }
+
+    /**
+     * Returns the recorder of the durations of a test, which holds the statistics and the histogram of all its runs.
+     *
+     * @param testName the name of a test
+     * @return the recorder, or null if the test never succeeded
+     */
+    public DurationRecorder getTestDurations( String testName ) {
+        return durationsMap.get(testName);
+    }
+
+    /**
+     * Returns the JVM metrics (allocations, GC, heap) of the most recent measured runs of a test, in the same order as the
+     * durations returned by {@link #getTestDurationsNanos(String)}.
+     *
+     * @param testName the name of a test
+     * @return a list of metrics; never null but empty if no metrics were recorded for the test
+     */
+    public List<IterationMetrics> getIterationMetrics( String testName ) {
+        List<IterationMetrics> testMetrics = metricsMap.get(testName);
+        return testMetrics != null ? Collections.unmodifiableList(testMetrics) : Collections.<IterationMetrics>emptyList();
+    }
+
+    /**
+     * Returns the total number of individual operations recorded by a test, over all its operation names.
+     *
+     * @param testName the name of a test
+     * @return the number of operations, 0 if the test didn't time any operation
+     */
+    public long getOperationCount( String testName ) {
+        Map<String, LatencyHistogram> testOperations = operationsMap.get(testName);
+        long count = 0;
+        if (testOperations != null) {
+            for (LatencyHistogram latencies : testOperations.values()) {
+                count += latencies.getCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the names of the tests for which individual operations have been recorded.
+     *
+     * @return a set of test names; never null
+     */
+    public Set<String> getOperationTestNames() {
+        return Collections.unmodifiableSet(operationsMap.keySet());
+    }
+
+    /**
+     * Returns the names of the individual operations which were timed by a test, via
+     * {@link AbstractPerformanceTestSuite#endOperation(String, long)}
+     *
+     * @param testName the name of a test
+     * @return a set of operation names; never null but possibly empty
+     */
+    public Set<String> getOperationNames( String testName ) {
+        Map<String, LatencyHistogram> testOperations = operationsMap.get(testName);
+        return testOperations != null ? Collections.unmodifiableSet(testOperations.keySet()) : Collections.<String>emptySet();
+    }
+
+    public LatencyHistogram getOperationLatencies( String testName, String operationName ) {
+        Map<String, LatencyHistogram> testOperations = operationsMap.get(testName);
+        return testOperations != null ? testOperations.get(operationName) : null;
+    }
+
+    /**
+     * Returns the throughput of an operation, computed as the number of recorded operations divided by the total recorded
+     * duration of the test which performed them (or by the wall clock duration, for tests which were run concurrently).
+     *
+     * @param testName the name of a test
+     * @param operationName the name of an operation performed by the test
+     * @return the number of operations per second, or 0 if there isn't any data for the operation
+     */
+    public double getOperationsPerSecond( String testName, String operationName ) {
+        LatencyHistogram latencies = getOperationLatencies(testName, operationName);
+        if (latencies == null) {
+            return 0;
+        }
+        long totalDurationNanos = 0;
+        if (throughputMap.containsKey(testName)) {
+            totalDurationNanos = throughputMap.get(testName)[1];
+        } else if (durationsMap.containsKey(testName)) {
+            totalDurationNanos = durationsMap.get(testName).getSum();
+        }
+        return totalDurationNanos > 0 ? latencies.getCount() / ((double)totalDurationNanos / TimeUnit.SECONDS.toNanos(1)) : 0;
+    }
+
+    /**
+     * Returns the latencies of the runs of each of the threads which ran a concurrent test, whose runs are otherwise only
+     * recorded together.
+     *
+     * @param testName the name of a test
+     * @return the latencies of the runs of each thread, in the order of the threads; never null but empty if the test wasn't run
+     *         by more than one thread
+     */
+    public List<LatencyHistogram> getThreadLatencies( String testName ) {
+        List<LatencyHistogram> threadLatencies = threadLatenciesMap.get(testName);
+        return threadLatencies != null ? Collections.unmodifiableList(threadLatencies) : Collections.<LatencyHistogram>emptyList();
+    }
+
+    /**
+     * Returns the names of the concurrent tests for which the latencies of the runs of each thread were recorded.
+     *
+     * @return a set of test names; never null
+     */
+    public Set<String> getThreadLatencyTestNames() {
+        return Collections.unmodifiableSet(threadLatenciesMap.keySet());
+    }
+
+    /**
+     * Returns the work done by the background jobs of a test while the test was measured.
+     *
+     * @param testName the name of a test
+     * @return a list of background job statistics; never null but empty if the test didn't have background jobs
+     */
+    public List<BackgroundJobStats> getBackgroundJobs( String testName ) {
+        List<BackgroundJobStats> testJobs = backgroundJobsMap.get(testName);
+        return testJobs != null ? Collections.unmodifiableList(testJobs) : Collections.<BackgroundJobStats>emptyList();
+    }
+
+    /**
+     * Returns the names of the tests which have background jobs.
+     *
+     * @return a set of test names; never null
+     */
+    public Set<String> getBackgroundJobTestNames() {
+        return Collections.unmodifiableSet(backgroundJobsMap.keySet());
+    }
+
+    /**
+     * Returns the names of the tests which ran to completion, but whose results should not be trusted (e.g. because one of
+     * their background jobs died, so the test was measured without the load it was meant to run under).
+     *
+     * @return a set of test names; never null
+     */
+    public Set<String> getInvalidTestNames() {
+        return Collections.unmodifiableSet(invalidTests.keySet());
+    }
+
+    /**
+     * Returns the reason for which the results of a test are invalid.
+     *
+     * @param testName the name of a test
+     * @return the reason, or null if the test is valid
+     */
+    public String getInvalidReason( String testName ) {
+        return invalidTests.get(testName);
+    }
+
+    /**
+     * Returns the names of the tests which had stalled iterations, as detected by the iteration watchdog (see
+     * {@link RunnerCfg#setWatchdog(int, double, boolean)}).
+     *
+     * @return a set of test names; never null
+     */
+    public Set<String> getStalledTestNames() {
+        return Collections.unmodifiableSet(stallsMap.keySet());
+    }
+
+    /**
+     * Returns the descriptions of the stalled iterations of a test, which include the names of their thread dump files.
+     *
+     * @param testName the name of a test
+     * @return a list of descriptions; never null but empty if the test didn't stall
+     */
+    public List<String> getStalls( String testName ) {
+        List<String> testStalls = stallsMap.get(testName);
+        return testStalls != null ? Collections.unmodifiableList(testStalls) : Collections.<String>emptyList();
+    }
+
+    /**
+     * Returns the names of the tests for which the OS resources used by the process were sampled while they ran (see
+     * {@link RunnerCfg#setProcessSampling(int)}).
+     *
+     * @return a set of test names; never null
+     */
+    public Set<String> getProcessSampledTestNames() {
+        return Collections.unmodifiableSet(processSamplesMap.keySet());
+    }
+
+    /**
+     * Returns the time series of the OS resources used by the process while a test ran. The time of each sample is relative to
+     * the start of the test.
+     *
+     * @param testName the name of a test
+     * @return the samples, in chronological order; never null but empty if the test wasn't sampled
+     */
+    public List<ProcessUsage> getProcessSamples( String testName ) {
+        List<ProcessUsage> samples = processSamplesMap.get(testName);
+        return samples != null ? Collections.unmodifiableList(samples) : Collections.<ProcessUsage>emptyList();
+    }
+
+    /**
+     * Returns the names of the tests whose storage was measured, because the repository stores its content on disk (see
+     * {@link RunnerCfg#setStorageMetrics(boolean)}).
+     *
+     * @return a set of test names; never null
+     */
+    public Set<String> getStorageTestNames() {
+        return Collections.unmodifiableSet(storageMap.keySet());
+    }
+
+    /**
+     * Returns the storage used by a test.
+     *
+     * @param testName the name of a test
+     * @return the storage metrics, or null if the storage used by the test wasn't measured
+     */
+    public StorageMetrics getStorage( String testName ) {
+        return storageMap.get(testName);
+    }
+
+    /**
+     * Returns the number of test runs per second achieved by a test which was run by several threads at once. This is computed
+     * against the wall clock duration of all the runs, as opposed to the durations of the individual runs.
+     *
+     * @param testName the name of a test
+     * @return the number of runs per second, or 0 if the test wasn't run concurrently
+     */
+    public double getThroughput( String testName ) {
+        long[] throughput = throughputMap.get(testName);
+        if (throughput == null || throughput[1] == 0) {
+            return 0;
         }
-        return Collections.unmodifiableList(durationsMap.get(testName));
+        return throughput[0] / ((double) throughput[1] / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Returns the number of runs of an open-loop test which were scheduled but never issued, because the runs fell so far behind
+     * the schedule that they couldn't catch up before the end of the test.
+     *
+     * @param testName the name of a test
+     * @return the number of dropped runs, 0 if none were dropped
+     */
+    public long getDroppedRuns( String testName ) {
+        Long droppedRuns = droppedRunsMap.get(testName);
+        return droppedRuns != null ? droppedRuns : 0;
+    }
+
+    /**
+     * Returns the number of warmup runs which were performed before a test started to be measured.
+     *
+     * @param testName the name of a test
+     * @return the number of warmup runs, or null if the warmup of the test wasn't recorded
+     */
+    public Integer getWarmupRuns( String testName ) {
+        return warmupRunsMap.get(testName);
+    }
+
+    /**
+     * Indicates whether a test was warmed up until its run durations stabilised.
+     *
+     * @param testName the name of a test
+     * @return true if the test reached a steady state during warmup
+     */
+    public boolean reachedSteadyState( String testName ) {
+        return steadyStateTests.contains(testName);
     }
 
     public String getRepositoryName() {
         return repositoryName;
     }
+
+    /**
+     * @return the name of the JCR implementation (the {@link javax.jcr.Repository#REP_NAME_DESC} descriptor), or null if no
+     *         repository could be started
+     */
+    public String getImplementationName() {
+        return implementationName;
+    }
+
+    /**
+     * @return the version of the JCR implementation (the {@link javax.jcr.Repository#REP_VERSION_DESC} descriptor), or null if no
+     *         repository could be started
+     */
+    public String getImplementationVersion() {
+        return implementationVersion;
+    }
+
+    /**
+     * Returns the machine and the environment in which the tests were run, including the name and the version of the JCR
+     * implementation.
+     *
+     * @return the environment, or null if it wasn't captured
+     */
+    public EnvironmentInfo getEnvironment() {
+        return environment != null ? environment.withImplementation(implementationName, implementationVersion) : null;
+    }
 }
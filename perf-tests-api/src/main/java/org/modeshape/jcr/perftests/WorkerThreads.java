@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executors on which the background jobs and the concurrent workers of the suites are run: either pools of platform
+ * threads or, when {@link RunnerCfg#setVirtualThreads(boolean) enabled}, one virtual thread per task, so that a suite can
+ * hold tens of thousands of concurrent sessions.
+ * <p>
+ * Virtual threads require a JDK 21+ runtime; they are looked up reflectively, so that this module still targets older JDKs.
+ * </p>
+ */
+final class WorkerThreads {
+
+    static final WorkerThreads PLATFORM = new WorkerThreads(false);
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = virtualThreadPerTaskExecutorFactory();
+
+    private final boolean virtual;
+
+    private WorkerThreads( boolean virtual ) {
+        this.virtual = virtual;
+    }
+
+    /**
+     * Returns the worker threads of the given kind.
+     *
+     * @param virtual true if virtual threads should be used
+     * @return a <code>WorkerThreads</code> instance, never null
+     * @throws IllegalStateException if virtual threads are requested but the JVM doesn't support them
+     */
+    static WorkerThreads forMode( boolean virtual ) {
+        if (!virtual) {
+            return PLATFORM;
+        }
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+            throw new IllegalStateException("Virtual threads require a JDK 21+ runtime, but running on "
+                                            + System.getProperty("java.version"));
+        }
+        return new WorkerThreads(true);
+    }
+
+    boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @return an executor which runs an unbounded number of tasks concurrently (e.g. background jobs)
+     */
+    ExecutorService newCachedThreadPool() {
+        return virtual ? newVirtualThreadPerTaskExecutor() : Executors.newCachedThreadPool();
+    }
+
+    /**
+     * @param threadCount the number of tasks which are run concurrently
+     * @return an executor which runs the given number of tasks concurrently (e.g. concurrent workers)
+     */
+    ExecutorService newFixedThreadPool( int threadCount ) {
+        return virtual ? newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(threadCount);
+    }
+
+    private ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService)NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot create a virtual thread executor", e);
+        }
+    }
+
+    private static Method virtualThreadPerTaskExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -20,12 +20,14 @@ import javax.jcr.Session;
 import javax.jcr.Workspace;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
 import org.modeshape.jcr.perftests.BigSet;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
 /**
  * <code>ManyNodesImportTestSuite</code> implements a performance test, which imports repository with many nodes from external
  * file.
  */
+@PerformanceSuite( tags = {"import"} )
 public class BigSetCloneTestSuite extends AbstractPerformanceTestSuite {
 
     private static final int NODE_COUNT = 10;
@@ -23,6 +23,7 @@ import javax.jcr.ImportUUIDBehavior;
 import javax.jcr.Session;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
 import org.modeshape.jcr.perftests.BigSet;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
 /**
@@ -30,6 +31,7 @@ import org.modeshape.jcr.perftests.SuiteConfiguration;
  * implements a performance test, which imports
  * repository with many nodes from external file.
  */
+@PerformanceSuite( tags = {"import"} )
 public class BigSetImportTestSuite extends AbstractPerformanceTestSuite {
 
     private static final int NODE_COUNT = 10;
@@ -17,25 +17,33 @@
 package org.modeshape.jcr.perftests.init;
 
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
 /**
- * Test which opens a {@link OpenAnonymousSessionTestSuite#SESSIONS_COUNT} number of anonymous sessions on a repository.
+ * Test which opens a configurable number ({@code sessionCount}) of anonymous sessions on a repository.
  *
  * @author Horia Chiorean
  */
+@PerformanceSuite( tags = {"session"} )
 public class OpenAnonymousSessionTestSuite extends AbstractPerformanceTestSuite {
 
-   private static final int SESSIONS_COUNT = 10;
+    private final int sessionCount;
 
     public OpenAnonymousSessionTestSuite( SuiteConfiguration suiteConfiguration ) {
         super(suiteConfiguration);
+        this.sessionCount = suiteConfiguration.getInt("sessionCount", 10);
     }
 
     @Override
     protected void runTest() throws Exception {
-        for (int i = 0; i < SESSIONS_COUNT; i++) {
+        for (int i = 0; i < sessionCount; i++) {
             newSession(null);
         }
     }
+
+    @Override
+    public boolean supportsConcurrentRuns() {
+        return true;
+    }
 }
@@ -17,27 +17,35 @@
 package org.modeshape.jcr.perftests.init;
 
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
 /**
- * Test which opens a {@link OpenAuthenticatedSessionTestSuite#SESSIONS_COUNT} number of authenticated sessions on a repository.
+ * Test which opens a configurable number ({@code sessionCount}) of authenticated sessions on a repository.
  * The credentials used by this test are those provided to the runner configuration
  * {@link org.modeshape.jcr.perftests.RunnerCfg}.
  * 
  * @author Horia Chiorean
  */
+@PerformanceSuite( tags = {"session"} )
 public class OpenAuthenticatedSessionTestSuite extends AbstractPerformanceTestSuite {
 
-    private static final int SESSIONS_COUNT = 10;
+    private final int sessionCount;
 
     public OpenAuthenticatedSessionTestSuite( SuiteConfiguration suiteConfiguration ) {
         super(suiteConfiguration);
+        this.sessionCount = suiteConfiguration.getInt("sessionCount", 10);
     }
 
     @Override
     protected void runTest() throws Exception {
-        for (int i = 0; i < SESSIONS_COUNT; i++) {
+        for (int i = 0; i < sessionCount; i++) {
             newSession();
         }
     }
+
+    @Override
+    public boolean supportsConcurrentRuns() {
+        return true;
+    }
 }
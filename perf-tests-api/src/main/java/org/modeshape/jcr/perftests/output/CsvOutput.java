@@ -15,21 +15,48 @@
 
 package org.modeshape.jcr.perftests.output;
 
+import org.modeshape.jcr.perftests.EnvironmentInfo;
+import org.modeshape.jcr.perftests.IterationMetrics;
 import org.modeshape.jcr.perftests.OutputCfg;
+import org.modeshape.jcr.perftests.ProcessUsage;
+import org.modeshape.jcr.perftests.StorageMetrics;
 import org.modeshape.jcr.perftests.TestData;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
+import java.io.OutputStream;
+import java.io.PrintWriter;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
- * Class which generates a csv file with [testName=value1,value2,value3...] entries.
+ * Class which generates a csv file with [testName=value1,value2,value3...] entries. The JVM metrics of each measured run are
+ * written to a separate {@code <repository>-metrics.csv} file, with a "test,run,allocatedBytes,gcCount,gcTimeMillis,heapUsedBytes"
+ * line for each run, followed by the {@link ProcessUsage OS resources} used by the process during the run when they were sampled.
+ * The time series of the OS resources sampled while each test ran is written to a {@code <repository>-process.csv} file, and the
+ * {@link StorageMetrics storage} used by each test to a {@code <repository>-storage.csv} file. The
+ * {@link org.modeshape.jcr.perftests.EnvironmentInfo environment} in which the tests were run is written to
+ * a {@code <repository>-environment.properties} file. The names of the duration files are listed in the {@value #INDEX_FILE} file
+ * of the output folder.
  *
  * @author Horia Chiorean
  */
 public final class CsvOutput extends TestDataOutput {
 
     public static final String REPOSITORY_PROPERTY = "Repository";
+    public static final String METRICS_FILE_SUFFIX = "-metrics.csv";
+    public static final String PROCESS_FILE_SUFFIX = "-process.csv";
+    public static final String STORAGE_FILE_SUFFIX = "-storage.csv";
+    public static final String ENVIRONMENT_FILE_SUFFIX = "-environment.properties";
+    private static final String PROCESS_USAGE_COLUMNS = "timeMillis,cpuUserMillis,cpuSystemMillis,residentBytes,threads,"
+                                                        + "voluntaryContextSwitches,involuntaryContextSwitches,readBytes,writtenBytes";
+    /** The file which lists the names of the duration csv files of the output folder, so that readers don't have to scan for them */
+    public static final String INDEX_FILE = "csv-files.index";
 
     @Override
     public void generateOutput( TestData testData ) throws Exception {
@@ -38,12 +65,145 @@ public final class CsvOutput extends TestDataOutput {
         for (String testName : testData.getSuccessfulTestNames()) {
             performanceProperties.setProperty(testName, getTestPerfData(testData, testName));
         }
-        performanceProperties.store(new FileWriter(getOutputFile(testData.getRepositoryName())), null);
+        File outputFile = getOutputFile(testData.getRepositoryName(), ".csv");
+        performanceProperties.store(new FileWriter(outputFile), null);
+        addToIndex(outputFile.getName());
+
+        generateMetricsOutput(testData);
+        generateProcessOutput(testData);
+        generateStorageOutput(testData);
+        generateEnvironmentOutput(testData);
+    }
+
+    private void generateEnvironmentOutput( TestData testData ) throws Exception {
+        EnvironmentInfo environment = testData.getEnvironment();
+        if (environment == null) {
+            return;
+        }
+        OutputStream stream = new FileOutputStream(getOutputFile(testData.getRepositoryName(), ENVIRONMENT_FILE_SUFFIX));
+        try {
+            environment.toProperties("").store(stream, testData.getRepositoryName());
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Returns the name of the file holding the environment of a duration csv file written by this class.
+     *
+     * @param csvFileName the name of a duration csv file
+     * @return a file name, relative to the same folder
+     */
+    public static String environmentFileName( String csvFileName ) {
+        return csvFileName.substring(0, csvFileName.length() - ".csv".length()) + ENVIRONMENT_FILE_SUFFIX;
+    }
+
+    private void generateMetricsOutput( TestData testData ) throws Exception {
+        PrintWriter writer = new PrintWriter(new FileWriter(getOutputFile(testData.getRepositoryName(), METRICS_FILE_SUFFIX)));
+        try {
+            writer.println("test,run,allocatedBytes,gcCount,gcTimeMillis,heapUsedBytes," + PROCESS_USAGE_COLUMNS);
+            for (String testName : testData.getSuccessfulTestNames()) {
+                List<IterationMetrics> metrics = testData.getIterationMetrics(testName);
+                for (int i = 0; i < metrics.size(); i++) {
+                    IterationMetrics runMetrics = metrics.get(i);
+                    ProcessUsage usage = runMetrics.getProcessUsage();
+                    writer.println("\"" + testName + "\"," + (i + 1) + "," + runMetrics.getAllocatedBytes() + ","
+                                   + runMetrics.getGcCount() + "," + runMetrics.getGcTimeMillis() + ","
+                                   + runMetrics.getHeapUsedBytes() + (usage != null ? "," + processUsageValues(usage) : ""));
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void generateProcessOutput( TestData testData ) throws Exception {
+        if (testData.getProcessSampledTestNames().isEmpty()) {
+            return;
+        }
+        PrintWriter writer = new PrintWriter(new FileWriter(getOutputFile(testData.getRepositoryName(), PROCESS_FILE_SUFFIX)));
+        try {
+            writer.println("test," + PROCESS_USAGE_COLUMNS);
+            for (String testName : testData.getProcessSampledTestNames()) {
+                for (ProcessUsage sample : testData.getProcessSamples(testName)) {
+                    writer.println("\"" + testName + "\"," + processUsageValues(sample));
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void generateStorageOutput( TestData testData ) throws Exception {
+        if (testData.getStorageTestNames().isEmpty()) {
+            return;
+        }
+        PrintWriter writer = new PrintWriter(new FileWriter(getOutputFile(testData.getRepositoryName(), STORAGE_FILE_SUFFIX)));
+        try {
+            writer.println("test,contentBytes,binariesBytes,indexesBytes,otherBytes,diskBytes,diskGrowthBytes,iterations,nodes,"
+                           + "logicalBytes,iterationDiskGrowthBytes,writtenBytes,journalBytes,logBytes");
+            for (String testName : testData.getStorageTestNames()) {
+                StorageMetrics storage = testData.getStorage(testName);
+                writer.println("\"" + testName + "\"," + storage.getDiskBytes(StorageMetrics.CONTENT) + ","
+                               + storage.getDiskBytes(StorageMetrics.BINARIES) + "," + storage.getDiskBytes(StorageMetrics.INDEXES)
+                               + "," + storage.getDiskBytes(StorageMetrics.OTHER) + "," + storage.getDiskBytes() + ","
+                               + storage.getDiskGrowthBytes() + "," + storage.getIterationCount() + "," + storage.getNodeCount()
+                               + "," + storage.getLogicalBytes() + "," + storage.getIterationDiskGrowthBytes() + ","
+                               + storage.getWrittenBytes() + "," + storage.getJournalBytes() + "," + storage.getLogBytes());
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Tells whether a csv file written by this class holds test durations, as opposed to e.g. the JVM metrics of each run.
+     *
+     * @param fileName the name of a csv file
+     * @return true if the file holds durations
+     */
+    public static boolean isDurationsFile( String fileName ) {
+        return fileName.endsWith(".csv") && !fileName.endsWith(METRICS_FILE_SUFFIX) && !fileName.endsWith(PROCESS_FILE_SUFFIX)
+               && !fileName.endsWith(STORAGE_FILE_SUFFIX);
+    }
+
+    private String processUsageValues( ProcessUsage usage ) {
+        return usage.getTimeMillis() + "," + usage.getCpuUserMillis() + "," + usage.getCpuSystemMillis() + ","
+               + usage.getResidentBytes() + "," + usage.getThreadCount() + "," + usage.getVoluntaryContextSwitches() + ","
+               + usage.getInvoluntaryContextSwitches() + "," + usage.getReadBytes() + "," + usage.getWrittenBytes();
+    }
+
+    private void addToIndex( String fileName ) throws Exception {
+        File indexFile = new File(OutputCfg.testDataOutputFolder(), INDEX_FILE);
+        Set<String> fileNames = new TreeSet<String>();
+        if (indexFile.exists()) {
+            BufferedReader reader = new BufferedReader(new FileReader(indexFile));
+            try {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (!line.trim().isEmpty()) {
+                        fileNames.add(line.trim());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        if (!fileNames.add(fileName)) {
+            return;
+        }
+        PrintWriter writer = new PrintWriter(new FileWriter(indexFile));
+        try {
+            for (String name : fileNames) {
+                writer.println(name);
+            }
+        } finally {
+            writer.close();
+        }
     }
 
-    private File getOutputFile( String repositoryName ) {
+    private File getOutputFile( String repositoryName, String suffix ) {
         File outputDir = OutputCfg.testDataOutputFolder();
-        String fileName = repositoryName.toLowerCase().replaceAll(" ", "-") + ".csv";
+        String fileName = repositoryName.toLowerCase().replaceAll(" ", "-") + suffix;
         return new File(outputDir, fileName);
     }
 
@@ -0,0 +1,193 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests.output;
+
+import org.modeshape.jcr.perftests.TestData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.TimeZone;
+
+/**
+ * Class which adds the results of a run to the results history: each run is written to a new file of the history folder, which
+ * is never overwritten, holding the durations of every run of each test together with the metadata of the run (the git revision
+ * of the tests, the JCR implementation and its version, the configuration, the JVM, the runner parameters and the
+ * {@link org.modeshape.jcr.perftests.EnvironmentInfo environment} in which the tests were run).
+ * The history is read back by {@link ResultsHistory}.
+ */
+public final class HistoryOutput extends TestDataOutput {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HistoryOutput.class);
+
+    public static final String FILE_SUFFIX = ".run.properties";
+
+    static final String TIMESTAMP = "run.timestamp";
+    static final String REPOSITORY = "run.repository";
+    static final String IMPLEMENTATION_NAME = "run.implementation.name";
+    static final String IMPLEMENTATION_VERSION = "run.implementation.version";
+    static final String CONFIGURATION = "run.configuration";
+    static final String GIT_REVISION = "run.git.revision";
+    static final String JVM = "run.jvm";
+    static final String JVM_ARGS = "run.jvm.args";
+    static final String OS = "run.os";
+    static final String RUNNER_PREFIX = "runner.";
+    static final String DURATIONS_PREFIX = "durations.";
+    static final String FAILED_PREFIX = "failed.";
+    static final String ENVIRONMENT_PREFIX = "environment.";
+
+    private final File historyFolder;
+    private final Properties runnerProperties;
+
+    /**
+     * @param historyFolder the folder of the results history; may not be null
+     * @param runnerProperties the parameters with which the tests were run; may not be null
+     */
+    public HistoryOutput( File historyFolder,
+                          Properties runnerProperties ) {
+        this.historyFolder = historyFolder;
+        this.runnerProperties = runnerProperties;
+    }
+
+    @Override
+    public void generateOutput( TestData testData ) throws Exception {
+        Date date = new Date();
+        Properties runProperties = new Properties();
+        runProperties.setProperty(TIMESTAMP, String.valueOf(date.getTime()));
+        runProperties.setProperty(REPOSITORY, testData.getRepositoryName());
+        setIfNotNull(runProperties, IMPLEMENTATION_NAME, testData.getImplementationName());
+        setIfNotNull(runProperties, IMPLEMENTATION_VERSION, testData.getImplementationVersion());
+        setIfNotNull(runProperties, CONFIGURATION, System.getProperty("test.jcr.configuration.name"));
+        setIfNotNull(runProperties, GIT_REVISION, gitRevision());
+        runProperties.setProperty(JVM, System.getProperty("java.vm.vendor") + " " + System.getProperty("java.vm.name") + " "
+                                       + System.getProperty("java.runtime.version"));
+        runProperties.setProperty(JVM_ARGS, join(ManagementFactory.getRuntimeMXBean().getInputArguments(), " "));
+        runProperties.setProperty(OS, System.getProperty("os.name") + " " + System.getProperty("os.version") + " "
+                                      + System.getProperty("os.arch") + ", " + Runtime.getRuntime().availableProcessors()
+                                      + " cpus");
+        if (testData.getEnvironment() != null) {
+            runProperties.putAll(testData.getEnvironment().toProperties(ENVIRONMENT_PREFIX));
+        }
+        for (String name : runnerProperties.stringPropertyNames()) {
+            runProperties.setProperty(RUNNER_PREFIX + name, runnerProperties.getProperty(name));
+        }
+        for (String testName : testData.getSuccessfulTestNames()) {
+            runProperties.setProperty(DURATIONS_PREFIX + testName, join(testData.getTestDurationsNanos(testName), ","));
+        }
+        for (String testName : testData.getFailedTestNames()) {
+            runProperties.setProperty(FAILED_PREFIX + testName, "true");
+        }
+
+        File runFile = newRunFile(date, testData.getRepositoryName());
+        OutputStream stream = new FileOutputStream(runFile);
+        try {
+            runProperties.store(stream, testData.getRepositoryName());
+        } finally {
+            stream.close();
+        }
+        LOGGER.info("Results added to the history: {}", runFile.getAbsolutePath());
+    }
+
+    /**
+     * Creates the file of a run, named after its (UTC) date and repository, without ever reusing the file of another run.
+     */
+    private File newRunFile( Date date,
+                             String repositoryName ) throws IOException {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd-HHmmss");
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String prefix = dateFormat.format(date) + "-" + repositoryName.toLowerCase().replaceAll("[^a-z0-9._-]+", "-");
+        File runFile = new File(historyFolder, prefix + FILE_SUFFIX);
+        for (int i = 1; !runFile.createNewFile(); i++) {
+            runFile = new File(historyFolder, prefix + "-" + i + FILE_SUFFIX);
+        }
+        return runFile;
+    }
+
+    /**
+     * Returns the git revision of the tests, as given by the CI server (<code>GIT_COMMIT</code>) or by git itself, with a
+     * <code>-dirty</code> suffix if the working tree has local changes.
+     */
+    private static String gitRevision() {
+        String revision = System.getenv("GIT_COMMIT");
+        if (revision != null) {
+            return revision;
+        }
+        try {
+            revision = git("rev-parse", "HEAD");
+            return revision == null || git("status", "--porcelain", "--untracked-files=no") == null ? revision
+                                                                                                  : revision + "-dirty";
+        } catch (Exception e) {
+            LOGGER.debug("Cannot read the git revision", e);
+            return null;
+        }
+    }
+
+    /**
+     * Runs a git command in the current folder and returns its output, or null if it has none.
+     */
+    private static String git( String... arguments ) throws Exception {
+        String[] command = new String[arguments.length + 1];
+        command[0] = "git";
+        System.arraycopy(arguments, 0, command, 1, arguments.length);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        StringBuilder output = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                output.append(line).append("\n");
+            }
+        } finally {
+            reader.close();
+        }
+        if (process.waitFor() != 0) {
+            throw new IOException("git " + join(Arrays.asList(arguments), " ") + " failed: " + output);
+        }
+        String result = output.toString().trim();
+        return result.isEmpty() ? null : result;
+    }
+
+    private static void setIfNotNull( Properties properties,
+                                      String name,
+                                      String value ) {
+        if (value != null) {
+            properties.setProperty(name, value);
+        }
+    }
+
+    private static String join( List<?> values,
+                                String separator ) {
+        StringBuilder builder = new StringBuilder();
+        for (Iterator<?> it = values.iterator(); it.hasNext();) {
+            builder.append(it.next());
+            if (it.hasNext()) {
+                builder.append(separator);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests.output;
+
+import org.modeshape.jcr.perftests.EnvironmentInfo;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The results of all the runs which were added to a results history folder by {@link HistoryOutput}, which can be queried by
+ * repository, configuration, implementation version or date in order to follow the performance of the tests over time.
+ */
+public final class ResultsHistory {
+
+    private final List<Run> runs;
+
+    /**
+     * Loads all the runs of a history folder.
+     *
+     * @param historyFolder the folder; may not be null
+     * @throws IOException if a run cannot be read
+     */
+    public ResultsHistory( File historyFolder ) throws IOException {
+        List<Run> runs = new ArrayList<Run>();
+        File[] runFiles = historyFolder.listFiles(new FileFilter() {
+            @Override
+            public boolean accept( File file ) {
+                return file.isFile() && file.getName().endsWith(HistoryOutput.FILE_SUFFIX);
+            }
+        });
+        if (runFiles != null) {
+            for (File runFile : runFiles) {
+                runs.add(new Run(runFile));
+            }
+        }
+        Collections.sort(runs, new Comparator<Run>() {
+            @Override
+            public int compare( Run run1,
+                                Run run2 ) {
+                return run1.getDate().compareTo(run2.getDate());
+            }
+        });
+        this.runs = Collections.unmodifiableList(runs);
+    }
+
+    /**
+     * @return all the runs, from the oldest to the most recent; never null
+     */
+    public List<Run> getRuns() {
+        return runs;
+    }
+
+    /**
+     * Returns the runs of a repository within a period of time.
+     *
+     * @param repositoryName the name of the repository (e.g. "ModeShape 3.6.x local-inmemory"), or null for all of them
+     * @param from the date of the oldest run, or null
+     * @param to the date of the most recent run, or null
+     * @return the runs, from the oldest to the most recent; never null
+     */
+    public List<Run> getRuns( String repositoryName,
+                              Date from,
+                              Date to ) {
+        List<Run> result = new ArrayList<Run>();
+        for (Run run : runs) {
+            if ((repositoryName == null || repositoryName.equals(run.getRepositoryName()))
+                && (from == null || !run.getDate().before(from)) && (to == null || !run.getDate().after(to))) {
+                result.add(run);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the names of the repositories of all the runs; never null
+     */
+    public Set<String> getRepositoryNames() {
+        Set<String> names = new TreeSet<String>();
+        for (Run run : runs) {
+            names.add(run.getRepositoryName());
+        }
+        return names;
+    }
+
+    /**
+     * The results of a single run of the tests against a repository.
+     */
+    public static final class Run {
+
+        private final File file;
+        private final Properties properties;
+        private final Map<String, List<Long>> durationsMap = new TreeMap<String, List<Long>>();
+        private final Set<String> failedTests = new TreeSet<String>();
+
+        Run( File file ) throws IOException {
+            this.file = file;
+            this.properties = new Properties();
+            InputStream stream = new FileInputStream(file);
+            try {
+                properties.load(stream);
+            } finally {
+                stream.close();
+            }
+            for (String name : properties.stringPropertyNames()) {
+                if (name.startsWith(HistoryOutput.DURATIONS_PREFIX)) {
+                    List<Long> durations = new ArrayList<Long>();
+                    for (String duration : properties.getProperty(name).split(",")) {
+                        durations.add(Long.valueOf(duration));
+                    }
+                    durationsMap.put(name.substring(HistoryOutput.DURATIONS_PREFIX.length()), durations);
+                } else if (name.startsWith(HistoryOutput.FAILED_PREFIX)) {
+                    failedTests.add(name.substring(HistoryOutput.FAILED_PREFIX.length()));
+                }
+            }
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public Date getDate() {
+            return new Date(Long.valueOf(properties.getProperty(HistoryOutput.TIMESTAMP)));
+        }
+
+        public String getRepositoryName() {
+            return properties.getProperty(HistoryOutput.REPOSITORY);
+        }
+
+        public String getImplementationName() {
+            return properties.getProperty(HistoryOutput.IMPLEMENTATION_NAME);
+        }
+
+        public String getImplementationVersion() {
+            return properties.getProperty(HistoryOutput.IMPLEMENTATION_VERSION);
+        }
+
+        public String getConfigurationName() {
+            return properties.getProperty(HistoryOutput.CONFIGURATION);
+        }
+
+        /**
+         * @return the git revision of the tests, with a <code>-dirty</code> suffix if they had local changes, or null if unknown
+         */
+        public String getGitRevision() {
+            return properties.getProperty(HistoryOutput.GIT_REVISION);
+        }
+
+        public String getJvm() {
+            return properties.getProperty(HistoryOutput.JVM);
+        }
+
+        public String getJvmArguments() {
+            return properties.getProperty(HistoryOutput.JVM_ARGS);
+        }
+
+        public String getOs() {
+            return properties.getProperty(HistoryOutput.OS);
+        }
+
+        /**
+         * @return the machine and the environment in which the tests were run; never null, but empty for the runs which were
+         *         added to the history before the environment was recorded
+         */
+        public EnvironmentInfo getEnvironment() {
+            return EnvironmentInfo.fromProperties(properties, HistoryOutput.ENVIRONMENT_PREFIX);
+        }
+
+        /**
+         * @param name the name of a runner parameter (e.g. "repeat.count")
+         * @return the value of the parameter in this run, or null
+         */
+        public String getRunnerProperty( String name ) {
+            return properties.getProperty(HistoryOutput.RUNNER_PREFIX + name);
+        }
+
+        public Set<String> getSuccessfulTestNames() {
+            return Collections.unmodifiableSet(durationsMap.keySet());
+        }
+
+        public Set<String> getFailedTestNames() {
+            return Collections.unmodifiableSet(failedTests);
+        }
+
+        /**
+         * @param testName the name of a test
+         * @return the durations of the runs of the test, in nanoseconds; never null but empty if the test didn't succeed
+         */
+        public List<Long> getTestDurationsNanos( String testName ) {
+            List<Long> durations = durationsMap.get(testName);
+            return durations != null ? Collections.unmodifiableList(durations) : Collections.<Long>emptyList();
+        }
+
+        /**
+         * @return a map of the form [test name, (duration ns 1, duration ns 2...)]; never null
+         */
+        public Map<String, List<Long>> getDurationsMap() {
+            return Collections.unmodifiableMap(durationsMap);
+        }
+
+        @Override
+        public String toString() {
+            return file.getName();
+        }
+    }
+}
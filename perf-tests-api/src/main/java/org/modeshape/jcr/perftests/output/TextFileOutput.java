@@ -16,8 +16,15 @@
  */
 package org.modeshape.jcr.perftests.output;
 
+import org.modeshape.jcr.perftests.BackgroundJobStats;
+import org.modeshape.jcr.perftests.DurationRecorder;
+import org.modeshape.jcr.perftests.EnvironmentInfo;
+import org.modeshape.jcr.perftests.IterationMetrics;
+import org.modeshape.jcr.perftests.LatencyHistogram;
 import org.modeshape.jcr.perftests.OutputCfg;
+import org.modeshape.jcr.perftests.ProcessUsage;
 import org.modeshape.jcr.perftests.StatisticalData;
+import org.modeshape.jcr.perftests.StorageMetrics;
 import org.modeshape.jcr.perftests.TestData;
 import org.modeshape.jcr.perftests.util.DurationsConverter;
 import java.io.File;
@@ -25,6 +32,7 @@ import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -49,17 +57,33 @@ public final class TextFileOutput extends TestDataOutput {
     public void generateOutput( TestData testData ) throws Exception {
         PrintStream ps = new PrintStream(new FileOutputStream(reportFile, true));
         try {
-            printHeader(ps);
+            printHeader(testData, ps);
             printStatisticalData(testData, ps);
+            printOperationsData(testData, ps);
+            printThroughputData(testData, ps);
+            printThreadsData(testData, ps);
+            printMetricsData(testData, ps);
+            printProcessData(testData, ps);
+            printStorageData(testData, ps);
+            printBackgroundJobsData(testData, ps);
+            printInvalidTests(testData, ps);
+            printStalls(testData, ps);
             printFailures(testData, ps);
         } finally {
             ps.close();
         }
     }
 
-    private void printHeader( PrintStream ps ) {
+    private void printHeader( TestData testData, PrintStream ps ) {
         ps.println();
         ps.println("Date: " + SimpleDateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.MEDIUM).format(new Date()));
+        EnvironmentInfo environment = testData.getEnvironment();
+        if (environment != null) {
+            ps.println("Machine: " + environment.machineSummary());
+            String jvmArgs = environment.get(EnvironmentInfo.JVM_ARGS);
+            ps.println("JVM: " + environment.get(EnvironmentInfo.JVM_VENDOR) + " " + environment.get(EnvironmentInfo.JVM_VERSION)
+                       + (jvmArgs != null ? " " + jvmArgs : ""));
+        }
         ps.printf("Test [Minimum, 1st Quartile, Median, 3rd Quartile, Maximum, Standard Deviation] %s %n", timeUnit);
         ps.println("-----------------------------------------------------------------------");
     }
@@ -75,16 +99,270 @@ public final class TextFileOutput extends TestDataOutput {
         ps.println("See the log file for more information");
     }
 
+    private void printInvalidTests( TestData testData, PrintStream ps ) {
+        Set<String> invalidTestNames = testData.getInvalidTestNames();
+        if (invalidTestNames.isEmpty()) {
+            return;
+        }
+        ps.println("-----------------------------------------------------------------------");
+        ps.println("Invalid results count:" + invalidTestNames.size());
+        for (String testName : invalidTestNames) {
+            ps.println(testName + ": " + testData.getInvalidReason(testName));
+        }
+    }
+
+    private void printStalls( TestData testData, PrintStream ps ) {
+        Set<String> stalledTestNames = testData.getStalledTestNames();
+        if (stalledTestNames.isEmpty()) {
+            return;
+        }
+        ps.println("-----------------------------------------------------------------------");
+        ps.println("Stalled tests count:" + stalledTestNames.size());
+        for (String testName : stalledTestNames) {
+            for (String stall : testData.getStalls(testName)) {
+                ps.println(testName + ": " + stall);
+            }
+        }
+    }
+
+    private void printThreadsData( TestData testData, PrintStream ps ) {
+        if (testData.getThreadLatencyTestNames().isEmpty()) {
+            return;
+        }
+        ps.println("-----------------------------------------------------------------------");
+        ps.printf("Thread [Runs, p50, p99, Maximum] %s %n", TimeUnit.MICROSECONDS);
+        for (String testName : testData.getThreadLatencyTestNames()) {
+            List<LatencyHistogram> threadLatencies = testData.getThreadLatencies(testName);
+            for (int thread = 0; thread < threadLatencies.size(); thread++) {
+                LatencyHistogram latencies = threadLatencies.get(thread);
+                ps.printf(testName + ".thread" + (thread + 1) + " [%d; %.2f; %.2f; %.2f]%n", latencies.getCount(),
+                          toMicros(latencies.getValueAtPercentile(50)), toMicros(latencies.getValueAtPercentile(99)),
+                          toMicros(latencies.getMax()));
+            }
+        }
+    }
+
+    private void printBackgroundJobsData( TestData testData, PrintStream ps ) {
+        boolean headerPrinted = false;
+        for (String testName : testData.getBackgroundJobTestNames()) {
+            for (BackgroundJobStats stats : testData.getBackgroundJobs(testName)) {
+                if (!headerPrinted) {
+                    ps.println("-----------------------------------------------------------------------");
+                    ps.printf("Background job [Jobs, Ops/s, Errors, p50, p99, Maximum] %s %n", TimeUnit.MICROSECONDS);
+                    headerPrinted = true;
+                }
+                LatencyHistogram latencies = stats.getLatencies();
+                ps.printf(testName + "." + stats.getName() + "%s [%d; %.2f; %d; %.2f; %.2f; %.2f]%n",
+                          stats.getFailure() != null ? " (died)" : "", stats.getJobCount(), stats.getOperationsPerSecond(),
+                          stats.getErrorCount(), toMicros(latencies.getValueAtPercentile(50)),
+                          toMicros(latencies.getValueAtPercentile(99)), toMicros(latencies.getMax()));
+            }
+        }
+    }
+
+    private void printOperationsData( TestData testData, PrintStream ps ) {
+        boolean headerPrinted = false;
+        for (String testName : testData.getOperationTestNames()) {
+            for (String operationName : testData.getOperationNames(testName)) {
+                if (!headerPrinted) {
+                    ps.println("-----------------------------------------------------------------------");
+                    ps.printf("Operation [p50, p90, p99, p99.9, Maximum] %s %n", TimeUnit.MICROSECONDS);
+                    headerPrinted = true;
+                }
+                LatencyHistogram latencies = testData.getOperationLatencies(testName, operationName);
+                ps.printf(testName + "." + operationName + "(%d ops, %.2f ops/s) [%.2f; %.2f; %.2f; %.2f; %.2f]%n",
+                        latencies.getCount(), testData.getOperationsPerSecond(testName, operationName),
+                        toMicros(latencies.getValueAtPercentile(50)), toMicros(latencies.getValueAtPercentile(90)),
+                        toMicros(latencies.getValueAtPercentile(99)), toMicros(latencies.getValueAtPercentile(99.9)),
+                        toMicros(latencies.getMax()));
+            }
+        }
+    }
+
+    private void printThroughputData( TestData testData, PrintStream ps ) {
+        boolean headerPrinted = false;
+        for (String testName : testData.getOperationTestNames()) {
+            double throughput = testData.getThroughput(testName);
+            if (throughput == 0) {
+                continue;
+            }
+            if (!headerPrinted) {
+                ps.println("-----------------------------------------------------------------------");
+                ps.println("Concurrent/open-loop test [Throughput (runs/s), Dropped runs]");
+                headerPrinted = true;
+            }
+            ps.printf(testName + " [%.2f; %d]%n", throughput, testData.getDroppedRuns(testName));
+        }
+    }
+
+    private void printMetricsData( TestData testData, PrintStream ps ) {
+        boolean headerPrinted = false;
+        for (String testName : testData.getSuccessfulTestNames()) {
+            List<IterationMetrics> metrics = testData.getIterationMetrics(testName);
+            if (metrics.isEmpty()) {
+                continue;
+            }
+            if (!headerPrinted) {
+                ps.println("-----------------------------------------------------------------------");
+                ps.println("Test [Allocated/run (KB), Allocated/op (B), GC count/run, GC time/run (ms), Max heap used (MB)]");
+                headerPrinted = true;
+            }
+            long allocatedBytes = 0;
+            long gcCount = 0;
+            long gcTimeMillis = 0;
+            long maxHeapUsedBytes = 0;
+            for (IterationMetrics runMetrics : metrics) {
+                if (allocatedBytes >= 0) {
+                    allocatedBytes = runMetrics.getAllocatedBytes() >= 0 ? allocatedBytes + runMetrics.getAllocatedBytes() : -1;
+                }
+                gcCount += Math.max(0, runMetrics.getGcCount());
+                gcTimeMillis += Math.max(0, runMetrics.getGcTimeMillis());
+                maxHeapUsedBytes = Math.max(maxHeapUsedBytes, runMetrics.getHeapUsedBytes());
+            }
+            int runs = metrics.size();
+            long operations = testData.getOperationCount(testName);
+            ps.printf(testName + " [%s; %s; %.2f; %.2f; %.2f]%n",
+                      allocatedBytes < 0 ? "n/a" : String.format("%.2f", (double) allocatedBytes / runs / 1024),
+                      allocatedBytes < 0 || operations == 0 ? "n/a" : String.format("%.2f", (double) allocatedBytes / operations),
+                      (double) gcCount / runs, (double) gcTimeMillis / runs, (double) maxHeapUsedBytes / (1024 * 1024));
+        }
+    }
+
+    private void printProcessData( TestData testData, PrintStream ps ) {
+        boolean headerPrinted = false;
+        for (String testName : testData.getSuccessfulTestNames()) {
+            List<ProcessUsage> usages = new ArrayList<ProcessUsage>();
+            for (IterationMetrics runMetrics : testData.getIterationMetrics(testName)) {
+                if (runMetrics.getProcessUsage() != null) {
+                    usages.add(runMetrics.getProcessUsage());
+                }
+            }
+            if (usages.isEmpty()) {
+                continue;
+            }
+            if (!headerPrinted) {
+                ps.println("-----------------------------------------------------------------------");
+                ps.println("Test [CPU user/run (ms), CPU sys/run (ms), CPU utilization (cores), Voluntary switches/run, "
+                           + "Involuntary switches/run, Read/run (KB), Written/run (KB), Max RSS (MB), Max threads]");
+                headerPrinted = true;
+            }
+            long[] totals = new long[6];
+            long maxResidentBytes = 0;
+            long maxThreads = 0;
+            for (ProcessUsage usage : usages) {
+                long[] values = {usage.getCpuUserMillis(), usage.getCpuSystemMillis(), usage.getVoluntaryContextSwitches(),
+                        usage.getInvoluntaryContextSwitches(), usage.getReadBytes(), usage.getWrittenBytes()};
+                for (int i = 0; i < values.length; i++) {
+                    totals[i] += Math.max(0, values[i]);
+                }
+                maxResidentBytes = Math.max(maxResidentBytes, usage.getResidentBytes());
+                maxThreads = Math.max(maxThreads, usage.getThreadCount());
+            }
+            int runs = usages.size();
+            // the CPU time of all the threads of the process per unit of wall clock time of the runs
+            double meanRunMillis = testData.getTestDurations(testName).getMean() / TimeUnit.MILLISECONDS.toNanos(1);
+            double cpuUtilization = meanRunMillis > 0 ? (double) (totals[0] + totals[1]) / runs / meanRunMillis : 0;
+            ps.printf(testName + " [%.2f; %.2f; %.2f; %.2f; %.2f; %.2f; %.2f; %.2f; %d]%n", (double) totals[0] / runs,
+                      (double) totals[1] / runs, cpuUtilization, (double) totals[2] / runs, (double) totals[3] / runs,
+                      (double) totals[4] / runs / 1024, (double) totals[5] / runs / 1024,
+                      (double) maxResidentBytes / (1024 * 1024), maxThreads);
+        }
+
+        headerPrinted = false;
+        for (String testName : testData.getProcessSampledTestNames()) {
+            List<ProcessUsage> samples = testData.getProcessSamples(testName);
+            if (samples.size() < 2) {
+                continue;
+            }
+            if (!headerPrinted) {
+                ps.println("-----------------------------------------------------------------------");
+                ps.println("Suite [Duration (s), CPU utilization (cores), Read (MB), Written (MB), Peak RSS (MB), Peak threads, Samples]");
+                headerPrinted = true;
+            }
+            ProcessUsage total = samples.get(samples.size() - 1).since(samples.get(0));
+            long peakResidentBytes = 0;
+            long peakThreads = 0;
+            for (ProcessUsage sample : samples) {
+                peakResidentBytes = Math.max(peakResidentBytes, sample.getResidentBytes());
+                peakThreads = Math.max(peakThreads, sample.getThreadCount());
+            }
+            double cpuUtilization = total.getTimeMillis() > 0
+                                    ? (double) (total.getCpuUserMillis() + total.getCpuSystemMillis()) / total.getTimeMillis() : 0;
+            ps.printf(testName + " [%.2f; %.2f; %.2f; %.2f; %.2f; %d; %d]%n", (double) total.getTimeMillis() / 1000, cpuUtilization,
+                      (double) Math.max(0, total.getReadBytes()) / (1024 * 1024),
+                      (double) Math.max(0, total.getWrittenBytes()) / (1024 * 1024), (double) peakResidentBytes / (1024 * 1024),
+                      peakThreads, samples.size());
+        }
+    }
+
+    private void printStorageData( TestData testData, PrintStream ps ) {
+        if (testData.getStorageTestNames().isEmpty()) {
+            return;
+        }
+        ps.println("-----------------------------------------------------------------------");
+        ps.println("Test [Content (MB), Binaries (MB), Indexes (MB), Other (MB), Disk growth (MB), Iterations, Nodes saved, "
+                   + "Logical saved (MB), Iteration disk growth (MB), Disk bytes/node, Written (MB), Write amplification, "
+                   + "Journal (MB), Log (MB)]");
+        double megabyte = 1024 * 1024;
+        for (String testName : testData.getStorageTestNames()) {
+            StorageMetrics storage = testData.getStorage(testName);
+            ps.printf(testName + " [%.2f; %.2f; %.2f; %.2f; %.2f; %d; %s; %s; %s; %s; %s; %s; %s; %s]%n",
+                      storage.getDiskBytes(StorageMetrics.CONTENT) / megabyte, storage.getDiskBytes(StorageMetrics.BINARIES) / megabyte,
+                      storage.getDiskBytes(StorageMetrics.INDEXES) / megabyte, storage.getDiskBytes(StorageMetrics.OTHER) / megabyte,
+                      storage.getDiskGrowthBytes() / megabyte, storage.getIterationCount(),
+                      storage.getNodeCount() < 0 ? "n/a" : String.valueOf(storage.getNodeCount()),
+                      formatMegabytes(storage.getLogicalBytes()), formatMegabytes(storage.getIterationDiskGrowthBytes()),
+                      formatRatio(storage.getDiskBytesPerNode()), formatMegabytes(storage.getWrittenBytes()),
+                      formatRatio(storage.getWriteAmplification()), formatMegabytes(storage.getJournalBytes()),
+                      formatMegabytes(storage.getLogBytes()));
+        }
+    }
+
+    private String formatMegabytes( long bytes ) {
+        return bytes < 0 ? "n/a" : String.format("%.2f", (double) bytes / (1024 * 1024));
+    }
+
+    private String formatRatio( double ratio ) {
+        return Double.isNaN(ratio) ? "n/a" : String.format("%.2f", ratio);
+    }
+
+    private String warmupInfo( TestData testData, String testName ) {
+        Integer warmupRuns = testData.getWarmupRuns(testName);
+        if (warmupRuns == null) {
+            return "";
+        }
+        return ", " + warmupRuns + " warmup runs" + (testData.reachedSteadyState(testName) ? " until steady" : "");
+    }
+
+    private double toMicros( long nanos ) {
+        return (double) nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
     private void printStatisticalData( TestData testData, PrintStream ps ) {
         Set<String> testNames = testData.getSuccessfulTestNames();
 
         for (String testName : testNames) {
-            List<Double> convertedDurations = DurationsConverter.convertFromNanos(testData.getTestDurationsNanos(testName), timeUnit);
-            StatisticalData statisticalData = new StatisticalData(convertedDurations.toArray(new Double[convertedDurations.size()]));
+            DurationRecorder durations = testData.getTestDurations(testName);
+            double[] fiveNrSummary;
+            double standardDeviation;
+            String runs = durations.getCount() + " runs";
+            if (!durations.isTruncated()) {
+                double[] convertedDurations = DurationsConverter.convertFromNanos(durations.getRetainedSamples(), timeUnit);
+                StatisticalData statisticalData = new StatisticalData(convertedDurations);
+                fiveNrSummary = statisticalData.fiveNumberSummary();
+                standardDeviation = statisticalData.standardDeviation();
+            } else {
+                //the older runs are only in the histogram, whose percentiles are within its relative error
+                LatencyHistogram histogram = durations.getHistogram();
+                fiveNrSummary = DurationsConverter.convertFromNanos(new long[] {durations.getMin(), histogram.getValueAtPercentile(25),
+                        histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(75), durations.getMax()}, timeUnit);
+                standardDeviation = DurationsConverter.convertFromNanos(durations.getStandardDeviation(), timeUnit);
+                runs += ", histogram";
+            }
 
-            double[] fiveNrSummary = statisticalData.fiveNumberSummary();
-            ps.printf(testName + "(%d runs) [%.4f; %.4f; %.4f; %.4f; %.4f; %.4f]%n", convertedDurations.size(),
-                    fiveNrSummary[0], fiveNrSummary[1], fiveNrSummary[2], fiveNrSummary[3], fiveNrSummary[4], statisticalData.standardDeviation());
+            String invalid = testData.getInvalidReason(testName) != null ? ", INVALID" : "";
+            ps.printf(testName + "(%s%s%s) [%.4f; %.4f; %.4f; %.4f; %.4f; %.4f]%n", runs, warmupInfo(testData, testName), invalid,
+                    fiveNrSummary[0], fiveNrSummary[1], fiveNrSummary[2], fiveNrSummary[3], fiveNrSummary[4], standardDeviation);
         }
     }
 }
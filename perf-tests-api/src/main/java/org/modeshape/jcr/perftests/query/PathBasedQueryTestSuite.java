@@ -23,17 +23,20 @@ import javax.jcr.Session;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryManager;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
 /**
  * <code>PathBasedQueryTestSuite</code> implements a performance test executing a query that has a path constraint with low
  * selectivity, whereas the predicate is very selective.
  */
+@PerformanceSuite( tags = {"query"} )
 public class PathBasedQueryTestSuite extends AbstractPerformanceTestSuite {
 
     private Session session;
     private Node root;
     private int nodeCount;
+    private Random random;
 
     public PathBasedQueryTestSuite( SuiteConfiguration suiteConfiguration ) {
         super(suiteConfiguration);
@@ -42,6 +45,7 @@ public class PathBasedQueryTestSuite extends AbstractPerformanceTestSuite {
     @Override
     public void beforeSuite() throws Exception {
         session = newSession();
+        random = newRandom();
         root = session.getRootNode().addNode(getClass().getSimpleName(), "nt:unstructured");
         nodeCount = suiteConfiguration.getNodeCount();
         int count = 0;
@@ -63,9 +67,8 @@ public class PathBasedQueryTestSuite extends AbstractPerformanceTestSuite {
             Node result = q.execute().getNodes().nextNode();
             assert result != null;
         }
-        Random rnd = new Random();
         for (int i = 0; i < nodeCount; i++) {
-            q = qm.createQuery("/jcr:root" + root.getPath() + "/*/*[@count = " + rnd.nextInt(nodeCount * nodeCount) + "]",
+            q = qm.createQuery("/jcr:root" + root.getPath() + "/*/*[@count = " + random.nextInt(nodeCount * nodeCount) + "]",
                                Query.XPATH);
             Node result = q.execute().getNodes().nextNode();
             assert result != null;
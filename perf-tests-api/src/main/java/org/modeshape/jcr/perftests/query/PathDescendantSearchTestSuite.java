@@ -23,11 +23,13 @@ import javax.jcr.Session;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryManager;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
 /**
  * Performance test to check performance of queries on sub-trees.
  */
+@PerformanceSuite( tags = {"query"} )
 public class PathDescendantSearchTestSuite extends AbstractPerformanceTestSuite {
 
     private Session session;
@@ -19,11 +19,13 @@ package org.modeshape.jcr.perftests.query;
 import javax.jcr.RepositoryException;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryManager;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
 /**
  * SQL-2 version of the sub-tree performance test.
  */
+@PerformanceSuite( tags = {"query"} )
 public class SQL2PathDescendantSearchTestSuite extends PathDescendantSearchTestSuite {
 
     public SQL2PathDescendantSearchTestSuite( SuiteConfiguration suiteConfiguration ) {
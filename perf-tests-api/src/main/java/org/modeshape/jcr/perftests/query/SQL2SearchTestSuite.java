@@ -19,8 +19,10 @@ package org.modeshape.jcr.perftests.query;
 import javax.jcr.RepositoryException;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryManager;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
+@PerformanceSuite( tags = {"query"} )
 public class SQL2SearchTestSuite extends SimpleSearchTestSuite {
 
     public SQL2SearchTestSuite( SuiteConfiguration suiteConfiguration ) {
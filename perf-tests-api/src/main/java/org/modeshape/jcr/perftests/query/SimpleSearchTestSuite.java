@@ -23,8 +23,10 @@ import javax.jcr.Session;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryManager;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
+@PerformanceSuite( tags = {"query"} )
 public class SimpleSearchTestSuite extends AbstractPerformanceTestSuite {
 
     private Session session;
@@ -52,17 +54,24 @@ public class SimpleSearchTestSuite extends AbstractPerformanceTestSuite {
 
     @Override
     public void runTest() throws Exception {
-        QueryManager manager = session.getWorkspace().getQueryManager();
+        QueryManager manager = (isRunConcurrently() ? workerSession() : session).getWorkspace().getQueryManager();
         for (int i = 0; i < nodeCount; i++) {
+            long start = startOperation();
             Query query = createQuery(manager, i);
             NodeIterator iterator = query.execute().getNodes();
             while (iterator.hasNext()) {
                 Node node = iterator.nextNode();
                 assert node.getProperty("testcount").getLong() == i;
             }
+            endOperation("query", start);
         }
     }
 
+    @Override
+    public boolean supportsConcurrentRuns() {
+        return true;
+    }
+
     @Override
     public void afterSuite() throws RepositoryException {
         root.remove();
@@ -25,6 +25,7 @@ import javax.jcr.query.QueryManager;
 import javax.jcr.query.Row;
 import javax.jcr.query.RowIterator;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 import java.util.Random;
 
@@ -34,9 +35,10 @@ import java.util.Random;
  * The query is constructed in a way that should allow a smart implementation to perform the join quite efficiently.
  *
  */
+@PerformanceSuite( tags = {"query"} )
 public class ThreeWayJoinTestSuite extends AbstractPerformanceTestSuite {
 
-    private final Random random = new Random();
+    private final Random random;
 
     private Session session;
     private Node root;
@@ -44,6 +46,7 @@ public class ThreeWayJoinTestSuite extends AbstractPerformanceTestSuite {
 
     public ThreeWayJoinTestSuite( SuiteConfiguration suiteConfiguration ) {
         super(suiteConfiguration);
+        this.random = newRandom();
     }
 
     @Override
@@ -77,7 +80,7 @@ public class ThreeWayJoinTestSuite extends AbstractPerformanceTestSuite {
                         + " INNER JOIN [nt:unstructured] AS c ON b.bar = c.baz"
                         + " WHERE a.foo = " + randFooValue;
 
-        QueryManager manager = session.getWorkspace().getQueryManager();
+        QueryManager manager = (isRunConcurrently() ? workerSession() : session).getWorkspace().getQueryManager();
         RowIterator iterator = manager.createQuery(query, Query.JCR_SQL2).execute().getRows();
         assert iterator.getSize() == nodeCount * nodeCount * nodeCount;
         while (iterator.hasNext()) {
@@ -92,6 +95,11 @@ public class ThreeWayJoinTestSuite extends AbstractPerformanceTestSuite {
         }
     }
 
+    @Override
+    public boolean supportsConcurrentRuns() {
+        return true;
+    }
+
     @Override
     public void afterSuite() throws RepositoryException {
         root.remove();
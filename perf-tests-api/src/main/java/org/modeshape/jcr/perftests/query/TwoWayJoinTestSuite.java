@@ -27,15 +27,17 @@ import javax.jcr.query.QueryManager;
 import javax.jcr.query.Row;
 import javax.jcr.query.RowIterator;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
 /**
  * Performance test for a  two-way join that selects <code>{@link TwoWayJoinTestSuite#nodeCount}</code> pairs from
  * a set of <code>nodeCount * nodeCount</code> nodes.
  */
+@PerformanceSuite( tags = {"query"} )
 public class TwoWayJoinTestSuite extends AbstractPerformanceTestSuite {
 
-    private final Random random = new Random();
+    private final Random random;
 
     private Session session;
     private Node root;
@@ -43,6 +45,7 @@ public class TwoWayJoinTestSuite extends AbstractPerformanceTestSuite {
 
     public TwoWayJoinTestSuite( SuiteConfiguration suiteConfiguration ) {
         super(suiteConfiguration);
+        this.random = newRandom();
     }
 
     @Override
@@ -70,7 +73,7 @@ public class TwoWayJoinTestSuite extends AbstractPerformanceTestSuite {
                 + " INNER JOIN [nt:unstructured] AS b ON a.foo = b.bar"
                 + " WHERE a.foo = " + fooValue;
 
-        QueryManager manager = session.getWorkspace().getQueryManager();
+        QueryManager manager = (isRunConcurrently() ? workerSession() : session).getWorkspace().getQueryManager();
         RowIterator iterator = manager.createQuery(query, Query.JCR_SQL2).execute().getRows();
         assert iterator.getSize() == nodeCount;
         while (iterator.hasNext()) {
@@ -82,6 +85,11 @@ public class TwoWayJoinTestSuite extends AbstractPerformanceTestSuite {
         }
     }
 
+    @Override
+    public boolean supportsConcurrentRuns() {
+        return true;
+    }
+
     @Override
     public void afterSuite() throws RepositoryException {
         root.remove();
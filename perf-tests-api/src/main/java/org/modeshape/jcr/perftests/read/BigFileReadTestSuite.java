@@ -20,38 +20,43 @@ import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 import org.modeshape.jcr.perftests.util.BinaryHelper;
 import org.modeshape.jcr.perftests.util.BinaryImpl;
 import java.util.Calendar;
+import java.util.Random;
 
 /**
  * Performance test which reads repeatedly several nodes which represent large files.
  */
+@PerformanceSuite( tags = {"read", "binary"} )
 public class BigFileReadTestSuite extends AbstractPerformanceTestSuite {
 
-    private static final int FILE_SIZE_MB = 100 * 1024 * 1024;
+    private final int fileSize;
+    private final int nodeCount;
 
     private Session session;
     private Node root;
-    private int nodeCount;
 
     public BigFileReadTestSuite( SuiteConfiguration suiteConfiguration ) {
         super(suiteConfiguration);
+        this.fileSize = suiteConfiguration.getInt("fileSize", 100 * 1024 * 1024);
+        this.nodeCount = suiteConfiguration.getInt("fileCount", 2);
     }
 
     @Override
     public void beforeSuite() throws RepositoryException {
         session = newSession();
+        Random random = newRandom();
         root = session.getRootNode().addNode("BigFileReadTestSuite", "nt:folder");
-        nodeCount = 2;
 
         for (int i = 0; i < nodeCount; i++) {
             Node file = root.addNode("file" + i, "nt:file");
             Node content = file.addNode("jcr:content", "nt:resource");
             content.setProperty("jcr:mimeType", "application/octet-stream");
             content.setProperty("jcr:lastModified", Calendar.getInstance());
-            content.setProperty("jcr:data", new BinaryImpl(FILE_SIZE_MB));
+            content.setProperty("jcr:data", new BinaryImpl(fileSize, random));
         }
         session.save();
     }
@@ -61,7 +66,7 @@ public class BigFileReadTestSuite extends AbstractPerformanceTestSuite {
         for (int i = 0; i < nodeCount; i++) {
             Node file = root.getNode("file" + i);
             Node content = file.getNode("jcr:content");
-            BinaryHelper.assertExpectedSize(content.getProperty("jcr:data").getBinary(), FILE_SIZE_MB);
+            BinaryHelper.assertExpectedSize(content.getProperty("jcr:data").getBinary(), fileSize);
         }
     }
 
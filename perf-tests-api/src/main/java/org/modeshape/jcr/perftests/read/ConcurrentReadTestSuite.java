@@ -21,24 +21,30 @@ import java.util.concurrent.Callable;
 import javax.jcr.Node;
 import javax.jcr.Session;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
 /**
  * Test case that traverses a set of unstructured nodes while a number of concurrent readers randomly access nodes from within
  * this tree.
  */
+@PerformanceSuite( tags = {"read", "concurrency"} )
 public class ConcurrentReadTestSuite extends AbstractPerformanceTestSuite {
 
-    private static final int CONCURRENT_READER_COUNT = 20;
     public static final int READERS_COUNT = 1000;
 
     protected int nodeCount;
 
+    private final int backgroundReaderCount;
+    private final int readCount;
+
     private Session session;
     private Node root;
 
     public ConcurrentReadTestSuite( SuiteConfiguration suiteConfiguration ) {
         super(suiteConfiguration);
+        this.backgroundReaderCount = suiteConfiguration.getInt("backgroundReaderCount", 20);
+        this.readCount = suiteConfiguration.getInt("readCount", READERS_COUNT);
     }
 
     @Override
@@ -55,16 +61,25 @@ public class ConcurrentReadTestSuite extends AbstractPerformanceTestSuite {
             session.save();
         }
 
-        for (int i = 0; i < CONCURRENT_READER_COUNT; i++) {
+        for (int i = 0; i < backgroundReaderCount; i++) {
             addBackgroundJob(new Reader());
         }
     }
 
     protected class Reader implements Callable<Void> {
 
+        private final Session session;
         @SuppressWarnings( "synthetic-access" )
-        private final Session session = newSession();
-        private final Random random = new Random();
+        private final Random random = newRandom();
+
+        @SuppressWarnings( "synthetic-access" )
+        protected Reader() {
+            this(newSession());
+        }
+
+        protected Reader( Session session ) {
+            this.session = session;
+        }
 
         @Override
         public Void call() throws Exception {
@@ -77,12 +92,19 @@ public class ConcurrentReadTestSuite extends AbstractPerformanceTestSuite {
 
     @Override
     public void runTest() throws Exception {
-        Reader reader = new Reader();
-        for (int i = 0; i < READERS_COUNT; i++) {
+        Reader reader = isRunConcurrently() ? new Reader(workerSession()) : new Reader();
+        for (int i = 0; i < readCount; i++) {
+            long start = startOperation();
             reader.call();
+            endOperation("getNode", start);
         }
     }
 
+    @Override
+    public boolean supportsConcurrentRuns() {
+        return true;
+    }
+
     @Override
     public void afterSuite() throws Exception {
         root.remove();
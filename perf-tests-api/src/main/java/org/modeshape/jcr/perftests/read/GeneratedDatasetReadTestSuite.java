@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests.read;
+
+import java.util.List;
+import java.util.Random;
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.Session;
+import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.DatasetGenerator;
+import org.modeshape.jcr.perftests.DatasetShape;
+import org.modeshape.jcr.perftests.Distribution;
+import org.modeshape.jcr.perftests.PerformanceSuite;
+import org.modeshape.jcr.perftests.SuiteConfiguration;
+
+/**
+ * Performance test which reads random nodes (and all their properties) of a synthetic tree, whose shape is given by the
+ * {@code dataset.*} parameters (see {@link DatasetShape#fromConfiguration(SuiteConfiguration, DatasetShape)}).
+ */
+@PerformanceSuite( tags = {"read"} )
+public class GeneratedDatasetReadTestSuite extends AbstractPerformanceTestSuite {
+
+    private static final DatasetShape DEFAULT_SHAPE = new DatasetShape().setFanOut(Distribution.uniform(1, 10))
+                                                                        .setDepth(3)
+                                                                        .setPropertyCount(Distribution.uniform(1, 5))
+                                                                        .setPropertySize(Distribution.zipf(1000, 1.2))
+                                                                        .setBinaryRatio(0.1)
+                                                                        .setReferenceDensity(0.1);
+
+    private final int readCount;
+    private final Random random;
+
+    private Session session;
+    private Node root;
+    private List<String> paths;
+
+    public GeneratedDatasetReadTestSuite( SuiteConfiguration suiteConfiguration ) {
+        super(suiteConfiguration);
+        this.readCount = suiteConfiguration.getInt("readCount", 100);
+        this.random = newRandom();
+    }
+
+    @Override
+    public void beforeSuite() throws Exception {
+        session = newSession();
+        DatasetGenerator generator = new DatasetGenerator(DatasetShape.fromConfiguration(suiteConfiguration, DEFAULT_SHAPE));
+        root = generator.generate(session.getRootNode(), getClass().getSimpleName());
+        paths = generator.getSampledPaths();
+    }
+
+    @Override
+    public void runTest() throws Exception {
+        if (paths.isEmpty()) {
+            return;
+        }
+        Session session = workerSession();
+        for (int i = 0; i < readCount; i++) {
+            String path = paths.get(random.nextInt(paths.size()));
+            long start = startOperation();
+            Node node = session.getNode(path);
+            for (PropertyIterator properties = node.getProperties(); properties.hasNext();) {
+                Property property = properties.nextProperty();
+                if (property.isMultiple()) {
+                    property.getValues();
+                } else if (property.getType() == PropertyType.BINARY) {
+                    property.getBinary().getSize();
+                } else {
+                    property.getValue();
+                }
+            }
+            endOperation("readNode", start);
+        }
+    }
+
+    @Override
+    public boolean supportsConcurrentRuns() {
+        return true;
+    }
+
+    @Override
+    public void afterSuite() throws Exception {
+        root.remove();
+        session.save();
+    }
+}
@@ -19,6 +19,7 @@ package org.modeshape.jcr.perftests.read;
 import javax.jcr.Node;
 import javax.jcr.Session;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
 /**
@@ -26,22 +27,24 @@ import org.modeshape.jcr.perftests.SuiteConfiguration;
  * three properties: one with a jcr prefix, one with the empty prefix and a
  * third one, which does not exist.
  */
+@PerformanceSuite( tags = {"read"} )
 public class ReadPropertyTestSuite extends AbstractPerformanceTestSuite {
 
-    private static final int PROP_COUNT = 1000;
+    private final int propertyCount;
 
     private Session session;
     private Node root;
 
     public ReadPropertyTestSuite( SuiteConfiguration suiteConfiguration ) {
         super(suiteConfiguration);
+        this.propertyCount = suiteConfiguration.getInt("propertyCount", 1000);
     }
 
     @Override
     public void beforeSuite() throws Exception {
         session = newSession();
         root = session.getRootNode().addNode(getClass().getSimpleName(), "nt:unstructured");
-        for (int i = 0; i < PROP_COUNT; i++) {
+        for (int i = 0; i < propertyCount; i++) {
             root.setProperty("property" + i, "value" + i);
 
         }
@@ -50,16 +53,30 @@ public class ReadPropertyTestSuite extends AbstractPerformanceTestSuite {
 
     @Override
     public void runTest() throws Exception {
-        for (int i = 0; i < PROP_COUNT; i++) {
+        Node root = isRunConcurrently() ? workerSession().getNode(this.root.getPath()) : this.root;
+        for (int i = 0; i < propertyCount; i++) {
+            long start = startOperation();
             String primaryType = root.getProperty("jcr:primaryType").getString();
+            endOperation("getJcrProperty", start);
             assert "nt:unstructured".equals(primaryType);
             String expectedValue = "value" + i;
             String propName = "property" + i;
-            assert expectedValue.equals(root.getProperty(propName).getString());
-            assert !root.hasProperty("does-not-exist");
+            start = startOperation();
+            String value = root.getProperty(propName).getString();
+            endOperation("getProperty", start);
+            assert expectedValue.equals(value);
+            start = startOperation();
+            boolean exists = root.hasProperty("does-not-exist");
+            endOperation("hasMissingProperty", start);
+            assert !exists;
         }
     }
 
+    @Override
+    public boolean supportsConcurrentRuns() {
+        return true;
+    }
+
     @Override
     public void afterSuite() throws Exception {
         root.remove();
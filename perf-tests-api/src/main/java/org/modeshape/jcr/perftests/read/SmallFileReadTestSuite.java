@@ -20,18 +20,21 @@ import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 import org.modeshape.jcr.perftests.util.BinaryHelper;
 import org.modeshape.jcr.perftests.util.BinaryImpl;
 import java.util.Calendar;
+import java.util.Random;
 
 
 /**
  * Performance test which reads repeatedly several nodes which represent small files.
  */
+@PerformanceSuite( tags = {"read", "binary"} )
 public class SmallFileReadTestSuite extends AbstractPerformanceTestSuite {
 
-    private static final int FILE_SIZE_MB = 10 * 1024;
+    private final int fileSize;
 
     private Session session;
     private Node root;
@@ -39,12 +42,14 @@ public class SmallFileReadTestSuite extends AbstractPerformanceTestSuite {
 
     public SmallFileReadTestSuite( SuiteConfiguration suiteConfiguration ) {
         super(suiteConfiguration);
+        this.fileSize = suiteConfiguration.getInt("fileSize", 10 * 1024);
     }
 
     @Override
     public void beforeSuite() throws RepositoryException {
         fileCount = suiteConfiguration.getNodeCount();
         session = newSession();
+        Random random = newRandom();
 
         root = session.getRootNode().addNode("SmallFileReadTestSuite", "nt:folder");
         for (int i = 0; i < fileCount; i++) {
@@ -52,20 +57,28 @@ public class SmallFileReadTestSuite extends AbstractPerformanceTestSuite {
             Node content = file.addNode("jcr:content", "nt:resource");
             content.setProperty("jcr:mimeType", "application/octet-stream");
             content.setProperty("jcr:lastModified", Calendar.getInstance());
-            content.setProperty("jcr:data", new BinaryImpl(FILE_SIZE_MB));
+            content.setProperty("jcr:data", new BinaryImpl(fileSize, random));
         }
         session.save();
     }
 
     @Override
     public void runTest() throws Exception {
+        Node root = isRunConcurrently() ? workerSession().getNode(this.root.getPath()) : this.root;
         for (int i = 0; i < fileCount; i++) {
+            long start = startOperation();
             Node file = root.getNode("file" + i);
             Node content = file.getNode("jcr:content");
-            BinaryHelper.assertExpectedSize(content.getProperty("jcr:data").getBinary(), FILE_SIZE_MB);
+            BinaryHelper.assertExpectedSize(content.getProperty("jcr:data").getBinary(), fileSize);
+            endOperation("readFile", start);
         }
     }
 
+    @Override
+    public boolean supportsConcurrentRuns() {
+        return true;
+    }
+
     @Override
     public void afterSuite() throws RepositoryException {
         root.remove();
@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests.trace;
+
+/**
+ * An operation of a recorded session, as stored in a trace file. Only the shape of the operation is stored (paths, node types,
+ * the type and size of the values set), not the content of the values.
+ */
+final class TraceEvent {
+
+    /**
+     * The kinds of operations which are recorded and replayed, with the name under which the latencies of their replays are
+     * reported.
+     */
+    enum Type {
+        /** the node at {@code path} is read */
+        GET_NODE(1, "getNode"),
+        /** the property at {@code path} is read */
+        GET_PROPERTY(2, "getProperty"),
+        /** the value(s) of the property at {@code path} are read */
+        READ_VALUE(3, "readValue"),
+        /** the children of the node at {@code path} are iterated */
+        LIST_CHILDREN(4, "listChildren"),
+        /** the properties of the node at {@code path} are iterated */
+        LIST_PROPERTIES(5, "listProperties"),
+        /** the existence of the item at {@code path} is checked */
+        ITEM_EXISTS(6, "itemExists"),
+        /** the node at {@code path} is added, with the primary type {@code argument} (or the default one, if empty) */
+        ADD_NODE(7, "addNode"),
+        /** the mixin {@code argument} is added to the node at {@code path} */
+        ADD_MIXIN(8, "addMixin"),
+        /** the property at {@code path} is set to {@code valueCount} values (or {@link TraceEvent#SINGLE_VALUE} for a
+         * single-valued property) of {@code valueType}, whose total size is {@code size}; reference values point to the node at
+         * {@code argument} */
+        SET_PROPERTY(9, "setProperty"),
+        /** the item at {@code path} is removed */
+        REMOVE(10, "remove"),
+        /** the node at {@code path} is moved to {@code argument} */
+        MOVE(11, "move"),
+        /** the session is saved */
+        SAVE(12, "save"),
+        /** the session is refreshed, keeping its changes if {@code keepChanges} */
+        REFRESH(13, "refresh"),
+        /** the query {@code argument}, in the language {@code path}, is executed and all its nodes are iterated */
+        QUERY(14, "query");
+
+        private final int code;
+        private final String operationName;
+
+        private Type( int code,
+                      String operationName ) {
+            this.code = code;
+            this.operationName = operationName;
+        }
+
+        int getCode() {
+            return code;
+        }
+
+        String getOperationName() {
+            return operationName;
+        }
+
+        static Type forCode( int code ) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown trace event: " + code);
+        }
+    }
+
+    /** the {@code valueCount} of a single-valued property, as opposed to a multi-valued property with no values */
+    static final int SINGLE_VALUE = -1;
+
+    final Type type;
+    /** the recorded session which issued the operation, numbered from 0 in the order the sessions were recorded */
+    final int sessionId;
+    /** the time elapsed between the start of the recording and the issue of the operation, in nanoseconds (with microsecond
+     * precision) */
+    final long offsetNanos;
+    final String path;
+    final String argument;
+    final int valueType;
+    final int valueCount;
+    final long size;
+    final boolean keepChanges;
+
+    TraceEvent( Type type,
+                int sessionId,
+                long offsetNanos,
+                String path,
+                String argument,
+                int valueType,
+                int valueCount,
+                long size,
+                boolean keepChanges ) {
+        this.type = type;
+        this.sessionId = sessionId;
+        this.offsetNanos = offsetNanos;
+        this.path = path;
+        this.argument = argument;
+        this.valueType = valueType;
+        this.valueCount = valueCount;
+        this.size = size;
+        this.keepChanges = keepChanges;
+    }
+
+    static TraceEvent of( Type type,
+                          int sessionId,
+                          String path ) {
+        return new TraceEvent(type, sessionId, 0, path, null, 0, 0, 0, false);
+    }
+
+    static TraceEvent of( Type type,
+                          int sessionId,
+                          String path,
+                          String argument ) {
+        return new TraceEvent(type, sessionId, 0, path, argument, 0, 0, 0, false);
+    }
+
+    @Override
+    public String toString() {
+        return sessionId + "@" + offsetNanos / 1000 + "us " + type.getOperationName() + " " + path
+               + (argument != null ? " " + argument : "");
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests.trace;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.jcr.PropertyType;
+
+/**
+ * Reads back, one at a time, the events written to a trace file by a {@link TraceWriter}. A trace which was cut short (e.g.
+ * because the recorded application died) ends at its last complete event. The traces written by the previous versions of the
+ * writer can be read as well.
+ */
+final class TraceReader implements Closeable {
+
+    private final DataInputStream input;
+    private final List<String> dictionary = new ArrayList<String>();
+    private final int version;
+    private long offsetMicros;
+
+    TraceReader( File file ) throws IOException {
+        this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        int fileVersion = -1;
+        try {
+            if (input.readInt() == TraceWriter.MAGIC) {
+                fileVersion = input.readByte();
+            }
+        } catch (EOFException e) {
+            // not a trace file
+        }
+        this.version = fileVersion;
+        if (version < 1 || version > TraceWriter.VERSION) {
+            input.close();
+            throw new IOException(file.getAbsolutePath() + " is not a trace file");
+        }
+    }
+
+    /**
+     * @return the next event of the trace, or null if there are no more events
+     * @throws IOException if the trace cannot be read
+     */
+    TraceEvent next() throws IOException {
+        int code = input.read();
+        if (code < 0) {
+            return null;
+        }
+        try {
+            TraceEvent.Type type = TraceEvent.Type.forCode(code);
+            int sessionId = (int) readVarLong();
+            offsetMicros += version > 1 ? unzigzag(readVarLong()) : readVarLong();
+            String path = null;
+            String argument = null;
+            int valueType = 0;
+            int valueCount = 0;
+            long size = 0;
+            boolean keepChanges = false;
+            switch (type) {
+                case SAVE:
+                    break;
+                case REFRESH:
+                    keepChanges = input.readBoolean();
+                    break;
+                case ADD_NODE:
+                case ADD_MIXIN:
+                case MOVE:
+                case QUERY:
+                    path = readString();
+                    argument = readString();
+                    break;
+                case SET_PROPERTY:
+                    path = readString();
+                    valueType = (int) readVarLong();
+                    valueCount = (int) readVarLong();
+                    if (version > 1) {
+                        valueCount--;
+                    } else if (valueCount == 0) {
+                        // version 1 didn't distinguish the single values from the empty multi-valued properties
+                        valueCount = TraceEvent.SINGLE_VALUE;
+                    }
+                    size = readVarLong();
+                    if (valueType == PropertyType.REFERENCE || valueType == PropertyType.WEAKREFERENCE) {
+                        argument = readString();
+                    }
+                    break;
+                default:
+                    path = readString();
+            }
+            return new TraceEvent(type, sessionId, offsetMicros * 1000, path, argument, valueType, valueCount, size,
+                                  keepChanges);
+        } catch (EOFException e) {
+            // the last event was cut short
+            return null;
+        }
+    }
+
+    private static long unzigzag( long value ) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private String readString() throws IOException {
+        int index = (int) readVarLong();
+        if (index > 0) {
+            return dictionary.get(index - 1);
+        }
+        byte[] bytes = new byte[(int) readVarLong()];
+        input.readFully(bytes);
+        String string = new String(bytes, "UTF-8");
+        if (dictionary.size() < TraceWriter.MAX_DICTIONARY_SIZE) {
+            dictionary.add(string);
+        }
+        return string;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests.trace;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.jcr.Item;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Workspace;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the workload of an application into a trace file, which can then be replayed against any repository by the
+ * {@link TraceReplayer} (e.g. via the {@link TraceReplayTestSuite}).
+ * <p>
+ * The application's sessions are {@link #wrap(Session) wrapped} in proxies which record the operations that succeed, together
+ * with the time at which they were issued: the nodes and properties which are read, the children and properties which are
+ * iterated, the existence checks, the nodes and mixins which are added, the properties which are set (only the type and the size
+ * of their values), the items which are removed or moved, the saves and refreshes of the sessions and the queries which are
+ * executed. The nodes, properties, iterators, workspaces, query managers and queries obtained from a wrapped session are wrapped
+ * as well. The proxies implement all the interfaces of the wrapped objects, but cannot be cast to their classes.
+ * </p>
+ * <p>
+ * Nodes looked up by identifier are recorded by path, since the identifiers of the nodes aren't the same in another repository.
+ * The operations which aren't listed above (e.g. versioning, locking or workspace operations) pass through without being
+ * recorded. The application is never affected by the recording: an operation which cannot be recorded (e.g. because the path
+ * of its item cannot be read) is left out of the trace and its result is returned as usual.
+ * </p>
+ */
+public final class TraceRecorder implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TraceRecorder.class);
+
+    private final TraceWriter writer;
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private volatile boolean failed;
+    private volatile boolean skipped;
+
+    /**
+     * @param file the trace file; it is overwritten
+     * @throws IOException if the file cannot be created
+     */
+    public TraceRecorder( File file ) throws IOException {
+        this.writer = new TraceWriter(file);
+    }
+
+    /**
+     * Starts recording a session.
+     *
+     * @param session the session of the application; may not be null
+     * @return a session which records the operations issued through it and delegates them to the given session; never null
+     */
+    public Session wrap( Session session ) {
+        SessionRecorder recorder = new SessionRecorder(sessionCount.getAndIncrement());
+        recorder.session = (Session) recorder.wrap(session);
+        return recorder.session;
+    }
+
+    /**
+     * Stops recording and writes the remaining events to the trace file. The operations issued after this call are no longer
+     * recorded.
+     *
+     * @throws IOException if the trace file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void record( TraceEvent event,
+                         long issuedNanos ) {
+        try {
+            writer.write(event, issuedNanos);
+        } catch (IOException e) {
+            // the application must not be affected by the recording
+            if (!failed) {
+                failed = true;
+                LOGGER.warn("Cannot write the trace, the operations are no longer recorded", e);
+            }
+        }
+    }
+
+    private void skipped( Exception e ) {
+        if (!skipped) {
+            skipped = true;
+            LOGGER.warn("Cannot record an operation, it is left out of the trace (the next ones are not logged)", e);
+        }
+    }
+
+    private static Set<Class<?>> interfacesOf( Class<?> cls ) {
+        Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+        for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+            for (Class<?> iface : c.getInterfaces()) {
+                // a proxy can only implement the non-public interfaces of its own package
+                if (Modifier.isPublic(iface.getModifiers())) {
+                    interfaces.add(iface);
+                }
+            }
+        }
+        return interfaces;
+    }
+
+    private static String childPath( String parentPath,
+                                     String relativePath ) {
+        return parentPath.endsWith("/") ? parentPath + relativePath : parentPath + "/" + relativePath;
+    }
+
+    /**
+     * Records the operations of a single session, issued through the session itself or through any of the objects obtained from
+     * it.
+     */
+    private final class SessionRecorder {
+
+        private final int sessionId;
+        private Session session;
+
+        SessionRecorder( int sessionId ) {
+            this.sessionId = sessionId;
+        }
+
+        Object wrap( Object target ) {
+            if (target == null || Proxy.isProxyClass(target.getClass())
+                && Proxy.getInvocationHandler(target) instanceof RecordingHandler) {
+                return target;
+            }
+            Set<Class<?>> interfaces = interfacesOf(target.getClass());
+            return Proxy.newProxyInstance(target.getClass().getClassLoader(), interfaces.toArray(new Class<?>[interfaces.size()]),
+                                          new RecordingHandler(this, target));
+        }
+
+        boolean isWrapped( Object value ) {
+            return value instanceof Session || value instanceof Item || value instanceof NodeIterator
+                   || value instanceof PropertyIterator || value instanceof Workspace || value instanceof QueryManager
+                   || value instanceof Query;
+        }
+
+        void record( long issuedNanos,
+                     TraceEvent.Type type,
+                     String path ) {
+            TraceRecorder.this.record(TraceEvent.of(type, sessionId, path), issuedNanos);
+        }
+
+        void record( long issuedNanos,
+                     TraceEvent.Type type,
+                     String path,
+                     String argument ) {
+            TraceRecorder.this.record(TraceEvent.of(type, sessionId, path, argument), issuedNanos);
+        }
+
+        void recordSetProperty( long issuedNanos,
+                                Property property ) throws RepositoryException {
+            int valueType = property.getType();
+            int valueCount = TraceEvent.SINGLE_VALUE;
+            long size = 0;
+            if (property.isMultiple()) {
+                long[] lengths = property.getLengths();
+                valueCount = lengths.length;
+                for (long length : lengths) {
+                    size += Math.max(length, 0);
+                }
+            } else {
+                size = Math.max(property.getLength(), 0);
+            }
+            String target = null;
+            if (valueType == PropertyType.REFERENCE || valueType == PropertyType.WEAKREFERENCE) {
+                target = property.isMultiple() ? "" : property.getNode().getPath();
+            }
+            TraceRecorder.this.record(new TraceEvent(TraceEvent.Type.SET_PROPERTY, sessionId, 0, property.getPath(), target,
+                                                     valueType, valueCount, size, false), issuedNanos);
+        }
+
+        void skipped( Exception e ) {
+            TraceRecorder.this.skipped(e);
+        }
+
+        void recordRefresh( long issuedNanos,
+                            boolean keepChanges ) {
+            TraceRecorder.this.record(new TraceEvent(TraceEvent.Type.REFRESH, sessionId, 0, null, null, 0, 0, 0, keepChanges),
+                                      issuedNanos);
+        }
+    }
+
+    /**
+     * Delegates the calls made on a proxy to the wrapped object, records them and wraps their results.
+     */
+    private static final class RecordingHandler implements InvocationHandler {
+
+        private final SessionRecorder recorder;
+        private final Object target;
+
+        RecordingHandler( SessionRecorder recorder,
+                          Object target ) {
+            this.recorder = recorder;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke( Object proxy,
+                              Method method,
+                              Object[] args ) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getSession") && method.getParameterTypes().length == 0) {
+                return recorder.session;
+            }
+            Object[] targetArgs = unwrap(args);
+            // the path of a removed item cannot be read after it is removed
+            String removedPath = null;
+            if (name.equals("remove") && target instanceof Item) {
+                try {
+                    removedPath = ((Item) target).getPath();
+                } catch (Exception e) {
+                    recorder.skipped(e);
+                }
+            }
+            Object result;
+            long issuedNanos = System.nanoTime();
+            try {
+                result = method.invoke(target, targetArgs);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            try {
+                if (removedPath != null) {
+                    recorder.record(issuedNanos, TraceEvent.Type.REMOVE, removedPath);
+                } else {
+                    record(issuedNanos, name, targetArgs, result);
+                }
+            } catch (Exception e) {
+                // the call succeeded, so its result is returned even if it cannot be recorded
+                recorder.skipped(e);
+            }
+            return recorder.isWrapped(result) ? recorder.wrap(result) : result;
+        }
+
+        private Object[] unwrap( Object[] args ) {
+            if (args == null) {
+                return null;
+            }
+            Object[] unwrapped = args.clone();
+            for (int i = 0; i < unwrapped.length; i++) {
+                Object arg = unwrapped[i];
+                if (arg != null && Proxy.isProxyClass(arg.getClass())
+                    && Proxy.getInvocationHandler(arg) instanceof RecordingHandler) {
+                    unwrapped[i] = ((RecordingHandler) Proxy.getInvocationHandler(arg)).target;
+                }
+            }
+            return unwrapped;
+        }
+
+        private void record( long issuedNanos,
+                             String name,
+                             Object[] args,
+                             Object result ) throws RepositoryException {
+            if (target instanceof Session) {
+                recordSessionCall(issuedNanos, name, args, result);
+            } else if (target instanceof Node) {
+                recordNodeCall(issuedNanos, (Node) target, name, args, result);
+            } else if (target instanceof Property) {
+                recordPropertyCall(issuedNanos, (Property) target, name);
+            } else if (target instanceof Query && name.equals("execute")) {
+                Query query = (Query) target;
+                recorder.record(issuedNanos, TraceEvent.Type.QUERY, query.getLanguage(), query.getStatement());
+            }
+        }
+
+        private void recordSessionCall( long issuedNanos,
+                                        String name,
+                                        Object[] args,
+                                        Object result ) throws RepositoryException {
+            if (result instanceof Node && (name.startsWith("getNode") || name.equals("getItem") || name.equals("getRootNode"))) {
+                recorder.record(issuedNanos, TraceEvent.Type.GET_NODE, ((Node) result).getPath());
+            } else if (result instanceof Property && (name.equals("getProperty") || name.equals("getItem"))) {
+                recorder.record(issuedNanos, TraceEvent.Type.GET_PROPERTY, ((Property) result).getPath());
+            } else if (name.equals("itemExists") || name.equals("nodeExists") || name.equals("propertyExists")) {
+                recorder.record(issuedNanos, TraceEvent.Type.ITEM_EXISTS, (String) args[0]);
+            } else if (name.equals("removeItem")) {
+                recorder.record(issuedNanos, TraceEvent.Type.REMOVE, (String) args[0]);
+            } else if (name.equals("move")) {
+                recorder.record(issuedNanos, TraceEvent.Type.MOVE, (String) args[0], (String) args[1]);
+            } else if (name.equals("save")) {
+                recorder.record(issuedNanos, TraceEvent.Type.SAVE, null);
+            } else if (name.equals("refresh")) {
+                recorder.recordRefresh(issuedNanos, (Boolean) args[0]);
+            }
+        }
+
+        private void recordNodeCall( long issuedNanos,
+                                     Node node,
+                                     String name,
+                                     Object[] args,
+                                     Object result ) throws RepositoryException {
+            if (name.equals("getNode") || name.equals("getParent")) {
+                recorder.record(issuedNanos, TraceEvent.Type.GET_NODE, ((Node) result).getPath());
+            } else if (name.equals("getProperty")) {
+                recorder.record(issuedNanos, TraceEvent.Type.GET_PROPERTY, ((Property) result).getPath());
+            } else if (name.equals("getNodes")) {
+                recorder.record(issuedNanos, TraceEvent.Type.LIST_CHILDREN, node.getPath());
+            } else if (name.equals("getProperties")) {
+                recorder.record(issuedNanos, TraceEvent.Type.LIST_PROPERTIES, node.getPath());
+            } else if (name.equals("hasNode") || name.equals("hasProperty")) {
+                recorder.record(issuedNanos, TraceEvent.Type.ITEM_EXISTS, childPath(node.getPath(), (String) args[0]));
+            } else if (name.equals("addNode")) {
+                Node child = (Node) result;
+                String primaryType = args.length > 1 ? child.getPrimaryNodeType().getName() : null;
+                recorder.record(issuedNanos, TraceEvent.Type.ADD_NODE, child.getPath(), primaryType);
+            } else if (name.equals("addMixin")) {
+                recorder.record(issuedNanos, TraceEvent.Type.ADD_MIXIN, node.getPath(), (String) args[0]);
+            } else if (name.equals("setProperty")) {
+                if (args[1] == null) {
+                    recorder.record(issuedNanos, TraceEvent.Type.REMOVE, childPath(node.getPath(), (String) args[0]));
+                } else {
+                    recorder.recordSetProperty(issuedNanos, (Property) result);
+                }
+            } else if (name.equals("save")) {
+                recorder.record(issuedNanos, TraceEvent.Type.SAVE, null);
+            } else if (name.equals("refresh")) {
+                recorder.recordRefresh(issuedNanos, (Boolean) args[0]);
+            }
+        }
+
+        private void recordPropertyCall( long issuedNanos,
+                                         Property property,
+                                         String name ) throws RepositoryException {
+            if (name.equals("setValue")) {
+                recorder.recordSetProperty(issuedNanos, property);
+            } else if (name.startsWith("get") && !name.equals("getLength") && !name.equals("getLengths")
+                       && !name.equals("getPath") && !name.equals("getName") && !name.equals("getType")
+                       && !name.equals("getDefinition") && !name.equals("getParent") && !name.equals("getAncestor")
+                       && !name.equals("getDepth") && !name.equals("getProperty") && !name.equals("getNode")) {
+                // getValue(), getValues(), getString(), getBinary(), getStream(), getLong(), getDate() ...
+                recorder.record(issuedNanos, TraceEvent.Type.READ_VALUE, property.getPath());
+            }
+        }
+    }
+}
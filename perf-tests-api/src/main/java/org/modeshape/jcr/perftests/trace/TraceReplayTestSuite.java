@@ -0,0 +1,168 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests.trace;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.jcr.ImportUUIDBehavior;
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
+import org.modeshape.jcr.perftests.SuiteConfiguration;
+
+/**
+ * Performance test which replays a trace recorded by a {@link TraceRecorder} (e.g. from an application in a staging
+ * environment), so that the same real workload can be compared between repositories. It is only run when the
+ * {@code trace.file} parameter is set.
+ * <p>
+ * The parameters are {@code trace.file} (the path of the trace file), {@code trace.speed} (the factor by which the recorded time
+ * between the operations is divided: 1 replays at the original speed and 0, the default, as fast as possible),
+ * {@code trace.sessions} (the number of concurrent replay sessions, 1 by default) and {@code trace.content} (optionally, the path
+ * of a system or document view XML export of the content the trace was recorded against, which is imported below the root node
+ * before each replay and removed afterwards). The latency of each kind of replayed operation is reported separately, and the
+ * operations which failed as {@code {operation}.failed}.
+ * </p>
+ * <p>
+ * So that every (warmup or measured) replay runs against the same content, the nodes added by a replay are removed after it and
+ * the imported content, if any, is imported afresh before the next one. The other changes which a trace saves outside the
+ * imported content (e.g. the properties it sets on existing nodes) are not reverted.
+ * </p>
+ */
+@PerformanceSuite( tags = {"trace"} )
+public class TraceReplayTestSuite extends AbstractPerformanceTestSuite {
+
+    private final String traceFile;
+    private final double speed;
+    private final int sessionCount;
+    private final String contentFile;
+
+    private final List<Session> sessions = new ArrayList<Session>();
+    private final List<String> importedNodes = new ArrayList<String>();
+    private TraceReplayer replayer;
+
+    public TraceReplayTestSuite( SuiteConfiguration suiteConfiguration ) {
+        super(suiteConfiguration);
+        this.traceFile = suiteConfiguration.getString("trace.file", null);
+        this.speed = Double.parseDouble(suiteConfiguration.getString("trace.speed", "0"));
+        this.sessionCount = suiteConfiguration.getInt("trace.sessions", 1);
+        this.contentFile = suiteConfiguration.getString("trace.content", null);
+    }
+
+    @Override
+    public boolean isCompatibleWithCurrentRepository() {
+        return traceFile != null && new File(traceFile).isFile();
+    }
+
+    @Override
+    public void beforeSuite() throws Exception {
+        for (int i = 0; i < sessionCount; i++) {
+            sessions.add(newSession());
+        }
+        replayer = new TraceReplayer(new File(traceFile), speed, new TraceReplayer.Listener() {
+            @SuppressWarnings( "synthetic-access" )
+            @Override
+            public void replayed( String operation,
+                                  long startNanos,
+                                  RepositoryException failure ) {
+                endOperation(failure == null ? operation : operation + ".failed", startNanos);
+            }
+        });
+    }
+
+    @Override
+    protected void beforeTestRun() throws Exception {
+        if (contentFile != null) {
+            Session session = sessions.get(0);
+            removeImportedContent(session);
+            importContent(session);
+        }
+    }
+
+    private void importContent( Session session ) throws Exception {
+        importedNodes.clear();
+        Set<String> existingNodes = childNames(session.getRootNode());
+        InputStream content = new FileInputStream(contentFile);
+        try {
+            session.importXML("/", content, ImportUUIDBehavior.IMPORT_UUID_COLLISION_REPLACE_EXISTING);
+        } finally {
+            content.close();
+        }
+        session.save();
+        for (String name : childNames(session.getRootNode())) {
+            if (!existingNodes.contains(name)) {
+                importedNodes.add("/" + name);
+            }
+        }
+    }
+
+    private Set<String> childNames( Node node ) throws RepositoryException {
+        Set<String> names = new HashSet<String>();
+        for (NodeIterator children = node.getNodes(); children.hasNext();) {
+            names.add(children.nextNode().getName());
+        }
+        return names;
+    }
+
+    @Override
+    public void runTest() throws Exception {
+        replayer.replay(sessions);
+    }
+
+    @Override
+    protected void afterTestRun() throws Exception {
+        // the changes which the trace didn't save must not leak into the next replay
+        for (Session session : sessions) {
+            session.refresh(false);
+        }
+        // neither must the nodes it saved, which are removed in reverse order so that the children go before their parents
+        Session session = sessions.get(0);
+        List<String> addedNodes = replayer.getAddedNodes();
+        for (int i = addedNodes.size() - 1; i >= 0; i--) {
+            try {
+                session.getNodeByIdentifier(addedNodes.get(i)).remove();
+            } catch (ItemNotFoundException e) {
+                // not saved, or already removed (by the trace or together with an ancestor)
+            }
+        }
+        session.save();
+    }
+
+    @Override
+    public void afterSuite() throws Exception {
+        if (!importedNodes.isEmpty()) {
+            removeImportedContent(sessions.get(0));
+        }
+    }
+
+    private void removeImportedContent( Session session ) throws RepositoryException {
+        for (String path : importedNodes) {
+            if (session.nodeExists(path)) {
+                session.removeItem(path);
+            }
+        }
+        session.save();
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+import org.modeshape.jcr.perftests.util.RandomInputStream;
+
+/**
+ * Replays a trace recorded by a {@link TraceRecorder} against a repository.
+ * <p>
+ * The recorded sessions are distributed over the given replay sessions (recorded session {@code n} is replayed by session
+ * {@code n % sessions}), each of which is replayed by its own thread, in the recorded order. Each thread reads the trace on its
+ * own as it replays it, so traces of any length can be replayed and a session which falls behind doesn't hold up the others.
+ * The events are replayed at the recorded times multiplied by {@code 1 / speed}: at the original speed (1), at a scaled speed
+ * (e.g. 2 for twice as fast) or, if the speed is 0, as fast as possible.
+ * </p>
+ * <p>
+ * When the events are replayed at a speed, the latency of each operation is measured from the time at which it was due rather
+ * than from the time at which it was started, so that the time an operation waited for the previous ones of its session is
+ * included when the repository can't keep up with the recorded rate.
+ * </p>
+ * <p>
+ * The values which are set have the recorded type and size, but synthetic content. The operations which fail with a
+ * <code>RepositoryException</code> (e.g. because an item of the recorded repository doesn't exist in the replayed one) are
+ * reported to the {@link Listener} and the replay continues.
+ * </p>
+ */
+public final class TraceReplayer {
+
+    /**
+     * Notified of every replayed operation, from the thread of the session which replayed it.
+     */
+    public interface Listener {
+
+        /**
+         * @param operation the name of the kind of operation (e.g. {@code getNode})
+         * @param startNanos the value of <code>System.nanoTime()</code> when the operation was started or, if the trace is
+         *        replayed at a speed, when it was due
+         * @param failure the exception thrown by the operation, or null if it succeeded
+         */
+        void replayed( String operation,
+                       long startNanos,
+                       RepositoryException failure );
+    }
+
+    private final File traceFile;
+    private final double speed;
+    private final Listener listener;
+    private final List<String> addedNodes = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * @param traceFile the trace file; may not be null
+     * @param speed the factor by which the recorded time between the events is divided, or 0 to replay as fast as possible
+     * @param listener the listener of the replayed operations; may not be null
+     */
+    public TraceReplayer( File traceFile,
+                          double speed,
+                          Listener listener ) {
+        this.traceFile = traceFile;
+        this.speed = speed;
+        this.listener = listener;
+    }
+
+    /**
+     * Replays the whole trace, waiting until all the events have been replayed.
+     *
+     * @param sessions the sessions which replay the trace; may not be empty
+     * @return the number of replayed events
+     * @throws Exception if the trace cannot be read, or if a replay thread fails with an exception other than a
+     *         <code>RepositoryException</code>
+     */
+    public long replay( List<Session> sessions ) throws Exception {
+        addedNodes.clear();
+        long startNanos = System.nanoTime();
+        List<SessionReplay> replays = new ArrayList<SessionReplay>();
+        for (int i = 0; i < sessions.size(); i++) {
+            SessionReplay replay = new SessionReplay(sessions.get(i), i, sessions.size(), startNanos);
+            replay.setName("trace-replay-" + i);
+            replay.setDaemon(true);
+            replays.add(replay);
+            replay.start();
+        }
+        long eventCount = 0;
+        for (SessionReplay replay : replays) {
+            replay.join();
+            eventCount += replay.eventCount;
+        }
+        for (SessionReplay replay : replays) {
+            if (replay.failure instanceof Exception) {
+                throw (Exception) replay.failure;
+            }
+            if (replay.failure != null) {
+                throw new RuntimeException("The replay of " + traceFile + " failed", replay.failure);
+            }
+        }
+        return eventCount;
+    }
+
+    /**
+     * Returns the nodes added by the last replay, so that they can be removed before the trace is replayed again.
+     *
+     * @return the identifiers of the nodes, in the order they were added (including the ones which weren't saved); never null
+     */
+    public List<String> getAddedNodes() {
+        synchronized (addedNodes) {
+            return new ArrayList<String>(addedNodes);
+        }
+    }
+
+    /**
+     * Waits until an event is due, if the trace is replayed at a speed.
+     *
+     * @return the value of <code>System.nanoTime()</code> at which the event was due, or now if the trace is replayed as fast as
+     *         possible
+     */
+    private long waitUntilDue( TraceEvent event,
+                               long startNanos ) {
+        if (speed <= 0) {
+            return System.nanoTime();
+        }
+        long dueNanos = startNanos + (long) (event.offsetNanos / speed);
+        for (long delay = dueNanos - System.nanoTime(); delay > 0; delay = dueNanos - System.nanoTime()) {
+            LockSupport.parkNanos(delay);
+        }
+        return dueNanos;
+    }
+
+    /**
+     * Executes an event against a session.
+     *
+     * @return the node added by the event, or null if the event doesn't add a node
+     */
+    static Node execute( Session session,
+                         TraceEvent event ) throws RepositoryException, IOException {
+        switch (event.type) {
+            case GET_NODE:
+                session.getNode(event.path);
+                break;
+            case GET_PROPERTY:
+                session.getProperty(event.path);
+                break;
+            case READ_VALUE:
+                readValue(session.getProperty(event.path));
+                break;
+            case LIST_CHILDREN:
+                for (NodeIterator nodes = session.getNode(event.path).getNodes(); nodes.hasNext();) {
+                    nodes.nextNode();
+                }
+                break;
+            case LIST_PROPERTIES:
+                for (PropertyIterator properties = session.getNode(event.path).getProperties(); properties.hasNext();) {
+                    properties.nextProperty();
+                }
+                break;
+            case ITEM_EXISTS:
+                session.itemExists(event.path);
+                break;
+            case ADD_NODE:
+                Node parent = session.getNode(parentPath(event.path));
+                if (event.argument == null || event.argument.isEmpty()) {
+                    return parent.addNode(name(event.path));
+                }
+                return parent.addNode(name(event.path), event.argument);
+            case ADD_MIXIN:
+                session.getNode(event.path).addMixin(event.argument);
+                break;
+            case SET_PROPERTY:
+                setProperty(session, event);
+                break;
+            case REMOVE:
+                session.removeItem(event.path);
+                break;
+            case MOVE:
+                session.move(event.path, event.argument);
+                break;
+            case SAVE:
+                session.save();
+                break;
+            case REFRESH:
+                session.refresh(event.keepChanges);
+                break;
+            case QUERY:
+                NodeIterator nodes = session.getWorkspace().getQueryManager().createQuery(event.argument, event.path).execute()
+                                            .getNodes();
+                while (nodes.hasNext()) {
+                    nodes.nextNode();
+                }
+                break;
+        }
+        return null;
+    }
+
+    private static void readValue( Property property ) throws RepositoryException, IOException {
+        if (property.isMultiple()) {
+            property.getValues();
+        } else if (property.getType() == PropertyType.BINARY) {
+            Binary binary = property.getBinary();
+            InputStream stream = binary.getStream();
+            try {
+                byte[] buffer = new byte[8192];
+                while (stream.read(buffer) != -1) {
+                    // read the whole content
+                }
+            } finally {
+                stream.close();
+                binary.dispose();
+            }
+        } else {
+            property.getValue();
+        }
+    }
+
+    private static void setProperty( Session session,
+                                     TraceEvent event ) throws RepositoryException {
+        Node node = session.getNode(parentPath(event.path));
+        String name = name(event.path);
+        if (event.valueCount == TraceEvent.SINGLE_VALUE) {
+            node.setProperty(name, createValue(session, event, event.size));
+        } else {
+            Value[] values = new Value[event.valueCount];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = createValue(session, event, event.size / values.length);
+            }
+            node.setProperty(name, values, event.valueType);
+        }
+    }
+
+    /**
+     * Creates a value of the type of a recorded value, with synthetic content of (for strings and binaries) the same size.
+     */
+    private static Value createValue( Session session,
+                                      TraceEvent event,
+                                      long size ) throws RepositoryException {
+        ValueFactory valueFactory = session.getValueFactory();
+        switch (event.valueType) {
+            case PropertyType.BINARY:
+                return valueFactory.createValue(valueFactory.createBinary(new RandomInputStream(size, size)));
+            case PropertyType.LONG:
+                return valueFactory.createValue(size);
+            case PropertyType.DOUBLE:
+                return valueFactory.createValue((double) size);
+            case PropertyType.DECIMAL:
+                return valueFactory.createValue(new BigDecimal(size));
+            case PropertyType.BOOLEAN:
+                return valueFactory.createValue(true);
+            case PropertyType.DATE:
+                return valueFactory.createValue(Calendar.getInstance());
+            case PropertyType.NAME:
+                return valueFactory.createValue("nt:unstructured", PropertyType.NAME);
+            case PropertyType.PATH:
+                return valueFactory.createValue("/", PropertyType.PATH);
+            case PropertyType.URI:
+                return valueFactory.createValue("http://localhost/", PropertyType.URI);
+            case PropertyType.REFERENCE:
+            case PropertyType.WEAKREFERENCE:
+                return valueFactory.createValue(session.getNode(event.argument), event.valueType == PropertyType.WEAKREFERENCE);
+            default:
+                StringBuilder string = new StringBuilder((int) size);
+                for (long i = 0; i < size; i++) {
+                    string.append((char) ('a' + i % 26));
+                }
+                return valueFactory.createValue(string.toString());
+        }
+    }
+
+    private static String parentPath( String path ) {
+        int index = path.lastIndexOf('/');
+        return index <= 0 ? "/" : path.substring(0, index);
+    }
+
+    /**
+     * Returns the name of the last segment of a path, without its same-name sibling index.
+     */
+    private static String name( String path ) {
+        String segment = path.substring(path.lastIndexOf('/') + 1);
+        int index = segment.indexOf('[');
+        return index >= 0 ? segment.substring(0, index) : segment;
+    }
+
+    /**
+     * The thread which reads the trace and replays the events of the recorded sessions assigned to a replay session, skipping
+     * those of the other sessions.
+     */
+    private final class SessionReplay extends Thread {
+
+        private final Session session;
+        private final int index;
+        private final int sessionCount;
+        private final long startNanos;
+        private volatile long eventCount;
+        private volatile Throwable failure;
+
+        SessionReplay( Session session,
+                       int index,
+                       int sessionCount,
+                       long startNanos ) {
+            this.session = session;
+            this.index = index;
+            this.sessionCount = sessionCount;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void run() {
+            try {
+                TraceReader reader = new TraceReader(traceFile);
+                try {
+                    for (TraceEvent event = reader.next(); event != null && failure == null; event = reader.next()) {
+                        if (event.sessionId % sessionCount == index) {
+                            replay(event);
+                            eventCount++;
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+
+        private void replay( TraceEvent event ) {
+            long start = waitUntilDue(event, startNanos);
+            try {
+                Node addedNode = execute(session, event);
+                listener.replayed(event.type.getOperationName(), start, null);
+                if (addedNode != null) {
+                    addedNodes.add(addedNode.getIdentifier());
+                }
+            } catch (RepositoryException e) {
+                listener.replayed(event.type.getOperationName(), start, e);
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+    }
+}
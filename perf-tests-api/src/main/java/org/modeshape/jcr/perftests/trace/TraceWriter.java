@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import javax.jcr.PropertyType;
+
+/**
+ * Writes the events of the recorded sessions to a trace file, in a compact binary format.
+ * <p>
+ * The file starts with a magic number and a version, followed by one record per event: the type of the event, the id of the
+ * session, the time elapsed since the previous event was issued (in microseconds, negative when a concurrent session issued the
+ * previous event later but completed it first) and the fields of the event, the numbers being written as variable-length
+ * integers (zigzag encoded for the signed ones). Each distinct string (e.g. a path) is written once and then referred to by its index in a dictionary,
+ * which is rebuilt by the {@link TraceReader}. The dictionary is bounded, and the strings which don't fit in it are written in
+ * full every time.
+ * </p>
+ */
+final class TraceWriter implements Closeable {
+
+    static final int MAGIC = 0x4A435254;
+    static final int VERSION = 2;
+    /** the largest number of strings in the dictionary of a trace file */
+    static final int MAX_DICTIONARY_SIZE = 100000;
+
+    private final DataOutputStream output;
+    private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+    private final long startNanos;
+    private long lastEventMicros;
+    private boolean closed;
+
+    TraceWriter( File file ) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Appends an event.
+     *
+     * @param event the event; its offset is ignored
+     * @param issuedNanos the value of <code>System.nanoTime()</code> when the operation of the event was issued
+     * @throws IOException if the event cannot be written
+     */
+    synchronized void write( TraceEvent event,
+                             long issuedNanos ) throws IOException {
+        if (closed) {
+            return;
+        }
+        long eventMicros = (issuedNanos - startNanos) / 1000;
+        output.writeByte(event.type.getCode());
+        writeVarLong(event.sessionId);
+        writeVarLong(zigzag(eventMicros - lastEventMicros));
+        lastEventMicros = eventMicros;
+        switch (event.type) {
+            case SAVE:
+                break;
+            case REFRESH:
+                output.writeBoolean(event.keepChanges);
+                break;
+            case ADD_NODE:
+            case ADD_MIXIN:
+            case MOVE:
+            case QUERY:
+                writeString(event.path);
+                writeString(event.argument);
+                break;
+            case SET_PROPERTY:
+                writeString(event.path);
+                writeVarLong(event.valueType);
+                writeVarLong(event.valueCount + 1);
+                writeVarLong(event.size);
+                if (event.valueType == PropertyType.REFERENCE || event.valueType == PropertyType.WEAKREFERENCE) {
+                    writeString(event.argument);
+                }
+                break;
+            default:
+                writeString(event.path);
+        }
+    }
+
+    private void writeString( String value ) throws IOException {
+        String string = value != null ? value : "";
+        Integer index = dictionary.get(string);
+        if (index != null) {
+            writeVarLong(index + 1);
+            return;
+        }
+        writeVarLong(0);
+        byte[] bytes = string.getBytes("UTF-8");
+        writeVarLong(bytes.length);
+        output.write(bytes);
+        if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+            dictionary.put(string, dictionary.size());
+        }
+    }
+
+    /**
+     * Maps a signed number to an unsigned one, so that the numbers close to 0 (whether positive or negative) are written on few
+     * bytes.
+     */
+    static long zigzag( long value ) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void writeVarLong( long value ) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            output.writeByte((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        output.writeByte((int) remaining);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            output.close();
+        }
+    }
+}
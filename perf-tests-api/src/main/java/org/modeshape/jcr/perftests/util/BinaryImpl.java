@@ -29,8 +29,17 @@ public final class BinaryImpl implements Binary {
     private byte[] randomBytes;
 
     public BinaryImpl( int size ) {
+        this(size, new Random());
+    }
+
+    /**
+     * @param size the number of bytes of the binary
+     * @param random the generator of the content of the binary, which is seeded when the content must be reproducible
+     */
+    public BinaryImpl( int size,
+                       Random random ) {
         this.randomBytes = new byte[size];
-        new Random().nextBytes(randomBytes);
+        random.nextBytes(randomBytes);
     }
 
     @Override
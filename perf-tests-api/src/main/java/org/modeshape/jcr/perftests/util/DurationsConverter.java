@@ -46,7 +46,29 @@ public final class DurationsConverter {
         return convertedDurations;
     }
 
-    private static double convertFromNanos( double nanoSeconds, TimeUnit toUnit ) {
+    /**
+     * Converts an array of durations expressed as nanoseconds to a desired time unit, without boxing them.
+     *
+     * @param nanos an array of nanosecond values
+     * @param toUnit a <code>TimeUnit</code> to which the nanoseconds will be converted
+     * @return a new array with the converted values
+     */
+    public static double[] convertFromNanos( long[] nanos, TimeUnit toUnit ) {
+        double[] convertedDurations = new double[nanos.length];
+        for (int i = 0; i < nanos.length; i++) {
+            convertedDurations[i] = convertFromNanos(nanos[i], toUnit);
+        }
+        return convertedDurations;
+    }
+
+    /**
+     * Converts a duration expressed as nanoseconds to a desired time unit.
+     *
+     * @param nanoSeconds a nanosecond value
+     * @param toUnit a <code>TimeUnit</code> to which the nanoseconds will be converted
+     * @return the converted value
+     */
+    public static double convertFromNanos( double nanoSeconds, TimeUnit toUnit ) {
         switch (toUnit) {
             case NANOSECONDS: {
                 return nanoSeconds;
@@ -0,0 +1,67 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests.util;
+
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * A stream of a given number of bytes drawn from a generator with a given seed, which are produced as they are read: it can be
+ * used as the content of binary values of any size, without holding them in memory.
+ */
+public final class RandomInputStream extends InputStream {
+
+    private final Random random;
+    private long remaining;
+
+    /**
+     * @param seed the seed of the content: two streams with the same seed and size have the same content
+     * @param size the number of bytes of the stream
+     */
+    public RandomInputStream( long seed,
+                              long size ) {
+        this.random = new Random(seed);
+        this.remaining = size;
+    }
+
+    @Override
+    public int read() {
+        if (remaining <= 0) {
+            return -1;
+        }
+        remaining--;
+        return random.nextInt(256);
+    }
+
+    @Override
+    public int read( byte[] b,
+                     int off,
+                     int len ) {
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining <= 0) {
+            return -1;
+        }
+        int count = (int) Math.min(len, remaining);
+        for (int i = 0; i < count; i++) {
+            b[off + i] = (byte) random.nextInt(256);
+        }
+        remaining -= count;
+        return count;
+    }
+}
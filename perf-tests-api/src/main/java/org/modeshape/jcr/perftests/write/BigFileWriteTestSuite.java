@@ -20,25 +20,32 @@ import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 import org.modeshape.jcr.perftests.util.BinaryImpl;
 import java.util.Calendar;
+import java.util.Random;
 
+@PerformanceSuite( tags = {"write", "binary"} )
 public class BigFileWriteTestSuite extends AbstractPerformanceTestSuite {
 
-    private static final int FILE_SIZE_MB = 100 * 1024 * 1024;
+    private final int fileSize;
+    private final int fileCount;
 
     private Session session;
     private Node root;
-    private int fileCount = 2;
+    private Random random;
 
     public BigFileWriteTestSuite( SuiteConfiguration suiteConfiguration ) {
         super(suiteConfiguration);
+        this.fileSize = suiteConfiguration.getInt("fileSize", 100 * 1024 * 1024);
+        this.fileCount = suiteConfiguration.getInt("fileCount", 2);
     }
 
     @Override
     public void beforeSuite() throws RepositoryException {
         session = newSession();
+        random = newRandom();
         root = session.getRootNode().addNode("RootFolder", "nt:folder");
         session.save();
     }
@@ -50,7 +57,7 @@ public class BigFileWriteTestSuite extends AbstractPerformanceTestSuite {
             Node content = file.addNode("jcr:content", "nt:resource");
             content.setProperty("jcr:mimeType", "application/octet-stream");
             content.setProperty("jcr:lastModified", Calendar.getInstance());
-            content.setProperty("jcr:data", new BinaryImpl(FILE_SIZE_MB ));
+            content.setProperty("jcr:data", new BinaryImpl(fileSize, random));
             session.save();
         }
     }
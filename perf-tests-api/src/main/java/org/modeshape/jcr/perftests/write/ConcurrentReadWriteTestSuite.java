@@ -20,6 +20,7 @@ import java.util.Random;
 import java.util.concurrent.Callable;
 import javax.jcr.Node;
 import javax.jcr.Session;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 import org.modeshape.jcr.perftests.read.ConcurrentReadTestSuite;
 
@@ -27,6 +28,7 @@ import org.modeshape.jcr.perftests.read.ConcurrentReadTestSuite;
  * A {@link org.modeshape.jcr.perftests.read.ConcurrentReadTestSuite} with a single writer thread that continuously updates the
  * nodes being accessed by the readers.
  */
+@PerformanceSuite( tags = {"write", "concurrency"} )
 public class ConcurrentReadWriteTestSuite extends ConcurrentReadTestSuite {
 
     public ConcurrentReadWriteTestSuite( SuiteConfiguration suiteConfiguration ) {
@@ -43,7 +45,8 @@ public class ConcurrentReadWriteTestSuite extends ConcurrentReadTestSuite {
 
         @SuppressWarnings( "synthetic-access" )
         private final Session session = newSession();
-        private final Random random = new Random();
+        @SuppressWarnings( "synthetic-access" )
+        private final Random random = newRandom();
 
         private long count = 0;
 
@@ -20,11 +20,13 @@ import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
 /**
  * Test for measuring the performance of creating a node with child nodes.
  */
+@PerformanceSuite( tags = {"write"} )
 public class CreateChildNodesTestSuite extends AbstractPerformanceTestSuite {
 
     private Session session;
@@ -43,9 +45,13 @@ public class CreateChildNodesTestSuite extends AbstractPerformanceTestSuite {
     @Override
     public void runTest() throws Exception {
         for (int i = 0; i < suiteConfiguration.getNodeCount(); i++) {
+            long start = startOperation();
             root.addNode("node" + i, "nt:unstructured");
+            endOperation("addNode", start);
         }
+        long start = startOperation();
         session.save();
+        endOperation("save", start);
     }
 
     @Override
@@ -17,27 +17,33 @@
 package org.modeshape.jcr.perftests.write;
 
 import java.util.Calendar;
+import java.util.Random;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 import org.modeshape.jcr.perftests.util.BinaryImpl;
 
+@PerformanceSuite( tags = {"write", "binary"} )
 public class SmallFileWriteTestSuite extends AbstractPerformanceTestSuite {
 
-    private static final int FILE_SIZE_MB = 10;
+    private final int fileSize;
 
     private Session session;
     private Node root;
+    private Random random;
 
     public SmallFileWriteTestSuite( SuiteConfiguration suiteConfiguration ) {
         super(suiteConfiguration);
+        this.fileSize = suiteConfiguration.getInt("fileSize", 10 * 1024);
     }
 
     @Override
     public void beforeSuite() throws RepositoryException {
         session = newSession();
+        random = newRandom();
         root = session.getRootNode().addNode("SmallFileWriteTestSuite", "nt:folder");
         session.save();
     }
@@ -49,7 +55,7 @@ public class SmallFileWriteTestSuite extends AbstractPerformanceTestSuite {
             Node content = file.addNode("jcr:content", "nt:resource");
             content.setProperty("jcr:mimeType", "application/octet-stream");
             content.setProperty("jcr:lastModified", Calendar.getInstance());
-            content.setProperty("jcr:data", new BinaryImpl(FILE_SIZE_MB * 1024));
+            content.setProperty("jcr:data", new BinaryImpl(fileSize, random));
         }
         session.save();
     }
@@ -20,21 +20,24 @@ import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
 /**
- * Test for measuring the performance of {@value #ITERATIONS} iterations of
+ * Test for measuring the performance of a configurable number ({@code iterations}) of
  * transiently adding and removing a child node to a node that already has existing child nodes.
  */
+@PerformanceSuite( tags = {"write"} )
 public class TransientChildNodesTestSuite extends AbstractPerformanceTestSuite {
 
-    private static final int ITERATIONS = 100;
+    private final int iterations;
 
     private Session session;
     private Node node;
 
     public TransientChildNodesTestSuite( SuiteConfiguration suiteConfiguration ) {
         super(suiteConfiguration);
+        this.iterations = suiteConfiguration.getInt("iterations", 100);
     }
 
     @Override
@@ -48,7 +51,7 @@ public class TransientChildNodesTestSuite extends AbstractPerformanceTestSuite {
 
     @Override
     public void runTest() throws Exception {
-        for (int i = 0; i < ITERATIONS; i++) {
+        for (int i = 0; i < iterations; i++) {
             node.addNode("onemore", "nt:unstructured").remove();
         }
     }
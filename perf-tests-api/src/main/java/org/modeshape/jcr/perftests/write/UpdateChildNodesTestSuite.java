@@ -20,12 +20,14 @@ import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import org.modeshape.jcr.perftests.AbstractPerformanceTestSuite;
+import org.modeshape.jcr.perftests.PerformanceSuite;
 import org.modeshape.jcr.perftests.SuiteConfiguration;
 
 /**
  * Test for measuring the performance of adding one extra child node to 
  * node with existing child nodes.
  */
+@PerformanceSuite( tags = {"write"} )
 public class UpdateChildNodesTestSuite extends AbstractPerformanceTestSuite {
 
     private Session session;
@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Unit test for the supervision of the background jobs of a suite.
+ */
+public class BackgroundJobTest {
+
+    @Test
+    public void countsFailedExecutionsAndKeepsRunning() throws Exception {
+        final CountDownLatch executions = new CountDownLatch(10);
+        BackgroundSuite suite = new BackgroundSuite(new Flaky(executions));
+        suite.setUp();
+        try {
+            assertTrue(executions.await(10, TimeUnit.SECONDS));
+        } finally {
+            suite.tearDown();
+        }
+
+        List<BackgroundJobStats> stats = suite.getBackgroundJobStats(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, stats.size());
+        assertEquals("Flaky", stats.get(0).getName());
+        assertTrue(stats.get(0).getErrorCount() >= 4);
+        assertTrue(stats.get(0).getLatencies().getCount() >= 4);
+        assertTrue(stats.get(0).getOperationsPerSecond() > 0);
+        assertTrue(stats.get(0).getErrorRatio() > 0 && stats.get(0).getErrorRatio() <= 0.5);
+        assertNull(stats.get(0).getFailure());
+    }
+
+    @Test
+    public void backsOffAfterFailures() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        BackgroundSuite suite = new BackgroundSuite(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                calls.incrementAndGet();
+                throw new Exception("always failing");
+            }
+        });
+        suite.setUp();
+        try {
+            Thread.sleep(500);
+        } finally {
+            suite.tearDown();
+        }
+
+        // without backing off, the job would have been called millions of times
+        assertTrue(calls.get() > 1);
+        assertTrue(calls.get() < 50);
+        List<BackgroundJobStats> stats = suite.getBackgroundJobStats(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, stats.get(0).getLatencies().getCount());
+        assertEquals(1.0, stats.get(0).getErrorRatio(), 0);
+        assertNull(stats.get(0).getFailure());
+    }
+
+    @Test
+    public void reportsDeadJobs() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch died = new CountDownLatch(1);
+        BackgroundSuite suite = new BackgroundSuite(new Callable<Void>() {
+            @Override
+            public Void call() {
+                calls.incrementAndGet();
+                died.countDown();
+                throw new AssertionError("broken");
+            }
+        });
+        suite.setUp();
+        try {
+            assertTrue(died.await(10, TimeUnit.SECONDS));
+            Thread.sleep(100);
+        } finally {
+            suite.tearDown();
+        }
+
+        assertEquals(1, calls.get());
+        List<BackgroundJobStats> stats = suite.getBackgroundJobStats(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, stats.size());
+        assertNotNull(stats.get(0).getFailure());
+        assertEquals(0, stats.get(0).getLatencies().getCount());
+    }
+
+    private static final class Flaky implements Callable<Void> {
+        private final CountDownLatch executions;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private Flaky( CountDownLatch executions ) {
+            this.executions = executions;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            executions.countDown();
+            if (calls.incrementAndGet() % 2 == 0) {
+                throw new Exception("concurrent modification");
+            }
+            return null;
+        }
+    }
+
+    private static final class BackgroundSuite extends AbstractPerformanceTestSuite {
+        private final Callable<?> job;
+
+        private BackgroundSuite( Callable<?> job ) {
+            super(null);
+            this.job = job;
+        }
+
+        @Override
+        protected void beforeSuite() {
+            addBackgroundJob(job);
+        }
+
+        @Override
+        protected void runTest() {
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link Distribution} of the synthetic datasets.
+ */
+public class DistributionTest {
+
+    @Test
+    public void parsesSpecs() {
+        assertEquals("7", Distribution.parse(" 7 ").toString());
+        assertEquals(7, Distribution.parse("7").sample(new Random()));
+        assertEquals("uniform:2..5", Distribution.parse("uniform:2..5").toString());
+        assertEquals(5, Distribution.parse("uniform:2..5").getMax());
+        assertEquals("zipf:100:1.5", Distribution.parse("zipf:100:1.5").toString());
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void rejectsInvalidSpecs() {
+        Distribution.parse("uniform:5..2");
+    }
+
+    @Test
+    public void drawsTheSameValuesFromTheSameSeed() {
+        Distribution distribution = Distribution.zipf(1000, 1.1);
+        Random first = new Random(42);
+        Random second = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(distribution.sample(first), distribution.sample(second));
+        }
+    }
+
+    @Test
+    public void drawsValuesInRange() {
+        Random random = new Random(1);
+        Distribution uniform = Distribution.uniform(2, 5);
+        Distribution zipf = Distribution.zipf(100, 1.0);
+        int zipfOnes = 0;
+        for (int i = 0; i < 10000; i++) {
+            int value = uniform.sample(random);
+            assertTrue(value >= 2 && value <= 5);
+            value = zipf.sample(random);
+            assertTrue(value >= 1 && value <= 100);
+            if (value == 1) {
+                zipfOnes++;
+            }
+        }
+        // with S=1, P(1) = 1/H(100) ~ 0.19
+        assertTrue("ones: " + zipfOnes, zipfOnes > 1500 && zipfOnes < 2300);
+    }
+}
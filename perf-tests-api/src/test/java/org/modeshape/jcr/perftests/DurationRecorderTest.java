@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link DurationRecorder}
+ */
+public class DurationRecorderTest {
+
+    @Test
+    public void shouldKeepAllTheSamplesUntilTheRingIsFull() {
+        DurationRecorder recorder = new DurationRecorder(100);
+        for (long value = 1; value <= 40; value++) {
+            recorder.record(value);
+        }
+        assertFalse(recorder.isTruncated());
+        assertEquals(40, recorder.getCount());
+        assertEquals(40, recorder.getRetainedSamples().length);
+        assertEquals(1, recorder.getRetainedSamples()[0]);
+        assertEquals(40, recorder.getRetainedSamples()[39]);
+        assertEquals(20.5, recorder.getMean(), 0);
+        assertEquals(new StatisticalData(recorder.getRetainedSamples()).standardDeviation(), recorder.getStandardDeviation(), 1e-9);
+        assertEquals(40, recorder.getHistogram().getCount());
+        assertEquals(20, recorder.getHistogram().getValueAtPercentile(50));
+    }
+
+    @Test
+    public void shouldUseBoundedMemoryForLongRuns() {
+        DurationRecorder recorder = new DurationRecorder(100);
+        int count = 1000000;
+        for (long value = 1; value <= count; value++) {
+            recorder.record(value);
+        }
+        assertTrue(recorder.isTruncated());
+        assertEquals(count, recorder.getCount());
+        long[] samples = recorder.getRetainedSamples();
+        assertEquals(100, samples.length);
+        assertEquals(count - 99, samples[0]);
+        assertEquals(count, samples[99]);
+        assertEquals(1, recorder.getMin());
+        assertEquals(count, recorder.getMax());
+        assertEquals((count + 1) / 2.0, recorder.getMean(), 1e-6);
+        assertEquals(Math.sqrt((double)count * (count + 1) / 12), recorder.getStandardDeviation(), 1);
+        assertEquals(count, recorder.getHistogram().getCount());
+        assertEquals(count / 2, recorder.getHistogram().getValueAtPercentile(50), count / 2 / 100);
+    }
+
+    @Test
+    public void shouldMergeRecordersAsIfTheyWereOne() {
+        DurationRecorder all = new DurationRecorder(10);
+        DurationRecorder first = new DurationRecorder(10);
+        DurationRecorder second = new DurationRecorder(10);
+        DurationRecorder third = new DurationRecorder(10);
+        for (long value = 1; value <= 50; value++) {
+            all.record(value * 7 % 13);
+            (value <= 5 ? first : value <= 35 ? second : third).record(value * 7 % 13);
+        }
+        first.add(second);
+        first.add(third);
+        first.add(new DurationRecorder(10));
+
+        assertEquals(all.getCount(), first.getCount());
+        assertEquals(all.getSum(), first.getSum());
+        assertEquals(all.getMin(), first.getMin());
+        assertEquals(all.getMax(), first.getMax());
+        assertEquals(all.getMean(), first.getMean(), 1e-9);
+        assertEquals(all.getStandardDeviation(), first.getStandardDeviation(), 1e-9);
+        assertArrayEquals(all.getRetainedSamples(), first.getRetainedSamples());
+        assertEquals(all.getHistogram().getCount(), first.getHistogram().getCount());
+        assertEquals(all.getHistogram().getValueAtPercentile(90), first.getHistogram().getValueAtPercentile(90));
+    }
+}
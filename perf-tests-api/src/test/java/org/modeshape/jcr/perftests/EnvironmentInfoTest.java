@@ -0,0 +1,67 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.Properties;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link EnvironmentInfo} class.
+ */
+public class EnvironmentInfoTest {
+
+    @Test
+    public void capturesTheJvm() throws Exception {
+        EnvironmentInfo environment = EnvironmentInfo.capture(null);
+        assertEquals(String.valueOf(Runtime.getRuntime().availableProcessors()), environment.get(EnvironmentInfo.CPU_COUNT));
+        assertEquals(System.getProperty("java.vm.vendor"), environment.get(EnvironmentInfo.JVM_VENDOR));
+        assertNotNull(environment.get(EnvironmentInfo.JVM_GC));
+    }
+
+    @Test
+    public void readsBackTheStoredProperties() throws Exception {
+        EnvironmentInfo environment = EnvironmentInfo.capture(null).withImplementation("ModeShape", "3.6");
+        Properties properties = environment.toProperties("environment.");
+        properties.setProperty("durations.Suite", "1,2,3");
+
+        EnvironmentInfo readBack = EnvironmentInfo.fromProperties(properties, "environment.");
+        assertEquals(environment, readBack);
+        assertEquals("3.6", readBack.get(EnvironmentInfo.IMPLEMENTATION_VERSION));
+    }
+
+    @Test
+    public void listsTheMachineDifferences() throws Exception {
+        Properties baseline = new Properties();
+        baseline.setProperty(EnvironmentInfo.CPU_COUNT, "8");
+        baseline.setProperty(EnvironmentInfo.JVM_VERSION, "1.6.0_45");
+        baseline.setProperty(EnvironmentInfo.HOST_NAME, "build1");
+        Properties candidate = new Properties();
+        candidate.setProperty(EnvironmentInfo.CPU_COUNT, "4");
+        candidate.setProperty(EnvironmentInfo.JVM_VERSION, "1.6.0_45");
+        candidate.setProperty(EnvironmentInfo.HOST_NAME, "build2");
+        candidate.setProperty(EnvironmentInfo.CPU_GOVERNOR, "powersave");
+
+        // the host name isn't a machine property and a property which wasn't captured by both is ignored
+        assertEquals(Arrays.asList(EnvironmentInfo.CPU_COUNT),
+                     EnvironmentInfo.fromProperties(baseline, "").machineDifferences(EnvironmentInfo.fromProperties(candidate, "")));
+        assertTrue(EnvironmentInfo.fromProperties(baseline, "").machineSummary().startsWith("8 cpus"));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertTrue;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link FlightRecordingSummary} class, which only runs on JVMs that support JFR.
+ */
+public class FlightRecordingSummaryTest {
+
+    private File recordingFile;
+    private File summaryFile;
+
+    @Before
+    public void before() throws Exception {
+        recordingFile = File.createTempFile("recording", ".jfr");
+        summaryFile = File.createTempFile("recording", "-jfr.txt");
+    }
+
+    @After
+    public void after() {
+        recordingFile.delete();
+        summaryFile.delete();
+    }
+
+    @Test
+    public void summarizesTheEventsOfARecording() throws Exception {
+        FlightRecording recording = FlightRecording.start(recordingFile, summaryFile, "profile");
+        Assume.assumeTrue(recording != null);
+        long sum = 0;
+        long end = System.currentTimeMillis() + 1000;
+        while (System.currentTimeMillis() < end) {
+            sum += allocate().size();
+        }
+        recording.stop();
+        assertTrue(sum > 0);
+
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(summaryFile));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        Assume.assumeTrue(!lines.isEmpty());
+        Matcher header = Pattern.compile("Flight recording: .+ \\((\\d+) events\\)").matcher(lines.get(0));
+        assertTrue(lines.get(0), header.matches());
+        assertTrue(Long.parseLong(header.group(1)) > 0);
+        int samples = lines.indexOf("Top sampled methods [samples]");
+        int allocations = lines.indexOf("Top allocation sites [allocated KB]");
+        assertTrue(samples > 0);
+        assertTrue(allocations > samples);
+        assertTrue(lines.contains("Top lock contention sites [blocked ms]"));
+        // the allocation loop was both sampled and allocating
+        assertTrue(lines.toString(), isSummarized(lines.get(samples + 1)));
+        assertTrue(lines.toString(), isSummarized(lines.get(allocations + 1)));
+    }
+
+    private static boolean isSummarized( String line ) {
+        return line.matches("\\s*\\d+\\s+\\S.*");
+    }
+
+    private static List<Integer> allocate() {
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            values.add(i * 1000);
+        }
+        return values;
+    }
+}
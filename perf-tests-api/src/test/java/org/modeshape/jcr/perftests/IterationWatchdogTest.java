@@ -0,0 +1,171 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the detection of the stalled iterations of a suite.
+ */
+public class IterationWatchdogTest {
+
+    private File dumpFilePrefix;
+
+    @Before
+    public void setUp() {
+        dumpFilePrefix = new File(System.getProperty("java.io.tmpdir"), "watchdog-test-" + System.nanoTime());
+    }
+
+    @Test
+    public void dumpsThreadsOfStalledIterations() throws Exception {
+        IterationWatchdog watchdog = new IterationWatchdog("Suite", TimeUnit.MILLISECONDS.toNanos(200), 0, false, dumpFilePrefix);
+        try {
+            runIteration(watchdog, 10);
+            watchdog.iterationStarted();
+            Thread.sleep(600);
+            watchdog.iterationFinished(true);
+        } finally {
+            watchdog.stop();
+        }
+
+        List<String> stalls = watchdog.getStalls();
+        assertEquals(1, stalls.size());
+        assertTrue(stalls.get(0), stalls.get(0).startsWith("iteration #2 stalled"));
+        File dumpFile = new File(dumpFilePrefix.getPath() + "-stall-1.txt");
+        String dump = read(dumpFile);
+        assertTrue(dump.contains("\"" + Thread.currentThread().getName() + "\""));
+        assertTrue(dump.contains("dumpsThreadsOfStalledIterations"));
+        assertTrue(dump.contains("Heap: "));
+        dumpFile.delete();
+    }
+
+    @Test
+    public void abortsStalledIterations() throws Exception {
+        IterationWatchdog watchdog = new IterationWatchdog("Suite", TimeUnit.MILLISECONDS.toNanos(200), 0, true, dumpFilePrefix);
+        try {
+            watchdog.iterationStarted();
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                fail("The iteration should have been interrupted");
+            } catch (InterruptedException e) {
+                watchdog.iterationFinished(false);
+            }
+            assertEquals(1, watchdog.getStalls().size());
+
+            //the next iterations run normally
+            runIteration(watchdog, 10);
+            assertEquals(1, watchdog.getStalls().size());
+        } finally {
+            watchdog.stop();
+            new File(dumpFilePrefix.getPath() + "-stall-1.txt").delete();
+        }
+    }
+
+    @Test
+    public void abortsStalledIterationsOfConcurrentWorkers() throws Exception {
+        IterationWatchdog watchdog = new IterationWatchdog("Suite", TimeUnit.MILLISECONDS.toNanos(300), 0, true, dumpFilePrefix);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> stalled = executor.submit(new Worker(watchdog, TimeUnit.SECONDS.toMillis(10)));
+            Future<Boolean> fast = executor.submit(new Worker(watchdog, 10));
+            assertTrue(stalled.get(10, TimeUnit.SECONDS));
+            assertFalse(fast.get(10, TimeUnit.SECONDS));
+            assertEquals(1, watchdog.getStalls().size());
+
+            //the interrupt doesn't leak into the next iteration of the worker
+            assertFalse(executor.submit(new Worker(watchdog, 10)).get(10, TimeUnit.SECONDS));
+            assertFalse(executor.submit(new Worker(watchdog, 10)).get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+            watchdog.stop();
+            new File(dumpFilePrefix.getPath() + "-stall-1.txt").delete();
+        }
+    }
+
+    @Test
+    public void doesNotReportFastIterationsAgainstTheMedian() throws Exception {
+        IterationWatchdog watchdog = new IterationWatchdog("Suite", 0, 2, false, dumpFilePrefix);
+        try {
+            for (int i = 0; i < 10; i++) {
+                runIteration(watchdog, 1);
+            }
+            //more than twice the median, but under the minimum duration of a stall
+            runIteration(watchdog, 300);
+        } finally {
+            watchdog.stop();
+        }
+        assertTrue(watchdog.getStalls().isEmpty());
+    }
+
+    private void runIteration( IterationWatchdog watchdog,
+                               long durationMillis ) throws InterruptedException {
+        watchdog.iterationStarted();
+        Thread.sleep(durationMillis);
+        watchdog.iterationFinished(true);
+    }
+
+    /**
+     * Runs an iteration under the watchdog, and returns whether it was interrupted.
+     */
+    private static final class Worker implements Callable<Boolean> {
+        private final IterationWatchdog watchdog;
+        private final long durationMillis;
+
+        private Worker( IterationWatchdog watchdog,
+                        long durationMillis ) {
+            this.watchdog = watchdog;
+            this.durationMillis = durationMillis;
+        }
+
+        @Override
+        public Boolean call() {
+            watchdog.iterationStarted();
+            try {
+                Thread.sleep(durationMillis);
+                watchdog.iterationFinished(true);
+                return false;
+            } catch (InterruptedException e) {
+                watchdog.iterationFinished(false);
+                return true;
+            }
+        }
+    }
+
+    private String read( File file ) throws IOException {
+        Scanner scanner = new Scanner(new FileInputStream(file), "UTF-8").useDelimiter("\\A");
+        try {
+            return scanner.next();
+        } finally {
+            scanner.close();
+        }
+    }
+}
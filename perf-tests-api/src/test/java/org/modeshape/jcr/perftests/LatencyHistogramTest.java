@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link LatencyHistogram} class.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100; i++) {
+            histogram.recordValue(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(50.5, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void largeValuesHaveBoundedRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.recordValue(i * 1000);
+        }
+        assertWithinOnePercent(50000000, histogram.getValueAtPercentile(50));
+        assertWithinOnePercent(90000000, histogram.getValueAtPercentile(90));
+        assertWithinOnePercent(99900000, histogram.getValueAtPercentile(99.9));
+        assertEquals(100000000, histogram.getMax());
+        assertEquals(100000000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int index = 1; index < 20 * 128; index++) {
+            assertEquals(index, LatencyHistogram.bucketIndex(LatencyHistogram.highestValueInBucket(index - 1) + 1));
+            assertEquals(index, LatencyHistogram.bucketIndex(LatencyHistogram.highestValueInBucket(index)));
+        }
+        assertTrue(LatencyHistogram.bucketIndex(Long.MAX_VALUE) >= 0);
+    }
+
+    @Test
+    public void addHistograms() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.recordValue(10);
+        second.recordValue(5);
+        second.recordValue(1000);
+        first.add(second);
+        assertEquals(3, first.getCount());
+        assertEquals(5, first.getMin());
+        assertEquals(1000, first.getMax());
+    }
+
+    private void assertWithinOnePercent( long expected, long actual ) {
+        assertTrue("Expected ~" + expected + " but was " + actual, Math.abs(expected - actual) <= expected / 100);
+    }
+}
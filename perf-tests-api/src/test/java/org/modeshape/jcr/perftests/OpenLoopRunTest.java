@@ -0,0 +1,62 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Unit test for the open-loop execution of a suite.
+ */
+public class OpenLoopRunTest {
+
+    @Test( expected = IllegalArgumentException.class )
+    public void rejectsNonPositiveRates() {
+        new RunnerCfg().setOpenLoopRates(1, 1, 100, 0);
+    }
+
+    @Test
+    public void dropsTheRunsWhichCannotCatchUp() throws Exception {
+        SlowSuite suite = new SlowSuite();
+        TestData testData = new TestData("repo");
+        suite.setUp();
+        long start = System.nanoTime();
+        try {
+            // each run takes 50ms, so a single thread can't keep up with 100 runs/s
+            new OpenLoopRun(suite, null, testData, 100, 1, 1).execute();
+        } finally {
+            suite.tearDown();
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+        String testName = suite.getName() + "[100 ops/s]";
+        assertTrue(testData.getDroppedRuns(testName) > 0);
+        assertTrue(testData.getDroppedRuns(testName) < 100);
+    }
+
+    private static final class SlowSuite extends AbstractPerformanceTestSuite {
+        private SlowSuite() {
+            super(null);
+        }
+
+        @Override
+        protected void runTest() throws Exception {
+            Thread.sleep(50);
+        }
+    }
+}
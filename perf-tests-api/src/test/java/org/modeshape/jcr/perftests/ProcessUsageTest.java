@@ -0,0 +1,68 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link ProcessUsage} and {@link ProcessSampler} classes.
+ */
+public class ProcessUsageTest {
+
+    @Before
+    public void before() {
+        Assume.assumeTrue(ProcessUsage.isSupported());
+    }
+
+    @Test
+    public void readsTheResourcesUsedByTheProcess() throws Exception {
+        ProcessUsage start = ProcessUsage.sample(0);
+        long sum = 0;
+        for (long i = 0; i < 200000000L; i++) {
+            sum += i % 7;
+        }
+        ProcessUsage usage = ProcessUsage.sample(100).since(start);
+
+        assertTrue(sum > 0);
+        assertEquals(100, usage.getTimeMillis());
+        assertTrue(usage.getCpuUserMillis() >= 0);
+        assertTrue(usage.getCpuSystemMillis() >= 0);
+        assertTrue(usage.getCpuUserMillis() + usage.getCpuSystemMillis() > 0);
+        assertTrue(usage.getResidentBytes() > 0);
+        assertTrue(usage.getThreadCount() > 1);
+        assertTrue(usage.getVoluntaryContextSwitches() >= 0);
+        assertTrue(usage.getInvoluntaryContextSwitches() >= 0);
+    }
+
+    @Test
+    public void keepsABoundedNumberOfEvenlySpacedSamples() throws Exception {
+        ProcessSampler sampler = new ProcessSampler(1, 8);
+        Thread.sleep(200);
+        List<ProcessUsage> samples = sampler.stop();
+
+        assertTrue(samples.size() > 1);
+        assertTrue(samples.size() < 8);
+        for (int i = 1; i < samples.size(); i++) {
+            assertTrue(samples.get(i).getTimeMillis() >= samples.get(i - 1).getTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ResultsComparator}
+ */
+public class ResultsComparatorTest {
+
+    private final ResultsComparator comparator = new ResultsComparator(2000, 0.95, 0.05, 0.02);
+
+    @Test
+    public void shouldComputeTheExactPValueOfSmallSamples() {
+        double[] first = {1, 2, 3, 4, 5};
+        double[] second = {6, 7, 8, 9, 10};
+        assertEquals(0, ResultsComparator.uStatistic(first, second), 0);
+        assertEquals(25, ResultsComparator.uStatistic(second, first), 0);
+        //only 2 of the 252 arrangements are as extreme
+        assertEquals(2.0 / 252, ResultsComparator.mannWhitneyPValue(first, second, 0), 1e-12);
+        assertEquals(2.0 / 252, ResultsComparator.mannWhitneyPValue(second, first, 25), 1e-12);
+
+        double[] interleaved = {1, 3, 5, 7, 9};
+        double[] others = {2, 4, 6, 8, 10};
+        double u = ResultsComparator.uStatistic(interleaved, others);
+        assertEquals(10, u, 0);
+        assertTrue(ResultsComparator.mannWhitneyPValue(interleaved, others, u) > 0.5);
+    }
+
+    @Test
+    public void shouldApproximateThePValueOfLargeSamplesAndTies() {
+        double[] first = new double[25];
+        double[] second = new double[25];
+        for (int i = 0; i < 25; i++) {
+            first[i] = i;
+            second[i] = i + 25;
+        }
+        double pValue = ResultsComparator.mannWhitneyPValue(first, second, ResultsComparator.uStatistic(first, second));
+        assertTrue(pValue > 0 && pValue < 1e-8);
+
+        double[] ties = {1, 1, 2, 2};
+        assertEquals(8, ResultsComparator.uStatistic(ties, ties), 0);
+        assertEquals(1, ResultsComparator.mannWhitneyPValue(ties, ties, 8), 0);
+        double[] equal = {3, 3, 3};
+        assertEquals(1, ResultsComparator.mannWhitneyPValue(equal, equal, ResultsComparator.uStatistic(equal, equal)), 0);
+    }
+
+    @Test
+    public void shouldDetectRegressionsAndImprovements() {
+        List<Long> baseline = durations(1, 100, 10);
+        List<Long> slower = durations(2, 130, 10);
+        List<Long> faster = durations(3, 70, 10);
+
+        TestComparison regression = comparator.compare("test", baseline, slower);
+        assertEquals(TestComparison.Verdict.REGRESSED, regression.getVerdict());
+        assertTrue(regression.getMedianRatio() > 1.2);
+        assertTrue(regression.getMedianRatioInterval()[0] > 1);
+        assertTrue(regression.getMedianRatioInterval()[0] <= regression.getMedianRatio());
+        assertTrue(regression.getMedianRatioInterval()[1] >= regression.getMedianRatio());
+        assertTrue(regression.getP99RatioInterval()[0] <= regression.getP99Ratio());
+        assertEquals(1, regression.getEffectSize(), 0);
+
+        TestComparison improvement = comparator.compare("test", baseline, faster);
+        assertEquals(TestComparison.Verdict.IMPROVED, improvement.getVerdict());
+        assertEquals(-1, improvement.getEffectSize(), 0);
+        assertTrue(improvement.getPValue() < 0.001);
+    }
+
+    @Test
+    public void shouldNotMistakeNoiseForARegression() {
+        for (int seed = 0; seed < 20; seed++) {
+            TestComparison comparison = comparator.compare("test", durations(seed, 100, 5), durations(seed + 100, 100, 5));
+            assertEquals(comparison.toString(), TestComparison.Verdict.UNCHANGED, comparison.getVerdict());
+        }
+    }
+
+    @Test
+    public void shouldCompareTheTestsOfBothResultSets() {
+        Map<String, List<Long>> baseline = new TreeMap<String, List<Long>>();
+        baseline.put("a", durations(1, 100, 10));
+        baseline.put("b", durations(2, 100, 10));
+        Map<String, List<Long>> candidate = new TreeMap<String, List<Long>>();
+        candidate.put("b", durations(3, 100, 10));
+        candidate.put("c", durations(4, 100, 10));
+        candidate.put("a", Collections.<Long>emptyList());
+
+        List<TestComparison> comparisons = comparator.compare(baseline, candidate);
+        assertEquals(1, comparisons.size());
+        assertEquals("b", comparisons.get(0).getTestName());
+    }
+
+    /**
+     * Returns durations uniformly distributed within 10% of a mean.
+     */
+    private List<Long> durations( long seed,
+                                  long mean,
+                                  int count ) {
+        Random random = new Random(seed);
+        List<Long> durations = new ArrayList<Long>();
+        for (int i = 0; i < count; i++) {
+            durations.add(mean * 1000 + (long)((random.nextDouble() - 0.5) * mean * 200));
+        }
+        return durations;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.perftests.output.HistoryOutput;
+import org.modeshape.jcr.perftests.output.ResultsHistory;
+
+/**
+ * Unit test for writing runs to the results history and querying them back.
+ */
+public class ResultsHistoryTest {
+
+    private File historyFolder;
+
+    @Before
+    public void setUp() {
+        historyFolder = new File(System.getProperty("java.io.tmpdir"), "history-test-" + System.nanoTime());
+        assertTrue(historyFolder.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = historyFolder.listFiles();
+        for (File file : files) {
+            file.delete();
+        }
+        historyFolder.delete();
+    }
+
+    @Test
+    public void shouldKeepEveryRunWithItsMetadata() throws Exception {
+        Properties runnerProperties = new Properties();
+        runnerProperties.setProperty("repeat.count", "5");
+
+        TestData first = new TestData("Repo local-inmemory");
+        first.recordImplementation("Repo", "1.0");
+        first.recordSuccess("Suite[nodeCount=10]", 100, 1);
+        first.recordSuccess("Suite[nodeCount=10]", 200, 2);
+        first.recordFailure("FailingSuite", new Exception());
+        new HistoryOutput(historyFolder, runnerProperties).generateOutput(first);
+
+        TestData second = new TestData("Repo local-inmemory");
+        second.recordSuccess("Suite[nodeCount=10]", 300, 1);
+        new HistoryOutput(historyFolder, runnerProperties).generateOutput(second);
+
+        TestData other = new TestData("Other");
+        other.recordSuccess("Suite[nodeCount=10]", 400, 1);
+        new HistoryOutput(historyFolder, runnerProperties).generateOutput(other);
+
+        //runs written within the same second don't overwrite each other
+        assertEquals(3, historyFolder.listFiles().length);
+
+        ResultsHistory history = new ResultsHistory(historyFolder);
+        assertEquals(3, history.getRuns().size());
+        assertEquals(Arrays.asList("Other", "Repo local-inmemory"), new ArrayList<String>(history.getRepositoryNames()));
+
+        List<ResultsHistory.Run> runs = history.getRuns("Repo local-inmemory", null, new Date());
+        assertEquals(2, runs.size());
+        ResultsHistory.Run firstRun = runs.get(0);
+        assertEquals(Arrays.asList(100L, 200L), firstRun.getTestDurationsNanos("Suite[nodeCount=10]"));
+        assertEquals(Collections.singleton("FailingSuite"), firstRun.getFailedTestNames());
+        assertEquals("1.0", firstRun.getImplementationVersion());
+        assertEquals("5", firstRun.getRunnerProperty("repeat.count"));
+        assertNotNull(firstRun.getJvm());
+        assertEquals(Arrays.asList(300L), runs.get(1).getTestDurationsNanos("Suite[nodeCount=10]"));
+        assertTrue(history.getRuns(null, new Date(System.currentTimeMillis() + 60000), null).isEmpty());
+    }
+}
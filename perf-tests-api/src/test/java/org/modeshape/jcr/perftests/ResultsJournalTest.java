@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link ResultsJournal} class.
+ */
+public class ResultsJournalTest {
+
+    private File file;
+    private ResultsJournal journal;
+
+    @Before
+    public void before() throws Exception {
+        file = File.createTempFile("results", ".journal");
+        journal = new ResultsJournal(file);
+        journal.clear();
+    }
+
+    @After
+    public void after() {
+        journal.close();
+        file.delete();
+    }
+
+    @Test
+    public void recoversTheCompletedSuites() throws Exception {
+        TestData testData = new TestData("repo");
+        testData.setJournal(journal);
+        journal.suiteStarted("Suite");
+        testData.recordImplementation("ModeShape", "3.6");
+        testData.recordWarmup("Suite", 2, true);
+        testData.recordSuccess("Suite", 5, 1);
+        testData.recordSuccess("Suite", 7, 2);
+        testData.recordMetrics("Suite", new IterationMetrics(100, 1, 2, 3));
+        LatencyHistogram latencies = new LatencyHistogram();
+        latencies.recordValue(1000);
+        testData.recordOperations("Suite", Collections.singletonMap("read", latencies));
+        testData.recordBackgroundJob("Suite", new BackgroundJobStats("Reader", 2, latencies, 0, 1000, null));
+        testData.recordStall("Suite", "stalled");
+        journal.suiteCompleted("Suite");
+        journal.suiteStarted("OtherSuite");
+        testData.recordFailure("OtherSuite", new Exception("boom"));
+        testData.recordThroughput("OtherSuite[2 threads]", 10, 100);
+        testData.recordThreadLatencies("OtherSuite[2 threads]", Arrays.asList(latencies, new LatencyHistogram()));
+        journal.suiteCompleted("OtherSuite");
+        journal.suiteStarted("DeadSuite");
+        testData.recordSuccess("DeadSuite", 3, 1);
+        journal.close();
+
+        TestData recovered = new TestData("repo");
+        Set<String> doneSuites = journal.recover(recovered);
+
+        assertEquals(Arrays.asList("Suite", "OtherSuite"), Arrays.asList(doneSuites.toArray()));
+        assertEquals("ModeShape", recovered.getImplementationName());
+        assertEquals(Integer.valueOf(2), recovered.getWarmupRuns("Suite"));
+        assertTrue(recovered.reachedSteadyState("Suite"));
+        assertEquals(Arrays.asList(5L, 7L), recovered.getTestDurationsNanos("Suite"));
+        assertEquals(100, recovered.getIterationMetrics("Suite").get(0).getAllocatedBytes());
+        assertEquals(1, recovered.getOperationLatencies("Suite", "read").getCount());
+        assertEquals("Reader", recovered.getBackgroundJobs("Suite").get(0).getName());
+        assertEquals(Arrays.asList("stalled"), recovered.getStalls("Suite"));
+        assertTrue(recovered.getFailedTestNames().contains("OtherSuite"));
+        assertEquals(0.1 * 1e9, recovered.getThroughput("OtherSuite[2 threads]"), 1);
+        assertEquals(2, recovered.getThreadLatencies("OtherSuite[2 threads]").size());
+        assertEquals(1, recovered.getThreadLatencies("OtherSuite[2 threads]").get(0).getCount());
+        // the suite which didn't complete is run again
+        assertFalse(recovered.getSuccessfulTestNames().contains("DeadSuite"));
+    }
+
+    @Test
+    public void dropsTheRecordCutShortByTheDeathOfTheJvm() throws Exception {
+        TestData testData = new TestData("repo");
+        testData.setJournal(journal);
+        journal.suiteStarted("Suite");
+        testData.recordSuccess("Suite", 5, 1);
+        journal.suiteCompleted("Suite");
+        journal.close();
+        long validLength = file.length();
+        FileOutputStream output = new FileOutputStream(file, true);
+        output.write(new byte[] {0, 0, 0, 100, 3, 0});
+        output.close();
+
+        TestData recovered = new TestData("repo");
+        assertEquals(Collections.singleton("Suite"), journal.recover(recovered));
+        assertEquals(validLength, file.length());
+
+        // the records appended after recovering are read back as well
+        recovered.setJournal(journal);
+        journal.suiteStarted("OtherSuite");
+        recovered.recordSuccess("OtherSuite", 9, 1);
+        journal.suiteCompleted("OtherSuite");
+        journal.close();
+        assertEquals(2, journal.recover(new TestData("repo")).size());
+    }
+
+    @Test
+    public void givesUpOnSuitesWhichKeepKillingTheJvm() throws Exception {
+        TestData testData = new TestData("repo");
+        testData.setJournal(journal);
+        for (int attempt = 1; attempt <= ResultsJournal.MAX_SUITE_ATTEMPTS; attempt++) {
+            journal.suiteStarted("BigSuite");
+            testData.recordSuccess("BigSuite", attempt, 1);
+            journal.close();
+
+            TestData recovered = new TestData("repo");
+            Set<String> doneSuites = journal.recover(recovered);
+            if (attempt < ResultsJournal.MAX_SUITE_ATTEMPTS) {
+                assertTrue(doneSuites.isEmpty());
+            } else {
+                assertEquals(Collections.singleton("BigSuite"), doneSuites);
+                assertEquals(Arrays.asList((long)attempt), recovered.getTestDurationsNanos("BigSuite"));
+                assertTrue(recovered.getFailedTestNames().contains("BigSuite"));
+            }
+        }
+    }
+
+    @Test
+    public void readsTheRecordsWrittenByAnotherJvm() throws Exception {
+        TestData parent = new TestData("repo");
+        parent.setJournal(journal);
+        journal.suiteStarted("Suite");
+        long position = journal.position();
+
+        ResultsJournal childJournal = new ResultsJournal(file);
+        TestData child = new TestData("repo");
+        child.setJournal(childJournal);
+        child.recordSuccess("Suite", 5, 1);
+        child.recordSuccess("Suite", 6, 2);
+        childJournal.close();
+
+        TestData suiteData = new TestData("repo");
+        journal.read(position, suiteData);
+        parent.merge(suiteData);
+        journal.suiteCompleted("Suite");
+        journal.close();
+
+        assertEquals(Arrays.asList(5L, 6L), parent.getTestDurationsNanos("Suite"));
+        // the merged data isn't journaled twice
+        TestData recovered = new TestData("repo");
+        journal.recover(recovered);
+        assertEquals(Arrays.asList(5L, 6L), recovered.getTestDurationsNanos("Suite"));
+    }
+}
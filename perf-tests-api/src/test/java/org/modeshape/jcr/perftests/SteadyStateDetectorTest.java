@@ -0,0 +1,52 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link SteadyStateDetector} class.
+ */
+public class SteadyStateDetectorTest {
+
+    @Test( expected = IllegalArgumentException.class )
+    public void invalidWindow() {
+        new SteadyStateDetector(1, 0.1);
+    }
+
+    @Test
+    public void notSteadyUntilWindowIsFull() {
+        SteadyStateDetector detector = new SteadyStateDetector(3, 0.1);
+        assertFalse(detector.addSample(100));
+        assertFalse(detector.addSample(100));
+        assertTrue(detector.addSample(100));
+        assertEquals(0, detector.coefficientOfVariation(), 0);
+    }
+
+    @Test
+    public void becomesSteadyOnceSlowRunsLeaveTheWindow() {
+        SteadyStateDetector detector = new SteadyStateDetector(3, 0.05);
+        assertFalse(detector.addSample(1000));
+        assertFalse(detector.addSample(400));
+        assertFalse(detector.addSample(100));
+        assertFalse(detector.addSample(102));
+        assertTrue(detector.addSample(98));
+    }
+}
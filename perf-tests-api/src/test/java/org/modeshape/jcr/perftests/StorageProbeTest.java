@@ -0,0 +1,312 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link StorageProbe} and {@link StorageMetrics} classes, against a fake workspace.
+ */
+public class StorageProbeTest {
+
+    private File directory;
+    private File outputDirectory;
+    private File contentFile;
+    private File journalFile;
+    private File logFile;
+    private FakeNode root;
+
+    @Before
+    public void before() throws Exception {
+        directory = File.createTempFile("storage", "");
+        assertTrue(directory.delete() && new File(directory, "content").mkdirs() && new File(directory, "index").mkdirs());
+        contentFile = new File(directory, "content/data.db");
+        append(contentFile, 1000);
+        append(new File(directory, "index/segments"), 100);
+        append(new File(directory, "repository.lock"), 10);
+        outputDirectory = new File(directory.getPath() + "-output");
+        assertTrue(outputDirectory.mkdirs());
+        journalFile = new File(outputDirectory, "results.journal");
+        logFile = new File(outputDirectory, "perf-tests.log");
+        append(logFile, 50);
+
+        root = new FakeNode("");
+        root.children.add(new FakeNode("jcr:system").withProperty("jcr:uuid", 36));
+        root.children.add(new FakeNode("dataset").withProperty("title", 5));
+    }
+
+    @After
+    public void after() {
+        delete(directory);
+        delete(outputDirectory);
+    }
+
+    @Test
+    public void sumsWhatEachIterationSaved() throws Exception {
+        StorageProbe probe = new StorageProbe(Collections.singletonList(directory), repository(), null, journalFile,
+                                              Arrays.asList(logFile), true);
+        probe.start();
+        for (int i = 0; i < 3; i++) {
+            // beforeTestRun()
+            root.children.add(new FakeNode("prepared").withProperty("value", 1));
+            probe.iterationStarted();
+            // runTest() saves 2 nodes and 150 logical bytes
+            FakeNode parent = new FakeNode("parent").withProperty("title", 50);
+            parent.children.add(new FakeNode("child").withProperty("data", 60, 40));
+            root.children.add(parent);
+            append(contentFile, 400);
+            probe.iterationFinished();
+            // afterTestRun() removes everything
+            root.children.subList(1, root.children.size()).clear();
+            root.children.add(new FakeNode("dataset").withProperty("title", 5));
+            append(journalFile, 20);
+            append(logFile, 30);
+        }
+        StorageMetrics metrics = probe.stop();
+
+        assertEquals(3, metrics.getIterationCount());
+        assertEquals(6, metrics.getNodeCount());
+        assertEquals(450, metrics.getLogicalBytes());
+        assertEquals(1200, metrics.getIterationDiskGrowthBytes());
+        assertEquals(200.0, metrics.getDiskBytesPerNode(), 0.0);
+        assertEquals(2200, metrics.getDiskBytes(StorageMetrics.CONTENT));
+        assertEquals(100, metrics.getDiskBytes(StorageMetrics.INDEXES));
+        assertEquals(0, metrics.getDiskBytes(StorageMetrics.BINARIES));
+        assertEquals(10, metrics.getDiskBytes(StorageMetrics.OTHER));
+        assertEquals(2310, metrics.getDiskBytes());
+        assertEquals(1200, metrics.getDiskGrowthBytes());
+        assertEquals(60, metrics.getJournalBytes());
+        assertEquals(90, metrics.getLogBytes());
+        if (ProcessUsage.writtenBytes() >= 0) {
+            assertTrue(metrics.getWrittenBytes() >= 0);
+            assertEquals((double) metrics.getWrittenBytes() / 450, metrics.getWriteAmplification(), 1e-9);
+        } else {
+            assertEquals(-1, metrics.getWrittenBytes());
+            assertTrue(Double.isNaN(metrics.getWriteAmplification()));
+        }
+    }
+
+    @Test
+    public void onlyCountsTheContentWhenRequested() throws Exception {
+        StorageProbe probe = new StorageProbe(Collections.singletonList(directory), repository(), null, journalFile,
+                                              Arrays.asList(logFile), false);
+        probe.start();
+        probe.iterationStarted();
+        root.children.add(new FakeNode("parent").withProperty("title", 50));
+        append(contentFile, 400);
+        probe.iterationFinished();
+        StorageMetrics metrics = probe.stop();
+
+        assertEquals(1, metrics.getIterationCount());
+        assertEquals(-1, metrics.getNodeCount());
+        assertEquals(-1, metrics.getLogicalBytes());
+        assertEquals(-1, metrics.getIterationDiskGrowthBytes());
+        assertEquals(400, metrics.getDiskGrowthBytes());
+        assertTrue(Double.isNaN(metrics.getDiskBytesPerNode()));
+        if (ProcessUsage.writtenBytes() >= 0) {
+            assertTrue(metrics.getWrittenBytes() >= 0);
+        }
+    }
+
+    @Test
+    public void reportsWhatCannotBeMeasured() throws Exception {
+        Repository failingRepository = proxy(Repository.class, new InvocationHandler() {
+            @Override
+            public Object invoke( Object proxy,
+                                  Method method,
+                                  Object[] args ) throws Throwable {
+                throw new RepositoryException("closed");
+            }
+        });
+        StorageProbe probe = new StorageProbe(Collections.singletonList(directory), failingRepository, null, null,
+                                              Collections.<File>emptyList(), true);
+        probe.start();
+        StorageMetrics metrics = probe.stop();
+        assertEquals(0, metrics.getIterationCount());
+        assertEquals(-1, metrics.getWrittenBytes());
+        assertEquals(-1, metrics.getJournalBytes());
+        assertEquals(-1, metrics.getLogBytes());
+        assertTrue(Double.isNaN(metrics.getDiskBytesPerNode()));
+
+        probe.start();
+        probe.iterationStarted();
+        append(contentFile, 100);
+        probe.iterationFinished();
+        metrics = probe.stop();
+        assertEquals(1, metrics.getIterationCount());
+        assertEquals(100, metrics.getIterationDiskGrowthBytes());
+        assertEquals(-1, metrics.getNodeCount());
+        assertEquals(-1, metrics.getLogicalBytes());
+        assertTrue(Double.isNaN(metrics.getDiskBytesPerNode()));
+        assertTrue(Double.isNaN(metrics.getWriteAmplification()));
+    }
+
+    private Repository repository() {
+        return proxy(Repository.class, new InvocationHandler() {
+            @Override
+            public Object invoke( Object proxy,
+                                  Method method,
+                                  Object[] args ) {
+                if (!"login".equals(method.getName())) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                return proxy(Session.class, new InvocationHandler() {
+                    @Override
+                    public Object invoke( Object proxy,
+                                          Method method,
+                                          Object[] args ) {
+                        if ("getRootNode".equals(method.getName())) {
+                            return root.asNode();
+                        } else if ("logout".equals(method.getName())) {
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+            }
+        });
+    }
+
+    private static <T> T proxy( Class<T> type,
+                                InvocationHandler handler ) {
+        return type.cast(Proxy.newProxyInstance(StorageProbeTest.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object iterator( Class<?> type,
+                                    final Iterator<?> elements ) {
+        return proxy(type, new InvocationHandler() {
+            @Override
+            public Object invoke( Object proxy,
+                                  Method method,
+                                  Object[] args ) {
+                if ("hasNext".equals(method.getName())) {
+                    return elements.hasNext();
+                } else if (method.getName().startsWith("next")) {
+                    return elements.next();
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static void append( File file,
+                                int bytes ) throws IOException {
+        FileOutputStream output = new FileOutputStream(file, true);
+        try {
+            output.write(new byte[bytes]);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void delete( File file ) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * A node of the fake workspace, whose properties only have lengths.
+     */
+    private static final class FakeNode {
+        private final String name;
+        private final Map<String, long[]> propertyLengths = new LinkedHashMap<String, long[]>();
+        private final List<FakeNode> children = new ArrayList<FakeNode>();
+
+        private FakeNode( String name ) {
+            this.name = name;
+        }
+
+        private FakeNode withProperty( String propertyName,
+                                       long... lengths ) {
+            propertyLengths.put(propertyName, lengths);
+            return this;
+        }
+
+        private Node asNode() {
+            return proxy(Node.class, new InvocationHandler() {
+                @Override
+                public Object invoke( Object proxy,
+                                      Method method,
+                                      Object[] args ) {
+                    if ("getName".equals(method.getName())) {
+                        return name;
+                    } else if ("getNodes".equals(method.getName()) && args == null) {
+                        List<Node> nodes = new ArrayList<Node>();
+                        for (FakeNode child : children) {
+                            nodes.add(child.asNode());
+                        }
+                        return iterator(NodeIterator.class, nodes.iterator());
+                    } else if ("getProperties".equals(method.getName()) && args == null) {
+                        List<Property> properties = new ArrayList<Property>();
+                        for (long[] lengths : propertyLengths.values()) {
+                            properties.add(property(lengths));
+                        }
+                        return iterator(PropertyIterator.class, properties.iterator());
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private static Property property( final long[] lengths ) {
+            return proxy(Property.class, new InvocationHandler() {
+                @Override
+                public Object invoke( Object proxy,
+                                      Method method,
+                                      Object[] args ) {
+                    if ("isMultiple".equals(method.getName())) {
+                        return lengths.length != 1;
+                    } else if ("getLength".equals(method.getName())) {
+                        return lengths[0];
+                    } else if ("getLengths".equals(method.getName())) {
+                        return lengths;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link SuiteConfiguration} parameters.
+ */
+public class SuiteConfigurationTest {
+
+    @Test
+    public void parsesListsAndRanges() {
+        assertEquals(Arrays.asList("10"), SuiteConfiguration.parseValues("10"));
+        assertEquals(Arrays.asList("10", "100", "1000"), SuiteConfiguration.parseValues("10, 100,1000"));
+        assertEquals(Arrays.asList("1", "2", "3", "10"), SuiteConfiguration.parseValues("1..3,10"));
+        assertEquals(Arrays.asList("0", "4", "8"), SuiteConfiguration.parseValues("0..9:4"));
+        assertEquals(Arrays.asList("abc"), SuiteConfiguration.parseValues("abc"));
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void rejectsEmptyRanges() {
+        SuiteConfiguration.parseValues("5..1");
+    }
+
+    @Test
+    public void combinesAllValues() {
+        Map<String, List<String>> sweeps = new TreeMap<String, List<String>>();
+        sweeps.put("a", Arrays.asList("1", "2"));
+        sweeps.put("b", Arrays.asList("x", "y", "z"));
+        List<Map<String, String>> combinations = SuiteConfiguration.combinations(sweeps);
+        assertEquals(6, combinations.size());
+        assertEquals("{a=1, b=x}", combinations.get(0).toString());
+        assertEquals("{a=2, b=z}", combinations.get(5).toString());
+        assertEquals(1, SuiteConfiguration.combinations(Collections.<String, List<String>>emptyMap()).size());
+    }
+
+    @Test
+    public void readsSuiteSpecificParametersAndTracksSweeps() throws Exception {
+        SuiteConfiguration configuration = new SuiteConfiguration(null, null, "sweep-testsuite.properties");
+
+        SuiteConfiguration someSuite = configuration.forSuite("SomeSuite", Collections.<String, String>emptyMap());
+        assertEquals(1, someSuite.getInt("fileSize", 0));
+        assertEquals(10, someSuite.getNodeCount());
+        assertEquals(7, someSuite.getInt("missing", 7));
+        assertEquals("[fileSize=1,nodeCount=10]", someSuite.getParameterTag());
+        assertEquals(2, someSuite.getSweeps().size());
+        // only the values wrapped in sweep(...) are swept
+        assertEquals("a,b", someSuite.getString("names", null));
+        assertEquals(2, someSuite.getSweeps().size());
+
+        SuiteConfiguration otherSuite = configuration.forSuite("OtherSuite", Collections.singletonMap("nodeCount", "100"));
+        assertEquals(1024, otherSuite.getInt("fileSize", 0));
+        assertEquals(100, otherSuite.getNodeCount());
+        assertEquals("[nodeCount=100]", otherSuite.getParameterTag());
+        assertTrue(otherSuite.getBoolean("missing", true));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Test;
+import org.modeshape.jcr.perftests.init.OpenAnonymousSessionTestSuite;
+import org.modeshape.jcr.perftests.init.OpenAuthenticatedSessionTestSuite;
+import org.modeshape.jcr.perftests.read.SmallFileReadTestSuite;
+import org.modeshape.jcr.perftests.write.SmallFileWriteTestSuite;
+import org.reflections.Reflections;
+import org.reflections.scanners.TypesScanner;
+import org.reflections.util.ClasspathHelper;
+import org.reflections.util.ConfigurationBuilder;
+
+/**
+ * Unit test for the selection of the test suites by the {@link SuiteRunner}, from the generated suite index.
+ */
+public class SuiteSelectionTest {
+
+    @Test
+    public void indexesAllTheSuites() throws Exception {
+        Set<String> indexed = new TreeSet<String>();
+        for (SuiteIndex suiteIndex : ServiceLoader.load(SuiteIndex.class)) {
+            for (SuiteDescriptor suite : suiteIndex.getSuites()) {
+                indexed.add(suite.getClassName());
+            }
+        }
+        Reflections reflections = new Reflections(new ConfigurationBuilder().addUrls(ClasspathHelper.forPackage("org.modeshape"))
+                                                                             .setScanners(new TypesScanner()));
+        Set<String> scanned = new TreeSet<String>();
+        for (Class<? extends AbstractPerformanceTestSuite> suiteClass : reflections.getSubTypesOf(AbstractPerformanceTestSuite.class)) {
+            if (!Modifier.isAbstract(suiteClass.getModifiers()) && Modifier.isPublic(suiteClass.getModifiers())) {
+                scanned.add(suiteClass.getName());
+            }
+        }
+        assertTrue(indexed.size() > 20);
+        assertEquals(scanned, indexed);
+        assertEquals(indexed.size(), names(new SuiteRunner("repository", new RunnerCfg()).selectedTestSuites()).size());
+    }
+
+    @Test
+    public void selectsTheSuitesByTags() throws Exception {
+        Set<String> selected = names(new SuiteRunner("repository", new RunnerCfg().addTagsToInclude("query")).selectedTestSuites());
+        assertTrue(selected.toString(), selected.size() > 1);
+        for (String suite : selected) {
+            assertTrue(suite, SuiteDescriptor.forClass(Class.forName(suite).asSubclass(AbstractPerformanceTestSuite.class))
+                                             .getTags()
+                                             .contains("query"));
+        }
+    }
+
+    @Test
+    public void combinesTheTagsWithTheExcludedSuites() throws Exception {
+        Set<String> selected = names(new SuiteRunner("repository", new RunnerCfg("tags-runner.properties")).selectedTestSuites());
+        List<String> expected = new ArrayList<String>();
+        expected.add(OpenAnonymousSessionTestSuite.class.getName());
+        expected.add(OpenAuthenticatedSessionTestSuite.class.getName());
+        expected.add(SmallFileReadTestSuite.class.getName());
+        expected.add(SmallFileWriteTestSuite.class.getName());
+        assertEquals(expected, new ArrayList<String>(selected));
+    }
+
+    private static Set<String> names( Set<Class<? extends AbstractPerformanceTestSuite>> suites ) {
+        Set<String> names = new TreeSet<String>();
+        for (Class<? extends AbstractPerformanceTestSuite> suite : suites) {
+            names.add(suite.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link TestData} class.
+ */
+public class TestDataTest {
+
+    @Test
+    public void mergesDataRecordedInAnotherJvm() throws Exception {
+        TestData parent = new TestData("repo");
+        parent.recordSuccess("Repository initialization", 10, 1);
+
+        TestData child = new TestData("repo");
+        child.recordSuccess("Repository initialization", 20, 1);
+        child.recordSuccess("Suite", 5, 1);
+        child.recordSuccess("Suite", 7, 2);
+        LatencyHistogram latencies = new LatencyHistogram();
+        latencies.recordValue(1000);
+        child.recordOperations("Suite", Collections.singletonMap("read", latencies));
+        child.recordWarmup("Suite", 3, true);
+        child.recordFailure("OtherSuite", new Exception());
+        child.recordBackgroundJob("Suite", new BackgroundJobStats("Reader", 2, latencies, 0, 1000, "java.lang.AssertionError"));
+        child.recordInvalid("Suite", "background job Reader died");
+
+        parent.merge(serializeAndRead(child));
+
+        assertEquals(Arrays.asList(10L, 20L), parent.getTestDurationsNanos("Repository initialization"));
+        assertEquals(Arrays.asList(5L, 7L), parent.getTestDurationsNanos("Suite"));
+        assertEquals(1, parent.getOperationLatencies("Suite", "read").getCount());
+        assertEquals(Integer.valueOf(3), parent.getWarmupRuns("Suite"));
+        assertTrue(parent.reachedSteadyState("Suite"));
+        assertTrue(parent.getFailedTestNames().contains("OtherSuite"));
+        assertEquals("Reader", parent.getBackgroundJobs("Suite").get(0).getName());
+        assertEquals("background job Reader died", parent.getInvalidReason("Suite"));
+    }
+
+    @Test
+    public void keepsOnlyTheMostRecentSamples() {
+        TestData testData = new TestData("repo", 3);
+        for (int run = 1; run <= 5; run++) {
+            testData.recordSuccess("Suite", run * 10, run);
+            testData.recordMetrics("Suite", new IterationMetrics(run, 0, 0, 0));
+        }
+        assertEquals(Arrays.asList(30L, 40L, 50L), testData.getTestDurationsNanos("Suite"));
+        assertEquals(5, testData.getTestDurations("Suite").getCount());
+        assertEquals(3, testData.getIterationMetrics("Suite").size());
+        assertEquals(3, testData.getIterationMetrics("Suite").get(0).getAllocatedBytes());
+        assertTrue(testData.getTestDurationsNanos("OtherSuite").isEmpty());
+    }
+
+    private TestData serializeAndRead( TestData testData ) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(testData);
+        output.close();
+        return (TestData)new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link WorkerThreads} class.
+ */
+public class WorkerThreadsTest {
+
+    @Test
+    public void usesPlatformThreadsByDefault() {
+        assertFalse(WorkerThreads.forMode(false).isVirtual());
+    }
+
+    @Test
+    public void runsTensOfThousandsOfBlockedTasksOnVirtualThreads() throws Exception {
+        WorkerThreads workerThreads;
+        try {
+            workerThreads = WorkerThreads.forMode(true);
+        } catch (IllegalStateException e) {
+            Assume.assumeTrue(false);
+            return;
+        }
+        int taskCount = 20000;
+        final CountDownLatch started = new CountDownLatch(taskCount);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = workerThreads.newFixedThreadPool(taskCount);
+        try {
+            for (int i = 0; i < taskCount; i++) {
+                executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        started.countDown();
+                        release.await();
+                        return null;
+                    }
+                });
+            }
+            assertTrue(started.await(30, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.RandomAccessFile;
+import javax.jcr.PropertyType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link TraceWriter} and {@link TraceReader} classes.
+ */
+public class TraceFileTest {
+
+    private File file;
+
+    @Before
+    public void before() throws Exception {
+        file = File.createTempFile("workload", ".trace");
+    }
+
+    @After
+    public void after() {
+        file.delete();
+    }
+
+    @Test
+    public void readsBackTheWrittenEvents() throws Exception {
+        long start = System.nanoTime();
+        TraceWriter writer = new TraceWriter(file);
+        writer.write(TraceEvent.of(TraceEvent.Type.GET_NODE, 0, "/a/b"), start + 5000000);
+        // issued before the previous event by a concurrent session, but completed after it
+        writer.write(TraceEvent.of(TraceEvent.Type.ADD_NODE, 1, "/a/b/c[2]", "nt:unstructured"), start + 2000000);
+        writer.write(new TraceEvent(TraceEvent.Type.SET_PROPERTY, 1, 0, "/a/b/ref", "/a/b", PropertyType.WEAKREFERENCE,
+                                    TraceEvent.SINGLE_VALUE, 16, false), start + 6000000);
+        writer.write(new TraceEvent(TraceEvent.Type.SET_PROPERTY, 0, 0, "/a/b/data", null, PropertyType.BINARY, 3, 300000,
+                                    false), start + 6000000);
+        writer.write(new TraceEvent(TraceEvent.Type.SET_PROPERTY, 0, 0, "/a/b/tags", null, PropertyType.STRING, 0, 0, false),
+                     start + 6000000);
+        writer.write(new TraceEvent(TraceEvent.Type.REFRESH, 1, 0, null, null, 0, 0, 0, true), start + 7000000);
+        writer.write(TraceEvent.of(TraceEvent.Type.QUERY, 0, "JCR-SQL2", "SELECT * FROM [nt:base]"), start + 7000000);
+        writer.write(TraceEvent.of(TraceEvent.Type.GET_NODE, 300, "/a/b"), start + 8000000);
+        writer.close();
+
+        TraceReader reader = new TraceReader(file);
+        try {
+            TraceEvent event = reader.next();
+            assertEquals(TraceEvent.Type.GET_NODE, event.type);
+            assertEquals("/a/b", event.path);
+            long offset = event.offsetNanos;
+            assertTrue(offset > 4000000 && offset <= 5000000);
+
+            event = reader.next();
+            assertEquals(TraceEvent.Type.ADD_NODE, event.type);
+            assertEquals(1, event.sessionId);
+            assertEquals("/a/b/c[2]", event.path);
+            assertEquals("nt:unstructured", event.argument);
+            assertEquals(offset - 3000000, event.offsetNanos);
+
+            event = reader.next();
+            assertEquals(PropertyType.WEAKREFERENCE, event.valueType);
+            assertEquals(TraceEvent.SINGLE_VALUE, event.valueCount);
+            assertEquals(16, event.size);
+            assertEquals("/a/b", event.argument);
+            assertEquals(offset + 1000000, event.offsetNanos);
+
+            event = reader.next();
+            assertEquals("/a/b/data", event.path);
+            assertEquals(3, event.valueCount);
+            assertEquals(300000, event.size);
+            assertNull(event.argument);
+
+            event = reader.next();
+            assertEquals("/a/b/tags", event.path);
+            assertEquals(0, event.valueCount);
+
+            event = reader.next();
+            assertEquals(TraceEvent.Type.REFRESH, event.type);
+            assertTrue(event.keepChanges);
+
+            event = reader.next();
+            assertEquals("JCR-SQL2", event.path);
+            assertEquals("SELECT * FROM [nt:base]", event.argument);
+
+            event = reader.next();
+            assertEquals(300, event.sessionId);
+            assertEquals("/a/b", event.path);
+            assertNull(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void endsAtTheLastCompleteEvent() throws Exception {
+        TraceWriter writer = new TraceWriter(file);
+        writer.write(TraceEvent.of(TraceEvent.Type.GET_NODE, 0, "/first"), System.nanoTime());
+        writer.write(TraceEvent.of(TraceEvent.Type.GET_NODE, 0, "/second"), System.nanoTime());
+        writer.close();
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        truncated.setLength(truncated.length() - 3);
+        truncated.close();
+
+        TraceReader reader = new TraceReader(file);
+        try {
+            assertEquals("/first", reader.next().path);
+            assertNull(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+}
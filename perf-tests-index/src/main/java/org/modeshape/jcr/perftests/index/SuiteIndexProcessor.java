@@ -0,0 +1,234 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor which indexes the performance test suites at build time, so that the runner doesn't have to scan the
+ * classpath for them. Every public, concrete subclass of <code>AbstractPerformanceTestSuite</code> which is compiled together
+ * with this processor is recorded, together with the tags and estimated duration of its <code>@PerformanceSuite</code>
+ * annotation (if any), into a generated <code>SuiteIndex</code> implementation, which is registered as a
+ * <code>java.util.ServiceLoader</code> provider.
+ * <p>
+ * The name of the generated class can be set via the <code>-AsuiteIndexClass=...</code> compiler option, so that several modules
+ * can each index their own suites.
+ * </p>
+ * <p>
+ * The names of the indexed suites are also written to a resource next to the compiled classes. An incremental compilation only
+ * passes the recompiled classes to the processor, so the suites listed by the previous index which weren't recompiled are
+ * looked up again from the compiled classes and kept in the index, as long as they still exist.
+ * </p>
+ */
+@SupportedAnnotationTypes( "*" )
+@SupportedOptions( SuiteIndexProcessor.INDEX_CLASS_OPTION )
+public final class SuiteIndexProcessor extends AbstractProcessor {
+
+    static final String INDEX_CLASS_OPTION = "suiteIndexClass";
+
+    private static final String DEFAULT_INDEX_CLASS = "org.modeshape.jcr.perftests.GeneratedSuiteIndex";
+    private static final String SUITE_CLASS = "org.modeshape.jcr.perftests.AbstractPerformanceTestSuite";
+    private static final String SUITE_ANNOTATION = "org.modeshape.jcr.perftests.PerformanceSuite";
+    private static final String SUITE_INDEX_INTERFACE = "org.modeshape.jcr.perftests.SuiteIndex";
+    private static final String SUITE_DESCRIPTOR_CLASS = "org.modeshape.jcr.perftests.SuiteDescriptor";
+    /** The folder of the resources which list the suites of each generated index, by index class name */
+    static final String SUITE_LIST_FOLDER = "META-INF/suite-index/";
+
+    /** Map [suite class binary name, suite descriptor constructor arguments] */
+    private final Map<String, String> suites = new TreeMap<String, String>();
+    private boolean indexWritten = false;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process( Set<? extends TypeElement> annotations,
+                            RoundEnvironment roundEnv ) {
+        TypeElement suiteType = processingEnv.getElementUtils().getTypeElement(SUITE_CLASS);
+        if (suiteType == null || indexWritten) {
+            return false;
+        }
+        for (Element element : roundEnv.getRootElements()) {
+            collectSuites(element, suiteType);
+        }
+        if (!suites.isEmpty() && !roundEnv.processingOver()) {
+            String indexClass = processingEnv.getOptions().get(INDEX_CLASS_OPTION);
+            if (indexClass == null) {
+                indexClass = DEFAULT_INDEX_CLASS;
+            }
+            collectPreviousSuites(indexClass, suiteType);
+            writeIndex(indexClass);
+        }
+        return false;
+    }
+
+    /**
+     * Adds the suites of the previous index which weren't compiled this time (e.g. by an incremental compilation) and which can
+     * still be found among the compiled classes.
+     */
+    private void collectPreviousSuites( String indexClass,
+                                        TypeElement suiteType ) {
+        List<String> previousSuites = new ArrayList<String>();
+        try {
+            FileObject suiteList = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+                                                                        SUITE_LIST_FOLDER + indexClass);
+            BufferedReader reader = new BufferedReader(suiteList.openReader(true));
+            try {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (!line.trim().isEmpty()) {
+                        previousSuites.add(line.trim());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // there is no previous index
+            return;
+        }
+        for (String className : previousSuites) {
+            if (suites.containsKey(className)) {
+                continue;
+            }
+            TypeElement type = processingEnv.getElementUtils().getTypeElement(className.replace('$', '.'));
+            if (type != null) {
+                collectSuites(type, suiteType);
+            }
+        }
+    }
+
+    private void collectSuites( Element element,
+                                TypeElement suiteType ) {
+        if (element.getKind() != ElementKind.CLASS) {
+            return;
+        }
+        TypeElement type = (TypeElement)element;
+        for (Element enclosed : type.getEnclosedElements()) {
+            if (enclosed.getModifiers().contains(Modifier.STATIC)) {
+                collectSuites(enclosed, suiteType);
+            }
+        }
+        Set<Modifier> modifiers = type.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT) || !modifiers.contains(Modifier.PUBLIC)
+            || !processingEnv.getTypeUtils().isSubtype(processingEnv.getTypeUtils().erasure(type.asType()),
+                                                        processingEnv.getTypeUtils().erasure(suiteType.asType()))) {
+            return;
+        }
+        List<String> tags = new ArrayList<String>();
+        int estimatedDurationSeconds = 0;
+        for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+            if (!((TypeElement)annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(SUITE_ANNOTATION)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+                String name = entry.getKey().getSimpleName().toString();
+                if ("tags".equals(name)) {
+                    for (Object tag : (List<?>)entry.getValue().getValue()) {
+                        tags.add((String)((AnnotationValue)tag).getValue());
+                    }
+                } else if ("estimatedDurationSeconds".equals(name)) {
+                    estimatedDurationSeconds = (Integer)entry.getValue().getValue();
+                }
+            }
+        }
+        String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        StringBuilder arguments = new StringBuilder(quote(className)).append(", new String[] {");
+        for (int i = 0; i < tags.size(); i++) {
+            arguments.append(i > 0 ? ", " : "").append(quote(tags.get(i)));
+        }
+        arguments.append("}, ").append(estimatedDurationSeconds);
+        suites.put(className, arguments.toString());
+    }
+
+    private void writeIndex( String indexClass ) {
+        int lastDot = indexClass.lastIndexOf('.');
+        try {
+            PrintWriter source = new PrintWriter(processingEnv.getFiler().createSourceFile(indexClass).openWriter());
+            try {
+                if (lastDot > 0) {
+                    source.println("package " + indexClass.substring(0, lastDot) + ";");
+                    source.println();
+                }
+                source.println("/** Generated by " + getClass().getName() + " */");
+                source.println("public final class " + indexClass.substring(lastDot + 1) + " implements " + SUITE_INDEX_INTERFACE
+                               + " {");
+                source.println("    public java.util.List<" + SUITE_DESCRIPTOR_CLASS + "> getSuites() {");
+                source.println("        java.util.List<" + SUITE_DESCRIPTOR_CLASS + "> suites = new java.util.ArrayList<"
+                               + SUITE_DESCRIPTOR_CLASS + ">();");
+                for (String arguments : suites.values()) {
+                    source.println("        suites.add(new " + SUITE_DESCRIPTOR_CLASS + "(" + arguments + "));");
+                }
+                source.println("        return suites;");
+                source.println("    }");
+                source.println("}");
+            } finally {
+                source.close();
+            }
+
+            PrintWriter service = new PrintWriter(processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                                                                                          "META-INF/services/"
+                                                                                          + SUITE_INDEX_INTERFACE).openWriter());
+            try {
+                service.println(indexClass);
+            } finally {
+                service.close();
+            }
+
+            PrintWriter suiteList = new PrintWriter(processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                                                                                            SUITE_LIST_FOLDER + indexClass)
+                                                                 .openWriter());
+            try {
+                for (String className : suites.keySet()) {
+                    suiteList.println(className);
+                }
+            } finally {
+                suiteList.close();
+            }
+            indexWritten = true;
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write the suite index: " + e.getMessage());
+        }
+    }
+
+    private static String quote( String value ) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
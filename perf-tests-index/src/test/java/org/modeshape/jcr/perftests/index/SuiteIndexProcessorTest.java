@@ -0,0 +1,195 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link SuiteIndexProcessor}, which compiles a few suites against stubs of the perf-tests-api classes.
+ */
+public class SuiteIndexProcessorTest {
+
+    private static final String INDEX_CLASS = "org.modeshape.jcr.perftests.GeneratedSuiteIndex";
+
+    private File workDir;
+    private File sourceDir;
+    private File classesDir;
+    private File generatedDir;
+
+    @Before
+    public void before() throws Exception {
+        workDir = File.createTempFile("suite-index", "");
+        assertTrue(workDir.delete() && workDir.mkdirs());
+        sourceDir = new File(workDir, "src");
+        classesDir = new File(workDir, "classes");
+        generatedDir = new File(workDir, "generated");
+        assertTrue(classesDir.mkdirs() && generatedDir.mkdirs());
+
+        writeSource("org.modeshape.jcr.perftests.AbstractPerformanceTestSuite",
+                    "public abstract class AbstractPerformanceTestSuite {}");
+        writeSource("org.modeshape.jcr.perftests.PerformanceSuite",
+                    "public @interface PerformanceSuite { String[] tags() default {}; int estimatedDurationSeconds() default 0; }");
+        writeSource("org.modeshape.jcr.perftests.SuiteDescriptor",
+                    "public class SuiteDescriptor { public SuiteDescriptor( String c, String[] t, int d ) {} }");
+        writeSource("org.modeshape.jcr.perftests.SuiteIndex",
+                    "public interface SuiteIndex { java.util.List<SuiteDescriptor> getSuites(); }");
+        writeSuite("FirstSuite", "read");
+        writeSuite("SecondSuite", "write");
+        writeSource("suites.Helper", "public class Helper {}");
+    }
+
+    @After
+    public void after() {
+        delete(workDir);
+    }
+
+    @Test
+    public void indexesTheCompiledSuites() throws Exception {
+        compile(allSources(sourceDir, new ArrayList<File>()));
+        assertEquals(Arrays.asList("suites.FirstSuite", "suites.SecondSuite"), indexedSuites());
+        String index = read(new File(generatedDir, INDEX_CLASS.replace('.', '/') + ".java"));
+        assertTrue(index, index.contains("\"suites.FirstSuite\", new String[] {\"read\"}, 0"));
+        assertEquals(INDEX_CLASS, read(new File(classesDir, "META-INF/services/org.modeshape.jcr.perftests.SuiteIndex")).trim());
+    }
+
+    @Test
+    public void keepsTheSuitesWhichWerentRecompiled() throws Exception {
+        compile(allSources(sourceDir, new ArrayList<File>()));
+        writeSuite("SecondSuite", "write", "query");
+        compile(Arrays.asList(sourceFile("suites.SecondSuite")));
+
+        assertEquals(Arrays.asList("suites.FirstSuite", "suites.SecondSuite"), indexedSuites());
+        String index = read(new File(generatedDir, INDEX_CLASS.replace('.', '/') + ".java"));
+        assertTrue(index, index.contains("\"suites.FirstSuite\", new String[] {\"read\"}, 0"));
+        assertTrue(index, index.contains("\"suites.SecondSuite\", new String[] {\"write\", \"query\"}, 0"));
+    }
+
+    @Test
+    public void dropsTheSuitesWhichNoLongerExist() throws Exception {
+        compile(allSources(sourceDir, new ArrayList<File>()));
+        assertTrue(new File(classesDir, "suites/FirstSuite.class").delete());
+        compile(Arrays.asList(sourceFile("suites.SecondSuite")));
+
+        assertEquals(Arrays.asList("suites.SecondSuite"), indexedSuites());
+    }
+
+    private void compile( List<File> sources ) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        try {
+            List<String> options = Arrays.asList("-d", classesDir.getPath(), "-s", generatedDir.getPath(), "-classpath",
+                                                 classesDir.getPath(), "-implicit:class");
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null,
+                                                                 fileManager.getJavaFileObjectsFromFiles(sources));
+            task.setProcessors(Arrays.asList(new SuiteIndexProcessor()));
+            assertTrue("compilation failed", task.call());
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    private List<String> indexedSuites() throws IOException {
+        File suiteList = new File(classesDir, SuiteIndexProcessor.SUITE_LIST_FOLDER + INDEX_CLASS);
+        assertTrue(suiteList.exists());
+        List<String> suites = new ArrayList<String>();
+        for (String line : read(suiteList).split("\\s+")) {
+            if (line.length() > 0) {
+                suites.add(line);
+            }
+        }
+        return suites;
+    }
+
+    private void writeSuite( String name,
+                             String... tags ) throws IOException {
+        StringBuilder annotation = new StringBuilder("@org.modeshape.jcr.perftests.PerformanceSuite( tags = {");
+        for (int i = 0; i < tags.length; i++) {
+            annotation.append(i > 0 ? ", " : "").append('"').append(tags[i]).append('"');
+        }
+        annotation.append("} )\n");
+        writeSource("suites." + name, annotation + "public class " + name
+                                      + " extends org.modeshape.jcr.perftests.AbstractPerformanceTestSuite {}");
+    }
+
+    private void writeSource( String className,
+                              String body ) throws IOException {
+        File file = sourceFile(className);
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write("package " + className.substring(0, className.lastIndexOf('.')) + ";\n" + body + "\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private File sourceFile( String className ) {
+        return new File(sourceDir, className.replace('.', '/') + ".java");
+    }
+
+    private static List<File> allSources( File dir,
+                                          List<File> sources ) {
+        for (File file : dir.listFiles()) {
+            if (file.isDirectory()) {
+                allSources(file, sources);
+            } else {
+                sources.add(file);
+            }
+        }
+        return sources;
+    }
+
+    private static String read( File file ) throws IOException {
+        StringBuilder content = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                content.append(line).append('\n');
+            }
+        } finally {
+            reader.close();
+        }
+        return content.toString();
+    }
+
+    private static void delete( File file ) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * JMH benchmark which runs a single {@link AbstractPerformanceTestSuite} against the repository of the configured
+ * {@link AbstractImplementationTest}. The suite is selected via the {@code suite} parameter, which {@link SuiteBenchmarks} fills
+ * in with every discovered suite.
+ * <p>
+ * The suite lifecycle is mapped onto the JMH fixtures: the repository is obtained and the suite set up once per trial (which
+ * runs {@link AbstractPerformanceTestSuite#beforeSuite()}), {@link AbstractPerformanceTestSuite#beforeTestRun()} and
+ * {@link AbstractPerformanceTestSuite#afterTestRun()} are run around each invocation and only
+ * {@link AbstractPerformanceTestSuite#runTest()} is measured.
+ * </p>
+ * <p>
+ * The per-invocation fixtures ({@link Level#Invocation}) are what allow the suites, which prepare and clean up the content of
+ * each run, to be benchmarked unchanged, but JMH only guarantees meaningful results with them when each invocation takes a
+ * millisecond or more: below that, the timestamps taken around each invocation and the fixtures themselves (which run on the
+ * same thread, just before and after the measured call) dominate and distort the measurement. The results of the suites whose
+ * runs are shorter (e.g. a {@code session} suite configured with few sessions per run) should therefore be treated as
+ * indicative, and such suites compared with the regular runner instead, or excluded via {@code tests.tags} /
+ * {@code tests.exclude}.
+ * </p>
+ * <p>
+ * {@link #runTest()} doesn't need a {@code Blackhole}: {@link AbstractPerformanceTestSuite#runTest()} returns nothing and works
+ * through the session of the suite, whose effects on the repository cannot be eliminated by the JIT compiler.
+ * </p>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SampleTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Fork( 1 )
+public class SuiteBenchmark {
+
+    static final String IMPLEMENTATION_CLASS_PROPERTY = "jmh.implementation.class";
+
+    /**
+     * The simple or fully qualified name of the suite class to run.
+     */
+    @Param( "" )
+    public String suite;
+
+    private AbstractImplementationTest implementation;
+    private RepositoryFactory repositoryFactory;
+    private Repository repository;
+    private AbstractPerformanceTestSuite testSuite;
+
+    @Setup( Level.Trial )
+    public void beforeSuite() throws Exception {
+        implementation = newImplementation();
+        implementation.runnerConfig.beforeRunningSuite();
+
+        for (RepositoryFactory factory : ServiceLoader.load(RepositoryFactory.class)) {
+            repository = factory.getRepository(implementation.repositoryFactoryParameters);
+            if (repository != null) {
+                repositoryFactory = factory;
+                break;
+            }
+        }
+        if (repository == null) {
+            throw new IllegalStateException("No repository found for " + implementation.testDescription);
+        }
+
+        Class<? extends AbstractPerformanceTestSuite> suiteClass = suiteClass(suite, implementation);
+        SuiteConfiguration suiteConfiguration = new SuiteConfiguration(repository, implementation.credentials,
+                                                                       "testsuite.properties").forSuite(
+                suiteClass.getSimpleName(), Collections.<String, String>emptyMap());
+        testSuite = suiteClass.getConstructor(SuiteConfiguration.class).newInstance(suiteConfiguration);
+        if (!testSuite.isCompatibleWithCurrentRepository()) {
+            throw new IllegalStateException("Test suite " + suite + " not compatible with " + implementation.testDescription);
+        }
+        testSuite.setUp();
+    }
+
+    @Setup( Level.Invocation )
+    public void beforeTestRun() throws Exception {
+        testSuite.beforeTestRun();
+    }
+
+    @Benchmark
+    public void runTest() throws Exception {
+        testSuite.runTest();
+    }
+
+    @TearDown( Level.Invocation )
+    public void afterTestRun() throws Exception {
+        testSuite.afterTestRun();
+    }
+
+    @TearDown( Level.Trial )
+    public void afterSuite() throws Exception {
+        try {
+            if (testSuite != null) {
+                testSuite.tearDown();
+            }
+        } finally {
+            implementation.runnerConfig.afterRunningSuite(repositoryFactory, repository);
+        }
+    }
+
+    /**
+     * Creates and initializes the implementation test whose configuration is used to obtain the repository.
+     *
+     * @return an initialized {@link AbstractImplementationTest}, never null
+     * @throws Exception if the implementation class cannot be loaded or instantiated
+     */
+    static AbstractImplementationTest newImplementation() throws Exception {
+        Properties properties = new Properties();
+        InputStream stream = SuiteBenchmark.class.getClassLoader().getResourceAsStream("jmh-suites.properties");
+        if (stream == null) {
+            throw new IOException("jmh-suites.properties not found in the classpath");
+        }
+        try {
+            properties.load(stream);
+        } finally {
+            stream.close();
+        }
+        String className = System.getProperty(IMPLEMENTATION_CLASS_PROPERTY,
+                                              properties.getProperty(IMPLEMENTATION_CLASS_PROPERTY));
+        return AbstractImplementationTest.newInstance(className);
+    }
+
+    private static Class<? extends AbstractPerformanceTestSuite> suiteClass( String name,
+                                                                             AbstractImplementationTest implementation )
+            throws ClassNotFoundException {
+        if (name.indexOf('.') < 0) {
+            SuiteRunner runner = new SuiteRunner(implementation.testDescription, implementation.runnerConfig);
+            for (Class<? extends AbstractPerformanceTestSuite> suiteClass : runner.selectedTestSuites()) {
+                if (suiteClass.getSimpleName().equals(name)) {
+                    return suiteClass;
+                }
+            }
+        }
+        return Class.forName(name).asSubclass(AbstractPerformanceTestSuite.class);
+    }
+}
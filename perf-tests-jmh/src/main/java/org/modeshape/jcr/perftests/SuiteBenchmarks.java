@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.perftests;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar: discovers all the {@link AbstractPerformanceTestSuite} subclasses which are selected by the
+ * {@code tests.include}/{@code tests.exclude} runner properties and runs {@link SuiteBenchmark} once for each of them.
+ * <p>
+ * All the regular JMH command line options are supported (e.g. {@code -prof gc}, {@code -prof stack}, {@code -f}, {@code -wi},
+ * {@code -i}); passing {@code -p suite=...} explicitly overrides the discovered suites.
+ * </p>
+ */
+public final class SuiteBenchmarks {
+
+    private SuiteBenchmarks() {
+    }
+
+    public static void main( String[] args ) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldHelp()) {
+            commandLineOptions.showHelp();
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            options.include(SuiteBenchmark.class.getName());
+        }
+        if (!commandLineOptions.getParameter("suite").hasValue()) {
+            AbstractImplementationTest implementation = SuiteBenchmark.newImplementation();
+            SuiteRunner runner = new SuiteRunner(implementation.testDescription, implementation.runnerConfig);
+            List<String> suites = new ArrayList<String>();
+            for (Class<? extends AbstractPerformanceTestSuite> suiteClass : runner.selectedTestSuites()) {
+                suites.add(suiteClass.getName());
+            }
+            options.param("suite", suites.toArray(new String[suites.size()]));
+        }
+
+        // make sure the forked VMs use the same repository configuration as this one
+        List<String> forkedVmArgs = new ArrayList<String>();
+        if (commandLineOptions.getJvmArgsAppend().hasValue()) {
+            forkedVmArgs.addAll(commandLineOptions.getJvmArgsAppend().get());
+        }
+        for (String property : new String[] { AbstractImplementationTest.CONFIGURATION_NAME_SYSTEM_PROPERTY_NAME,
+                SuiteBenchmark.IMPLEMENTATION_CLASS_PROPERTY }) {
+            String value = System.getProperty(property);
+            if (value != null) {
+                forkedVmArgs.add("-D" + property + "=" + value);
+            }
+        }
+        options.jvmArgsAppend(forkedVmArgs.toArray(new String[forkedVmArgs.size()]));
+
+        new Runner(options.build()).run();
+    }
+}
@@ -15,6 +15,7 @@
 
 package org.modeshape.report;
 
+import org.modeshape.jcr.perftests.EnvironmentInfo;
 import org.modeshape.jcr.perftests.OutputCfg;
 import org.modeshape.jcr.perftests.output.CsvOutput;
 import org.modeshape.jcr.perftests.util.DurationsConverter;
@@ -24,12 +25,19 @@ import org.reflections.util.ClasspathHelper;
 import org.reflections.util.ConfigurationBuilder;
 import org.reflections.util.FilterBuilder;
 import org.slf4j.LoggerFactory;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Class which loads all the .csv files from the classpath which are expected to contain performance reports.
+ * Class which loads all the .csv files from the classpath which are expected to contain performance reports, as listed by the
+ * index file which is written next to them.
  *
  * @author Horia Chiorean
  */
@@ -38,7 +46,8 @@ public final class CsvReportDataAggregator {
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(CsvReportDataAggregator.class);
 
     /**
-     * Loads all the performance data by scanning the classpath for csv files under the {@link org.modeshape.jcr.perftests.OutputCfg#testDataOutputPackage()} location.
+     * Loads all the performance data from the csv files under the {@link org.modeshape.jcr.perftests.OutputCfg#testDataOutputPackage()} location,
+     * which are listed by the {@link CsvOutput#INDEX_FILE} of each test module. The classpath is only scanned for csv files when no index is found.
      * @return a map of the form - [test, [repository name, (duration ns 1, duration ns 2...)]]
      *
      *@param convertToUnit the unit to which the performance data should be converted
@@ -46,26 +55,162 @@ public final class CsvReportDataAggregator {
      */
      Map<String, Map<String, List<Double>>> loadPerformanceData(TimeUnit convertToUnit) throws Exception {
         Map<String, Map<String, List<Long>>> testToRepositoryDurationsMap = new TreeMap<String, Map<String, List<Long>>>();
-        ConfigurationBuilder builder = new ConfigurationBuilder()
-                .setUrls(ClasspathHelper.forPackage(OutputCfg.testDataOutputPackage()))
-                .setScanners(new ResourcesScanner())
-                .useParallelExecutor();
-        Reflections reflections = new Reflections(builder);
-        Set<String> reportFiles = reflections.getResources(new FilterBuilder().include(".*\\.csv"));
-
-        for (String reportFileName : reportFiles) {
-            processReport(reportFileName, testToRepositoryDurationsMap);
+        for (URL reportFile : classpathReportFiles()) {
+            processReport(reportFile, testToRepositoryDurationsMap);
         }
-
         return convertToTimeUnit(testToRepositoryDurationsMap, convertToUnit);
     }
 
-    private void processReport( String reportFileName, Map<String, Map<String, List<Long>>> testToRepositoryDurationsMap ) throws IOException {
-        Properties reportProperties = new Properties();
-        reportProperties.load(getClass().getClassLoader().getResourceAsStream(reportFileName));
+    /**
+     * Loads the environments in which the performance data of the classpath was produced (see
+     * {@link #loadPerformanceData(TimeUnit)}).
+     *
+     * @return a map of the form - [repository name, environment]; repositories whose environment wasn't recorded are left out
+     * @throws IOException if the files cannot be read
+     */
+    Map<String, EnvironmentInfo> loadEnvironments() throws IOException {
+        return loadEnvironments(classpathReportFiles());
+    }
+
+    /**
+     * Loads the environments in which a result set which was saved outside of the classpath was produced (see
+     * {@link #loadResultSet(File)}).
+     *
+     * @param location either a csv file, or a folder containing csv files
+     * @return a map of the form - [repository name, environment]; repositories whose environment wasn't recorded are left out
+     * @throws IOException if the files cannot be read
+     */
+    Map<String, EnvironmentInfo> loadEnvironments( File location ) throws IOException {
+        return loadEnvironments(reportFiles(location));
+    }
+
+    private Map<String, EnvironmentInfo> loadEnvironments( List<URL> reportFiles ) throws IOException {
+        Map<String, EnvironmentInfo> environments = new TreeMap<String, EnvironmentInfo>();
+        for (URL reportFile : reportFiles) {
+            String repositoryName = loadProperties(reportFile).getProperty(CsvOutput.REPOSITORY_PROPERTY);
+            if (repositoryName == null) {
+                continue;
+            }
+            String reportFileName = new File(reportFile.getPath()).getName();
+            URL environmentFile = new URL(reportFile, CsvOutput.environmentFileName(reportFileName));
+            try {
+                environments.put(repositoryName, EnvironmentInfo.fromProperties(loadProperties(environmentFile), ""));
+            } catch (IOException e) {
+                LOGGER.debug("No environment recorded for " + reportFile);
+            }
+        }
+        return environments;
+    }
+
+    private List<URL> classpathReportFiles() throws IOException {
+        List<URL> reportFiles = new ArrayList<URL>();
+        String indexResource = OutputCfg.testDataOutputPackage() + "/" + CsvOutput.INDEX_FILE;
+        Enumeration<URL> indexes = getClass().getClassLoader().getResources(indexResource);
+        if (indexes.hasMoreElements()) {
+            while (indexes.hasMoreElements()) {
+                URL index = indexes.nextElement();
+                for (String reportFileName : readIndex(index)) {
+                    reportFiles.add(new URL(index, reportFileName));
+                }
+            }
+        } else {
+            LOGGER.info("No " + indexResource + " found, scanning the classpath for csv files");
+            ConfigurationBuilder builder = new ConfigurationBuilder()
+                    .setUrls(ClasspathHelper.forPackage(OutputCfg.testDataOutputPackage()))
+                    .setScanners(new ResourcesScanner())
+                    .useParallelExecutor();
+            Reflections reflections = new Reflections(builder);
+            Set<String> reportFileNames = reflections.getResources(new FilterBuilder().include(".*\\.csv"));
+            for (String reportFileName : reportFileNames) {
+                if (CsvOutput.isDurationsFile(reportFileName)) {
+                    reportFiles.add(getClass().getClassLoader().getResource(reportFileName));
+                }
+            }
+        }
+        return reportFiles;
+    }
+
+    /**
+     * Loads the durations (in nanoseconds) of a result set which was saved outside of the classpath, e.g. the test data output
+     * folder of a previous run.
+     *
+     * @param location either a csv file, or a folder containing csv files (listed by its {@link CsvOutput#INDEX_FILE}, if any)
+     * @return a map of the form - [repository name, [test, (duration ns 1, duration ns 2...)]]
+     * @throws IOException if the files cannot be read
+     */
+    Map<String, Map<String, List<Long>>> loadResultSet( File location ) throws IOException {
+        Map<String, Map<String, List<Long>>> testToRepositoryDurationsMap = new TreeMap<String, Map<String, List<Long>>>();
+        for (URL reportFile : reportFiles(location)) {
+            processReport(reportFile, testToRepositoryDurationsMap);
+        }
+        Map<String, Map<String, List<Long>>> repositoryToTestDurationsMap = new TreeMap<String, Map<String, List<Long>>>();
+        for (Map.Entry<String, Map<String, List<Long>>> testEntry : testToRepositoryDurationsMap.entrySet()) {
+            for (Map.Entry<String, List<Long>> repositoryEntry : testEntry.getValue().entrySet()) {
+                Map<String, List<Long>> testDurationsMap = repositoryToTestDurationsMap.get(repositoryEntry.getKey());
+                if (testDurationsMap == null) {
+                    testDurationsMap = new TreeMap<String, List<Long>>();
+                    repositoryToTestDurationsMap.put(repositoryEntry.getKey(), testDurationsMap);
+                }
+                testDurationsMap.put(testEntry.getKey(), repositoryEntry.getValue());
+            }
+        }
+        return repositoryToTestDurationsMap;
+    }
+
+    private List<URL> reportFiles( File location ) throws IOException {
+        List<URL> reportFiles = new ArrayList<URL>();
+        if (!location.isDirectory()) {
+            reportFiles.add(location.toURI().toURL());
+        } else if (new File(location, CsvOutput.INDEX_FILE).exists()) {
+            URL index = new File(location, CsvOutput.INDEX_FILE).toURI().toURL();
+            for (String reportFileName : readIndex(index)) {
+                reportFiles.add(new URL(index, reportFileName));
+            }
+        } else {
+            File[] csvFiles = location.listFiles(new FileFilter() {
+                @Override
+                public boolean accept( File file ) {
+                    return CsvOutput.isDurationsFile(file.getName());
+                }
+            });
+            for (File csvFile : csvFiles) {
+                reportFiles.add(csvFile.toURI().toURL());
+            }
+        }
+        return reportFiles;
+    }
+
+    private List<String> readIndex( URL index ) throws IOException {
+        List<String> reportFileNames = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(index.openStream(), "UTF-8"));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.trim().isEmpty()) {
+                    reportFileNames.add(line.trim());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return reportFileNames;
+    }
+
+    private Properties loadProperties( URL file ) throws IOException {
+        Properties properties = new Properties();
+        InputStream stream = file.openStream();
+        try {
+            properties.load(stream);
+        } finally {
+            stream.close();
+        }
+        return properties;
+    }
+
+    private void processReport( URL reportFile, Map<String, Map<String, List<Long>>> testToRepositoryDurationsMap ) throws IOException {
+        Properties reportProperties = loadProperties(reportFile);
         String repositoryName = reportProperties.getProperty(CsvOutput.REPOSITORY_PROPERTY);
         if (repositoryName == null) {
-            LOGGER.warn(reportFileName + " is not a valid test data file. Ignoring it");
+            LOGGER.warn(reportFile + " is not a valid test data file. Ignoring it");
             return;
         }
 
@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.report;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.modeshape.jcr.perftests.ResultsComparator;
+import org.modeshape.jcr.perftests.StatisticalData;
+import org.modeshape.jcr.perftests.TestComparison;
+import org.modeshape.jcr.perftests.output.ResultsHistory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Report which follows the median duration of each test across all the runs of the results history, in order to spot the slow
+ * drifts which no comparison of two consecutive runs shows. For each repository and test, the median of every run is listed
+ * together with the revision and the implementation version of the run, followed by the {@link ResultsComparator comparison}
+ * of the most recent run against the oldest one.
+ */
+public final class HistoryReport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HistoryReport.class);
+
+    private final ResultsComparator comparator;
+
+    public HistoryReport() {
+        this(new ResultsComparator());
+    }
+
+    public HistoryReport( ResultsComparator comparator ) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Writes the history of the runs made since a given date to a {@code history/report.txt} report file.
+     *
+     * @param historyFolder the results history folder
+     * @param from the date of the oldest run to take into account, or null for all the runs
+     * @param timeUnit the unit of the medians
+     * @return the report file; never null
+     * @throws Exception if anything fails
+     */
+    public File generate( File historyFolder,
+                          Date from,
+                          TimeUnit timeUnit ) throws Exception {
+        ResultsHistory history = new ResultsHistory(historyFolder);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        double nanosPerUnit = timeUnit.toNanos(1);
+
+        File reportFile = ReportsHelper.getReportFile("history/report.txt");
+        PrintStream ps = new PrintStream(reportFile, "UTF-8");
+        try {
+            for (String repositoryName : history.getRepositoryNames()) {
+                List<ResultsHistory.Run> runs = history.getRuns(repositoryName, from, null);
+                if (runs.isEmpty()) {
+                    continue;
+                }
+                ps.println("-----------------------------------------------------------------------");
+                ps.println(repositoryName + " (" + runs.size() + " runs)");
+                Set<String> testNames = new TreeSet<String>();
+                for (ResultsHistory.Run run : runs) {
+                    testNames.addAll(run.getSuccessfulTestNames());
+                }
+                for (String testName : testNames) {
+                    ps.println();
+                    ps.println(testName + " [Date, Revision, Version, Runs, Median] " + timeUnit);
+                    List<ResultsHistory.Run> testRuns = new ArrayList<ResultsHistory.Run>();
+                    for (ResultsHistory.Run run : runs) {
+                        List<Long> durations = run.getTestDurationsNanos(testName);
+                        if (durations.isEmpty()) {
+                            continue;
+                        }
+                        testRuns.add(run);
+                        ps.printf("  %s, %s, %s, %d, %.4f%n", dateFormat.format(run.getDate()), run.getGitRevision(),
+                                  run.getImplementationVersion(), durations.size(),
+                                  new StatisticalData(durations).median() / nanosPerUnit);
+                    }
+                    if (testRuns.size() > 1) {
+                        ResultsHistory.Run oldest = testRuns.get(0);
+                        ResultsHistory.Run latest = testRuns.get(testRuns.size() - 1);
+                        TestComparison comparison = comparator.compare(testName, oldest.getTestDurationsNanos(testName),
+                                                                       latest.getTestDurationsNanos(testName));
+                        double[] interval = comparison.getMedianRatioInterval();
+                        ps.printf("  Latest vs oldest: median ratio %.3f (%.3f-%.3f), p=%.4f, %s%n", comparison.getMedianRatio(),
+                                  interval[0], interval[1], comparison.getPValue(), comparison.getVerdict());
+                    }
+                }
+            }
+        } finally {
+            ps.close();
+        }
+        LOGGER.info("History report written to {}", reportFile.getAbsolutePath());
+        return reportFile;
+    }
+}
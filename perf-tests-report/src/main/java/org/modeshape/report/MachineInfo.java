@@ -15,69 +15,86 @@
 
 package org.modeshape.report;
 
-import org.hyperic.sigar.CpuInfo;
-import org.hyperic.sigar.Mem;
-import org.hyperic.sigar.Sigar;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.modeshape.jcr.perftests.EnvironmentInfo;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
- * Class which uses the Sigar library to provided additional machine (hardware) information for each report
+ * Class which provides the machine (hardware) and JVM information for each report, from the {@link EnvironmentInfo environments}
+ * recorded together with the results. The information therefore describes the machines which ran the tests, not the one which
+ * generates the report.
  *
  * @author Horia Chiorean (hchiorea@redhat.com)
  */
 public final class MachineInfo {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(MachineInfo.class);
+    private final Map<String, EnvironmentInfo> environments;
 
-    private static final String JAVA_VENDOR = System.getProperty("java.vendor");
-    private static final String JAVA_VERSION = System.getProperty("java.version");
-    private static final String OS_NAME = System.getProperty("os.name");
-    private static final String OS_VERSION = System.getProperty("os.version");
-    private static final String OS_ARCH = System.getProperty("os.arch");
-
-    private static CpuInfo cpuInfo;
-    private static Mem memoryInfo;
+    /**
+     * @param environments the environments in which the results of the report were produced, by repository name
+     */
+    MachineInfo( Map<String, EnvironmentInfo> environments ) {
+        this.environments = new TreeMap<String, EnvironmentInfo>(environments);
+    }
 
-    static {
-        try {
-            Sigar sigar = new Sigar();
-            CpuInfo[] cpuInfoList = sigar.getCpuInfoList();
-            if (cpuInfoList.length > 0) {
-                cpuInfo = cpuInfoList[0];
+    /**
+     * Returns the lines which describe the JVMs, the operating systems and the machines which produced the results. If all the
+     * results were produced in the same environment, it is described once; otherwise the environment of each repository is
+     * described separately.
+     *
+     * @return a list of lines; never null but empty if no environment was recorded
+     */
+    List<String> describe() {
+        Set<List<String>> distinctDescriptions = new LinkedHashSet<List<String>>();
+        for (EnvironmentInfo environment : environments.values()) {
+            distinctDescriptions.add(describe(environment));
+        }
+        if (distinctDescriptions.size() <= 1) {
+            return distinctDescriptions.isEmpty() ? Collections.<String>emptyList() : distinctDescriptions.iterator().next();
+        }
+        List<String> lines = new ArrayList<String>();
+        for (Map.Entry<String, EnvironmentInfo> entry : environments.entrySet()) {
+            for (String line : describe(entry.getValue())) {
+                lines.add(entry.getKey() + ": " + line);
             }
-
-            memoryInfo = sigar.getMem();
-        } catch (Exception e) {
-            LOGGER.warn("Unable to initialize Sigar library. Machine information will not be available", e);
         }
+        return lines;
     }
 
-    String jvmInformation() {
-        return spaceSeparated(JAVA_VENDOR, JAVA_VERSION);
+    private List<String> describe( EnvironmentInfo environment ) {
+        List<String> lines = new ArrayList<String>();
+        addIfNotBlank(lines, spaceSeparated(environment.get(EnvironmentInfo.JVM_VENDOR),
+                                            environment.get(EnvironmentInfo.JVM_VERSION)));
+        addIfNotBlank(lines, environment.get(EnvironmentInfo.OS));
+        addIfNotBlank(lines, environment.machineSummary());
+        return lines;
     }
 
-    String osInformation() {
-        return spaceSeparated(OS_NAME, OS_VERSION, OS_ARCH);
-    }
-
-    String cpuInformation() {
-        return cpuInfo != null ? cpuInfo.getModel() : "";
-    }
-
-    String memoryInformation() {
-        return memoryInfo != null ? spaceSeparated(String.valueOf(memoryInfo.getRam()), "MB RAM") : "";
+    private void addIfNotBlank( List<String> lines,
+                                String line ) {
+        if (line != null && !line.trim().isEmpty()) {
+            lines.add(line);
+        }
     }
 
     private String spaceSeparated(String...parts) {
         StringBuilder builder = new StringBuilder();
         for (Iterator<String> partsIt = Arrays.asList(parts).iterator(); partsIt.hasNext(); ) {
-            builder.append(partsIt.next());
-            if (partsIt.hasNext()) {
+            String part = partsIt.next();
+            if (part == null) {
+                continue;
+            }
+            if (builder.length() > 0) {
                 builder.append(" ");
             }
+            builder.append(part);
         }
         return builder.toString();
     }
@@ -15,9 +15,7 @@
 
 package org.modeshape.report;
 
-import org.modeshape.common.util.StringUtil;
 import java.io.File;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,10 +29,10 @@ import java.util.concurrent.TimeUnit;
  */
 public abstract class MultipleAggregatedReport {
 
-    private static final MachineInfo MACHINE_INFO = new MachineInfo();
-
     public void generate( TimeUnit timeUnit ) throws Exception {
-        Map<String, Map<String, List<Double>>> convertedDataMap = new CsvReportDataAggregator().loadPerformanceData(timeUnit);
+        CsvReportDataAggregator aggregator = new CsvReportDataAggregator();
+        Map<String, Map<String, List<Double>>> convertedDataMap = aggregator.loadPerformanceData(timeUnit);
+        MachineInfo machineInfo = new MachineInfo(aggregator.loadEnvironments());
 
         for (String testName : convertedDataMap.keySet()) {
             String filename = getReportFilename(testName);
@@ -42,7 +40,7 @@ public abstract class MultipleAggregatedReport {
 
             String templateName = getReportTemplate(testName);
             Map<String, Object> templateModel = getTemplateModel(testName, convertedDataMap.get(testName), timeUnit);
-            addMachineInformation(templateModel);
+            addMachineInformation(templateModel, machineInfo);
             new FreemarkerTemplateProcessor(reportFile, templateName).processTemplate(templateModel);
         }
 
@@ -66,22 +64,9 @@ public abstract class MultipleAggregatedReport {
         return resourcesDir;
     }
 
-    protected void addMachineInformation(Map<String, Object> templateModel) {
-        List<String> machineInfo = new ArrayList<String>();
-        machineInfo.add(MACHINE_INFO.jvmInformation());
-        machineInfo.add(MACHINE_INFO.osInformation());
-
-        String cpuInformation = MACHINE_INFO.cpuInformation();
-        if (!StringUtil.isBlank(cpuInformation)) {
-            machineInfo.add(cpuInformation);
-        }
-
-        String memoryInformation = MACHINE_INFO.memoryInformation();
-        if (!StringUtil.isBlank(memoryInformation)) {
-            machineInfo.add(memoryInformation);
-        }
-
-        templateModel.put("machineInfo", machineInfo);
+    protected void addMachineInformation( Map<String, Object> templateModel,
+                                          MachineInfo machineInfo ) {
+        templateModel.put("machineInfo", machineInfo.describe());
     }
 
     protected abstract Map<String, Object> getTemplateModel( String testName,
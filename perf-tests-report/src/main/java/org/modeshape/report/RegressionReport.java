@@ -0,0 +1,137 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright [2011], Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.report;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.modeshape.jcr.perftests.EnvironmentInfo;
+import org.modeshape.jcr.perftests.ResultsComparator;
+import org.modeshape.jcr.perftests.TestComparison;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Report which compares a candidate result set against a baseline result set and classifies each test as improved, regressed or
+ * unchanged, using the statistical tests of {@link ResultsComparator} instead of the eyeballing of box plots.
+ * <p>
+ * The tests of each repository of the baseline are compared with the tests of the repository with the same name in the
+ * candidate. If each result set contains a single repository, those are compared regardless of their names (e.g. to compare two
+ * versions of the same repository).
+ * </p>
+ * <p>
+ * When the {@link EnvironmentInfo environments} recorded with the two result sets show that they were produced by different
+ * machines or JVMs, the differences are listed before the comparison, since they can explain the differences in performance.
+ * </p>
+ */
+public final class RegressionReport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegressionReport.class);
+
+    private final ResultsComparator comparator;
+
+    public RegressionReport() {
+        this(new ResultsComparator());
+    }
+
+    public RegressionReport( ResultsComparator comparator ) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Compares two result sets and writes the comparison to the console and to a {@code regression/report.txt} report file.
+     *
+     * @param baseline a csv file or a test data output folder
+     * @param candidate a csv file or a test data output folder
+     * @return the comparisons of all the tests of all the repositories; never null
+     * @throws Exception if anything fails
+     */
+    public List<TestComparison> generate( File baseline,
+                                          File candidate ) throws Exception {
+        CsvReportDataAggregator aggregator = new CsvReportDataAggregator();
+        Map<String, Map<String, List<Long>>> baselineData = aggregator.loadResultSet(baseline);
+        Map<String, Map<String, List<Long>>> candidateData = aggregator.loadResultSet(candidate);
+        Map<String, EnvironmentInfo> baselineEnvironments = aggregator.loadEnvironments(baseline);
+        Map<String, EnvironmentInfo> candidateEnvironments = aggregator.loadEnvironments(candidate);
+
+        List<TestComparison> allComparisons = new ArrayList<TestComparison>();
+        File reportFile = ReportsHelper.getReportFile("regression/report.txt");
+        PrintStream ps = new PrintStream(reportFile, "UTF-8");
+        try {
+            ps.println("Baseline: " + baseline.getAbsolutePath());
+            ps.println("Candidate: " + candidate.getAbsolutePath());
+            for (String baselineRepository : baselineData.keySet()) {
+                String candidateRepository = baselineRepository;
+                if (baselineData.size() == 1 && candidateData.size() == 1) {
+                    candidateRepository = candidateData.keySet().iterator().next();
+                } else if (!candidateData.containsKey(baselineRepository)) {
+                    continue;
+                }
+                List<TestComparison> comparisons = comparator.compare(baselineData.get(baselineRepository),
+                                                                      candidateData.get(candidateRepository));
+                print(ps, baselineRepository, candidateRepository, comparisons, baselineEnvironments.get(baselineRepository),
+                      candidateEnvironments.get(candidateRepository));
+                allComparisons.addAll(comparisons);
+            }
+        } finally {
+            ps.close();
+        }
+        LOGGER.info("Regression report written to {}", reportFile.getAbsolutePath());
+        return allComparisons;
+    }
+
+    private void print( PrintStream ps,
+                        String baselineRepository,
+                        String candidateRepository,
+                        List<TestComparison> comparisons,
+                        EnvironmentInfo baselineEnvironment,
+                        EnvironmentInfo candidateEnvironment ) {
+        ps.println("-----------------------------------------------------------------------");
+        ps.println(baselineRepository + " -> " + candidateRepository);
+        if (baselineEnvironment != null && candidateEnvironment != null) {
+            for (String property : baselineEnvironment.machineDifferences(candidateEnvironment)) {
+                String line = "WARNING: different " + property + ": " + baselineEnvironment.get(property) + " -> "
+                              + candidateEnvironment.get(property);
+                ps.println(line);
+                LOGGER.warn(line);
+            }
+        }
+        ps.println("Test [Runs, Median ratio (CI), p99 ratio (CI), Mann-Whitney p, Cliff's delta] VERDICT");
+        int regressed = 0;
+        int improved = 0;
+        for (TestComparison comparison : comparisons) {
+            double[] medianInterval = comparison.getMedianRatioInterval();
+            double[] p99Interval = comparison.getP99RatioInterval();
+            String line = String.format("%s [%d/%d, %.3f (%.3f-%.3f), %.3f (%.3f-%.3f), %.4f, %.2f] %s", comparison.getTestName(),
+                                        comparison.getBaselineCount(), comparison.getCandidateCount(),
+                                        comparison.getMedianRatio(), medianInterval[0], medianInterval[1],
+                                        comparison.getP99Ratio(), p99Interval[0], p99Interval[1], comparison.getPValue(),
+                                        comparison.getEffectSize(), comparison.getVerdict());
+            ps.println(line);
+            LOGGER.info(line);
+            if (comparison.getVerdict() == TestComparison.Verdict.REGRESSED) {
+                regressed++;
+            } else if (comparison.getVerdict() == TestComparison.Verdict.IMPROVED) {
+                improved++;
+            }
+        }
+        ps.println("Regressed: " + regressed + ", improved: " + improved + ", unchanged: "
+                   + (comparisons.size() - regressed - improved));
+    }
+}
@@ -19,9 +19,6 @@ import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import org.hyperic.sigar.CpuInfo;
-import org.hyperic.sigar.Sigar;
-import org.hyperic.sigar.SigarException;
 import org.modeshape.jcr.perftests.OutputCfg;
 
 /**
@@ -65,11 +62,4 @@ public final class ReportsHelper {
         }
     }
 
-    public static void main( String[] args ) throws SigarException {
-        Sigar sigar = new Sigar();
-        CpuInfo[] cpuInfoList = sigar.getCpuInfoList();
-        System.out.println(cpuInfoList[0].toString());
-        System.out.println(sigar.getMem().toString());
-    }
-
 }
@@ -15,8 +15,12 @@
 
 package org.modeshape.report;
 
+import static org.junit.Assume.assumeNotNull;
+import static org.junit.Assume.assumeTrue;
+import java.io.File;
 import java.util.concurrent.TimeUnit;
 import org.junit.Test;
+import org.modeshape.jcr.perftests.OutputCfg;
 
 /**
  * Test which invokes the {@link GoogleBoxChartReport} and the {@link BoxPlotReport} class in order to generate some box charts
@@ -32,4 +36,22 @@ public class AggregatedReportTest {
         // new BoxPlotReport().generate(TimeUnit.MILLISECONDS);
         new D3BoxPlotReport().generate(TimeUnit.MILLISECONDS);
     }
+
+    /**
+     * Compares two result sets when they are given, e.g. {@code -Dreport.baseline=old/test-data-output -Dreport.candidate=new/test-data-output}
+     */
+    @Test
+    public void generateRegressionReport() throws Exception {
+        String baseline = System.getProperty("report.baseline");
+        String candidate = System.getProperty("report.candidate");
+        assumeNotNull(baseline, candidate);
+        new RegressionReport().generate(new File(baseline), new File(candidate));
+    }
+
+    @Test
+    public void generateHistoryReport() throws Exception {
+        File historyFolder = OutputCfg.resultsHistoryFolder();
+        assumeTrue(historyFolder != null);
+        new HistoryReport().generate(historyFolder, null, TimeUnit.MILLISECONDS);
+    }
 }